@@ -52,7 +52,9 @@ public interface BookKeeperServerStats {
     String READ_ENTRY_REQUEST = "READ_ENTRY_REQUEST";
     String READ_ENTRY = "READ_ENTRY";
     String READ_ENTRY_REJECTED = "READ_ENTRY_REJECTED";
+    String READ_ENTRY_FROM_CACHE = "READ_ENTRY_FROM_CACHE";
     String READ_ENTRY_SCHEDULING_DELAY = "READ_ENTRY_SCHEDULING_DELAY";
+    String REQUEST_SCHEDULING_WAIT = "REQUEST_SCHEDULING_WAIT";
     String READ_ENTRY_FENCE_REQUEST = "READ_ENTRY_FENCE_REQUEST";
     String READ_ENTRY_FENCE_WAIT = "READ_ENTRY_FENCE_WAIT";
     String READ_ENTRY_FENCE_READ = "READ_ENTRY_FENCE_READ";
@@ -68,6 +70,11 @@ public interface BookKeeperServerStats {
     String GET_BOOKIE_INFO = "GET_BOOKIE_INFO";
     String GET_LIST_OF_ENTRIES_OF_LEDGER = "GET_LIST_OF_ENTRIES_OF_LEDGER";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST = "GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST";
+    String RANGE_READ_ENTRY_REQUEST = "RANGE_READ_ENTRY_REQUEST";
+    String RANGE_READ_ENTRY = "RANGE_READ_ENTRY";
+    String RANGE_READ_ENTRY_COUNT = "RANGE_READ_ENTRY_COUNT";
+    String RANGE_ADD_ENTRY_REQUEST = "RANGE_ADD_ENTRY_REQUEST";
+    String RANGE_ADD_ENTRY_COUNT = "RANGE_ADD_ENTRY_COUNT";
 
     // Ensemble Stats
     String WATCHER_SCOPE = "bookie_watcher";
@@ -120,6 +127,10 @@ public interface BookKeeperServerStats {
     String JOURNAL_CREATION_LATENCY = "JOURNAL_CREATION_LATENCY";
     String JOURNAL_MEMORY_MAX = "JOURNAL_MEMORY_MAX";
     String JOURNAL_MEMORY_USED = "JOURNAL_MEMORY_USED";
+    String JOURNAL_GROUP_WAIT_TARGET = "JOURNAL_GROUP_WAIT_TARGET_NANOS";
+    String JOURNAL_BUFFERED_WRITES_TARGET = "JOURNAL_BUFFERED_WRITES_TARGET";
+    String JOURNAL_BUFFERED_ENTRIES_TARGET = "JOURNAL_BUFFERED_ENTRIES_TARGET";
+    String JOURNAL_FORCE_WRITE_LATENCY_AVG = "JOURNAL_FORCE_WRITE_LATENCY_AVG_NANOS";
 
     // Ledger Storage Stats
     String STORAGE_GET_OFFSET = "STORAGE_GET_OFFSET";
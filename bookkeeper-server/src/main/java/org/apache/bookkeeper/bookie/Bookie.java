@@ -20,6 +20,7 @@ package org.apache.bookkeeper.bookie;
 
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
+import java.util.List;
 import java.util.PrimitiveIterator;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.common.util.Watcher;
@@ -45,6 +46,8 @@ public interface Bookie {
             throws IOException, BookieException, InterruptedException;
     void recoveryAddEntry(ByteBuf entry, WriteCallback cb, Object ctx, byte[] masterKey)
             throws IOException, BookieException, InterruptedException;
+    void addEntries(List<ByteBuf> entries, boolean ackBeforeSync, WriteCallback cb, Object ctx, byte[] masterKey)
+            throws IOException, BookieException, InterruptedException;
     void forceLedger(long ledgerId, WriteCallback cb, Object ctx);
     void setExplicitLac(ByteBuf entry, WriteCallback writeCallback, Object ctx, byte[] masterKey)
             throws IOException, InterruptedException, BookieException;
@@ -57,6 +60,19 @@ public interface Bookie {
     // TODO: Shouldn't this be async?
     ByteBuf readEntry(long ledgerId, long entryId)
             throws IOException, NoLedgerException, BookieException;
+
+    /**
+     * Read an entry only if it can be read without blocking, e.g. from the caches of the ledger storage.
+     *
+     * @param withLastAddConfirmed whether {@link #readLastAddConfirmed(long)} must not block either
+     * @return the entry, or null if it can't be read without blocking
+     * @throws NoLedgerException if the ledger doesn't exist, e.g. if it's deleted
+     * @see LedgerStorage#tryGetEntryFromCache(long, long)
+     */
+    default ByteBuf tryReadEntryFromCache(long ledgerId, long entryId, boolean withLastAddConfirmed)
+            throws IOException, BookieException {
+        return null;
+    }
     long readLastAddConfirmed(long ledgerId) throws IOException, BookieException;
     PrimitiveIterator.OfLong getListOfEntriesOfLedger(long ledgerId) throws IOException, NoLedgerException;
 
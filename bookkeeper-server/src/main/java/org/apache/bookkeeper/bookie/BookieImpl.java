@@ -66,6 +66,7 @@ import org.apache.bookkeeper.discover.RegistrationManager;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.net.DNS;
+import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -910,6 +911,20 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
 
         // journal `addEntry` should happen after the entry is added to ledger storage.
         // otherwise the journal entry can potentially be rolled before the ledger is created in ledger storage.
+        journalMasterKeyIfAbsent(ledgerId, masterKey);
+
+        if (!writeDataToJournal) {
+            cb.writeComplete(0, ledgerId, entryId, null, ctx);
+            return;
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Adding {}@{}", entryId, ledgerId);
+        }
+        getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, cb, ctx);
+    }
+
+    private void journalMasterKeyIfAbsent(long ledgerId, byte[] masterKey) throws InterruptedException {
         if (masterKeyCache.get(ledgerId) == null) {
             // Force the load into masterKey cache
             byte[] oldValue = masterKeyCache.putIfAbsent(ledgerId, masterKey);
@@ -925,16 +940,6 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
                 getJournal(ledgerId).logAddEntry(bb, false /* ackBeforeSync */, new NopWriteCallback(), null);
             }
         }
-
-        if (!writeDataToJournal) {
-            cb.writeComplete(0, ledgerId, entryId, null, ctx);
-            return;
-        }
-
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Adding {}@{}", entryId, ledgerId);
-        }
-        getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, cb, ctx);
     }
 
     /**
@@ -1059,6 +1064,96 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
         }
     }
 
+    /**
+     * Add a batch of consecutive entries of the same ledger. The entries are added to the ledger
+     * storage under a single lock of the ledger handle, and journaled with a single enqueue. The
+     * callback is invoked for each entry.
+     *
+     * <p>If the ledger storage fails to add the first entry, nothing is stored and the exception
+     * is thrown. If it fails on a later entry, the entries already stored are still journaled and
+     * acknowledged, and the callback is invoked with {@link BookieProtocol#EIO} for the others.
+     */
+    @Override
+    public void addEntries(List<ByteBuf> entries, boolean ackBeforeSync, WriteCallback cb, Object ctx,
+                           byte[] masterKey) throws IOException, BookieException, InterruptedException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        int stored = 0;
+        try {
+            LedgerDescriptor handle = getLedgerForEntry(entries.get(0), masterKey);
+            synchronized (handle) {
+                if (handle.isFenced()) {
+                    throw BookieException
+                            .create(BookieException.Code.LedgerFencedException);
+                }
+                long ledgerId = handle.getLedgerId();
+                long batchBytes = 0;
+                IOException storeFailure = null;
+                for (ByteBuf entry : entries) {
+                    try {
+                        handle.addEntry(entry);
+                    } catch (IOException e) {
+                        if (stored == 0) {
+                            throw e;
+                        }
+                        storeFailure = e;
+                        break;
+                    } catch (BookieException e) {
+                        if (stored == 0) {
+                            throw e;
+                        }
+                        storeFailure = new IOException(e);
+                        break;
+                    }
+                    stored++;
+                    batchBytes += entry.readableBytes();
+                }
+                bookieStats.getWriteBytes().add(batchBytes);
+
+                journalMasterKeyIfAbsent(ledgerId, masterKey);
+
+                List<ByteBuf> storedEntries = stored == entries.size() ? entries : entries.subList(0, stored);
+                if (!writeDataToJournal) {
+                    for (ByteBuf entry : storedEntries) {
+                        cb.writeComplete(0, ledgerId, entry.getLong(entry.readerIndex() + 8), null, ctx);
+                    }
+                } else {
+                    getJournal(ledgerId).logAddEntries(ledgerId, storedEntries, ackBeforeSync, cb, ctx);
+                }
+
+                if (storeFailure != null) {
+                    LOG.error("Failed to add entry {} of ledger {}, failing the rest of the batch",
+                            entries.get(stored).getLong(entries.get(stored).readerIndex() + 8), ledgerId,
+                            storeFailure);
+                    for (ByteBuf entry : entries.subList(stored, entries.size())) {
+                        cb.writeComplete(BookieProtocol.EIO, ledgerId, entry.getLong(entry.readerIndex() + 8),
+                                null, ctx);
+                    }
+                    if (storeFailure instanceof NoWritableLedgerDirException) {
+                        stateManager.transitionToReadOnlyMode();
+                    }
+                }
+            }
+            success = true;
+        } catch (NoWritableLedgerDirException e) {
+            stateManager.transitionToReadOnlyMode();
+            throw new IOException(e);
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            for (int i = 0; i < entries.size(); i++) {
+                ByteBuf entry = entries.get(i);
+                if (success && i < stored) {
+                    bookieStats.getAddEntryStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                    bookieStats.getAddBytesStats().registerSuccessfulValue(entry.readableBytes());
+                } else {
+                    bookieStats.getAddEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                    bookieStats.getAddBytesStats().registerFailedValue(entry.readableBytes());
+                }
+                entry.release();
+            }
+        }
+    }
+
     /**
      * Fences a ledger. From this point on, clients will be unable to
      * write to this ledger. Only recoveryAddEntry will be
@@ -1100,6 +1195,26 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
         }
     }
 
+    @Override
+    public ByteBuf tryReadEntryFromCache(long ledgerId, long entryId, boolean withLastAddConfirmed)
+            throws IOException, BookieException {
+        // like readEntry, so that the entries of a deleted ledger left in the caches aren't served
+        handles.getReadOnlyHandle(ledgerId);
+        if (withLastAddConfirmed && !ledgerStorage.isLastAddConfirmedCached(ledgerId)) {
+            return null;
+        }
+        long requestNanos = MathUtils.nowInNano();
+        ByteBuf entry = ledgerStorage.tryGetEntryFromCache(ledgerId, entryId);
+        if (entry != null) {
+            int entrySize = entry.readableBytes();
+            bookieStats.getReadBytes().add(entrySize);
+            bookieStats.getReadEntryStats().registerSuccessfulEvent(MathUtils.elapsedNanos(requestNanos),
+                    TimeUnit.NANOSECONDS);
+            bookieStats.getReadBytesStats().registerSuccessfulValue(entrySize);
+        }
+        return entry;
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
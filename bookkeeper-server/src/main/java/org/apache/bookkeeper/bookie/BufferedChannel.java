@@ -87,11 +87,20 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 
     public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int writeCapacity, int readCapacity,
             long unpersistedBytesBound) throws IOException {
+        this(fc, allocator.directBuffer(writeCapacity), readCapacity, unpersistedBytesBound);
+    }
+
+    /**
+     * Create a buffered channel using the given buffer for writes. The channel takes the
+     * ownership of the buffer, which is released when the channel is closed.
+     */
+    protected BufferedChannel(FileChannel fc, ByteBuf writeBuffer, int readCapacity, long unpersistedBytesBound)
+            throws IOException {
         super(fc, readCapacity);
-        this.writeCapacity = writeCapacity;
+        this.writeCapacity = writeBuffer.capacity();
         this.position = fc.position();
         this.writeBufferStartPosition.set(position);
-        this.writeBuffer = allocator.directBuffer(writeCapacity);
+        this.writeBuffer = writeBuffer;
         this.unpersistedBytes = new AtomicLong(0);
         this.unpersistedBytesBound = unpersistedBytesBound;
         this.doRegularFlushes = unpersistedBytesBound > 0;
@@ -283,6 +292,12 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         return (int) (pos - prevPos);
     }
 
+    @Override
+    public int read(ByteBuf dest, long pos, int length, long bufferLimit) throws IOException {
+        // The data being written is served from the write buffer
+        return read(dest, pos, length);
+    }
+
     @Override
     public synchronized void clear() {
         super.clear();
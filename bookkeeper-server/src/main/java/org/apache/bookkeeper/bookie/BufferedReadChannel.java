@@ -66,6 +66,14 @@ public class BufferedReadChannel extends BufferedChannelBase  {
     }
 
     public synchronized int read(ByteBuf dest, long pos, int length) throws IOException {
+        return read(dest, pos, length, Long.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #read(ByteBuf, long, int)}, but the data past {@code bufferLimit} is never
+     * kept in the read buffer, because it might still be rewritten in the file.
+     */
+    public synchronized int read(ByteBuf dest, long pos, int length, long bufferLimit) throws IOException {
         invocationCount++;
         long currentPosition = pos;
         long eof = validateAndGetFileChannel().size();
@@ -89,8 +97,12 @@ public class BufferedReadChannel extends BufferedChannelBase  {
             } else {
                 // We don't have it in the buffer, so put necessary data in the buffer
                 readBufferStartPosition = currentPosition;
+                int fillLength = readCapacity;
+                if (currentPosition < bufferLimit && bufferLimit - currentPosition < readCapacity) {
+                    fillLength = (int) (bufferLimit - currentPosition);
+                }
                 int readBytes = 0;
-                if ((readBytes = validateAndGetFileChannel().read(readBuffer.internalNioBuffer(0, readCapacity),
+                if ((readBytes = validateAndGetFileChannel().read(readBuffer.internalNioBuffer(0, fillLength),
                         currentPosition)) <= 0) {
                     throw new IOException("Reading from filechannel returned a non-positive value. Short read.");
                 }
@@ -0,0 +1,140 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.util.NativeIO.DIRECT_IO_ALIGNMENT;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import org.apache.bookkeeper.bookie.EntryLogger.BufferedLogChannel;
+import org.apache.bookkeeper.util.NativeIO;
+
+/**
+ * An entry log channel which writes to the file with direct I/O, bypassing the page cache,
+ * so that heavy writes don't evict the pages used by the readers.
+ *
+ * <p>The write buffer is aligned, and it's always written in whole aligned blocks. When the
+ * buffer is flushed, the last partial block is written padded with zeros and kept in the
+ * buffer, so that it's rewritten with the following data on the next flush. The file is
+ * truncated to its actual size when the channel is closed. Until then, the data past
+ * {@link #getFileChannelPosition()} must not be buffered by the readers, since the padding
+ * is overwritten by the next flush.
+ *
+ * <p>Reads and fsyncs still go through the regular file channel.
+ */
+class DirectBufferedLogChannel extends BufferedLogChannel {
+
+    private final int fd;
+    private final long writeBufferAddress;
+    private boolean closed = false;
+
+    static DirectBufferedLogChannel create(ByteBufAllocator allocator, FileChannel fc, int writeCapacity,
+            int readCapacity, long logId, File logFile, long unpersistedBytesBound) throws IOException {
+        if (fc.position() % DIRECT_IO_ALIGNMENT != 0) {
+            throw new IOException("Position of " + logFile + " is not aligned for direct I/O");
+        }
+
+        int capacity = Math.max(DIRECT_IO_ALIGNMENT, alignDown(writeCapacity));
+        ByteBuf buffer = allocator.directBuffer(capacity + DIRECT_IO_ALIGNMENT, capacity + DIRECT_IO_ALIGNMENT);
+        if (!buffer.hasMemoryAddress()) {
+            buffer.release();
+            throw new IOException("Direct I/O requires direct buffers with memory address");
+        }
+        int alignmentOffset = (int) (alignUp(buffer.memoryAddress()) - buffer.memoryAddress());
+        ByteBuf alignedBuffer = buffer.slice(alignmentOffset, capacity).clear();
+
+        int fd;
+        try {
+            fd = NativeIO.openDirectForWrite(logFile.getAbsolutePath());
+        } catch (IOException e) {
+            buffer.release();
+            throw e;
+        }
+        return new DirectBufferedLogChannel(fc, alignedBuffer, readCapacity, logId, logFile, unpersistedBytesBound,
+                fd);
+    }
+
+    private DirectBufferedLogChannel(FileChannel fc, ByteBuf writeBuffer, int readCapacity, long logId,
+            File logFile, long unpersistedBytesBound, int fd) throws IOException {
+        super(fc, writeBuffer, readCapacity, logId, logFile, unpersistedBytesBound);
+        this.fd = fd;
+        this.writeBufferAddress = writeBuffer.memoryAddress();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        int length = writeBuffer.writerIndex();
+        if (length == 0) {
+            return;
+        }
+
+        int alignedLength = (int) alignUp(length);
+        writeBuffer.setZero(length, alignedLength - length);
+        long startPosition = writeBufferStartPosition.get();
+        NativeIO.pwriteFully(fd, writeBufferAddress, alignedLength, startPosition);
+
+        // Keep the trailing partial block in the buffer, it will be written again
+        // with the next data
+        int fullBlocksLength = alignDown(length);
+        int tailLength = length - fullBlocksLength;
+        if (tailLength > 0 && fullBlocksLength > 0) {
+            writeBuffer.setBytes(0, writeBuffer, fullBlocksLength, tailLength);
+        }
+        writeBuffer.writerIndex(tailLength);
+        writeBufferStartPosition.set(startPosition + fullBlocksLength);
+
+        // The read buffer might hold the padding of the tail block that was just overwritten
+        if (readBufferStartPosition + readBuffer.writerIndex() > startPosition) {
+            readBuffer.clear();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            // Drop the padding of the last block
+            fileChannel.truncate(position);
+        } finally {
+            try {
+                NativeIO.closeFd(fd);
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    private static long alignUp(long value) {
+        return (value + DIRECT_IO_ALIGNMENT - 1) & -DIRECT_IO_ALIGNMENT;
+    }
+
+    private static int alignDown(int value) {
+        return value & -DIRECT_IO_ALIGNMENT;
+    }
+}
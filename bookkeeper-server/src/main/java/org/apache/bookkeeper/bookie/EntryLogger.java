@@ -41,6 +41,9 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.FileChannel;
@@ -54,6 +57,7 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
@@ -94,6 +98,14 @@ public class EntryLogger {
             this.entryLogMetadata = new EntryLogMetadata(logId);
             this.logFile = logFile;
         }
+
+        protected BufferedLogChannel(FileChannel fc, ByteBuf writeBuffer, int readCapacity,
+                long logId, File logFile, long unpersistedBytesBound) throws IOException {
+            super(fc, writeBuffer, readCapacity, unpersistedBytesBound);
+            this.logId = logId;
+            this.entryLogMetadata = new EntryLogMetadata(logId);
+            this.logFile = logFile;
+        }
         public long getLogId() {
             return logId;
         }
@@ -284,6 +296,9 @@ public class EntryLogger {
 
     private final ByteBufAllocator allocator;
 
+    private final boolean mmapReadEnabled;
+    private final int maxMappedLogs;
+
     final ServerConfiguration conf;
     /**
      * Scan entries in a entry log file.
@@ -346,6 +361,8 @@ public class EntryLogger {
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
         entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
+        this.mmapReadEnabled = conf.isEntryLogMmapReadEnabled();
+        this.maxMappedLogs = Math.max(1, conf.getEntryLogMmapMaxMappedLogs());
         if (listener != null) {
             addListener(listener);
         }
@@ -409,19 +426,56 @@ public class EntryLogger {
             throws IOException {
         BufferedLogChannel bc = entryLogManager.getCurrentLogIfPresent(entryLogId);
         if (null != bc) {
+            long flushedPosition;
             synchronized (bc) {
-                if (pos + buff.writableBytes() >= bc.getFileChannelPosition()) {
+                flushedPosition = bc.getFileChannelPosition();
+                if (pos + buff.writableBytes() >= flushedPosition) {
                     return bc.read(buff, pos);
                 }
             }
+            // The file past the flushed position might still be rewritten, eg: the zero padded
+            // tail block of the direct I/O channel, so it must not be buffered for later reads
+            return channel.read(buff, pos, buff.writableBytes(), flushedPosition);
         }
         return channel.read(buff, pos);
     }
 
+    /**
+     * {@code Thread.isVirtual()}, or null if the JDK doesn't support virtual threads. It's looked up
+     * through reflection, as the bookie is still built for JDKs without them.
+     */
+    private static final MethodHandle IS_VIRTUAL_THREAD = lookupIsVirtualThread();
+
+    private static MethodHandle lookupIsVirtualThread() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+                    MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the current thread is a virtual thread. The virtual threads are started for a single
+     * read, e.g. by the read requests executed on virtual threads, so they don't use the per-thread
+     * caches of the entry logger: a cache would be filled for each read and never used again.
+     */
+    static boolean isVirtualThread() {
+        if (null == IS_VIRTUAL_THREAD) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL_THREAD.invokeExact(Thread.currentThread());
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
     /**
      * A thread-local variable that wraps a mapping of log ids to bufferedchannels
      * These channels should be used only for reading. logChannel is the one
-     * that is used for writes.
+     * that is used for writes. The virtual threads don't keep their channels, see
+     * {@link #isVirtualThread()}.
      */
     private final ThreadLocal<Map<Long, BufferedReadChannel>> logid2Channel =
             new ThreadLocal<Map<Long, BufferedReadChannel>>() {
@@ -472,6 +526,102 @@ public class EntryLogger {
         return logid2Channel.get().get(logId);
     }
 
+    /**
+     * Memory mapped sealed entry logs, shared by all the reader threads. Each mapping holds a
+     * reference which is released when the log is removed. The logs that cannot be mapped are
+     * kept as {@link MappedEntryLog#UNMAPPABLE}.
+     *
+     * <p>At most {@code maxMappedLogs} logs are mapped: past that, the least recently read logs
+     * are removed, so that the mappings don't exhaust the memory map areas of the process.
+     */
+    private final ConcurrentMap<Long, MappedEntryLog> logid2MappedLog = new ConcurrentHashMap<>();
+    private final AtomicInteger mappedLogsCount = new AtomicInteger();
+
+    /**
+     * Get the mapping of a sealed entry log, mapping it if needed.
+     *
+     * @return the mapped log, with a reference acquired for the caller, or null if the log
+     *         cannot be read through a mapping
+     */
+    private MappedEntryLog getMappedLog(long entryLogId) {
+        MappedEntryLog mappedLog = logid2MappedLog.get(entryLogId);
+        if (mappedLog == null) {
+            // Only map the logs which won't be written anymore
+            if (!isFlushedEntryLog(entryLogId) || entryLogManager.getCurrentLogIfPresent(entryLogId) != null) {
+                return null;
+            }
+            mappedLog = logid2MappedLog.computeIfAbsent(entryLogId, logId -> {
+                try {
+                    MappedEntryLog mapped = MappedEntryLog.map(logId, findFile(logId));
+                    if (mapped == null) {
+                        // Too big to be mapped, remember it to not check the file on every read
+                        return MappedEntryLog.UNMAPPABLE;
+                    }
+                    mappedLogsCount.incrementAndGet();
+                    return mapped;
+                } catch (FileNotFoundException e) {
+                    return null;
+                } catch (IOException e) {
+                    LOG.warn("Failed to map entry log {}, falling back to channel reads", logId, e);
+                    return MappedEntryLog.UNMAPPABLE;
+                }
+            });
+            if (mappedLogsCount.get() > maxMappedLogs) {
+                evictMappedLogs(entryLogId);
+            }
+        }
+        if (mappedLog != null && mappedLog != MappedEntryLog.UNMAPPABLE && mappedLog.tryRetain()) {
+            mappedLog.touch();
+            return mappedLog;
+        }
+        return null;
+    }
+
+    /**
+     * Remove the least recently read mappings, until no more than {@code maxMappedLogs} logs are
+     * mapped. The entries already read from an evicted log keep its region mapped until they are
+     * released.
+     */
+    private void evictMappedLogs(long newLogId) {
+        while (mappedLogsCount.get() > maxMappedLogs) {
+            MappedEntryLog lru = null;
+            for (MappedEntryLog mappedLog : logid2MappedLog.values()) {
+                if (mappedLog == MappedEntryLog.UNMAPPABLE || mappedLog.getLogId() == newLogId) {
+                    continue;
+                }
+                if (lru == null || mappedLog.getLastAccessNanos() < lru.getLastAccessNanos()) {
+                    lru = mappedLog;
+                }
+            }
+            if (lru == null) {
+                return;
+            }
+            if (logid2MappedLog.remove(lru.getLogId(), lru)) {
+                mappedLogsCount.decrementAndGet();
+                lru.release();
+            }
+        }
+    }
+
+    private void removeMappedLog(long logId) {
+        MappedEntryLog mappedLog = logid2MappedLog.remove(logId);
+        if (mappedLog != null && mappedLog != MappedEntryLog.UNMAPPABLE) {
+            mappedLogsCount.decrementAndGet();
+            mappedLog.release();
+        }
+    }
+
+    @VisibleForTesting
+    int getMappedLogsCount() {
+        return mappedLogsCount.get();
+    }
+
+    @VisibleForTesting
+    boolean isMappedLog(long logId) {
+        MappedEntryLog mappedLog = logid2MappedLog.get(logId);
+        return mappedLog != null && mappedLog != MappedEntryLog.UNMAPPABLE;
+    }
+
     /**
      * Get the least unflushed log id. Garbage collector thread should not process
      * unflushed entry log file.
@@ -546,6 +696,7 @@ public class EntryLogger {
      */
     protected boolean removeEntryLog(long entryLogId) {
         removeFromChannelsAndClose(entryLogId);
+        removeMappedLog(entryLogId);
         File entryLogFile;
         try {
             entryLogFile = findFile(entryLogId);
@@ -557,6 +708,8 @@ public class EntryLogger {
         if (!entryLogFile.delete()) {
             LOG.warn("Could not delete entry log file {}", entryLogFile);
         }
+        // A concurrent reader might have mapped the file again before it was deleted
+        removeMappedLog(entryLogId);
         return true;
     }
 
@@ -789,8 +942,13 @@ public class EntryLogger {
 
     private ByteBuf readEntrySize(long ledgerId, long entryId, long entryLogId, long pos, BufferedReadChannel fc)
             throws EntryLookupException, IOException {
-        ByteBuf sizeBuff = sizeBuffer.get();
-        sizeBuff.clear();
+        ByteBuf sizeBuff;
+        if (isVirtualThread()) {
+            sizeBuff = Unpooled.buffer(4 + 8 + 8);
+        } else {
+            sizeBuff = sizeBuffer.get();
+            sizeBuff.clear();
+        }
 
         long entrySizePos = pos - 4; // we want to get the entrySize as well as the ledgerId and entryId
 
@@ -814,8 +972,12 @@ public class EntryLogger {
 
     private void validateEntry(long ledgerId, long entryId, long entryLogId, long pos, ByteBuf sizeBuff)
             throws IOException, EntryLookupException {
-        int entrySize = sizeBuff.readInt();
+        validateEntry(ledgerId, entryId, entryLogId, pos, sizeBuff.getInt(0), sizeBuff.getLong(4),
+                sizeBuff.getLong(12));
+    }
 
+    private void validateEntry(long ledgerId, long entryId, long entryLogId, long pos, int entrySize,
+                               long thisLedgerId, long thisEntryId) throws IOException, EntryLookupException {
         // entrySize does not include the ledgerId
         if (entrySize > maxSaneEntrySize) {
             LOG.warn("Sanity check failed for entry size of " + entrySize + " at location " + pos + " in "
@@ -826,8 +988,6 @@ public class EntryLogger {
             throw new EntryLookupException.InvalidEntryLengthException(ledgerId, entryId, entryLogId, pos);
         }
 
-        long thisLedgerId = sizeBuff.getLong(4);
-        long thisEntryId = sizeBuff.getLong(12);
         if (thisLedgerId != ledgerId || thisEntryId != entryId) {
             throw new EntryLookupException.WrongEntryException(
                     thisEntryId, thisLedgerId, ledgerId, entryId, entryLogId, pos);
@@ -839,6 +999,12 @@ public class EntryLogger {
         long entryLogId = logIdForOffset(location);
         long pos = posForOffset(location);
 
+        if (mmapReadEnabled) {
+            MappedEntryLog mappedLog = getMappedLog(entryLogId);
+            if (mappedLog != null) {
+                return readEntryFromMappedLog(mappedLog, ledgerId, entryId, pos, validateEntry);
+            }
+        }
 
         BufferedReadChannel fc = null;
         int entrySize = -1;
@@ -877,6 +1043,43 @@ public class EntryLogger {
         return data;
     }
 
+    /**
+     * Read an entry from a mapped log, returning a slice of the mapping. The reference on the
+     * mapped log is transferred to the returned buffer, or released on error.
+     */
+    private ByteBuf readEntryFromMappedLog(MappedEntryLog mappedLog, long ledgerId, long entryId, long pos,
+                                           boolean validateEntry) throws IOException {
+        long entryLogId = mappedLog.getLogId();
+        boolean success = false;
+        try {
+            long entrySizePos = pos - 4;
+            if (entrySizePos < 0 || pos + MIN_SANE_ENTRY_SIZE > mappedLog.size()) {
+                throw new Bookie.NoEntryException("Short read from entrylog " + entryLogId, ledgerId, entryId);
+            }
+            int entrySize = mappedLog.getInt(entrySizePos);
+            if (validateEntry) {
+                try {
+                    validateEntry(ledgerId, entryId, entryLogId, pos, entrySize, mappedLog.getLong(pos),
+                            mappedLog.getLong(pos + 8));
+                } catch (EntryLookupException e) {
+                    throw new IOException(e.toString());
+                }
+            }
+            if (entrySize < 0 || pos + entrySize > mappedLog.size()) {
+                throw new Bookie.NoEntryException("Short read for " + ledgerId + "@"
+                        + entryId + " in " + entryLogId + "@"
+                        + pos + "(" + (mappedLog.size() - pos) + "!=" + entrySize + ")", ledgerId, entryId);
+            }
+            ByteBuf data = mappedLog.slice(pos, entrySize);
+            success = true;
+            return data;
+        } finally {
+            if (!success) {
+                mappedLog.release();
+            }
+        }
+    }
+
     public ByteBuf readEntry(long ledgerId, long entryId, long location) throws IOException, Bookie.NoEntryException {
         return internalReadEntry(ledgerId, entryId, location, true /* validateEntry */);
     }
@@ -909,7 +1112,8 @@ public class EntryLogger {
     }
 
     private BufferedReadChannel getChannelForLogId(long entryLogId) throws IOException {
-        BufferedReadChannel fc = getFromChannels(entryLogId);
+        boolean virtualThread = isVirtualThread();
+        BufferedReadChannel fc = virtualThread ? null : getFromChannels(entryLogId);
         if (fc != null) {
             return fc;
         }
@@ -925,7 +1129,9 @@ public class EntryLogger {
         // We set the position of the write buffer of this buffered channel to Long.MAX_VALUE
         // so that there are no overlaps with the write buffer while reading
         fc = new BufferedReadChannel(newFc, conf.getReadBufferBytes());
-        putInReadChannels(entryLogId, fc);
+        if (!virtualThread) {
+            putInReadChannels(entryLogId, fc);
+        }
         return fc;
     }
 
@@ -1209,6 +1415,9 @@ public class EntryLogger {
             }
             // clear the mapping, so we don't need to go through the channels again in finally block in normal case.
             logid2FileChannel.clear();
+            for (Long logId : logid2MappedLog.keySet()) {
+                removeMappedLog(logId);
+            }
             entryLogManager.close();
             synchronized (compactionLogLock) {
                 if (compactionLogChannel != null) {
@@ -47,6 +47,7 @@ import java.util.concurrent.TimeoutException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.bookie.EntryLogger.BufferedLogChannel;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.NativeIO;
 
 /**
  * An allocator pre-allocates entry log files.
@@ -63,6 +64,7 @@ class EntryLoggerAllocator {
     private final Object createCompactionLogLock = new Object();
     private final EntryLogger.RecentEntryLogsStatus recentlyCreatedEntryLogsStatus;
     private final boolean entryLogPreAllocationEnabled;
+    private final boolean useDirectIO;
     private final ByteBufAllocator byteBufAllocator;
     final ByteBuf logfileHeader = Unpooled.buffer(EntryLogger.LOGFILE_HEADER_SIZE);
 
@@ -75,6 +77,11 @@ class EntryLoggerAllocator {
         this.preallocatedLogId = logId;
         this.recentlyCreatedEntryLogsStatus = recentlyCreatedEntryLogsStatus;
         this.entryLogPreAllocationEnabled = conf.isEntryLogFilePreAllocationEnabled();
+        this.useDirectIO = conf.isEntryLogDirectIOEnabled() && NativeIO.isDirectIOAvailable();
+        if (conf.isEntryLogDirectIOEnabled() && !useDirectIO) {
+            log.warn("Direct I/O for entry logs is enabled but not available on this platform,"
+                    + " using buffered writes");
+        }
         this.allocatorExecutor = Executors.newSingleThreadExecutor();
 
         // Initialize the entry log header buffer. This cannot be a static object
@@ -166,8 +173,20 @@ class EntryLoggerAllocator {
         File newLogFile = new File(dirForNextEntryLog, logFileName);
         FileChannel channel = new RandomAccessFile(newLogFile, "rw").getChannel();
 
-        BufferedLogChannel logChannel = new BufferedLogChannel(byteBufAllocator, channel, conf.getWriteBufferBytes(),
-                conf.getReadBufferBytes(), preallocatedLogId, newLogFile, conf.getFlushIntervalInBytes());
+        BufferedLogChannel logChannel = null;
+        if (useDirectIO) {
+            try {
+                logChannel = DirectBufferedLogChannel.create(byteBufAllocator, channel, conf.getWriteBufferBytes(),
+                        conf.getReadBufferBytes(), preallocatedLogId, newLogFile, conf.getFlushIntervalInBytes());
+            } catch (IOException e) {
+                log.warn("Failed to open entry log {} with direct I/O, falling back to buffered writes: {}",
+                        newLogFile, e.getMessage());
+            }
+        }
+        if (logChannel == null) {
+            logChannel = new BufferedLogChannel(byteBufAllocator, channel, conf.getWriteBufferBytes(),
+                    conf.getReadBufferBytes(), preallocatedLogId, newLogFile, conf.getFlushIntervalInBytes());
+        }
         logfileHeader.readerIndex(0);
         logChannel.write(logfileHeader);
 
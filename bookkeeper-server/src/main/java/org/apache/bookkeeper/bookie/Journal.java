@@ -41,6 +41,7 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -304,6 +305,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         Object ctx;
         long enqueueTime;
         boolean ackBeforeSync;
+        // Next entry of a batch enqueued at once, written right after this one
+        QueueEntry next;
 
         OpStatsLogger journalAddEntryStats;
         Counter journalCbQueueSize;
@@ -353,6 +356,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         };
 
         private void recycle() {
+            next = null;
             recyclerHandle.recycle(this);
         }
     }
@@ -383,8 +387,11 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             try {
                 if (shouldForceWrite) {
                     this.logFile.forceWrite(false);
-                    journalStats.getJournalSyncStats()
-                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                    long syncNanos = MathUtils.elapsedNanos(startTime);
+                    journalStats.getJournalSyncStats().registerSuccessfulEvent(syncNanos, TimeUnit.NANOSECONDS);
+                    if (groupCommitController != null) {
+                        groupCommitController.onForceWrite(syncNanos);
+                    }
                 }
                 lastLogMark.setCurLogMark(this.logId, this.lastFlushedPosition);
 
@@ -604,17 +611,23 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
     static void writePaddingBytes(JournalChannel jc, ByteBuf paddingBuffer, int journalAlignSize)
             throws IOException {
+        // padding mask and len, with the epoch tag in between from V7
+        boolean tagged = jc.getFormatVersion() >= JournalChannel.V7;
+        int headerSize = tagged ? 16 : 8;
         int bytesToAlign = (int) (jc.bc.position() % journalAlignSize);
         if (0 != bytesToAlign) {
             int paddingBytes = journalAlignSize - bytesToAlign;
-            if (paddingBytes < 8) {
-                paddingBytes = journalAlignSize - (8 - paddingBytes);
+            if (paddingBytes < headerSize) {
+                paddingBytes = journalAlignSize - (headerSize - paddingBytes);
             } else {
-                paddingBytes -= 8;
+                paddingBytes -= headerSize;
             }
             paddingBuffer.clear();
             // padding mask
             paddingBuffer.writeInt(PADDING_MASK);
+            if (tagged) {
+                paddingBuffer.writeLong(jc.getEpochTag());
+            }
             // padding len
             paddingBuffer.writeInt(paddingBytes);
             // padding bytes
@@ -636,6 +649,14 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     final int journalWriteBufferSize;
     // number journal files kept before marked journal
     final int maxBackupJournals;
+    // whether to reuse the old journal files instead of deleting them
+    final boolean journalReuseFiles;
+    // whether to pre-allocate the journal files with fallocate
+    final boolean journalPreAllocWithFallocate;
+    // max number of old journal files kept to be reused
+    final int maxReusableJournals;
+    // ids of the old journal files available to be reused, guarded by itself
+    private final TreeSet<Long> reusableJournalIds = new TreeSet<>();
 
     final File journalDirectory;
     final ServerConfiguration conf;
@@ -648,6 +669,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     private final long bufferedEntriesThreshold;
     // Threshold after which we flush any buffered journal writes
     private final long bufferedWritesThreshold;
+    // Adjusts the group commit targets to the load, null if disabled
+    private final JournalGroupCommitController groupCommitController;
     // should we flush if the queue is empty
     private final boolean flushWhenQueueEmpty;
     // should we hint the filesystem to remove pages from cache after force write
@@ -725,7 +748,23 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         this.maxGroupWaitInNanos = TimeUnit.MILLISECONDS.toNanos(conf.getJournalMaxGroupWaitMSec());
         this.bufferedWritesThreshold = conf.getJournalBufferedWritesThreshold();
         this.bufferedEntriesThreshold = conf.getJournalBufferedEntriesThreshold();
+        if (conf.getJournalGroupCommitAutoTuning()) {
+            this.groupCommitController = new JournalGroupCommitController(maxGroupWaitInNanos,
+                    bufferedWritesThreshold, bufferedEntriesThreshold);
+        } else {
+            this.groupCommitController = null;
+        }
+        this.journalPreAllocWithFallocate = conf.getJournalPreAllocWithFallocate();
         this.journalFormatVersionToWrite = conf.getJournalFormatVersionToWrite();
+        // Reused journal files need the records to be tagged with the epoch of the file
+        if (conf.getJournalReuseFiles() && journalFormatVersionToWrite < JournalChannel.V7) {
+            LOG.warn("Journal files reuse requires journalFormatVersionToWrite >= {}, disabling it",
+                    JournalChannel.V7);
+            this.journalReuseFiles = false;
+        } else {
+            this.journalReuseFiles = conf.getJournalReuseFiles();
+        }
+        this.maxReusableJournals = conf.getJournalMaxReusableFiles();
         this.journalAlignmentSize = conf.getJournalAlignmentSize();
         this.journalPageCacheFlushIntervalMSec = conf.getJournalPageCacheFlushIntervalMSec();
         if (conf.getNumJournalCallbackThreads() > 0) {
@@ -754,6 +793,9 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Last Log Mark : {}", lastLogMark.getCurMark());
         }
+        if (journalReuseFiles) {
+            loadReusableJournalIds();
+        }
 
         try {
             this.fileChannelProvider = FileChannelProvider.newProvider(conf.getJournalChannelProvider());
@@ -764,13 +806,29 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
         // Expose Stats
         this.journalStats = new JournalStats(journalStatsLogger, journalMaxMemory,
-                () -> memoryLimitController.currentUsage());
+                () -> memoryLimitController.currentUsage(), this::getGroupWaitNanos,
+                this::getBufferedWritesThreshold, this::getBufferedEntriesThreshold,
+                () -> groupCommitController != null ? groupCommitController.getForceWriteLatencyNanos() : -1L);
     }
 
     JournalStats getJournalStats() {
         return this.journalStats;
     }
 
+    long getGroupWaitNanos() {
+        return groupCommitController != null ? groupCommitController.getGroupWaitNanos() : maxGroupWaitInNanos;
+    }
+
+    long getBufferedWritesThreshold() {
+        return groupCommitController != null
+                ? groupCommitController.getBufferedWritesThreshold() : bufferedWritesThreshold;
+    }
+
+    long getBufferedEntriesThreshold() {
+        return groupCommitController != null
+                ? groupCommitController.getBufferedEntriesThreshold() : bufferedEntriesThreshold;
+    }
+
     public File getJournalDirectory() {
         return journalDirectory;
     }
@@ -816,6 +874,12 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         if (compact) {
             // list the journals that have been marked
             List<Long> logs = listJournalIds(journalDirectory, new JournalRollingFilter(mark));
+            if (journalReuseFiles) {
+                // the files kept to be reused are not backups
+                synchronized (reusableJournalIds) {
+                    logs.removeAll(reusableJournalIds);
+                }
+            }
             // keep MAX_BACKUP_JOURNALS journal files before marked journal
             if (logs.size() >= maxBackupJournals) {
                 int maxIdx = logs.size() - maxBackupJournals;
@@ -823,6 +887,9 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     long id = logs.get(i);
                     // make sure the journal id is smaller than marked journal id
                     if (id < mark.getCurMark().getLogFileId()) {
+                        if (journalReuseFiles && keepForReuse(id)) {
+                            continue;
+                        }
                         File journalFile = new File(journalDirectory, Long.toHexString(id) + ".txn");
                         if (!journalFile.delete()) {
                             LOG.warn("Could not delete old journal file {}", journalFile);
@@ -834,6 +901,46 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         }
     }
 
+    /**
+     * Keep an old journal file to be reused, instead of deleting it. At most
+     * {@link #maxReusableJournals} files are kept for reuse, on top of the backup journals.
+     *
+     * @return true if the journal file is kept for reuse
+     */
+    private boolean keepForReuse(long journalId) {
+        synchronized (reusableJournalIds) {
+            if (reusableJournalIds.size() >= maxReusableJournals) {
+                return false;
+            }
+            reusableJournalIds.add(journalId);
+            LOG.info("Keeping journal {} to be reused", Long.toHexString(journalId));
+            return true;
+        }
+    }
+
+    /**
+     * Find the journal files kept to be reused before the bookie restarted. They are not recorded
+     * anywhere: the old journal files before the last log mark which are not backups are the ones
+     * kept to be reused, since the other ones have been deleted.
+     */
+    private void loadReusableJournalIds() {
+        List<Long> logs = listJournalIds(journalDirectory, new JournalRollingFilter(lastLogMark));
+        synchronized (reusableJournalIds) {
+            for (int i = 0; i < logs.size() - maxBackupJournals; i++) {
+                if (!keepForReuse(logs.get(i))) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private File pollReusableJournalFile() {
+        synchronized (reusableJournalIds) {
+            Long journalId = reusableJournalIds.pollFirst();
+            return journalId != null ? new File(journalDirectory, Long.toHexString(journalId) + ".txn") : null;
+        }
+    }
+
     /**
      * Scan the journal.
      *
@@ -856,6 +963,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         int journalVersion = recLog.getFormatVersion();
         try {
             ByteBuffer lenBuff = ByteBuffer.allocate(4);
+            ByteBuffer tagBuff = ByteBuffer.allocate(8);
             ByteBuffer recBuff = ByteBuffer.allocate(64 * 1024);
             while (true) {
                 // entry start offset
@@ -871,6 +979,20 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 if (len == 0) {
                     break;
                 }
+                if (journalVersion >= JournalChannel.V7) {
+                    // A reused journal file still contains the records of its previous epoch after
+                    // the last record written, including the padding records, which are told apart
+                    // by their tag
+                    tagBuff.clear();
+                    fullRead(recLog, tagBuff);
+                    if (tagBuff.remaining() != 0) {
+                        break;
+                    }
+                    tagBuff.flip();
+                    if (tagBuff.getLong() != recLog.getEpochTag()) {
+                        break;
+                    }
+                }
                 boolean isPaddingRecord = false;
                 if (len < 0) {
                     if (len == PADDING_MASK && journalVersion >= JournalChannel.V5) {
@@ -891,6 +1013,11 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                         throw new IOException("Invalid record found with negative length " + len);
                     }
                 }
+                if (journalVersion >= JournalChannel.V7
+                        && (len < 0 || len > recLog.fc.size() - recLog.fc.position())) {
+                    // Padding length from the previous epoch
+                    break;
+                }
                 recBuff.clear();
                 if (recBuff.remaining() < len) {
                     recBuff = ByteBuffer.allocate(len);
@@ -946,6 +1073,50 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 callbackTime));
     }
 
+    /**
+     * Record the add operations of a batch of entries of the same ledger in journal.
+     *
+     * <p>The batch is enqueued at once and written without interleaving with other entries, but
+     * the callback is still invoked for each entry, in order.
+     */
+    public void logAddEntries(long ledgerId, List<ByteBuf> entries, boolean ackBeforeSync,
+                              WriteCallback cb, Object ctx) throws InterruptedException {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        long batchBytes = 0;
+        for (ByteBuf entry : entries) {
+            batchBytes += entry.readableBytes();
+        }
+        // Reserve the memory of the whole batch at once, so that it can't be partially enqueued
+        memoryLimitController.reserveMemory(batchBytes);
+
+        long enqueueTime = MathUtils.nowInNano();
+        QueueEntry head = null;
+        QueueEntry tail = null;
+        for (ByteBuf entry : entries) {
+            // Retain entry until it gets written to journal
+            entry.retain();
+            long entryId = entry.getLong(entry.readerIndex() + 8);
+            QueueEntry qe = QueueEntry.create(
+                    entry, ackBeforeSync, ledgerId, entryId, cb, ctx, enqueueTime,
+                    journalStats.getJournalAddEntryStats(),
+                    journalStats.getJournalCbQueueSize(),
+                    callbackTime);
+            if (head == null) {
+                head = qe;
+            } else {
+                tail.next = qe;
+            }
+            tail = qe;
+        }
+
+        journalStats.getJournalQueueSize().inc();
+        journalStats.getJournalCbQueueSize().add(entries.size());
+        queue.put(head);
+    }
+
     void forceLedger(long ledgerId, WriteCallback cb, Object ctx) {
         queue.add(QueueEntry.create(
                 null, false /* ackBeforeSync */, ledgerId,
@@ -997,7 +1168,9 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
         RecyclableArrayList<QueueEntry> toFlush = entryListRecycler.newInstance();
         int numEntriesToFlush = 0;
-        ByteBuf lenBuff = Unpooled.buffer(4);
+        // record length, followed by the epoch tag from V7
+        int recordHeaderSize = journalFormatVersionToWrite >= JournalChannel.V7 ? 12 : 4;
+        ByteBuf lenBuff = Unpooled.buffer(recordHeaderSize);
         ByteBuf paddingBuff = Unpooled.buffer(2 * conf.getJournalAlignmentSize());
         paddingBuff.writeZero(paddingBuff.capacity());
 
@@ -1028,10 +1201,16 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     logId = logId + 1;
 
                     journalCreationWatcher.reset().start();
+                    File fileToReuse = journalReuseFiles ? pollReusableJournalFile() : null;
                     logFile = new JournalChannel(journalDirectory, logId, journalPreAllocSize, journalWriteBufferSize,
                                         journalAlignmentSize, removePagesFromCache,
                                         journalFormatVersionToWrite, getBufferedChannelBuilder(),
+                                        fileToReuse, journalPreAllocWithFallocate,
                                         conf, fileChannelProvider);
+                    if (fileToReuse != null && fileToReuse.exists() && !fileToReuse.delete()) {
+                        // the file could not be reused
+                        LOG.warn("Could not delete old journal file {}", fileToReuse);
+                    }
 
                     journalStats.getJournalCreationStats().registerSuccessfulEvent(
                             journalCreationWatcher.stop().elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
@@ -1056,7 +1235,10 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                         journalStats.getJournalQueueStats()
                             .registerSuccessfulEvent(MathUtils.elapsedNanos(qe.enqueueTime), TimeUnit.NANOSECONDS);
                     } else {
-                        long pollWaitTimeNanos = maxGroupWaitInNanos
+                        long groupWaitNanos = getGroupWaitNanos();
+                        long entriesThreshold = getBufferedEntriesThreshold();
+                        long writesThreshold = getBufferedWritesThreshold();
+                        long pollWaitTimeNanos = groupWaitNanos
                                 - MathUtils.elapsedNanos(toFlush.get(0).enqueueTime);
                         if (flushWhenQueueEmpty || pollWaitTimeNanos < 0) {
                             pollWaitTimeNanos = 0;
@@ -1073,12 +1255,12 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                         boolean shouldFlush = false;
                         // We should issue a forceWrite if any of the three conditions below holds good
                         // 1. If the oldest pending entry has been pending for longer than the max wait time
-                        if (maxGroupWaitInNanos > 0 && !groupWhenTimeout && (MathUtils
-                                .elapsedNanos(toFlush.get(0).enqueueTime) > maxGroupWaitInNanos)) {
+                        if (groupWaitNanos > 0 && !groupWhenTimeout && (MathUtils
+                                .elapsedNanos(toFlush.get(0).enqueueTime) > groupWaitNanos)) {
                             groupWhenTimeout = true;
-                        } else if (maxGroupWaitInNanos > 0 && groupWhenTimeout
+                        } else if (groupWaitNanos > 0 && groupWhenTimeout
                             && (qe == null // no entry to group
-                                || MathUtils.elapsedNanos(qe.enqueueTime) < maxGroupWaitInNanos)) {
+                                || MathUtils.elapsedNanos(qe.enqueueTime) < groupWaitNanos)) {
                             // when group timeout, it would be better to look forward, as there might be lots of
                             // entries already timeout
                             // due to a previous slow write (writing to filesystem which impacted by force write).
@@ -1089,8 +1271,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                             shouldFlush = true;
                             journalStats.getFlushMaxWaitCounter().inc();
                         } else if (qe != null
-                                && ((bufferedEntriesThreshold > 0 && toFlush.size() > bufferedEntriesThreshold)
-                                || (bc.position() > lastFlushPosition + bufferedWritesThreshold))) {
+                                && ((entriesThreshold > 0 && toFlush.size() > entriesThreshold)
+                                || (bc.position() > lastFlushPosition + writesThreshold))) {
                             // 2. If we have buffered more than the buffWriteThreshold or bufferedEntriesThreshold
                             groupWhenTimeout = false;
                             shouldFlush = true;
@@ -1123,6 +1305,9 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                             }
 
                             lastFlushPosition = bc.position();
+                            if (groupCommitController != null) {
+                                groupCommitController.onFlush(toFlush.size(), batchSize);
+                            }
                             journalStats.getJournalFlushStats().registerSuccessfulEvent(
                                     journalFlushWatcher.stop().elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
 
@@ -1197,13 +1382,16 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     int entrySize = qe.entry.readableBytes();
                     journalStats.getJournalWriteBytes().add(entrySize);
 
-                    batchSize += (4 + entrySize);
+                    batchSize += (recordHeaderSize + entrySize);
 
                     lenBuff.clear();
                     lenBuff.writeInt(entrySize);
+                    if (recordHeaderSize > 4) {
+                        lenBuff.writeLong(logFile.getEpochTag());
+                    }
 
                     // preAlloc based on size
-                    logFile.preAllocIfNeeded(4 + entrySize);
+                    logFile.preAllocIfNeeded(recordHeaderSize + entrySize);
 
                     bc.write(lenBuff);
                     bc.write(qe.entry);
@@ -1211,9 +1399,12 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     qe.entry.release();
                 }
 
+                // Write the rest of a batch before polling the queue again
+                QueueEntry next = qe.next;
+                qe.next = null;
                 toFlush.add(qe);
                 numEntriesToFlush++;
-                qe = null;
+                qe = next;
             }
         } catch (IOException ioe) {
             LOG.error("I/O exception in Journal thread!", ioe);
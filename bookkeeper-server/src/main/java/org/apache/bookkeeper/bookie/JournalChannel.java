@@ -31,6 +31,9 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 import org.apache.bookkeeper.conf.ServerConfiguration;
@@ -52,6 +55,7 @@ class JournalChannel implements Closeable {
     final FileChannel fc;
     final BufferedChannel bc;
     final int formatVersion;
+    final long epoch;
     long nextPrealloc = 0;
 
     final byte[] magicWord = "BKLG".getBytes(UTF_8);
@@ -73,15 +77,20 @@ class JournalChannel implements Closeable {
     static final int V5 = 5;
     // Adding explicitlac entry
     public static final int V6 = 6;
+    // 1) adding the epoch to the header
+    // 2) tagging every record, padding included, with the epoch, so that journal files can be
+    //    reused
+    static final int V7 = 7;
 
     static final int HEADER_SIZE = SECTOR_SIZE; // align header to sector size
     static final int VERSION_HEADER_SIZE = 8; // 4byte magic word, 4 byte version
     static final int MIN_COMPAT_JOURNAL_FORMAT_VERSION = V1;
-    static final int CURRENT_JOURNAL_FORMAT_VERSION = V6;
+    static final int CURRENT_JOURNAL_FORMAT_VERSION = V7;
 
     private final long preAllocSize;
     private final int journalAlignSize;
     private final boolean fRemoveFromPageCache;
+    private final boolean fPreAllocWithFallocate;
     public final ByteBuffer zeros;
 
     // The position of the file channel's last drop position
@@ -108,7 +117,7 @@ class JournalChannel implements Closeable {
                    FileChannelProvider provider) throws IOException {
          this(journalDirectory, logId, preAllocSize, writeBufferSize, SECTOR_SIZE,
                  position, false, V5, Journal.BufferedChannelBuilder.DEFAULT_BCBUILDER,
-             conf, provider);
+             null, false, conf, provider);
     }
 
     // Open journal to write
@@ -125,8 +134,20 @@ class JournalChannel implements Closeable {
                    boolean fRemoveFromPageCache, int formatVersionToWrite,
                    Journal.BufferedChannelBuilder bcBuilder, ServerConfiguration conf,
                    FileChannelProvider provider) throws IOException {
+        this(journalDirectory, logId, preAllocSize, writeBufferSize, journalAlignSize, fRemoveFromPageCache,
+                formatVersionToWrite, bcBuilder, null, false, conf, provider);
+    }
+
+    // Open journal to write, reusing an old journal file if possible
+    JournalChannel(File journalDirectory, long logId,
+                   long preAllocSize, int writeBufferSize, int journalAlignSize,
+                   boolean fRemoveFromPageCache, int formatVersionToWrite,
+                   Journal.BufferedChannelBuilder bcBuilder, File fileToReuse,
+                   boolean fPreAllocWithFallocate, ServerConfiguration conf,
+                   FileChannelProvider provider) throws IOException {
         this(journalDirectory, logId, preAllocSize, writeBufferSize, journalAlignSize,
-                START_OF_FILE, fRemoveFromPageCache, formatVersionToWrite, bcBuilder, conf, provider);
+                START_OF_FILE, fRemoveFromPageCache, formatVersionToWrite, bcBuilder, fileToReuse,
+                fPreAllocWithFallocate, conf, provider);
     }
 
     /**
@@ -149,29 +170,53 @@ class JournalChannel implements Closeable {
      *          whether to remove cached pages from page cache.
      * @param formatVersionToWrite
      *          format version to write
+     * @param fileToReuse
+     *          old journal file to reuse for writing, instead of creating a new file.
+     * @param fPreAllocWithFallocate
+     *          whether to pre-allocate the space of the journal file with fallocate.
      * @throws IOException
      */
     private JournalChannel(File journalDirectory, long logId,
                            long preAllocSize, int writeBufferSize, int journalAlignSize,
                            long position, boolean fRemoveFromPageCache,
                            int formatVersionToWrite, Journal.BufferedChannelBuilder bcBuilder,
+                           File fileToReuse, boolean fPreAllocWithFallocate,
                            ServerConfiguration conf,
                            FileChannelProvider provider) throws IOException {
         this.journalAlignSize = journalAlignSize;
         this.zeros = ByteBuffer.allocate(journalAlignSize);
         this.preAllocSize = preAllocSize - preAllocSize % journalAlignSize;
         this.fRemoveFromPageCache = fRemoveFromPageCache;
+        this.fPreAllocWithFallocate = fPreAllocWithFallocate;
         this.configuration = conf;
 
         File fn = new File(journalDirectory, Long.toHexString(logId) + ".txn");
-        channel = provider.open(fn, configuration);
 
         if (formatVersionToWrite < V4) {
             throw new IOException("Invalid journal format to write : version = " + formatVersionToWrite);
         }
 
+        boolean reused = fileToReuse != null && formatVersionToWrite >= V7 && !fn.exists()
+                && reuseJournalFile(fileToReuse, fn, logId, journalDirectory, conf, provider);
+        channel = provider.open(fn, configuration);
+
         LOG.info("Opening journal {}", fn);
-        if (!channel.fileExists(fn)) { // new file, write version
+        if (reused) { // reused file, the header was already written
+            fc = channel.getFileChannel();
+            formatVersion = formatVersionToWrite;
+            epoch = logId;
+            fc.position(HEADER_SIZE);
+
+            bc = bcBuilder.create(fc, writeBufferSize);
+            this.fd = getFd();
+            forceWrite(true);
+            // The space already allocated by the old file is written over before growing the file
+            long reusedSize = fc.size() - fc.size() % journalAlignSize;
+            nextPrealloc = Math.max(this.preAllocSize, reusedSize);
+            if (nextPrealloc > reusedSize) {
+                preAllocate(reusedSize, nextPrealloc - reusedSize);
+            }
+        } else if (!channel.fileExists(fn)) { // new file, write version
             if (!fn.createNewFile()) {
                 LOG.error("Journal file {}, that shouldn't exist, already exists. "
                           + " is there another bookie process running?", fn);
@@ -180,20 +225,16 @@ class JournalChannel implements Closeable {
             }
             fc = channel.getFileChannel();
             formatVersion = formatVersionToWrite;
+            epoch = logId;
 
             int headerSize = (V4 == formatVersion) ? VERSION_HEADER_SIZE : HEADER_SIZE;
-            ByteBuffer bb = ByteBuffer.allocate(headerSize);
-            ZeroBuffer.put(bb);
-            bb.clear();
-            bb.put(magicWord);
-            bb.putInt(formatVersion);
-            bb.clear();
-            fc.write(bb);
+            fc.write(createHeader(headerSize, formatVersion, epoch));
 
             bc = bcBuilder.create(fc, writeBufferSize);
+            this.fd = getFd();
             forceWrite(true);
             nextPrealloc = this.preAllocSize;
-            fc.write(zeros, nextPrealloc - journalAlignSize);
+            preAllocate(headerSize, nextPrealloc - headerSize);
         } else {  // open an existing file
             fc = channel.getFileChannel();
             bc = null; // readonly
@@ -227,6 +268,17 @@ class JournalChannel implements Closeable {
                 throw new IOException(err);
             }
 
+            if (formatVersion >= V7) {
+                bb.clear();
+                if (fc.read(bb) != VERSION_HEADER_SIZE) {
+                    throw new IOException("Invalid journal header, missing epoch");
+                }
+                bb.flip();
+                epoch = bb.getLong();
+            } else {
+                epoch = 0L;
+            }
+
             try {
                 if (position == START_OF_FILE) {
                     if (formatVersion >= V5) {
@@ -243,11 +295,87 @@ class JournalChannel implements Closeable {
                 LOG.error("Bookie journal file can seek to position :", e);
                 throw e;
             }
+            this.fd = getFd();
         }
-        if (fRemoveFromPageCache) {
-            this.fd = NativeIO.getSysFileDescriptor(channel.getFD());
+    }
+
+    private int getFd() throws IOException {
+        if (fRemoveFromPageCache || fPreAllocWithFallocate) {
+            return NativeIO.getSysFileDescriptor(channel.getFD());
         } else {
-            this.fd = -1;
+            return -1;
+        }
+    }
+
+    private ByteBuffer createHeader(int headerSize, int formatVersion, long epoch) {
+        ByteBuffer bb = ByteBuffer.allocate(headerSize);
+        ZeroBuffer.put(bb);
+        bb.clear();
+        bb.put(magicWord);
+        bb.putInt(formatVersion);
+        if (formatVersion >= V7) {
+            bb.putLong(epoch);
+        }
+        bb.clear();
+        return bb;
+    }
+
+    /**
+     * Prepare an old journal file to be reused as a new journal file: its header is rewritten
+     * with the new epoch, so that the records left from the old file are ignored, and then it's
+     * renamed. Only journal files written with the V7 format, which tags every record with the
+     * epoch, can be reused.
+     *
+     * @return true if the file was renamed to the new journal file
+     */
+    private boolean reuseJournalFile(File fileToReuse, File fn, long newEpoch, File journalDirectory,
+                                     ServerConfiguration conf, FileChannelProvider provider) {
+        BookieFileChannel reuseChannel = null;
+        try {
+            if (!fileToReuse.exists()) {
+                return false;
+            }
+            reuseChannel = provider.open(fileToReuse, conf);
+            FileChannel reuseFc = reuseChannel.getFileChannel();
+
+            ByteBuffer bb = ByteBuffer.allocate(VERSION_HEADER_SIZE);
+            if (reuseFc.read(bb, 0) != VERSION_HEADER_SIZE) {
+                return false;
+            }
+            bb.flip();
+            byte[] first4 = new byte[4];
+            bb.get(first4);
+            if (!Arrays.equals(first4, magicWord) || bb.getInt() < V7) {
+                return false;
+            }
+
+            // The new header must be persisted before the file gets the new name, otherwise the
+            // old records could be replayed as part of the new journal after a crash
+            ByteBuffer header = createHeader(HEADER_SIZE, V7, newEpoch);
+            while (header.hasRemaining()) {
+                reuseFc.write(header, header.position());
+            }
+            reuseFc.force(false);
+            provider.close(reuseChannel);
+            reuseChannel = null;
+
+            Files.move(fileToReuse.toPath(), fn.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            try (FileChannel dirChannel = FileChannel.open(journalDirectory.toPath(), StandardOpenOption.READ)) {
+                dirChannel.force(true);
+            }
+            LOG.info("Reused journal file {} as {}", fileToReuse, fn);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Failed to reuse journal file {}, creating a new one", fileToReuse, e);
+            return fn.exists();
+        } finally {
+            if (reuseChannel != null) {
+                try {
+                    provider.close(reuseChannel);
+                } catch (IOException e) {
+                    LOG.warn("Failed to close journal file {}", fileToReuse, e);
+                }
+            }
         }
     }
 
@@ -255,6 +383,13 @@ class JournalChannel implements Closeable {
         return formatVersion;
     }
 
+    /**
+     * @return the tag of the records of this journal file, only used from format V7
+     */
+    long getEpochTag() {
+        return epoch;
+    }
+
     BufferedChannel getBufferedChannel() throws IOException {
         if (bc == null) {
             throw new IOException("Read only journal channel");
@@ -264,12 +399,19 @@ class JournalChannel implements Closeable {
 
     void preAllocIfNeeded(long size) throws IOException {
         if (bc.position() + size > nextPrealloc) {
+            preAllocate(nextPrealloc, preAllocSize);
             nextPrealloc += preAllocSize;
-            zeros.clear();
-            fc.write(zeros, nextPrealloc - journalAlignSize);
         }
     }
 
+    private void preAllocate(long offset, long length) throws IOException {
+        if (fPreAllocWithFallocate && NativeIO.bestEffortPreAllocate(fd, offset, length)) {
+            return;
+        }
+        zeros.clear();
+        fc.write(zeros, offset + length - journalAlignSize);
+    }
+
     int read(ByteBuffer dst)
             throws IOException {
         return fc.read(dst);
@@ -0,0 +1,143 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * Adjusts the journal group commit window to the observed load and device latency.
+ *
+ * <p>The entries written while a force write is in progress have to wait for the next one
+ * anyway, so grouping them for about the duration of a force write improves the throughput
+ * without adding much latency. When the entries arrive too slowly for more than one of them
+ * to be grouped in that time, waiting only adds latency, and the window shrinks to the minimum.
+ *
+ * <p>The configured max group wait and buffered thresholds are used as upper bounds. The
+ * force write latency is reported by the force write thread, the flushes by the journal
+ * thread, which is the only one updating the targets.
+ */
+class JournalGroupCommitController {
+
+    static final long MIN_GROUP_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    static final long MIN_BUFFERED_WRITES = 64 * 1024;
+
+    // Weight of the last sample in the moving averages
+    private static final double ALPHA = 0.2;
+
+    private final long maxGroupWaitNanos;
+    private final long maxBufferedWrites;
+    private final long maxBufferedEntries;
+
+    private volatile long forceWriteLatencyNanos;
+    private volatile long groupWaitNanos;
+    private volatile long bufferedWritesThreshold;
+    private volatile long bufferedEntriesThreshold;
+
+    // Only accessed by the journal thread
+    private double entriesPerSec = 0;
+    private double bytesPerSec = 0;
+    private long lastFlushNanos = MathUtils.nowInNano();
+
+    JournalGroupCommitController(long maxGroupWaitNanos, long maxBufferedWrites, long maxBufferedEntries) {
+        this.maxGroupWaitNanos = maxGroupWaitNanos;
+        this.maxBufferedWrites = maxBufferedWrites;
+        this.maxBufferedEntries = maxBufferedEntries;
+
+        this.forceWriteLatencyNanos = 0;
+        this.groupWaitNanos = maxGroupWaitNanos;
+        this.bufferedWritesThreshold = maxBufferedWrites;
+        this.bufferedEntriesThreshold = maxBufferedEntries;
+    }
+
+    /**
+     * Called by the force write thread after each force write.
+     */
+    void onForceWrite(long latencyNanos) {
+        long current = forceWriteLatencyNanos;
+        forceWriteLatencyNanos = current == 0 ? latencyNanos : (long) (ALPHA * latencyNanos + (1 - ALPHA) * current);
+    }
+
+    /**
+     * Called by the journal thread after each flush, to update the targets.
+     *
+     * @param entries the number of entries flushed
+     * @param bytes the number of bytes flushed
+     */
+    void onFlush(int entries, long bytes) {
+        onFlush(entries, bytes, MathUtils.nowInNano());
+    }
+
+    @VisibleForTesting
+    void onFlush(int entries, long bytes, long now) {
+        long intervalNanos = Math.max(1, now - lastFlushNanos);
+        lastFlushNanos = now;
+
+        // Every entry is counted once, when it is flushed: the entries still waiting in the
+        // queue are part of the rate of the next flushes
+        double perSecFactor = (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+        entriesPerSec = ALPHA * entries * perSecFactor + (1 - ALPHA) * entriesPerSec;
+        bytesPerSec = ALPHA * bytes * perSecFactor + (1 - ALPHA) * bytesPerSec;
+
+        long wait = Math.min(maxGroupWaitNanos, Math.max(MIN_GROUP_WAIT_NANOS, forceWriteLatencyNanos));
+        double expectedEntries = entriesPerSec * wait / TimeUnit.SECONDS.toNanos(1);
+        if (expectedEntries < 2) {
+            // Nothing to group with
+            wait = Math.min(maxGroupWaitNanos, MIN_GROUP_WAIT_NANOS);
+            expectedEntries = entriesPerSec * wait / TimeUnit.SECONDS.toNanos(1);
+        }
+        groupWaitNanos = wait;
+
+        // Leave some headroom, so that the thresholds only cut the window short on bursts
+        double waitSec = (double) wait / TimeUnit.SECONDS.toNanos(1);
+        bufferedWritesThreshold = clamp((long) (2 * bytesPerSec * waitSec), MIN_BUFFERED_WRITES, maxBufferedWrites);
+        if (maxBufferedEntries > 0) {
+            bufferedEntriesThreshold = clamp((long) (2 * expectedEntries), 1, maxBufferedEntries);
+        }
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(Math.min(min, max), Math.min(value, max));
+    }
+
+    long getGroupWaitNanos() {
+        return groupWaitNanos;
+    }
+
+    long getBufferedWritesThreshold() {
+        return bufferedWritesThreshold;
+    }
+
+    long getBufferedEntriesThreshold() {
+        return bufferedEntriesThreshold;
+    }
+
+    @VisibleForTesting
+    double getEntriesPerSec() {
+        return entriesPerSec;
+    }
+
+    long getForceWriteLatencyNanos() {
+        return forceWriteLatencyNanos;
+    }
+}
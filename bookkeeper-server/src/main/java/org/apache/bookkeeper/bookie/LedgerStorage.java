@@ -145,6 +145,23 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException;
 
+    /**
+     * Read an entry only if it can be read from memory without blocking, e.g. from the caches of the
+     * storage, so that it can be read from the IO threads of the bookie.
+     *
+     * @return the entry, or null if it can't be read without blocking
+     */
+    default ByteBuf tryGetEntryFromCache(long ledgerId, long entryId) throws IOException, BookieException {
+        return null;
+    }
+
+    /**
+     * @return true if {@link #getLastAddConfirmed(long)} returns without blocking for the ledger
+     */
+    default boolean isLastAddConfirmedCached(long ledgerId) {
+        return false;
+    }
+
     /**
      * Get last add confirmed.
      *
@@ -0,0 +1,165 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A sealed entry log file mapped in memory, shared by all the reader threads.
+ *
+ * <p>The entries are returned as slices of the mapped region, without copying. The mapping
+ * is reference counted: the {@link EntryLogger} holds one reference while the log is readable,
+ * and every entry returned holds another one until it's released, so that the region is only
+ * unmapped when the log has been removed and all its entries have been released.
+ *
+ * <p>The time of the last read is tracked, so that the least recently read logs can be
+ * removed when too many logs are mapped.
+ *
+ * <p>The file is mapped read-only, so the returned buffers cannot be written.
+ */
+class MappedEntryLog {
+
+    private final long logId;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    /**
+     * Marker for the logs which cannot be mapped, so that they are not tried again on every read.
+     */
+    static final MappedEntryLog UNMAPPABLE = new MappedEntryLog(-1L, null);
+
+    private MappedEntryLog(long logId, MappedByteBuffer buffer) {
+        this.logId = logId;
+        this.buffer = buffer;
+        this.size = buffer != null ? buffer.capacity() : 0;
+    }
+
+    /**
+     * Map the whole entry log file.
+     *
+     * @return the mapped log, or null if the file is too big to be mapped in a single region
+     */
+    static MappedEntryLog map(long logId, File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel fc = raf.getChannel();
+            long fileSize = fc.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedEntryLog(logId, fc.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+        }
+    }
+
+    long getLogId() {
+        return logId;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    int getInt(long pos) {
+        return buffer.getInt((int) pos);
+    }
+
+    long getLong(long pos) {
+        return buffer.getLong((int) pos);
+    }
+
+    /**
+     * Get a slice of the mapped log. The caller must hold a reference, which is transferred to
+     * the returned buffer and released with it.
+     */
+    ByteBuf slice(long pos, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) pos);
+        slice.limit((int) pos + length);
+        return new MappedEntryBuf(this, slice.slice());
+    }
+
+    /**
+     * Acquire a reference, unless the log has already been unmapped.
+     *
+     * @return true if the reference was acquired
+     */
+    boolean tryRetain() {
+        while (true) {
+            int cnt = refCnt.get();
+            if (cnt <= 0) {
+                return false;
+            }
+            if (refCnt.compareAndSet(cnt, cnt + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (refCnt.decrementAndGet() == 0) {
+            PlatformDependent.freeDirectBuffer(buffer);
+        }
+    }
+
+    /**
+     * A buffer over a region of a mapped log, which releases its reference on the log when
+     * it's deallocated.
+     *
+     * <p>The direct buffers of netty cannot wrap a read-only region, so the region is wrapped
+     * in a read-only buffer, as the single component of this buffer.
+     */
+    private static class MappedEntryBuf extends CompositeByteBuf {
+        private final MappedEntryLog log;
+
+        MappedEntryBuf(MappedEntryLog log, ByteBuffer slice) {
+            super(UnpooledByteBufAllocator.DEFAULT, true, 1, Unpooled.wrappedBuffer(slice));
+            this.log = log;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            log.release();
+        }
+    }
+}
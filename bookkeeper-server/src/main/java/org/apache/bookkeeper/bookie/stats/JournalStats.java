@@ -23,6 +23,8 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_ADD_ENTRY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_BUFFERED_ENTRIES_TARGET;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_BUFFERED_WRITES_TARGET;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_CB_QUEUE_SIZE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_CREATION_LATENCY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FLUSH_LATENCY;
@@ -32,7 +34,9 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_W
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_ENQUEUE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_GROUPING_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_GROUPING_FAILURES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_LATENCY_AVG;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_QUEUE_SIZE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_WAIT_TARGET;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_MEMORY_MAX;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_MEMORY_USED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE;
@@ -183,9 +187,34 @@ public class JournalStats {
             help = "The actual amount of memory in bytes currently used by the bookie journal"
     )
     private final Gauge<Long> journalMemoryUsedStats;
+    @StatsDoc(
+            name = JOURNAL_GROUP_WAIT_TARGET,
+            help = "The current max time in nanoseconds an entry waits in the journal to be grouped with others"
+    )
+    private final Gauge<Long> groupWaitTargetStats;
+    @StatsDoc(
+            name = JOURNAL_BUFFERED_WRITES_TARGET,
+            help = "The current max number of bytes buffered in the journal to achieve grouping"
+    )
+    private final Gauge<Long> bufferedWritesTargetStats;
+    @StatsDoc(
+            name = JOURNAL_BUFFERED_ENTRIES_TARGET,
+            help = "The current max number of entries buffered in the journal to achieve grouping"
+    )
+    private final Gauge<Long> bufferedEntriesTargetStats;
+    @StatsDoc(
+            name = JOURNAL_FORCE_WRITE_LATENCY_AVG,
+            help = "The moving average of the journal force write latency in nanoseconds, used by the group"
+                + " commit auto tuning"
+    )
+    private final Gauge<Long> forceWriteLatencyAvgStats;
 
     public JournalStats(StatsLogger statsLogger, final long maxJournalMemoryBytes,
-                        Supplier<Long> currentJournalMemoryBytes) {
+                        Supplier<Long> currentJournalMemoryBytes,
+                        Supplier<Long> groupWaitTargetNanos,
+                        Supplier<Long> bufferedWritesTarget,
+                        Supplier<Long> bufferedEntriesTarget,
+                        Supplier<Long> forceWriteLatencyAvgNanos) {
         journalAddEntryStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_ADD_ENTRY);
         journalForceLedgerStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_FORCE_LEDGER);
         journalSyncStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_SYNC);
@@ -234,6 +263,29 @@ public class JournalStats {
             }
         };
         statsLogger.registerGauge(JOURNAL_MEMORY_USED, journalMemoryUsedStats);
+
+        groupWaitTargetStats = supplierGauge(groupWaitTargetNanos);
+        statsLogger.registerGauge(JOURNAL_GROUP_WAIT_TARGET, groupWaitTargetStats);
+        bufferedWritesTargetStats = supplierGauge(bufferedWritesTarget);
+        statsLogger.registerGauge(JOURNAL_BUFFERED_WRITES_TARGET, bufferedWritesTargetStats);
+        bufferedEntriesTargetStats = supplierGauge(bufferedEntriesTarget);
+        statsLogger.registerGauge(JOURNAL_BUFFERED_ENTRIES_TARGET, bufferedEntriesTargetStats);
+        forceWriteLatencyAvgStats = supplierGauge(forceWriteLatencyAvgNanos);
+        statsLogger.registerGauge(JOURNAL_FORCE_WRITE_LATENCY_AVG, forceWriteLatencyAvgStats);
+    }
+
+    private static Gauge<Long> supplierGauge(Supplier<Long> supplier) {
+        return new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return -1L;
+            }
+
+            @Override
+            public Long getSample() {
+                return supplier.get();
+            }
+        };
     }
 
 }
@@ -91,6 +91,15 @@ public class DbLedgerStorage implements LedgerStorage {
     static final String READ_AHEAD_CACHE_BATCH_SIZE = "dbStorage_readAheadCacheBatchSize";
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
 
+    static final String READ_AHEAD_CACHE_MIN_BATCH_SIZE = "dbStorage_readAheadCacheMinBatchSize";
+    static final String READ_AHEAD_CACHE_MAX_BATCH_SIZE = "dbStorage_readAheadCacheMaxBatchSize";
+    static final String READ_AHEAD_ASYNC_ENABLED = "dbStorage_readAheadAsyncEnabled";
+
+    static final String FLUSH_CHUNK_SIZE_MB = "dbStorage_flushChunkSizeMb";
+    static final String FLUSH_INDEX_THREADS = "dbStorage_flushIndexThreads";
+
+    static final String READ_CACHE_FREQUENCY_ADMISSION_ENABLED = "dbStorage_readCacheFrequencyAdmissionEnabled";
+
     // use the storage assigned to ledger 0 for flags.
     // if the storage configuration changes, the flags may be lost
     // but in that case data integrity should kick off anyhow.
@@ -264,6 +273,16 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public ByteBuf tryGetEntryFromCache(long ledgerId, long entryId) throws IOException, BookieException {
+        return getLedgerStorage(ledgerId).tryGetEntryFromCache(ledgerId, entryId);
+    }
+
+    @Override
+    public boolean isLastAddConfirmedCached(long ledgerId) {
+        return getLedgerStorage(ledgerId).isLastAddConfirmedCached(ledgerId);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         return getLedgerStorage(ledgerId).getLastAddConfirmed(ledgerId);
@@ -51,9 +51,13 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_MISSES = "write-cache-misses";
     private static final String READ_CACHE_HITS = "read-cache-hits";
     private static final String READ_CACHE_MISSES = "read-cache-misses";
+    private static final String READ_CACHE_ADMITTED = "read-cache-admitted";
+    private static final String READ_CACHE_REJECTED = "read-cache-rejected";
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
     private static final String READAHEAD_BATCH_SIZE = "readahead-batch-size";
     private static final String READAHEAD_TIME = "readahead-time";
+    private static final String READAHEAD_USED_BYTES = "readahead-used-bytes";
+    private static final String READAHEAD_WASTED_BYTES = "readahead-wasted-bytes";
     private static final String FLUSH = "flush";
     private static final String FLUSH_ENTRYLOG = "flush-entrylog";
     private static final String FLUSH_LOCATIONS_INDEX = "flush-locations-index";
@@ -69,6 +73,7 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
     private static final String READ_CACHE_SIZE = "read-cache-size";
     private static final String READ_CACHE_COUNT = "read-cache-count";
+    private static final String READ_CACHE_EVICTED = "read-cache-evicted";
 
     @StatsDoc(
         name = ADD_ENTRY,
@@ -118,6 +123,21 @@ class DbLedgerStorageStats {
         parent = READ_ENTRY
     )
     private final Counter readCacheMissCounter;
+    @StatsDoc(
+        name = READ_CACHE_ADMITTED,
+        help = "number of entries admitted in the read cache"
+    )
+    private final Counter readCacheAdmittedCounter;
+    @StatsDoc(
+        name = READ_CACHE_REJECTED,
+        help = "number of entries rejected by the read cache admission policy"
+    )
+    private final Counter readCacheRejectedCounter;
+    @StatsDoc(
+        name = READ_CACHE_EVICTED,
+        help = "number of entries evicted from the read cache"
+    )
+    private final Counter readCacheEvictedCounter;
     @StatsDoc(
         name = READAHEAD_BATCH_COUNT,
         help = "the distribution of num of entries to read in one readahead batch"
@@ -133,6 +153,16 @@ class DbLedgerStorageStats {
             help = "Time spent on readahead operations"
     )
     private final Counter readAheadTime;
+    @StatsDoc(
+            name = READAHEAD_USED_BYTES,
+            help = "number of bytes read ahead which were then read from the read cache"
+    )
+    private final Counter readAheadUsedBytes;
+    @StatsDoc(
+            name = READAHEAD_WASTED_BYTES,
+            help = "estimated number of bytes read ahead which were never read"
+    )
+    private final Counter readAheadWastedBytes;
     @StatsDoc(
         name = FLUSH,
         help = "operation stats of flushing write cache to entry log files"
@@ -206,11 +236,16 @@ class DbLedgerStorageStats {
         readFromEntryLogTime = stats.getThreadScopedCounter(READ_ENTRYLOG_TIME);
         readCacheHitCounter = stats.getCounter(READ_CACHE_HITS);
         readCacheMissCounter = stats.getCounter(READ_CACHE_MISSES);
+        readCacheAdmittedCounter = stats.getCounter(READ_CACHE_ADMITTED);
+        readCacheRejectedCounter = stats.getCounter(READ_CACHE_REJECTED);
+        readCacheEvictedCounter = stats.getCounter(READ_CACHE_EVICTED);
         writeCacheHitCounter = stats.getCounter(WRITE_CACHE_HITS);
         writeCacheMissCounter = stats.getCounter(WRITE_CACHE_MISSES);
         readAheadBatchCountStats = stats.getOpStatsLogger(READAHEAD_BATCH_COUNT);
         readAheadBatchSizeStats = stats.getOpStatsLogger(READAHEAD_BATCH_SIZE);
         readAheadTime = stats.getThreadScopedCounter(READAHEAD_TIME);
+        readAheadUsedBytes = stats.getCounter(READAHEAD_USED_BYTES);
+        readAheadWastedBytes = stats.getCounter(READAHEAD_WASTED_BYTES);
         flushStats = stats.getOpStatsLogger(FLUSH);
         flushEntryLogStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG);
         flushLocationIndexStats = stats.getOpStatsLogger(FLUSH_LOCATIONS_INDEX);
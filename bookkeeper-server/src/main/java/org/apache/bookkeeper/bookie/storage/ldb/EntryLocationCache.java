@@ -0,0 +1,146 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+
+/**
+ * Bounded cache of (ledgerId, entryId) -&gt; entry location, used to avoid hitting the
+ * locations db for the most recently written and read entries.
+ *
+ * <p>The entries are kept in 2 generations of primitive hash maps. New locations are
+ * always inserted in the current generation; when it is full, the older generation is
+ * cleared and swapped with it. Lookups check the current generation first, so a newer
+ * location always shadows an older one.
+ *
+ * <p>The locations read from the db are inserted with the epoch observed before the read.
+ * The epoch is bumped whenever cached locations are dropped, either by a rotation or by the
+ * removal of deleted ledgers, so that a location read before that cannot be inserted after
+ * it and shadow the newer state of the db.
+ */
+class EntryLocationCache {
+
+    private final long maxEntriesPerGeneration;
+
+    private volatile ConcurrentLongLongPairHashMap current;
+    private volatile ConcurrentLongLongPairHashMap previous;
+
+    private final AtomicLong epoch = new AtomicLong();
+
+    EntryLocationCache(long maxEntries) {
+        this.maxEntriesPerGeneration = Math.max(1, maxEntries / 2);
+        int expectedItems = (int) Math.min(maxEntriesPerGeneration, 64 * 1024);
+        this.current = newMap(expectedItems);
+        this.previous = newMap(expectedItems);
+    }
+
+    private static ConcurrentLongLongPairHashMap newMap(int expectedItems) {
+        return ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(expectedItems)
+                .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+                .build();
+    }
+
+    /**
+     * @return the cached location of the entry, or 0 if not cached
+     */
+    long get(long ledgerId, long entryId) {
+        LongPair res = current.get(ledgerId, entryId);
+        if (res == null) {
+            res = previous.get(ledgerId, entryId);
+        }
+        return res != null ? res.first : 0;
+    }
+
+    /**
+     * Insert the new location of an entry, replacing any location previously cached.
+     */
+    void put(long ledgerId, long entryId, long location) {
+        maybeRotate();
+        current.put(ledgerId, entryId, location, 0L);
+    }
+
+    /**
+     * @return the current epoch, to be passed to {@link #putIfAbsent} for a location that is
+     *         about to be read from the locations db
+     */
+    long epoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Insert the location of an entry read from the locations db, unless there is already
+     * one cached, since that one might have been updated in the meantime, or some locations
+     * were dropped since the read.
+     *
+     * @param readEpoch the epoch observed before reading the location from the db
+     */
+    void putIfAbsent(long ledgerId, long entryId, long location, long readEpoch) {
+        maybeRotate();
+        if (epoch.get() != readEpoch || previous.containsKey(ledgerId, entryId)) {
+            return;
+        }
+
+        ConcurrentLongLongPairHashMap map = current;
+        if (map.putIfAbsent(ledgerId, entryId, location, 0L) && epoch.get() != readEpoch) {
+            // Raced with the removal of the ledger or a rotation, the location might be stale
+            map.remove(ledgerId, entryId, location, 0L);
+        }
+    }
+
+    void removeLedgers(Set<Long> ledgerIds) {
+        ConcurrentLongHashSet ledgers = ConcurrentLongHashSet.newBuilder()
+                .expectedItems(ledgerIds.size())
+                .concurrencyLevel(1)
+                .build();
+        ledgerIds.forEach(ledgers::add);
+
+        // Bump the epoch before removing, so that the concurrent reads will not insert back
+        // the removed locations
+        epoch.incrementAndGet();
+        current.removeIf((ledgerId, entryId, location, unused) -> ledgers.contains(ledgerId));
+        previous.removeIf((ledgerId, entryId, location, unused) -> ledgers.contains(ledgerId));
+    }
+
+    long count() {
+        return current.size() + previous.size();
+    }
+
+    private void maybeRotate() {
+        if (current.size() < maxEntriesPerGeneration) {
+            return;
+        }
+
+        synchronized (this) {
+            if (current.size() >= maxEntriesPerGeneration) {
+                epoch.incrementAndGet();
+                ConcurrentLongLongPairHashMap oldest = previous;
+                previous = current;
+                oldest.clear();
+                current = oldest;
+            }
+        }
+    }
+}
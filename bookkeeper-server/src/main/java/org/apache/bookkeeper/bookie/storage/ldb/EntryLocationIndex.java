@@ -43,18 +43,29 @@ import org.slf4j.LoggerFactory;
  *
  * <p>For each ledger multiple entries are stored in the same "record", represented
  * by the {@link LedgerIndexPage} class.
+ *
+ * <p>Optionally, the most recently added and read locations are kept in an
+ * {@link EntryLocationCache}, to avoid the locations db lookups on the hot read path.
  */
 public class EntryLocationIndex implements Closeable {
 
+    static final String LOCATION_CACHE_MAX_ENTRIES = "dbStorage_locationCacheMaxEntries";
+
     private final KeyValueStorage locationsDb;
     private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
 
+    // Null when the location cache is disabled
+    private final EntryLocationCache locationCache;
+
     private final EntryLocationIndexStats stats;
 
     public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
             StatsLogger stats) throws IOException {
         locationsDb = storageFactory.newKeyValueStorage(basePath, "locations", DbConfigType.EntryLocation, conf);
 
+        long locationCacheMaxEntries = conf.getLong(LOCATION_CACHE_MAX_ENTRIES, 0L);
+        locationCache = locationCacheMaxEntries > 0 ? new EntryLocationCache(locationCacheMaxEntries) : null;
+
         this.stats = new EntryLocationIndexStats(
             stats,
             () -> {
@@ -63,7 +74,8 @@ public class EntryLocationIndex implements Closeable {
                 } catch (IOException e) {
                     return -1L;
                 }
-            });
+            },
+            () -> locationCache != null ? locationCache.count() : 0L);
     }
 
     @Override
@@ -72,6 +84,16 @@ public class EntryLocationIndex implements Closeable {
     }
 
     public long getLocation(long ledgerId, long entryId) throws IOException {
+        if (locationCache != null) {
+            long location = locationCache.get(ledgerId, entryId);
+            if (location != 0) {
+                stats.getLocationCacheHitCounter().inc();
+                return location;
+            }
+            stats.getLocationCacheMissCounter().inc();
+        }
+
+        long cacheEpoch = locationCache != null ? locationCache.epoch() : 0L;
         LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
         LongWrapper value = LongWrapper.get();
 
@@ -83,7 +105,11 @@ public class EntryLocationIndex implements Closeable {
                 return 0;
             }
 
-            return value.getValue();
+            long location = value.getValue();
+            if (locationCache != null && !deletedLedgers.contains(ledgerId)) {
+                locationCache.putIfAbsent(ledgerId, entryId, location, cacheEpoch);
+            }
+            return location;
         } finally {
             key.recycle();
             value.recycle();
@@ -151,6 +177,9 @@ public class EntryLocationIndex implements Closeable {
 
         try {
             batch.put(key.array, value.array);
+            if (locationCache != null) {
+                locationCache.put(ledgerId, entryId, location);
+            }
         } finally {
             key.recycle();
             value.recycle();
@@ -273,6 +302,10 @@ public class EntryLocationIndex implements Closeable {
         log.info("Deleted indexes for {} entries from {} ledgers in {} seconds", deletedEntries, ledgersToDelete.size(),
                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) / 1000.0);
 
+        if (locationCache != null) {
+            locationCache.removeLedgers(ledgersToDelete);
+        }
+
         // Removed from pending set
         for (long ledgerId : ledgersToDelete) {
             deletedLedgers.remove(ledgerId);
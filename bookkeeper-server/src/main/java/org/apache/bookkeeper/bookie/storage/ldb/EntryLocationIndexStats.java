@@ -24,6 +24,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 
 import java.util.function.Supplier;
 import lombok.Getter;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
@@ -40,15 +41,34 @@ import org.apache.bookkeeper.stats.annotations.StatsDoc;
 class EntryLocationIndexStats {
 
     private static final String ENTRIES_COUNT = "entries-count";
+    private static final String LOCATION_CACHE_HITS = "location-cache-hits";
+    private static final String LOCATION_CACHE_MISSES = "location-cache-misses";
+    private static final String LOCATION_CACHE_COUNT = "location-cache-count";
 
     @StatsDoc(
         name = ENTRIES_COUNT,
         help = "Current number of entries"
     )
     private final Gauge<Long> entriesCountGauge;
+    @StatsDoc(
+        name = LOCATION_CACHE_HITS,
+        help = "number of entry location lookups served by the location cache"
+    )
+    private final Counter locationCacheHitCounter;
+    @StatsDoc(
+        name = LOCATION_CACHE_MISSES,
+        help = "number of entry location lookups not found in the location cache"
+    )
+    private final Counter locationCacheMissCounter;
+    @StatsDoc(
+        name = LOCATION_CACHE_COUNT,
+        help = "Current number of entries in the location cache"
+    )
+    private final Gauge<Long> locationCacheCountGauge;
 
     EntryLocationIndexStats(StatsLogger statsLogger,
-                            Supplier<Long> entriesCountSupplier) {
+                            Supplier<Long> entriesCountSupplier,
+                            Supplier<Long> locationCacheCountSupplier) {
         entriesCountGauge = new Gauge<Long>() {
             @Override
             public Long getDefaultValue() {
@@ -61,6 +81,20 @@ class EntryLocationIndexStats {
             }
         };
         statsLogger.registerGauge(ENTRIES_COUNT, entriesCountGauge);
+        locationCacheHitCounter = statsLogger.getCounter(LOCATION_CACHE_HITS);
+        locationCacheMissCounter = statsLogger.getCounter(LOCATION_CACHE_MISSES);
+        locationCacheCountGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return locationCacheCountSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(LOCATION_CACHE_COUNT, locationCacheCountGauge);
     }
 
 }
@@ -0,0 +1,171 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.EntryLogger;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.WriteCache.EntryConsumer;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the entries of a write cache flush into the entry logger, in chunks of
+ * {@code flushChunkSize} bytes.
+ *
+ * <p>Once a chunk has been written and the entry logger flushed, the entry location index
+ * batch of the chunk can be committed. When an {@code indexFlushExecutor} is given, this is
+ * done in the executor, so that the next chunk can be written in the meantime. The index of
+ * a chunk is never committed before its entries are persisted in the entry logger.
+ */
+class FlushPipeline implements EntryConsumer, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(FlushPipeline.class);
+
+    private final EntryLogger entryLogger;
+    private final EntryLocationIndex entryLocationIndex;
+    private final DbLedgerStorageStats stats;
+    private final ExecutorService indexFlushExecutor;
+    private final long flushChunkSize;
+    private final int maxPendingBatches;
+
+    private final Deque<Future<?>> pendingBatches = new ArrayDeque<>();
+    private Batch batch;
+    private long batchSize = 0;
+
+    FlushPipeline(EntryLogger entryLogger, EntryLocationIndex entryLocationIndex, DbLedgerStorageStats stats,
+                  ExecutorService indexFlushExecutor, long flushChunkSize, int maxPendingBatches) {
+        this.entryLogger = entryLogger;
+        this.entryLocationIndex = entryLocationIndex;
+        this.stats = stats;
+        this.indexFlushExecutor = indexFlushExecutor;
+        this.flushChunkSize = flushChunkSize;
+        this.maxPendingBatches = maxPendingBatches;
+        this.batch = entryLocationIndex.newBatch();
+    }
+
+    @Override
+    public void accept(long ledgerId, long entryId, ByteBuf entry) {
+        try {
+            long location = entryLogger.addEntry(ledgerId, entry, true);
+            entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+            batchSize += entry.readableBytes();
+            if (batchSize >= flushChunkSize) {
+                completeChunk();
+                batch = entryLocationIndex.newBatch();
+                batchSize = 0;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Complete the last chunk and wait for the index batches of all the chunks to be committed.
+     */
+    void finish() throws IOException {
+        if (batchSize > 0) {
+            completeChunk();
+        }
+        // else: nothing was added since the last chunk, which already flushed the entry
+        // logger. The empty batch is closed with the pipeline
+        waitForPendingBatches(0);
+    }
+
+    private void completeChunk() throws IOException {
+        long entryLoggerStart = MathUtils.nowInNano();
+        entryLogger.flush();
+        recordSuccessfulEvent(stats.getFlushEntryLogStats(), entryLoggerStart);
+
+        Batch chunkBatch = batch;
+        batch = null;
+        if (indexFlushExecutor == null) {
+            flushBatch(chunkBatch);
+        } else {
+            waitForPendingBatches(maxPendingBatches - 1);
+            pendingBatches.add(indexFlushExecutor.submit(() -> {
+                flushBatch(chunkBatch);
+                return null;
+            }));
+        }
+    }
+
+    private void flushBatch(Batch chunkBatch) throws IOException {
+        long batchFlushStartTime = MathUtils.nowInNano();
+        try {
+            chunkBatch.flush();
+        } finally {
+            chunkBatch.close();
+        }
+        recordSuccessfulEvent(stats.getFlushLocationIndexStats(), batchFlushStartTime);
+        if (log.isDebugEnabled()) {
+            log.debug("DB batch flushed time : {} s",
+                    MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private void waitForPendingBatches(int maxPending) throws IOException {
+        while (pendingBatches.size() > maxPending) {
+            try {
+                pendingBatches.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing the entry location index", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // On failures, make sure no batch is still being committed once the flush is over
+        for (Future<?> pending : pendingBatches) {
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // already failing
+            }
+        }
+        pendingBatches.clear();
+        if (batch != null) {
+            batch.close();
+        }
+    }
+
+    private static void recordSuccessfulEvent(OpStatsLogger logger, long startTimeNanos) {
+        logger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+    }
+}
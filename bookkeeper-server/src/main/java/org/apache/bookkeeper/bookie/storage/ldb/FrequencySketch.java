@@ -0,0 +1,147 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Approximate frequency counter used by the TinyLFU admission policy of the {@link ReadCache}.
+ *
+ * <p>It's a count-min sketch with 4 rows of 4-bit counters, packed 16 per long. Counters
+ * saturate at 15 and are periodically halved, so that the estimated frequency reflects the
+ * recent history rather than the whole lifetime of the bookie.
+ *
+ * <p>A doorkeeper bloom filter remembers the items (eg: the entries of a ledger) seen since
+ * the last reset, so that the callers can tell the first access to an item from the
+ * following ones. It's cleared whenever the counters are halved.
+ *
+ * <p>Updates are not atomic: concurrent increments might get lost, which is fine given
+ * that the frequency is only an estimation.
+ */
+class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final int MAX_FREQUENCY = 15;
+    // Bits of the doorkeeper per access of the sample, with 3 hash functions it gives ~3% of
+    // false positives when all the accesses of the sample are distinct items
+    private static final int DOORKEEPER_BITS_PER_ACCESS = 8;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger accesses = new AtomicInteger();
+    private final long[] doorkeeper;
+    private final int doorkeeperMask;
+
+    FrequencySketch(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(64, expectedKeys) - 1) << 1;
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = 10 * capacity;
+        int doorkeeperBits = Integer.highestOneBit(sampleSize * DOORKEEPER_BITS_PER_ACCESS - 1) << 1;
+        this.doorkeeper = new long[doorkeeperBits >>> 6];
+        this.doorkeeperMask = doorkeeperBits - 1;
+    }
+
+    /**
+     * @return the estimated number of occurrences of the key, from 0 to 15
+     */
+    int frequency(long key) {
+        int start = (Long.hashCode(key) & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(key, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increment the frequency of the key and count it as an access.
+     */
+    void increment(long key) {
+        int start = (Long.hashCode(key) & 3) << 2;
+        for (int i = 0; i < 4; i++) {
+            incrementAt(indexOf(key, i), start + i);
+        }
+        recordAccess();
+    }
+
+    /**
+     * Count an access which doesn't change any frequency (eg: a cache miss). Every
+     * {@code sampleSize} accesses, all the counters are halved.
+     */
+    void recordAccess() {
+        if (accesses.incrementAndGet() >= sampleSize) {
+            accesses.set(0);
+            reset();
+        }
+    }
+
+    /**
+     * Add an item of the key to the doorkeeper.
+     *
+     * @return true if the item was already seen since the counters were last halved
+     */
+    boolean putInDoorkeeper(long key, long item) {
+        long hash = (key * SEEDS[0] + item) * SEEDS[1];
+        boolean seen = true;
+        for (int i = 0; i < 3; i++) {
+            hash ^= hash >>> 29;
+            hash *= SEEDS[2];
+            int bit = ((int) (hash >>> 32)) & doorkeeperMask;
+            long mask = 1L << bit;
+            int index = bit >>> 6;
+            if ((doorkeeper[index] & mask) == 0) {
+                seen = false;
+                doorkeeper[index] |= mask;
+            }
+        }
+        return seen;
+    }
+
+    private void incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        long value = table[index];
+        if ((value & mask) != mask) {
+            table[index] = value + (1L << offset);
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        Arrays.fill(doorkeeper, 0L);
+    }
+
+    private int indexOf(long key, int row) {
+        long hash = (key + SEEDS[row]) * SEEDS[row];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.EntryLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the {@link ReadCache} with the entries following the ones being read.
+ *
+ * <p>The read-ahead window is tracked per ledger: it grows while a ledger is read
+ * sequentially and shrinks when the reads of a ledger jump around, between the
+ * configured min and max batch sizes. A new batch is read ahead when a read misses
+ * the cache, or when a sequential reader gets close to the end of the entries already
+ * read ahead. The latter only applies to async read-ahead: when the read-ahead is done
+ * inline, a cache hit never pays for reading the next batch.
+ *
+ * <p>When async read-ahead is enabled, the batches are read in a dedicated thread, so
+ * that the read which triggered the read-ahead doesn't have to wait for it.
+ */
+class ReadAheadManager {
+    private static final Logger log = LoggerFactory.getLogger(ReadAheadManager.class);
+
+    private static final long STATE_EXPIRY_MINUTES = TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES;
+
+    private final EntryLogger entryLogger;
+    private final EntryLocationIndex entryLocationIndex;
+    private final ReadCache readCache;
+    private final DbLedgerStorageStats stats;
+
+    private final int initialBatchSize;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long maxBatchBytes;
+    private final boolean async;
+
+    private final ConcurrentLongHashMap<LedgerReadAheadState> states;
+    // Null when the read-ahead is done inline
+    private final ExecutorService executor;
+
+    ReadAheadManager(EntryLogger entryLogger, EntryLocationIndex entryLocationIndex, ReadCache readCache,
+                     DbLedgerStorageStats stats, int initialBatchSize, int minBatchSize, int maxBatchSize,
+                     long maxBatchBytes, boolean async) {
+        this.entryLogger = entryLogger;
+        this.entryLocationIndex = entryLocationIndex;
+        this.readCache = readCache;
+        this.stats = stats;
+        this.maxBatchSize = Math.max(1, Math.max(initialBatchSize, maxBatchSize));
+        this.minBatchSize = Math.max(1, Math.min(initialBatchSize, minBatchSize));
+        this.initialBatchSize = initialBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.async = async;
+        this.states = ConcurrentLongHashMap.<LedgerReadAheadState>newBuilder()
+                .expectedItems(16 * 1024)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                .build();
+        this.executor = async
+                ? Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage-readahead"))
+                : null;
+    }
+
+    /**
+     * @return true if the read-ahead is done by a background thread, rather than by the reads
+     */
+    boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Called after an entry was found in the read cache.
+     */
+    void onReadCacheHit(long ledgerId, long entryId, int entrySize) {
+        onRead(ledgerId, entryId, entrySize, true, 0L);
+    }
+
+    /**
+     * Called after an entry was not found in the read cache and it was read from the entry log.
+     *
+     * @param nextEntryLocation the location of the entry following the one just read
+     * @param admitted whether the entry was admitted in the read cache. If not, the following
+     *                 entries would be rejected as well, so no read-ahead is triggered
+     */
+    void onReadCacheMiss(long ledgerId, long entryId, long nextEntryLocation, boolean admitted) {
+        onRead(ledgerId, entryId, 0, false, admitted ? nextEntryLocation : -1L);
+    }
+
+    private void onRead(long ledgerId, long entryId, int entrySize, boolean cacheHit, long nextEntryLocation) {
+        LedgerReadAheadState state = states.computeIfAbsent(ledgerId,
+                k -> new LedgerReadAheadState(initialBatchSize));
+
+        long firstEntryId;
+        long firstEntryLocation;
+        int batchSize;
+        synchronized (state) {
+            state.lastAccessNanos = MathUtils.nowInNano();
+            boolean sequential = entryId == state.lastReadEntryId + 1;
+
+            if (cacheHit && entryId >= state.readAheadStartEntryId && entryId < state.readAheadEndEntryId) {
+                stats.getReadAheadUsedBytes().add(entrySize);
+            }
+
+            if (!sequential && state.lastReadEntryId >= 0) {
+                // The sequential pattern is broken, the rest of the window is likely wasted
+                discardReadAhead(state, entryId);
+                state.window = Math.max(minBatchSize, state.window / 2);
+            }
+            state.lastReadEntryId = entryId;
+
+            if (state.readAheadInProgress) {
+                return;
+            }
+
+            if (!cacheHit) {
+                if (nextEntryLocation < 0) {
+                    // Not admitted in the read cache
+                    return;
+                }
+                if (sequential) {
+                    // The read-ahead could not keep up with the reader
+                    state.window = Math.min(maxBatchSize, state.window * 2);
+                }
+                firstEntryId = entryId + 1;
+                firstEntryLocation = nextEntryLocation;
+            } else if (async
+                    && sequential
+                    && entryId >= state.readAheadStartEntryId
+                    && entryId < state.readAheadEndEntryId
+                    && state.readAheadEndEntryId - entryId <= state.window / 2
+                    && readCache.isAdmitted(ledgerId)) {
+                state.window = Math.min(maxBatchSize, state.window * 2);
+                firstEntryId = state.readAheadEndEntryId;
+                // location unknown, it will be looked up in the index
+                firstEntryLocation = 0L;
+            } else {
+                return;
+            }
+
+            state.readAheadInProgress = true;
+            batchSize = state.window;
+        }
+
+        if (async) {
+            try {
+                executor.execute(() -> readAhead(state, ledgerId, firstEntryId, firstEntryLocation, batchSize));
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shutting down, fall through and read inline
+            }
+        }
+        readAhead(state, ledgerId, firstEntryId, firstEntryLocation, batchSize);
+    }
+
+    private void discardReadAhead(LedgerReadAheadState state, long entryId) {
+        long firstUnused = Math.max(state.lastReadEntryId + 1, state.readAheadStartEntryId);
+        if (state.readAheadEndEntryId > firstUnused && state.readAheadEntries > 0
+                && (entryId < firstUnused || entryId >= state.readAheadEndEntryId)) {
+            long avgEntrySize = state.readAheadBytes / state.readAheadEntries;
+            stats.getReadAheadWastedBytes().add((state.readAheadEndEntryId - firstUnused) * avgEntrySize);
+            state.readAheadStartEntryId = -1;
+            state.readAheadEndEntryId = -1;
+        }
+    }
+
+    private void readAhead(LedgerReadAheadState state, long ledgerId, long firstEntryId, long firstEntryLocation,
+                           int batchSize) {
+        long readAheadStartNano = MathUtils.nowInNano();
+        int count = 0;
+        long size = 0;
+
+        try {
+            long currentEntryLocation = firstEntryLocation;
+            if (currentEntryLocation == 0) {
+                currentEntryLocation = entryLocationIndex.getLocation(ledgerId, firstEntryId);
+                if (currentEntryLocation == 0) {
+                    // Next entry not written yet
+                    return;
+                }
+            }
+
+            long firstEntryLogId = (currentEntryLocation >> 32);
+            long currentEntryLogId = firstEntryLogId;
+
+            while (count < batchSize
+                    && size < maxBatchBytes
+                    && currentEntryLogId == firstEntryLogId) {
+                ByteBuf entry = entryLogger.internalReadEntry(ledgerId, firstEntryId + count, currentEntryLocation,
+                        false /* validateEntry */);
+
+                try {
+                    long currentEntryLedgerId = entry.getLong(0);
+                    long currentEntryId = entry.getLong(8);
+
+                    if (currentEntryLedgerId != ledgerId) {
+                        // Found an entry belonging to a different ledger, stopping read-ahead
+                        break;
+                    }
+
+                    // Insert entry in read cache
+                    if (readCache.putReadAhead(ledgerId, currentEntryId, entry)) {
+                        stats.getReadCacheAdmittedCounter().inc();
+                    } else {
+                        // The rest of the batch would be rejected as well
+                        stats.getReadCacheRejectedCounter().inc();
+                        break;
+                    }
+
+                    count++;
+                    size += entry.readableBytes();
+
+                    currentEntryLocation += 4 + entry.readableBytes();
+                    currentEntryLogId = currentEntryLocation >> 32;
+                } finally {
+                    entry.release();
+                }
+            }
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Exception during read ahead for ledger: {}: e", ledgerId, e);
+            }
+        } finally {
+            synchronized (state) {
+                if (count > 0) {
+                    if (state.readAheadEndEntryId != firstEntryId) {
+                        state.readAheadStartEntryId = firstEntryId;
+                    }
+                    state.readAheadEndEntryId = firstEntryId + count;
+                    state.readAheadEntries += count;
+                    state.readAheadBytes += size;
+                }
+                state.readAheadInProgress = false;
+            }
+
+            stats.getReadAheadBatchCountStats().registerSuccessfulValue(count);
+            stats.getReadAheadBatchSizeStats().registerSuccessfulValue(size);
+            stats.getReadAheadTime().add(MathUtils.elapsedNanos(readAheadStartNano));
+        }
+    }
+
+    void removeLedger(long ledgerId) {
+        states.remove(ledgerId);
+    }
+
+    /**
+     * Drop the state of the ledgers that were not read recently. To be called periodically.
+     */
+    void cleanupStaleStates() {
+        long expiryNanos = TimeUnit.MINUTES.toNanos(STATE_EXPIRY_MINUTES);
+        states.removeIf((ledgerId, state) -> {
+            synchronized (state) {
+                if (MathUtils.elapsedNanos(state.lastAccessNanos) < expiryNanos) {
+                    return false;
+                }
+                discardReadAhead(state, -1L);
+                return true;
+            }
+        });
+    }
+
+    void shutdown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Read-ahead state of a single ledger. Guarded by its own monitor.
+     */
+    private static class LedgerReadAheadState {
+        long lastReadEntryId = -1;
+        int window;
+        boolean readAheadInProgress = false;
+
+        // Range [start, end) of the entries read ahead and not yet discarded
+        long readAheadStartEntryId = -1;
+        long readAheadEndEntryId = -1;
+
+        // Totals used to estimate the average entry size
+        long readAheadEntries = 0;
+        long readAheadBytes = 0;
+
+        long lastAccessNanos;
+
+        LedgerReadAheadState(int window) {
+            this.window = window;
+        }
+    }
+}
@@ -22,16 +22,21 @@ package org.apache.bookkeeper.bookie.storage.ldb;
 
 import static org.apache.bookkeeper.bookie.storage.ldb.WriteCache.align64;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 
 import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
 import org.slf4j.Logger;
@@ -46,12 +51,27 @@ import org.slf4j.LoggerFactory;
  * ring-buffer fashion. When the read cache is full, the oldest segment
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
+ *
+ * <p>Optionally, a TinyLFU admission policy can be enabled. The cache lookups are
+ * counted per ledger in a {@link FrequencySketch}, excluding the hits on entries that
+ * were inserted by the read-ahead and the first miss of each entry, and, once the cache is full,
+ * a new entry is only admitted if its ledger is at least as frequently read as
+ * the ledgers in the segment that would be evicted next. This prevents one-time
+ * scans of old ledgers from flushing out the entries of the hot ledgers.
  */
 public class ReadCache implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
 
     private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
+    private static final int SKETCH_EXPECTED_LEDGERS = 16 * 1024;
+    // Number of distinct ledgers sampled per segment to estimate the value of evicting it
+    private static final int SEGMENT_SAMPLES = 8;
+    // The index stores the entry size in the low 32 bits of a long, and marks the entries
+    // inserted by the read-ahead with a flag above them
+    private static final long ENTRY_SIZE_MASK = 0xffffffffL;
+    private static final long READ_AHEAD_FLAG = 1L << 32;
+
     private final List<ByteBuf> cacheSegments;
     private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
 
@@ -63,12 +83,34 @@ public class ReadCache implements Closeable {
     private ByteBufAllocator allocator;
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    // Only set when the TinyLFU admission policy is enabled
+    private final FrequencySketch sketch;
+    private final long[][] segmentSampledLedgers;
+    private final int[] segmentSampleCursors;
+
+    private final Counter evictedCounter;
+
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize) {
         this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
 
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, boolean frequencyAdmission) {
+        this(allocator, maxCacheSize, frequencyAdmission, NullStatsLogger.INSTANCE.getCounter("evicted"));
+    }
+
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, boolean frequencyAdmission,
+                     Counter evictedCounter) {
+        this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE, frequencyAdmission, evictedCounter);
+    }
+
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false, NullStatsLogger.INSTANCE.getCounter("evicted"));
+    }
+
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize,
+                     boolean frequencyAdmission, Counter evictedCounter) {
         this.allocator = allocator;
+        this.evictedCounter = evictedCounter;
         int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
         segmentSize = (int) (maxCacheSize / segmentsCount);
 
@@ -83,6 +125,19 @@ public class ReadCache implements Closeable {
                     .build();
             cacheIndexes.add(concurrentLongLongPairHashMap);
         }
+
+        if (frequencyAdmission) {
+            sketch = new FrequencySketch(SKETCH_EXPECTED_LEDGERS);
+            segmentSampledLedgers = new long[segmentsCount][SEGMENT_SAMPLES];
+            segmentSampleCursors = new int[segmentsCount];
+            for (long[] samples : segmentSampledLedgers) {
+                Arrays.fill(samples, -1L);
+            }
+        } else {
+            sketch = null;
+            segmentSampledLedgers = null;
+            segmentSampleCursors = null;
+        }
     }
 
     @Override
@@ -90,16 +145,39 @@ public class ReadCache implements Closeable {
         cacheSegments.forEach(ByteBuf::release);
     }
 
-    public void put(long ledgerId, long entryId, ByteBuf entry) {
+    /**
+     * Insert an entry in the read cache.
+     *
+     * @return false if the entry was not admitted in the cache
+     */
+    public boolean put(long ledgerId, long entryId, ByteBuf entry) {
+        return put(ledgerId, entryId, entry, false);
+    }
+
+    /**
+     * Insert an entry that was not requested yet, but was read ahead of the reader. The hits on
+     * these entries don't count for the frequency of the ledger.
+     *
+     * @return false if the entry was not admitted in the cache
+     */
+    public boolean putReadAhead(long ledgerId, long entryId, ByteBuf entry) {
+        return put(ledgerId, entryId, entry, true);
+    }
+
+    private boolean put(long ledgerId, long entryId, ByteBuf entry, boolean readAhead) {
         int entrySize = entry.readableBytes();
         int alignedSize = align64(entrySize);
+        long indexedSize = readAhead ? entrySize | READ_AHEAD_FLAG : entrySize;
 
         lock.readLock().lock();
 
         try {
             if (entrySize > segmentSize) {
                 log.warn("entrySize {} > segmentSize {}, skip update read cache!", entrySize, segmentSize);
-                return;
+                return false;
+            }
+            if (sketch != null && !admit(ledgerId)) {
+                return false;
             }
             int offset = currentSegmentOffset.getAndAdd(alignedSize);
             if (offset + entrySize > segmentSize) {
@@ -108,8 +186,9 @@ public class ReadCache implements Closeable {
                 // Copy entry into read cache segment
                 cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
                         entry.readableBytes());
-                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
-                return;
+                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, indexedSize);
+                recordSample(currentSegmentIdx, ledgerId);
+                return true;
             }
         } finally {
             lock.readLock().unlock();
@@ -125,19 +204,88 @@ public class ReadCache implements Closeable {
                 // Rollover to next segment
                 currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
                 currentSegmentOffset.set(alignedSize);
+                evictedCounter.add(cacheIndexes.get(currentSegmentIdx).size());
                 cacheIndexes.get(currentSegmentIdx).clear();
+                if (sketch != null) {
+                    Arrays.fill(segmentSampledLedgers[currentSegmentIdx], -1L);
+                }
                 offset = 0;
             }
 
             // Copy entry into read cache segment
             cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(), entry.readableBytes());
-            cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
+            cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, indexedSize);
+            recordSample(currentSegmentIdx, ledgerId);
+            return true;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Check whether an entry of the ledger would currently be admitted in the cache.
+     */
+    public boolean isAdmitted(long ledgerId) {
+        if (sketch == null) {
+            return true;
+        }
+
+        lock.readLock().lock();
+        try {
+            return admit(ledgerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * TinyLFU admission: when the cache is full, only admit entries of ledgers which are at
+     * least as popular as the ledgers of the segment to be evicted next.
+     *
+     * <p>Must be called with the read lock held.
+     */
+    private boolean admit(long ledgerId) {
+        int victimSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
+        if (cacheIndexes.get(victimSegmentIdx).isEmpty()) {
+            // There is still free space, nothing would be evicted
+            return true;
+        }
+
+        int victimFrequency = 0;
+        for (long victimLedgerId : segmentSampledLedgers[victimSegmentIdx]) {
+            if (victimLedgerId >= 0) {
+                victimFrequency = Math.max(victimFrequency, sketch.frequency(victimLedgerId));
+            }
+        }
+        return sketch.frequency(ledgerId) >= victimFrequency;
+    }
+
+    private void recordSample(int segmentIdx, long ledgerId) {
+        if (sketch == null) {
+            return;
+        }
+
+        // Racy updates are fine, the samples are only used as an estimation
+        long[] samples = segmentSampledLedgers[segmentIdx];
+        int cursor = segmentSampleCursors[segmentIdx];
+        if (samples[cursor] != ledgerId) {
+            cursor = (cursor + 1) % SEGMENT_SAMPLES;
+            samples[cursor] = ledgerId;
+            segmentSampleCursors[segmentIdx] = cursor;
+        }
+    }
+
     public ByteBuf get(long ledgerId, long entryId) {
+        return get(ledgerId, entryId, true);
+    }
+
+    /**
+     * Get an entry from the cache.
+     *
+     * @param recordMiss whether a miss counts for the frequency of the ledger. A lookup which is
+     *                   followed by another one on a miss, must not count the miss twice
+     */
+    public ByteBuf get(long ledgerId, long entryId, boolean recordMiss) {
         lock.readLock().lock();
 
         try {
@@ -151,10 +299,20 @@ public class ReadCache implements Closeable {
                 LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
                 if (res != null) {
                     int entryOffset = (int) res.first;
-                    int entryLen = (int) res.second;
+                    long indexedSize = res.second;
+                    int entryLen = (int) (indexedSize & ENTRY_SIZE_MASK);
+                    boolean readAhead = (indexedSize & READ_AHEAD_FLAG) != 0;
 
                     ByteBuf entry = allocator.buffer(entryLen, entryLen);
                     entry.writeBytes(cacheSegments.get(segmentIdx), entryOffset, entryLen);
+                    if (sketch != null) {
+                        if (readAhead) {
+                            // The reader would have missed without the read-ahead, it's not a re-read
+                            sketch.recordAccess();
+                        } else {
+                            sketch.increment(ledgerId);
+                        }
+                    }
                     return entry;
                 }
             }
@@ -162,10 +320,26 @@ public class ReadCache implements Closeable {
             lock.readLock().unlock();
         }
 
+        if (sketch != null && recordMiss) {
+            // The misses count as well, otherwise a ledger could never become frequent enough
+            // to be admitted. But only once the entry is missed again, so that the one-time
+            // sequential scans don't look hot
+            if (sketch.putInDoorkeeper(ledgerId, entryId)) {
+                sketch.increment(ledgerId);
+            } else {
+                sketch.recordAccess();
+            }
+        }
+
         // Entry not found in any segment
         return null;
     }
 
+    @VisibleForTesting
+    int frequency(long ledgerId) {
+        return sketch == null ? 0 : sketch.frequency(ledgerId);
+    }
+
     public boolean hasEntry(long ledgerId, long entryId) {
         lock.readLock().lock();
 
@@ -105,8 +105,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     // Write cache that is used to swap with writeCache during flushes
     protected volatile WriteCache writeCacheBeingFlushed;
 
-    // Cache where we insert entries for speculative reading
-    private final ReadCache readCache;
+    // Cache where we insert entries for speculative reading. Not final as it's created after
+    // the stats, which report its evictions
+    private ReadCache readCache;
 
     private final StampedLock writeCacheRotationLock = new StampedLock();
 
@@ -143,6 +144,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final Counter flushExecutorTime;
 
+    private final ReadAheadManager readAheadManager;
+
+    // Size of the chunks in which a write cache flush is split, Long.MAX_VALUE when flushes are not pipelined
+    private final long flushChunkSize;
+    // Executor committing the entry location index batches of the chunks, null when flushes are not pipelined
+    private final ExecutorService indexFlushExecutor;
+    private final int maxPendingIndexBatches;
+
     public SingleDirectoryDbLedgerStorage(ServerConfiguration conf, LedgerManager ledgerManager,
             LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager, StatsLogger statsLogger,
             ByteBufAllocator allocator, ScheduledExecutorService gcExecutor, long writeCacheSize, long readCacheSize,
@@ -170,7 +179,18 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        long flushChunkSizeMb = conf.getLong(DbLedgerStorage.FLUSH_CHUNK_SIZE_MB, 0L);
+        if (flushChunkSizeMb > 0) {
+            int indexFlushThreads = Math.max(1, conf.getInt(DbLedgerStorage.FLUSH_INDEX_THREADS, 1));
+            flushChunkSize = flushChunkSizeMb * 1024 * 1024;
+            indexFlushExecutor = Executors.newFixedThreadPool(indexFlushThreads,
+                    new DefaultThreadFactory("db-storage-index-flush"));
+            maxPendingIndexBatches = 2 * indexFlushThreads;
+        } else {
+            flushChunkSize = Long.MAX_VALUE;
+            indexFlushExecutor = null;
+            maxPendingIndexBatches = 0;
+        }
 
         ledgerIndex = new LedgerMetadataIndex(conf, KeyValueStorageRocksDB.factory, baseDir, ledgerDirStatsLogger);
         entryLocationIndex = new EntryLocationIndex(conf,
@@ -195,8 +215,23 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             () -> readCache.count()
         );
 
+        boolean readCacheFrequencyAdmission = conf.getBoolean(
+                DbLedgerStorage.READ_CACHE_FREQUENCY_ADMISSION_ENABLED, false);
+        readCache = new ReadCache(allocator, readCacheMaxSize, readCacheFrequencyAdmission,
+                dbLedgerStorageStats.getReadCacheEvictedCounter());
+
         flushExecutorTime = ledgerDirStatsLogger.getThreadScopedCounter("db-storage-thread-time");
 
+        readAheadManager = new ReadAheadManager(entryLogger, entryLocationIndex, readCache, dbLedgerStorageStats,
+                readAheadCacheBatchSize,
+                conf.getInt(DbLedgerStorage.READ_AHEAD_CACHE_MIN_BATCH_SIZE, readAheadCacheBatchSize),
+                conf.getInt(DbLedgerStorage.READ_AHEAD_CACHE_MAX_BATCH_SIZE, readAheadCacheBatchSize),
+                maxReadAheadBytesSize,
+                conf.getBoolean(DbLedgerStorage.READ_AHEAD_ASYNC_ENABLED, false));
+        cleanupExecutor.scheduleAtFixedRate(readAheadManager::cleanupStaleStates,
+                TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES,
+                TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
+
         executor.submit(() -> {
             ThreadRegistry.register(dbStoragerExecutorName, 0);
             // ensure the metric gets registered on start-up as this thread only executes
@@ -263,6 +298,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
             cleanupExecutor.shutdown();
             cleanupExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            readAheadManager.shutdown();
+            if (indexFlushExecutor != null) {
+                // The index batches of an interrupted flush must be committed before the DBs are closed
+                indexFlushExecutor.shutdown();
+                if (!indexFlushExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.warn("Timed out waiting for the entry location index flushes to complete");
+                }
+            }
 
             ledgerIndex.close();
             entryLocationIndex.close();
@@ -475,6 +518,33 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         throw new OperationRejectedException();
     }
 
+    /**
+     * Read an entry from the write caches or from the read cache. The entries are only read from the
+     * read cache when the read-ahead is asynchronous, as the hits can trigger a read-ahead. The misses
+     * aren't recorded, they are by the lookup of {@link #getEntry(long, long)} which follows them.
+     */
+    @Override
+    public ByteBuf tryGetEntryFromCache(long ledgerId, long entryId) throws IOException, BookieException {
+        if (entryId == BookieProtocol.LAST_ADD_CONFIRMED) {
+            return null;
+        }
+        throwIfLimbo(ledgerId);
+
+        long startTime = MathUtils.nowInNano();
+        ByteBuf entry = getEntryFromWriteCaches(ledgerId, entryId, false);
+        if (entry == null && readAheadManager.isAsync()) {
+            entry = readCache.get(ledgerId, entryId, false);
+            if (entry != null) {
+                dbLedgerStorageStats.getReadCacheHitCounter().inc();
+                readAheadManager.onReadCacheHit(ledgerId, entryId, entry.readableBytes());
+            }
+        }
+        if (entry != null) {
+            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+        }
+        return entry;
+    }
+
     @Override
     public ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException {
         long startTime = MathUtils.nowInNano();
@@ -488,15 +558,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
-    private ByteBuf doGetEntry(long ledgerId, long entryId) throws IOException, BookieException {
-        if (log.isDebugEnabled()) {
-            log.debug("Get Entry: {}@{}", ledgerId, entryId);
-        }
-
-        if (entryId == BookieProtocol.LAST_ADD_CONFIRMED) {
-            return getLastEntry(ledgerId);
-        }
-
+    private ByteBuf getEntryFromWriteCaches(long ledgerId, long entryId, boolean recordMiss) {
         // We need to try to read from both write caches, since recent entries could be found in either of the two. The
         // write caches are already thread safe on their own, here we just need to make sure we get references to both
         // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
@@ -528,12 +590,31 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return entry;
         }
 
-        dbLedgerStorageStats.getWriteCacheMissCounter().inc();
+        if (recordMiss) {
+            dbLedgerStorageStats.getWriteCacheMissCounter().inc();
+        }
+        return null;
+    }
+
+    private ByteBuf doGetEntry(long ledgerId, long entryId) throws IOException, BookieException {
+        if (log.isDebugEnabled()) {
+            log.debug("Get Entry: {}@{}", ledgerId, entryId);
+        }
+
+        if (entryId == BookieProtocol.LAST_ADD_CONFIRMED) {
+            return getLastEntry(ledgerId);
+        }
+
+        ByteBuf entry = getEntryFromWriteCaches(ledgerId, entryId, true);
+        if (entry != null) {
+            return entry;
+        }
 
         // Try reading from read-ahead cache
         entry = readCache.get(ledgerId, entryId);
         if (entry != null) {
             dbLedgerStorageStats.getReadCacheHitCounter().inc();
+            readAheadManager.onReadCacheHit(ledgerId, entryId, entry.readableBytes());
             return entry;
         }
 
@@ -561,61 +642,22 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             dbLedgerStorageStats.getReadFromEntryLogTime().add(MathUtils.elapsedNanos(readEntryStartNano));
         }
 
-        readCache.put(ledgerId, entryId, entry);
+        boolean admitted = insertInReadCache(ledgerId, entryId, entry);
 
         // Try to read more entries
         long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+        readAheadManager.onReadCacheMiss(ledgerId, entryId, nextEntryLocation, admitted);
 
         return entry;
     }
 
-    private void fillReadAheadCache(long orginalLedgerId, long firstEntryId, long firstEntryLocation) {
-        long readAheadStartNano = MathUtils.nowInNano();
-        int count = 0;
-        long size = 0;
-
-        try {
-            long firstEntryLogId = (firstEntryLocation >> 32);
-            long currentEntryLogId = firstEntryLogId;
-            long currentEntryLocation = firstEntryLocation;
-
-            while (count < readAheadCacheBatchSize
-                    && size < maxReadAheadBytesSize
-                    && currentEntryLogId == firstEntryLogId) {
-                ByteBuf entry = entryLogger.internalReadEntry(orginalLedgerId, firstEntryId, currentEntryLocation,
-                        false /* validateEntry */);
-
-                try {
-                    long currentEntryLedgerId = entry.getLong(0);
-                    long currentEntryId = entry.getLong(8);
-
-                    if (currentEntryLedgerId != orginalLedgerId) {
-                        // Found an entry belonging to a different ledger, stopping read-ahead
-                        break;
-                    }
-
-                    // Insert entry in read cache
-                    readCache.put(orginalLedgerId, currentEntryId, entry);
-
-                    count++;
-                    firstEntryId++;
-                    size += entry.readableBytes();
-
-                    currentEntryLocation += 4 + entry.readableBytes();
-                    currentEntryLogId = currentEntryLocation >> 32;
-                } finally {
-                    entry.release();
-                }
-            }
-        } catch (Exception e) {
-            if (log.isDebugEnabled()) {
-                log.debug("Exception during read ahead for ledger: {}: e", orginalLedgerId, e);
-            }
-        } finally {
-            dbLedgerStorageStats.getReadAheadBatchCountStats().registerSuccessfulValue(count);
-            dbLedgerStorageStats.getReadAheadBatchSizeStats().registerSuccessfulValue(size);
-            dbLedgerStorageStats.getReadAheadTime().add(MathUtils.elapsedNanos(readAheadStartNano));
+    private boolean insertInReadCache(long ledgerId, long entryId, ByteBuf entry) {
+        if (readCache.put(ledgerId, entryId, entry)) {
+            dbLedgerStorageStats.getReadCacheAdmittedCounter().inc();
+            return true;
+        } else {
+            dbLedgerStorageStats.getReadCacheRejectedCounter().inc();
+            return false;
         }
     }
 
@@ -679,6 +721,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return content;
     }
 
+    @VisibleForTesting
+    ReadCache getReadCache() {
+        return readCache;
+    }
+
     @VisibleForTesting
     boolean isFlushRequired() {
         long stamp = writeCacheRotationLock.readLock();
@@ -713,29 +760,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             }
 
             // Write all the pending entries into the entry logger and collect the offset
-            // position for each entry
-
-            Batch batch = entryLocationIndex.newBatch();
-            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                try {
-                    long location = entryLogger.addEntry(ledgerId, entry, true);
-                    entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
-
-            long entryLoggerStart = MathUtils.nowInNano();
-            entryLogger.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
-
-            long batchFlushStartTime = MathUtils.nowInNano();
-            batch.flush();
-            batch.close();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
-            if (log.isDebugEnabled()) {
-                log.debug("DB batch flushed time : {} s",
-                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            // position for each entry. When the flush is pipelined, the index batch of each
+            // chunk is committed while the next chunk is written to the entry logger
+            try (FlushPipeline pipeline = new FlushPipeline(entryLogger, entryLocationIndex, dbLedgerStorageStats,
+                    indexFlushExecutor, flushChunkSize, maxPendingIndexBatches)) {
+                writeCacheBeingFlushed.forEach(pipeline);
+                pipeline.finish();
             }
 
             long ledgerIndexStartTime = MathUtils.nowInNano();
@@ -840,6 +870,8 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             listener.ledgerDeleted(ledgerId);
         }
 
+        readAheadManager.removeLedger(ledgerId);
+
         TransientLedgerInfo tli = transientLedgerInfoCache.remove(ledgerId);
         if (tli != null) {
             tli.close();
@@ -864,6 +896,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return entryLogger;
     }
 
+    @Override
+    public boolean isLastAddConfirmedCached(long ledgerId) {
+        TransientLedgerInfo ledgerInfo = transientLedgerInfoCache.get(ledgerId);
+        return null != ledgerInfo && ledgerInfo.getLastAddConfirmed() != TransientLedgerInfo.NOT_ASSIGNED_LAC;
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         throwIfLimbo(ledgerId);
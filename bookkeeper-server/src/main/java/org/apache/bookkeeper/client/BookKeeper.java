@@ -121,6 +121,13 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     // The stats logger for this client.
     private final StatsLogger statsLogger;
     private final BookKeeperClientStats clientStats;
+    // The read latency of the bookies, null if latency aware reads are disabled
+    private final BookieLatencyTracker bookieLatencyTracker;
+    // The entries read by the ledger handles, null if the entry cache is disabled
+    private final ClientEntryCache entryCache;
+    // The memory held by the pending adds and reads, null if the memory limit is disabled
+    private final ClientMemoryLimiter memoryLimiter;
+    private final LedgerMetadataCache ledgerMetadataCache;
     private final double bookieQuarantineRatio;
 
     // whether the event loop group is one we created, or is owned by whoever
@@ -425,6 +432,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
 
         this.internalConf = ClientInternalConf.fromConfigAndFeatureProvider(conf, this.featureProvider);
+        this.bookieLatencyTracker = internalConf.enableLatencyAwareReads
+                ? new BookieLatencyTracker(internalConf.latencyAwareReadsQuantile) : null;
 
         // initialize resources
         this.scheduler = OrderedScheduler.newSchedulerBuilder().numThreads(1).name("BookKeeperClientScheduler").build();
@@ -484,6 +493,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                     .leakDetectionPolicy(conf.getAllocatorLeakDetectionPolicy())
                     .build();
         }
+        this.entryCache = conf.getEntryCacheSizeBytes() > 0
+                ? new ClientEntryCache(conf.getEntryCacheSizeBytes(), this.allocator, this.clientStats) : null;
+        this.memoryLimiter = conf.getClientMemoryLimitBytes() > 0
+                ? new ClientMemoryLimiter(conf.getClientMemoryLimitBytes(), conf.getClientMemoryLimitMaxWaitMs(),
+                        this.scheduler, this.clientStats) : null;
 
 
         if (null == requestTimer) {
@@ -538,6 +552,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
         this.ledgerManager = new CleanupLedgerManager(ledgerManagerFactory.newLedgerManager());
         this.ledgerIdGenerator = ledgerManagerFactory.newLedgerIdGenerator();
+        this.ledgerMetadataCache = conf.getLedgerMetadataCacheSize() > 0
+                ? new LedgerMetadataCache(ledgerManager, conf.getLedgerMetadataCacheSize(), clientStats) : null;
 
         this.bookieQuarantineRatio = conf.getBookieQuarantineRatio();
         scheduleBookieHealthCheckIfEnabled(conf);
@@ -550,6 +566,10 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     BookKeeper() {
         conf = new ClientConfiguration();
         internalConf = ClientInternalConf.fromConfig(conf);
+        bookieLatencyTracker = null;
+        entryCache = null;
+        memoryLimiter = null;
+        ledgerMetadataCache = null;
         statsLogger = NullStatsLogger.INSTANCE;
         clientStats = BookKeeperClientStats.newInstance(statsLogger);
         scheduler = null;
@@ -1380,7 +1400,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
      * @param cb    callback method
      */
     public void asyncIsClosed(long lId, final IsClosedCallback cb, final Object ctx){
-        ledgerManager.readLedgerMetadata(lId).whenComplete((metadata, exception) -> {
+        readLedgerMetadata(lId).whenComplete((metadata, exception) -> {
                 if (exception == null) {
                     cb.isClosedComplete(BKException.Code.OK, metadata.getValue().isClosed(), ctx);
                 } else {
@@ -1452,6 +1472,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         // Close bookie client so all pending bookie requests would be failed
         // which will reject any incoming bookie requests.
         bookieClient.close();
+        if (ledgerMetadataCache != null) {
+            ledgerMetadataCache.clear();
+        }
         try {
             // Close ledger manage so all pending metadata requests would be failed
             // which will reject any incoming metadata requests.
@@ -1477,6 +1500,10 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
             }
         }
 
+        if (entryCache != null) {
+            entryCache.clear();
+        }
+
         if (ownTimer) {
             requestTimer.stop();
         }
@@ -1607,12 +1634,22 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
 
     @Override
     public CompletableFuture<LedgerMetadata> getLedgerMetadata(long ledgerId) {
-        CompletableFuture<Versioned<LedgerMetadata>> versioned = getLedgerManager().readLedgerMetadata(ledgerId);
+        CompletableFuture<Versioned<LedgerMetadata>> versioned = readLedgerMetadata(ledgerId);
         return versioned.thenApply(versionedLedgerMetadata -> {
             return versionedLedgerMetadata.getValue();
         });
     }
 
+    /**
+     * Read the metadata of a ledger, through the ledger metadata cache if it is enabled.
+     */
+    CompletableFuture<Versioned<LedgerMetadata>> readLedgerMetadata(long ledgerId) {
+        if (ledgerMetadataCache != null) {
+            return ledgerMetadataCache.read(ledgerId);
+        }
+        return getLedgerManager().readLedgerMetadata(ledgerId);
+    }
+
     private final ClientContext clientCtx = new ClientContext() {
             @Override
             public ClientInternalConf getConf() {
@@ -1654,6 +1691,26 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public BookieLatencyTracker getBookieLatencyTracker() {
+                return bookieLatencyTracker;
+            }
+
+            @Override
+            public ClientEntryCache getEntryCache() {
+                return entryCache;
+            }
+
+            @Override
+            public ClientMemoryLimiter getMemoryLimiter() {
+                return memoryLimiter;
+            }
+
+            @Override
+            public LedgerMetadataCache getLedgerMetadataCache() {
+                return ledgerMetadataCache;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
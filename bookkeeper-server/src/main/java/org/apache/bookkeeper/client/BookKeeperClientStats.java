@@ -64,6 +64,17 @@ public interface BookKeeperClientStats {
     String GET_BOOKIE_INFO_OP = "GET_BOOKIE_INFO";
     String SPECULATIVE_READ_COUNT = "SPECULATIVE_READ_COUNT";
     String READ_REQUESTS_REORDERED = "READ_REQUESTS_REORDERED";
+    String ENTRY_CACHE_HITS = "ENTRY_CACHE_HITS";
+    String ENTRY_CACHE_MISSES = "ENTRY_CACHE_MISSES";
+    String ENTRY_CACHE_PENDING_HITS = "ENTRY_CACHE_PENDING_HITS";
+    String LEDGER_METADATA_CACHE_HITS = "LEDGER_METADATA_CACHE_HITS";
+    String LEDGER_METADATA_CACHE_MISSES = "LEDGER_METADATA_CACHE_MISSES";
+    String CLIENT_MEMORY_WAIT = "CLIENT_MEMORY_WAIT";
+    String CLIENT_MEMORY_USED_BYTES = "CLIENT_MEMORY_USED_BYTES";
+    String CLIENT_MEMORY_ADD_BYTES = "CLIENT_MEMORY_ADD_BYTES";
+    String CLIENT_MEMORY_READ_BYTES = "CLIENT_MEMORY_READ_BYTES";
+    String CLIENT_MEMORY_LEDGERS = "CLIENT_MEMORY_LEDGERS";
+    String CLIENT_MEMORY_MAX_LEDGER_BYTES = "CLIENT_MEMORY_MAX_LEDGER_BYTES";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_OP = "GET_LIST_OF_ENTRIES_OF_LEDGER";
 
     // per channel stats
@@ -71,8 +82,12 @@ public interface BookKeeperClientStats {
 
     String CHANNEL_READ_OP = "READ_ENTRY";
     String CHANNEL_TIMEOUT_READ = "TIMEOUT_READ_ENTRY";
+    String CHANNEL_RANGE_READ_OP = "RANGE_READ_ENTRY";
+    String CHANNEL_TIMEOUT_RANGE_READ = "TIMEOUT_RANGE_READ_ENTRY";
     String CHANNEL_ADD_OP = "ADD_ENTRY";
     String CHANNEL_TIMEOUT_ADD = "TIMEOUT_ADD_ENTRY";
+    String CHANNEL_RANGE_ADD_OP = "RANGE_ADD_ENTRY";
+    String CHANNEL_TIMEOUT_RANGE_ADD = "TIMEOUT_RANGE_ADD_ENTRY";
     String CHANNEL_WRITE_LAC_OP = "WRITE_LAC";
     String CHANNEL_FORCE_OP = "FORCE";
     String CHANNEL_TIMEOUT_WRITE_LAC = "TIMEOUT_WRITE_LAC";
@@ -121,6 +136,12 @@ public interface BookKeeperClientStats {
     Counter getReadOpDmCounter();
     Counter getAddOpUrCounter();
     Counter getSpeculativeReadCounter();
+    Counter getEntryCacheHitCounter();
+    Counter getEntryCacheMissCounter();
+    Counter getEntryCachePendingHitCounter();
+    Counter getLedgerMetadataCacheHitCounter();
+    Counter getLedgerMetadataCacheMissCounter();
+    OpStatsLogger getClientMemoryWaitLogger();
     Counter getEnsembleBookieDistributionCounter(String bookie);
     Counter getEnsembleChangeCounter();
     Counter getLacUpdateHitsCounter();
@@ -130,6 +151,7 @@ public interface BookKeeperClientStats {
     Counter getWriteDelayedDueToNotEnoughFaultDomains();
     Counter getWriteTimedOutDueToNotEnoughFaultDomains();
     void registerPendingAddsGauge(Gauge<Integer> gauge);
+    void registerClientMemoryGauge(String name, Gauge<Long> gauge);
 
     static BookKeeperClientStats newInstance(StatsLogger stats) {
         return new BookKeeperClientStatsImpl(stats);
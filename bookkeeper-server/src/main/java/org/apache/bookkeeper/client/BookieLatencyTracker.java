@@ -0,0 +1,116 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * Tracks a quantile of the read latency of each bookie, over a window of its most recent reads.
+ *
+ * <p>The quantile is recomputed every few samples rather than on each read, and it is only
+ * reported once the window has enough samples. A bookie which has not been read from for a
+ * while has no latency: the reads are moved away from a slow bookie, so its samples would
+ * otherwise never be refreshed after it has recovered.
+ */
+public class BookieLatencyTracker {
+
+    static final int WINDOW_SIZE = 128;
+    static final int MIN_SAMPLES = 16;
+    // Number of samples recorded between two computations of the quantile
+    static final int UPDATE_INTERVAL = 16;
+    static final long SAMPLES_EXPIRATION_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final double quantile;
+    private final ConcurrentHashMap<BookieId, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    public BookieLatencyTracker(double quantile) {
+        if (quantile <= 0 || quantile > 1) {
+            throw new IllegalArgumentException("Invalid latency quantile : " + quantile);
+        }
+        this.quantile = quantile;
+    }
+
+    /**
+     * Record the latency of a read response from a bookie.
+     *
+     * @param bookie the bookie which responded
+     * @param latencyNanos the time elapsed since the request was sent
+     */
+    public void recordLatency(BookieId bookie, long latencyNanos) {
+        windows.computeIfAbsent(bookie, b -> new LatencyWindow()).record(latencyNanos);
+    }
+
+    /**
+     * Get the latency quantile observed on a bookie.
+     *
+     * @param bookie the bookie
+     * @return the latency quantile in nanoseconds, -1 if there are not enough recent samples
+     */
+    public long getLatencyQuantileNanos(BookieId bookie) {
+        LatencyWindow window = windows.get(bookie);
+        return window == null ? -1L : window.getQuantileNanos();
+    }
+
+    private class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int numSamples = 0;
+        private int nextSample = 0;
+        private int samplesSinceUpdate = 0;
+
+        private volatile long quantileNanos = -1L;
+        private volatile long lastSampleNanos;
+
+        synchronized void record(long latencyNanos) {
+            long now = MathUtils.nowInNano();
+            if (now - lastSampleNanos > SAMPLES_EXPIRATION_NANOS) {
+                // Start over, the old samples don't tell anything about the bookie now
+                numSamples = 0;
+                nextSample = 0;
+                samplesSinceUpdate = 0;
+                quantileNanos = -1L;
+            }
+            lastSampleNanos = now;
+
+            samples[nextSample] = latencyNanos;
+            nextSample = (nextSample + 1) % WINDOW_SIZE;
+            numSamples = Math.min(numSamples + 1, WINDOW_SIZE);
+
+            if (++samplesSinceUpdate >= UPDATE_INTERVAL && numSamples >= MIN_SAMPLES) {
+                samplesSinceUpdate = 0;
+                long[] sorted = Arrays.copyOf(samples, numSamples);
+                Arrays.sort(sorted);
+                int idx = (int) Math.ceil(quantile * numSamples) - 1;
+                quantileNanos = sorted[Math.max(0, idx)];
+            }
+        }
+
+        long getQuantileNanos() {
+            if (MathUtils.nowInNano() - lastSampleNanos > SAMPLES_EXPIRATION_NANOS) {
+                return -1L;
+            }
+            return quantileNanos;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.bookkeeper.net.BookieNode;
+import org.apache.bookkeeper.net.NetworkTopologyImpl;
+import org.apache.bookkeeper.net.NodeBase;
+
+/**
+ * An immutable snapshot of the known bookies, indexed by their network location.
+ *
+ * <p>The placement policies pick the bookies of an ensemble from the snapshot, without walking
+ * the network topology and copying its leaves for each pick. The snapshot is only rebuilt for
+ * the locations which changed when the cluster changes, and is published through a volatile
+ * field, so the selections don't contend with the cluster changes.
+ */
+final class BookieNodeIndex {
+
+    static final BookieNodeIndex EMPTY = new BookieNodeIndex(new BookieNode[0], Collections.emptyMap());
+
+    private final BookieNode[] all;
+    private final Map<String, BookieNode[]> byLocation;
+
+    private BookieNodeIndex(BookieNode[] all, Map<String, BookieNode[]> byLocation) {
+        this.all = all;
+        this.byLocation = byLocation;
+    }
+
+    /**
+     * Build a new snapshot, removing and adding bookies. A bookie whose location changed is
+     * removed with its previous node and added with its new one.
+     */
+    BookieNodeIndex update(Collection<BookieNode> removed, Collection<BookieNode> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return this;
+        }
+        Map<String, Set<BookieNode>> changedLocations = new HashMap<>();
+        for (BookieNode node : removed) {
+            changedLocations.computeIfAbsent(node.getNetworkLocation(), this::nodesOf).remove(node);
+        }
+        for (BookieNode node : added) {
+            changedLocations.computeIfAbsent(node.getNetworkLocation(), this::nodesOf).add(node);
+        }
+
+        Map<String, BookieNode[]> newByLocation = new HashMap<>(byLocation);
+        for (Map.Entry<String, Set<BookieNode>> e : changedLocations.entrySet()) {
+            if (e.getValue().isEmpty()) {
+                newByLocation.remove(e.getKey());
+            } else {
+                newByLocation.put(e.getKey(), e.getValue().toArray(new BookieNode[0]));
+            }
+        }
+        List<BookieNode> newAll = new ArrayList<>(all.length + added.size());
+        for (BookieNode[] nodes : newByLocation.values()) {
+            newAll.addAll(Arrays.asList(nodes));
+        }
+        return new BookieNodeIndex(newAll.toArray(new BookieNode[0]), newByLocation);
+    }
+
+    private Set<BookieNode> nodesOf(String location) {
+        BookieNode[] nodes = byLocation.get(location);
+        return nodes == null ? new LinkedHashSet<>() : new LinkedHashSet<>(Arrays.asList(nodes));
+    }
+
+    /**
+     * @return all the bookies. The array must not be modified.
+     */
+    BookieNode[] getAll() {
+        return all;
+    }
+
+    int size() {
+        return all.length;
+    }
+
+    /**
+     * @return the number of distinct network locations of the bookies.
+     */
+    int getNumOfLocations() {
+        return byLocation.size();
+    }
+
+    /**
+     * Get the bookies under a scope, with the semantics of
+     * {@link org.apache.bookkeeper.net.NetworkTopology#getLeaves(String)}: a scope starting with
+     * {@code ~} selects the bookies which aren't under any of the comma separated scopes following it.
+     *
+     * @return the bookies under the scope. The array must not be modified.
+     */
+    BookieNode[] getLeaves(String scope) {
+        if (isExclusionScope(scope)) {
+            Set<String> excludedScopes = getExcludedScopes(scope);
+            List<BookieNode> nodes = new ArrayList<>(all.length);
+            for (Map.Entry<String, BookieNode[]> e : byLocation.entrySet()) {
+                if (!isUnderAnyScope(e.getKey(), excludedScopes)) {
+                    nodes.addAll(Arrays.asList(e.getValue()));
+                }
+            }
+            return nodes.toArray(new BookieNode[0]);
+        }
+        scope = NodeBase.normalize(scope);
+        if (NodeBase.ROOT.equals(scope)) {
+            return all;
+        }
+        BookieNode[] nodes = byLocation.get(scope);
+        if (nodes != null) {
+            return nodes;
+        }
+        // the scope is an upper level of the topology, e.g. a region
+        List<BookieNode> scopeNodes = new ArrayList<>();
+        for (Map.Entry<String, BookieNode[]> e : byLocation.entrySet()) {
+            if (isUnderScope(e.getKey(), scope)) {
+                scopeNodes.addAll(Arrays.asList(e.getValue()));
+            }
+        }
+        return scopeNodes.toArray(new BookieNode[0]);
+    }
+
+    static boolean isExclusionScope(String scope) {
+        return scope.startsWith("~");
+    }
+
+    /**
+     * @return the scopes excluded by a scope starting with {@code ~}.
+     */
+    static Set<String> getExcludedScopes(String scope) {
+        Set<String> excludedScopes = new HashSet<>();
+        for (String excludedScope : scope.substring(1).split(NetworkTopologyImpl.NODE_SEPARATOR)) {
+            excludedScopes.add(NodeBase.normalize(excludedScope));
+        }
+        return excludedScopes;
+    }
+
+    static boolean isUnderScope(String location, String scope) {
+        return NodeBase.ROOT.equals(scope)
+                || (location + NodeBase.PATH_SEPARATOR_STR).startsWith(scope + NodeBase.PATH_SEPARATOR_STR);
+    }
+
+    static boolean isUnderAnyScope(String location, Set<String> scopes) {
+        if (scopes.contains(location)) {
+            return true;
+        }
+        for (String scope : scopes) {
+            if (isUnderScope(location, scope)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
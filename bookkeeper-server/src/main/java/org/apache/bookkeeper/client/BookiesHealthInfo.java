@@ -44,4 +44,14 @@ public interface BookiesHealthInfo {
      */
     long getBookiePendingRequests(BookieId bookieSocketAddress);
 
+    /**
+     * Returns the read latency observed on a bookie.
+     *
+     * @param bookieSocketAddress
+     * @return the read latency quantile in nanoseconds, -1 if it is unknown
+     */
+    default long getBookieReadLatencyNanos(BookieId bookieSocketAddress) {
+        return -1L;
+    }
+
 }
@@ -43,5 +43,9 @@ public interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+    BookieLatencyTracker getBookieLatencyTracker();
+    ClientEntryCache getEntryCache();
+    LedgerMetadataCache getLedgerMetadataCache();
+    ClientMemoryLimiter getMemoryLimiter();
     boolean isClientClosed();
 }
@@ -0,0 +1,353 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.util.collections.ConcurrentLongPairHashMap;
+
+/**
+ * A cache of the entries read by the client, shared by all the ledger handles, so that the
+ * readers tailing the same ledger only read each entry once from the bookies.
+ *
+ * <p>Only the entries up to the last add confirmed of their ledger are cached: they can't
+ * change anymore, so they are only invalidated when their ledger is deleted. The entries are copied in direct
+ * buffers, and evicted in insertion order once the cache is full. The cache holds a reference
+ * on each buffer, and hands out retained duplicates of it.
+ *
+ * <p>The reads of entries already being read from the bookies by another reader wait for that
+ * read to complete, instead of sending the same requests again.
+ */
+public class ClientEntryCache {
+
+    private final long maxSizeBytes;
+    private final ByteBufAllocator allocator;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter pendingHitCounter;
+
+    private final ConcurrentLongPairHashMap<CachedEntry> entries =
+            ConcurrentLongPairHashMap.<CachedEntry>newBuilder().build();
+    private final ConcurrentLongPairHashMap<CompletableFuture<Void>> pendingReads =
+            ConcurrentLongPairHashMap.<CompletableFuture<Void>>newBuilder().build();
+    // The entries are added and removed under the lock of the insertion order, so that the
+    // cached entries, their insertion order and their index by ledger stay consistent. The
+    // entries of a ledger are in insertion order too, so the oldest entry is also the first
+    // of its ledger.
+    private final LinkedHashSet<CachedEntry> insertionOrder = new LinkedHashSet<>();
+    private final Map<Long, ArrayDeque<CachedEntry>> entriesByLedger = new HashMap<>();
+    private final AtomicLong size = new AtomicLong(0);
+
+    // The lookups retain the buffers under the read lock, so that an evicted buffer is only
+    // released once no lookup can still be retaining it
+    private final ReentrantReadWriteLock releaseLock = new ReentrantReadWriteLock();
+
+    private static class CachedEntry {
+        final long ledgerId;
+        final long entryId;
+        final long length;
+        final int size;
+        final ByteBuf data;
+
+        CachedEntry(long ledgerId, long entryId, long length, ByteBuf data) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+            this.length = length;
+            this.size = data.readableBytes();
+            this.data = data;
+        }
+    }
+
+    ClientEntryCache(long maxSizeBytes, ByteBufAllocator allocator, BookKeeperClientStats clientStats) {
+        this.maxSizeBytes = maxSizeBytes;
+        this.allocator = allocator;
+        this.hitCounter = clientStats.getEntryCacheHitCounter();
+        this.missCounter = clientStats.getEntryCacheMissCounter();
+        this.pendingHitCounter = clientStats.getEntryCachePendingHitCounter();
+    }
+
+    /**
+     * Get an entry from the cache.
+     *
+     * @return the entry, which has to be closed by the caller, or null if it isn't cached
+     */
+    LedgerEntryImpl get(long ledgerId, long entryId) {
+        releaseLock.readLock().lock();
+        try {
+            CachedEntry cached = entries.get(ledgerId, entryId);
+            if (cached == null) {
+                return null;
+            }
+            return LedgerEntryImpl.create(ledgerId, entryId, cached.length, cached.data.retainedDuplicate());
+        } finally {
+            releaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add an entry to the cache. The caller must ensure that the entry is confirmed.
+     *
+     * @param data the entry payload, which is copied
+     */
+    void put(long ledgerId, long entryId, long length, ByteBuf data) {
+        int entrySize = data.readableBytes();
+        if (entrySize > maxSizeBytes || entries.containsKey(ledgerId, entryId)) {
+            return;
+        }
+        ByteBuf copy = allocator.directBuffer(entrySize, entrySize);
+        copy.writeBytes(data, data.readerIndex(), entrySize);
+        CachedEntry cached = new CachedEntry(ledgerId, entryId, length, copy);
+        List<CachedEntry> evicted = new ArrayList<>();
+        synchronized (insertionOrder) {
+            if (entries.putIfAbsent(ledgerId, entryId, cached) != null) {
+                copy.release();
+                return;
+            }
+            insertionOrder.add(cached);
+            entriesByLedger.computeIfAbsent(ledgerId, id -> new ArrayDeque<>()).add(cached);
+            size.addAndGet(entrySize);
+
+            while (size.get() > maxSizeBytes) {
+                Iterator<CachedEntry> oldest = insertionOrder.iterator();
+                CachedEntry evict = oldest.next();
+                oldest.remove();
+                ArrayDeque<CachedEntry> ledgerEntries = entriesByLedger.get(evict.ledgerId);
+                ledgerEntries.pollFirst();
+                if (ledgerEntries.isEmpty()) {
+                    entriesByLedger.remove(evict.ledgerId);
+                }
+                entries.remove(evict.ledgerId, evict.entryId);
+                size.addAndGet(-evict.size);
+                evicted.add(evict);
+            }
+        }
+        release(evicted);
+    }
+
+    /**
+     * Remove the entries of a ledger, e.g. when it's deleted.
+     */
+    void invalidate(long ledgerId) {
+        ArrayDeque<CachedEntry> removed;
+        synchronized (insertionOrder) {
+            removed = entriesByLedger.remove(ledgerId);
+            if (removed == null) {
+                return;
+            }
+            for (CachedEntry cached : removed) {
+                insertionOrder.remove(cached);
+                entries.remove(cached.ledgerId, cached.entryId);
+                size.addAndGet(-cached.size);
+            }
+        }
+        release(removed);
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    void clear() {
+        List<CachedEntry> removed;
+        synchronized (insertionOrder) {
+            removed = new ArrayList<>(insertionOrder);
+            insertionOrder.clear();
+            entriesByLedger.clear();
+            entries.clear();
+            size.set(0);
+        }
+        release(removed);
+    }
+
+    private void release(Collection<CachedEntry> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        releaseLock.writeLock().lock();
+        try {
+            for (CachedEntry cached : removed) {
+                cached.data.release();
+            }
+        } finally {
+            releaseLock.writeLock().unlock();
+        }
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    @VisibleForTesting
+    int count() {
+        synchronized (insertionOrder) {
+            return insertionOrder.size();
+        }
+    }
+
+    /**
+     * Read a range of confirmed entries through the cache.
+     *
+     * <p>The cached entries are returned directly, the ones already being read by another reader
+     * are shared with it, and the others are read from the bookies and cached. The entries of a
+     * shared read which failed, or which have already been evicted, are read again from the
+     * bookies.
+     */
+    CompletableFuture<LedgerEntries> read(LedgerHandle lh, long firstEntry, long lastEntry) {
+        final long ledgerId = lh.getId();
+        final LedgerEntry[] results = new LedgerEntry[(int) (lastEntry - firstEntry + 1)];
+        final boolean[] shared = new boolean[results.length];
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        List<CompletableFuture<Void>> sharedReads = new ArrayList<>();
+        List<CompletableFuture<Void>> owned = new ArrayList<>();
+        long ownedStart = -1;
+
+        for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+            int idx = (int) (entryId - firstEntry);
+            CompletableFuture<Void> pending = null;
+            CompletableFuture<Void> sharedRead = null;
+            LedgerEntryImpl entry = get(ledgerId, entryId);
+            if (entry != null) {
+                hitCounter.inc();
+                results[idx] = entry;
+            } else {
+                pending = new CompletableFuture<>();
+                sharedRead = pendingReads.putIfAbsent(ledgerId, entryId, pending);
+                if (sharedRead != null) {
+                    pendingHitCounter.inc();
+                    shared[idx] = true;
+                    sharedReads.add(sharedRead);
+                } else {
+                    missCounter.inc();
+                }
+            }
+
+            if (entry == null && sharedRead == null) {
+                // read it from the bookies, with the next entries we have to read
+                if (owned.isEmpty()) {
+                    ownedStart = entryId;
+                }
+                owned.add(pending);
+            } else if (!owned.isEmpty()) {
+                reads.add(readFromBookies(lh, ownedStart, owned, firstEntry, results));
+                owned = new ArrayList<>();
+            }
+        }
+        if (!owned.isEmpty()) {
+            reads.add(readFromBookies(lh, ownedStart, owned, firstEntry, results));
+        }
+
+        if (reads.isEmpty() && sharedReads.isEmpty()) {
+            return CompletableFuture.completedFuture(LedgerEntriesImpl.create(new ArrayList<>(Arrays.asList(results))));
+        }
+
+        // the shared reads always complete successfully, once the entries have been cached
+        reads.add(CompletableFuture.allOf(sharedReads.toArray(new CompletableFuture[0]))
+                .thenCompose(ignored -> readShared(lh, firstEntry, shared, results)));
+
+        CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).whenComplete((ignored, cause) -> {
+            if (cause == null) {
+                future.complete(LedgerEntriesImpl.create(new ArrayList<>(Arrays.asList(results))));
+            } else {
+                for (LedgerEntry entry : results) {
+                    if (entry != null) {
+                        entry.close();
+                    }
+                }
+                future.completeExceptionally(cause instanceof CompletionException ? cause.getCause() : cause);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<Void> readFromBookies(LedgerHandle lh, long startEntry,
+                                                    List<CompletableFuture<Void>> pending,
+                                                    long firstEntry, LedgerEntry[] results) {
+        final long ledgerId = lh.getId();
+        final long endEntry = startEntry + pending.size() - 1;
+        return lh.readEntriesFromBookiesAsync(startEntry, endEntry, false).whenComplete((entries, cause) -> {
+            try {
+                if (entries != null) {
+                    for (LedgerEntry entry : entries) {
+                        put(ledgerId, entry.getEntryId(), entry.getLength(), entry.getEntryBuffer());
+                        results[(int) (entry.getEntryId() - firstEntry)] = entry.duplicate();
+                    }
+                    entries.close();
+                }
+            } finally {
+                // wake up the readers sharing these entries, they will find them in the cache
+                for (int i = 0; i < pending.size(); i++) {
+                    pendingReads.remove(ledgerId, startEntry + i, pending.get(i));
+                    pending.get(i).complete(null);
+                }
+            }
+        }).thenApply(entries -> null);
+    }
+
+    private CompletableFuture<Void> readShared(LedgerHandle lh, long firstEntry, boolean[] shared,
+                                               LedgerEntry[] results) {
+        final long ledgerId = lh.getId();
+        for (int i = 0; i < results.length; i++) {
+            if (shared[i]) {
+                results[i] = get(ledgerId, firstEntry + i);
+            }
+        }
+        // read the consecutive entries which are still missing from the bookies
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        int idx = 0;
+        while (idx < results.length) {
+            if (!shared[idx] || results[idx] != null) {
+                idx++;
+                continue;
+            }
+            final int start = idx;
+            while (idx < results.length && shared[idx] && results[idx] == null) {
+                idx++;
+            }
+            reads.add(lh.readEntriesFromBookiesAsync(firstEntry + start, firstEntry + idx - 1, false)
+                .thenAccept(entries -> {
+                    for (LedgerEntry entry : entries) {
+                        results[(int) (entry.getEntryId() - firstEntry)] = entry.duplicate();
+                    }
+                    entries.close();
+                }));
+        }
+        return CompletableFuture.allOf(reads.toArray(new CompletableFuture[0]));
+    }
+}
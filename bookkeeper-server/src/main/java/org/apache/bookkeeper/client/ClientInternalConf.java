@@ -41,6 +41,14 @@ class ClientInternalConf {
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
     final boolean enableStickyReads;
+    final boolean enableRangeReads;
+    final int rangeReadMaxEntries;
+    final long rangeReadMaxBytes;
+    final long maxFrameSizeBytes;
+    final long readEntrySizeBytes;
+    final boolean enableLatencyAwareReads;
+    final double latencyAwareReadsQuantile;
+    final float latencyAwareReadsReorderThreshold;
     final int recoveryReadBatchSize;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
@@ -82,9 +90,28 @@ class ClientInternalConf {
         this.enableBookieFailureTracking = conf.getEnableBookieFailureTracking();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.enableStickyReads = conf.isStickyReadsEnabled();
+        this.enableRangeReads = conf.isRangeReadEnabled();
+        this.rangeReadMaxEntries = conf.getRangeReadMaxEntries();
+        if (conf.getRangeReadMaxBytes() > 0) {
+            this.rangeReadMaxBytes = conf.getRangeReadMaxBytes();
+        } else {
+            // leave room in the frame for the response header, the bookie also counts the per-entry framing
+            this.rangeReadMaxBytes = conf.getNettyMaxFrameSizeBytes() - 1024;
+        }
+        this.maxFrameSizeBytes = conf.getNettyMaxFrameSizeBytes();
+        this.readEntrySizeBytes = Math.min(conf.getClientMemoryReadEntrySizeBytes(), maxFrameSizeBytes);
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
+        this.enableLatencyAwareReads = conf.isLatencyAwareReadsEnabled();
+        this.latencyAwareReadsQuantile = conf.getLatencyAwareReadsQuantile();
+        this.latencyAwareReadsReorderThreshold = conf.getLatencyAwareReadsReorderThreshold();
 
-        if (conf.getFirstSpeculativeReadTimeout() > 0) {
+        if (conf.getFirstSpeculativeReadTimeout() > 0 && enableLatencyAwareReads) {
+            this.readSpeculativeRequestPolicy =
+                    Optional.of(new LatencyAwareSpeculativeRequestExecutionPolicy(
+                                        conf.getFirstSpeculativeReadTimeout(),
+                                        conf.getMaxSpeculativeReadTimeout(),
+                                        conf.getSpeculativeReadTimeoutBackoffMultiplier()));
+        } else if (conf.getFirstSpeculativeReadTimeout() > 0) {
             this.readSpeculativeRequestPolicy =
                     Optional.of(new DefaultSpeculativeRequestExecutionPolicy(
                                         conf.getFirstSpeculativeReadTimeout(),
@@ -0,0 +1,316 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_MEMORY_ADD_BYTES;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_MEMORY_LEDGERS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_MEMORY_MAX_LEDGER_BYTES;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_MEMORY_READ_BYTES;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_MEMORY_USED_BYTES;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A budget of the direct memory held by the client for the entries of its ledgers, shared by
+ * the pending adds and the responses of the pending reads.
+ *
+ * <p>The budget is shared fairly between the ledgers holding memory: once it is exhausted, a
+ * ledger can only reserve more memory while it holds less than its share of the limit, so that
+ * a single ledger reading or writing a lot can't starve the others. A request larger than the
+ * whole limit can only be reserved once no memory is held at all, like
+ * {@link org.apache.bookkeeper.common.util.MemoryLimitController} lets one request go over the limit.
+ *
+ * <p>The adds wait for their memory before being sent. The size of the read responses is only
+ * known once they are received, so the reads wait for an estimate of it before being sent, and
+ * the difference with the actual size is settled as the responses are received. The memory of a
+ * read is released once its entries have been handed to the application.
+ *
+ * <p>The operations don't block while they wait: they are resumed in the order they started
+ * waiting once enough memory has been released, or sent over the limit once the configured wait
+ * time has elapsed.
+ */
+public class ClientMemoryLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClientMemoryLimiter.class);
+
+    private final long limitBytes;
+    private final long maxWaitNanos;
+    private final OpStatsLogger waitStats;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong usedBytes = new AtomicLong(0);
+    private final AtomicLong addBytes = new AtomicLong(0);
+    private final AtomicLong readBytes = new AtomicLong(0);
+    private final ConcurrentLongLongHashMap ledgerBytes = ConcurrentLongLongHashMap.newBuilder().build();
+
+    // Guarded by itself, in the order the operations started waiting
+    private final Set<MemoryWaiter> waiters = new LinkedHashSet<>();
+    private final AtomicInteger numWaiters = new AtomicInteger(0);
+
+    private static class MemoryWaiter {
+        final long ledgerId;
+        final long bytes;
+        final long startNanos;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        ScheduledFuture<?> timeout;
+
+        MemoryWaiter(long ledgerId, long bytes, long startNanos) {
+            this.ledgerId = ledgerId;
+            this.bytes = bytes;
+            this.startNanos = startNanos;
+        }
+    }
+
+    ClientMemoryLimiter(long limitBytes, long maxWaitMs, ScheduledExecutorService scheduler,
+                        BookKeeperClientStats clientStats) {
+        this.limitBytes = limitBytes;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.waitStats = clientStats.getClientMemoryWaitLogger();
+        this.scheduler = scheduler;
+
+        clientStats.registerClientMemoryGauge(CLIENT_MEMORY_USED_BYTES, newGauge(usedBytes::get));
+        clientStats.registerClientMemoryGauge(CLIENT_MEMORY_ADD_BYTES, newGauge(addBytes::get));
+        clientStats.registerClientMemoryGauge(CLIENT_MEMORY_READ_BYTES, newGauge(readBytes::get));
+        clientStats.registerClientMemoryGauge(CLIENT_MEMORY_LEDGERS, newGauge(ledgerBytes::size));
+        clientStats.registerClientMemoryGauge(CLIENT_MEMORY_MAX_LEDGER_BYTES, newGauge(this::getMaxLedgerBytes));
+    }
+
+    private static Gauge<Long> newGauge(LongSupplier supplier) {
+        return new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return supplier.getAsLong();
+            }
+        };
+    }
+
+    /**
+     * Reserve memory for an add, if the ledger can hold it.
+     *
+     * <p>The memory is reserved anyway once the add has waited for the configured wait time, so
+     * that an application adding from the threads completing its adds can't deadlock.
+     *
+     * @param ledgerId the ledger adding the entry
+     * @param bytes the size of the entry
+     * @param waitStartNanos when the add started waiting for memory
+     * @return true if the memory was reserved, otherwise the add has to wait with
+     *         {@link #awaitMemory(long, long, long)} and try again
+     */
+    boolean tryReserveAddMemory(long ledgerId, long bytes, long waitStartNanos) {
+        if (!canReserve(ledgerId, bytes)) {
+            if (MathUtils.elapsedNanos(waitStartNanos) < maxWaitNanos) {
+                return false;
+            }
+            LOG.warn("Ledger {} exceeds the client memory limit : {} bytes used, {} held by the ledger",
+                    ledgerId, usedBytes.get(), getLedgerBytes(ledgerId));
+        }
+        reserve(ledgerId, bytes);
+        addBytes.addAndGet(bytes);
+        return true;
+    }
+
+    void releaseAddMemory(long ledgerId, long bytes) {
+        addBytes.addAndGet(-bytes);
+        release(ledgerId, bytes);
+    }
+
+    /**
+     * Wait until a ledger can reserve the estimated memory of the responses of reads, before
+     * sending them.
+     *
+     * @param ledgerId the ledger reading entries
+     * @param estimatedBytes the estimated size of the responses
+     * @return a future completed once the reads can be sent
+     */
+    CompletableFuture<Void> awaitReadMemory(long ledgerId, long estimatedBytes) {
+        return awaitMemory(ledgerId, estimatedBytes, MathUtils.nowInNano());
+    }
+
+    /**
+     * Wait until a ledger can reserve memory, without blocking.
+     *
+     * @param ledgerId the ledger waiting for memory
+     * @param bytes the memory to reserve
+     * @param waitStartNanos when the operation started waiting for memory
+     * @return a future completed once the ledger can reserve the memory, or once the operation
+     *         has waited for the configured wait time
+     */
+    CompletableFuture<Void> awaitMemory(long ledgerId, long bytes, long waitStartNanos) {
+        long remainingNanos = maxWaitNanos - MathUtils.elapsedNanos(waitStartNanos);
+        if (remainingNanos <= 0 || canReserve(ledgerId, bytes)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        MemoryWaiter waiter = new MemoryWaiter(ledgerId, bytes, waitStartNanos);
+        synchronized (waiters) {
+            waiters.add(waiter);
+            numWaiters.incrementAndGet();
+        }
+        // the memory may have been released before the waiter was added
+        if (canReserve(ledgerId, bytes)) {
+            complete(waiter, true);
+            return waiter.future;
+        }
+        try {
+            waiter.timeout = scheduler.schedule(() -> complete(waiter, false), remainingNanos, TimeUnit.NANOSECONDS);
+            if (waiter.future.isDone()) {
+                waiter.timeout.cancel(false);
+            }
+        } catch (RejectedExecutionException e) {
+            // the client is closing, let the operation go
+            complete(waiter, false);
+        }
+        return waiter.future;
+    }
+
+    private void complete(MemoryWaiter waiter, boolean available) {
+        synchronized (waiters) {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            numWaiters.decrementAndGet();
+        }
+        if (waiter.timeout != null) {
+            waiter.timeout.cancel(false);
+        }
+        long elapsedNanos = MathUtils.elapsedNanos(waiter.startNanos);
+        if (available) {
+            waitStats.registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+        } else {
+            waitStats.registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        waiter.future.complete(null);
+    }
+
+    /**
+     * Account the estimated memory of the responses of reads, before sending them.
+     */
+    void reserveReadMemory(long ledgerId, long bytes) {
+        reserve(ledgerId, bytes);
+        readBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Settle the difference between the estimated size of a read response and its actual size,
+     * once it has been received.
+     */
+    void settleReadMemory(long ledgerId, long estimatedBytes, long actualBytes) {
+        long bytes = actualBytes - estimatedBytes;
+        if (bytes > 0) {
+            reserveReadMemory(ledgerId, bytes);
+        } else if (bytes < 0) {
+            releaseReadMemory(ledgerId, -bytes);
+        }
+    }
+
+    void releaseReadMemory(long ledgerId, long bytes) {
+        readBytes.addAndGet(-bytes);
+        release(ledgerId, bytes);
+    }
+
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    long getLedgerBytes(long ledgerId) {
+        long bytes = ledgerBytes.get(ledgerId);
+        return bytes < 0 ? 0 : bytes;
+    }
+
+    private long getMaxLedgerBytes() {
+        long max = 0;
+        for (long bytes : ledgerBytes.values()) {
+            max = Math.max(max, bytes);
+        }
+        return max;
+    }
+
+    private boolean canReserve(long ledgerId, long bytes) {
+        return canReserve(ledgerId, bytes, 0);
+    }
+
+    /**
+     * Check whether a ledger can reserve memory, once the memory granted to the operations which
+     * have been resumed but haven't reserved theirs yet is reserved too.
+     */
+    private boolean canReserve(long ledgerId, long bytes, long grantedBytes) {
+        long used = usedBytes.get() + grantedBytes;
+        if (used + bytes <= limitBytes || used <= 0) {
+            return true;
+        }
+        long held = getLedgerBytes(ledgerId);
+        // a ledger which holds no memory yet gets a share too
+        long numLedgers = ledgerBytes.size() + (held == 0 ? 1 : 0);
+        long fairShare = limitBytes / Math.max(1L, numLedgers);
+        return held + bytes <= fairShare;
+    }
+
+    private void reserve(long ledgerId, long bytes) {
+        usedBytes.addAndGet(bytes);
+        ledgerBytes.addAndGet(ledgerId, bytes);
+    }
+
+    private void release(long ledgerId, long bytes) {
+        usedBytes.addAndGet(-bytes);
+        if (ledgerBytes.addAndGet(ledgerId, -bytes) == 0) {
+            // the ledger no longer holds memory, it doesn't count in the shares anymore
+            ledgerBytes.remove(ledgerId, 0);
+        }
+        if (numWaiters.get() > 0) {
+            List<MemoryWaiter> available = new ArrayList<>();
+            synchronized (waiters) {
+                long grantedBytes = 0;
+                for (MemoryWaiter waiter : waiters) {
+                    // first come, first served: the next ones wait for the first one to fit
+                    if (!canReserve(waiter.ledgerId, waiter.bytes, grantedBytes)) {
+                        break;
+                    }
+                    available.add(waiter);
+                    grantedBytes += waiter.bytes;
+                }
+            }
+            for (MemoryWaiter waiter : available) {
+                complete(waiter, true);
+            }
+        }
+    }
+}
@@ -71,7 +71,28 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
     @Override
     public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
             final SpeculativeRequestExecutor requestExecutor) {
-        return scheduleSpeculativeRead(scheduler, requestExecutor, firstSpeculativeRequestTimeout);
+        return scheduleSpeculativeRead(scheduler, requestExecutor, getFirstSpeculativeRequestTimeout(requestExecutor));
+    }
+
+    /**
+     * Get the time to wait before issuing the first speculative request.
+     *
+     * @param requestExecutor the executor issuing the requests
+     * @return the timeout in milliseconds
+     */
+    int getFirstSpeculativeRequestTimeout(SpeculativeRequestExecutor requestExecutor) {
+        return firstSpeculativeRequestTimeout;
+    }
+
+    /**
+     * Get the time to wait before issuing the next speculative request.
+     *
+     * @param requestExecutor the executor issuing the requests
+     * @param speculativeRequestTimeout the time waited before issuing the last speculative request
+     * @return the timeout in milliseconds
+     */
+    int getNextSpeculativeRequestTimeout(SpeculativeRequestExecutor requestExecutor, int speculativeRequestTimeout) {
+        return Math.min(maxSpeculativeRequestTimeout, Math.round((float) speculativeRequestTimeout * backoffMultiplier));
     }
 
     private ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
@@ -88,8 +109,7 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
                         public void onSuccess(Boolean issueNextRequest) {
                             if (issueNextRequest) {
                                 scheduleSpeculativeRead(scheduler, requestExecutor,
-                                        Math.min(maxSpeculativeRequestTimeout,
-                                        Math.round((float) speculativeRequestTimeout * backoffMultiplier)));
+                                        getNextSpeculativeRequestTimeout(requestExecutor, speculativeRequestTimeout));
                             } else {
                                 if (LOG.isTraceEnabled()) {
                                     LOG.trace("Stopped issuing speculative requests for {}, "
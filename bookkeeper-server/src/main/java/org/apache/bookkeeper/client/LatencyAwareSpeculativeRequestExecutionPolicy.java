@@ -0,0 +1,63 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SpeculativeRequestExecutionPolicy} waiting for the latency observed on the bookie
+ * the last request was sent to.
+ *
+ * <p>A speculative request is issued once the request has been outstanding for longer than
+ * the latency quantile of its bookie, bounded by {@code maxSpeculativeRequestTimeout}, so
+ * that a bookie stalled by a GC pause or a slow disk is worked around as soon as it is late
+ * rather than after a fixed timeout. When the latency of the bookie is unknown, the policy
+ * falls back to the backoff of {@link DefaultSpeculativeRequestExecutionPolicy}.
+ */
+public class LatencyAwareSpeculativeRequestExecutionPolicy extends DefaultSpeculativeRequestExecutionPolicy {
+
+    public LatencyAwareSpeculativeRequestExecutionPolicy(int firstSpeculativeRequestTimeout,
+            int maxSpeculativeRequestTimeout, float backoffMultiplier) {
+        super(firstSpeculativeRequestTimeout, maxSpeculativeRequestTimeout, backoffMultiplier);
+    }
+
+    @Override
+    int getFirstSpeculativeRequestTimeout(SpeculativeRequestExecutor requestExecutor) {
+        int timeout = getExpectedLatencyTimeout(requestExecutor);
+        return timeout > 0 ? timeout : super.getFirstSpeculativeRequestTimeout(requestExecutor);
+    }
+
+    @Override
+    int getNextSpeculativeRequestTimeout(SpeculativeRequestExecutor requestExecutor, int speculativeRequestTimeout) {
+        int timeout = getExpectedLatencyTimeout(requestExecutor);
+        return timeout > 0 ? timeout : super.getNextSpeculativeRequestTimeout(requestExecutor, speculativeRequestTimeout);
+    }
+
+    private int getExpectedLatencyTimeout(SpeculativeRequestExecutor requestExecutor) {
+        long latencyNanos = requestExecutor.getExpectedLatencyNanos();
+        if (latencyNanos < 0) {
+            return -1;
+        }
+        // the requests are scheduled with a millisecond resolution
+        long timeout = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(latencyNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+        return (int) Math.min(maxSpeculativeRequestTimeout, timeout);
+    }
+}
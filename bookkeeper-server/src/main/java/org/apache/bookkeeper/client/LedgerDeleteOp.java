@@ -83,6 +83,14 @@ class LedgerDeleteOp {
                         deleteOpLogger.registerFailedEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
                     } else {
                         deleteOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                        ClientEntryCache entryCache = bk.getClientCtx().getEntryCache();
+                        if (entryCache != null) {
+                            entryCache.invalidate(ledgerId);
+                        }
+                        LedgerMetadataCache metadataCache = bk.getClientCtx().getLedgerMetadataCache();
+                        if (metadataCache != null) {
+                            metadataCache.invalidate(ledgerId);
+                        }
                     }
                     cb.deleteComplete(BKException.getExceptionCode(exception), this.ctx);
                 }, bk.getMainWorkerPool().chooseThread(ledgerId));
@@ -35,6 +35,7 @@ import com.google.common.util.concurrent.RateLimiter;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
@@ -137,6 +138,8 @@ public class LedgerHandle implements WriteHandle {
     private int stickyBookieIndex;
 
     long length;
+    // The size of the last entry read from the bookies, to estimate the memory of the next reads
+    volatile long lastReadEntrySize = -1;
     final DigestManager macManager;
     final DistributionSchedule distributionSchedule;
     final RateLimiter throttler;
@@ -166,6 +169,8 @@ public class LedgerHandle implements WriteHandle {
     boolean changingEnsemble = false;
     final AtomicInteger numEnsembleChanges = new AtomicInteger(0);
     Queue<PendingAddOp> pendingAddOps;
+    // the adds waiting for the client memory, in order, guarded by this
+    final ArrayDeque<PendingAddOp> memoryWaitingAdds = new ArrayDeque<>();
     ExplicitLacFlushPolicy explicitLacFlushPolicy;
 
     final Counter ensembleChangeCounter;
@@ -239,6 +244,12 @@ public class LedgerHandle implements WriteHandle {
             public long getBookiePendingRequests(BookieId bookieSocketAddress) {
                 return clientCtx.getBookieClient().getNumPendingRequests(bookieSocketAddress, ledgerId);
             }
+
+            @Override
+            public long getBookieReadLatencyNanos(BookieId bookieSocketAddress) {
+                BookieLatencyTracker latencyTracker = clientCtx.getBookieLatencyTracker();
+                return latencyTracker == null ? -1L : latencyTracker.getLatencyQuantileNanos(bookieSocketAddress);
+            }
         };
 
         ensembleChangeCounter = clientCtx.getClientStats().getEnsembleChangeCounter();
@@ -613,6 +624,10 @@ public class LedgerHandle implements WriteHandle {
                                 if (ex != null) {
                                     closePromise.completeExceptionally(ex);
                                 } else {
+                                    LedgerMetadataCache metadataCache = clientCtx.getLedgerMetadataCache();
+                                    if (metadataCache != null) {
+                                        metadataCache.put(getId(), metadata);
+                                    }
                                     FutureUtils.complete(closePromise, null);
                                 }
                         });
@@ -863,6 +878,65 @@ public class LedgerHandle implements WriteHandle {
     CompletableFuture<LedgerEntries> readEntriesInternalAsync(long firstEntry,
                                                               long lastEntry,
                                                               boolean isRecoveryRead) {
+        ClientEntryCache entryCache = clientCtx.getEntryCache();
+        if (entryCache != null && !isRecoveryRead && lastEntry <= getLastAddConfirmed()
+                && !clientCtx.isClientClosed()) {
+            // the entries up to the LAC can't change, they can be shared with the other readers
+            return entryCache.read(this, firstEntry, lastEntry);
+        }
+        return readEntriesFromBookiesAsync(firstEntry, lastEntry, isRecoveryRead);
+    }
+
+    /**
+     * Estimate the size of the responses of the reads of the ledger, to reserve their memory
+     * before sending them: the size of the last entry read, or else the average size of the
+     * confirmed entries, or else a typical entry size. The estimate is corrected as the responses
+     * are received, so it must not be the largest entry the client can receive, which would make
+     * a batch read reserve much more than the memory limit.
+     */
+    long estimateReadEntrySize() {
+        long size = lastReadEntrySize;
+        if (size > 0) {
+            return size;
+        }
+        long lac = getLastAddConfirmed();
+        long ledgerLength = getLength();
+        if (lac >= 0 && ledgerLength > 0) {
+            return ledgerLength / (lac + 1) + DigestManager.METADATA_LENGTH;
+        }
+        return clientCtx.getConf().readEntrySizeBytes;
+    }
+
+    CompletableFuture<LedgerEntries> readEntriesFromBookiesAsync(long firstEntry,
+                                                                 long lastEntry,
+                                                                 boolean isRecoveryRead) {
+        ClientMemoryLimiter memoryLimiter = clientCtx.getMemoryLimiter();
+        if (memoryLimiter != null && !isRecoveryRead) {
+            long estimatedBytes = (lastEntry - firstEntry + 1) * estimateReadEntrySize();
+            CompletableFuture<Void> memoryAvailable = memoryLimiter.awaitReadMemory(ledgerId, estimatedBytes);
+            if (!memoryAvailable.isDone()) {
+                // wait for the client memory without blocking the caller
+                CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+                memoryAvailable.thenRun(() -> {
+                    try {
+                        clientCtx.getMainWorkerPool().executeOrdered(ledgerId, SafeRunnable.safeRun(() ->
+                                FutureUtils.proxyTo(submitReadEntries(firstEntry, lastEntry, false), future)));
+                    } catch (RejectedExecutionException e) {
+                        future.completeExceptionally(BKException.create(ClientClosedException));
+                    }
+                });
+                return future;
+            }
+        }
+        return submitReadEntries(firstEntry, lastEntry, isRecoveryRead);
+    }
+
+    private CompletableFuture<LedgerEntries> submitReadEntries(long firstEntry,
+                                                               long lastEntry,
+                                                               boolean isRecoveryRead) {
+        if (!isRecoveryRead && RangeReadOp.canRangeRead(this, clientCtx, firstEntry, lastEntry)) {
+            return rangeReadEntriesAsync(firstEntry, lastEntry);
+        }
         PendingReadOp op = new PendingReadOp(this, clientCtx,
                                              firstEntry, lastEntry, isRecoveryRead);
         if (!clientCtx.isClientClosed()) {
@@ -901,6 +975,18 @@ public class LedgerHandle implements WriteHandle {
         return op.future();
     }
 
+    private CompletableFuture<LedgerEntries> rangeReadEntriesAsync(long firstEntry, long lastEntry) {
+        RangeReadOp op = new RangeReadOp(this, clientCtx, firstEntry, lastEntry);
+        if (clientCtx.isClientClosed()) {
+            op.future().completeExceptionally(BKException.create(ClientClosedException));
+        } else if (isHandleWritable()) {
+            clientCtx.getMainWorkerPool().executeOrdered(ledgerId, op);
+        } else {
+            op.run();
+        }
+        return op.future();
+    }
+
     /**
      * Add entry synchronously to an open ledger.
      *
@@ -1302,45 +1388,69 @@ public class LedgerHandle implements WriteHandle {
         }
 
         boolean wasClosed = false;
+        boolean waitingForMemory = false;
+        boolean firstWaitingForMemory = false;
         synchronized (this) {
             // synchronized on this to ensure that
             // the ledger isn't closed between checking and
             // updating lastAddPushed
-            if (isHandleWritable()) {
-                long entryId = ++lastAddPushed;
-                long currentLedgerLength = addToLength(op.payload.readableBytes());
-                op.setEntryId(entryId);
-                op.setLedgerLength(currentLedgerLength);
-                pendingAddOps.add(op);
-            } else {
+            if (!isHandleWritable()) {
                 wasClosed = true;
+            } else if (!memoryWaitingAdds.isEmpty() || !op.tryReserveMemory()) {
+                // wait for the client memory without blocking, behind the adds already waiting for it
+                memoryWaitingAdds.add(op);
+                waitingForMemory = true;
+                firstWaitingForMemory = memoryWaitingAdds.size() == 1;
+            } else {
+                pushAdd(op);
             }
         }
 
         if (wasClosed) {
-            // make sure the callback is triggered in main worker pool
-            try {
-                clientCtx.getMainWorkerPool().executeOrdered(ledgerId, new SafeRunnable() {
-                    @Override
-                    public void safeRun() {
-                        LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
-                        op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
-                                LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
-                    }
+            failAddToClosedLedger(op);
+        } else if (firstWaitingForMemory) {
+            awaitMemoryForAdds();
+        } else if (!waitingForMemory) {
+            sendAdd(op);
+        }
+    }
 
-                    @Override
-                    public String toString() {
-                        return String.format("AsyncAddEntryToClosedLedger(lid=%d)", ledgerId);
-                    }
-                });
-            } catch (RejectedExecutionException e) {
-                op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
-                                                                    BKException.Code.InterruptedException),
-                        LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
-            }
-            return;
+    /**
+     * Assign the entry id of an add and add it to the pending adds. Called under the lock of the handle.
+     */
+    void pushAdd(PendingAddOp op) {
+        long entryId = ++lastAddPushed;
+        long currentLedgerLength = addToLength(op.payload.readableBytes());
+        op.setEntryId(entryId);
+        op.setLedgerLength(currentLedgerLength);
+        pendingAddOps.add(op);
+    }
+
+    void failAddToClosedLedger(final PendingAddOp op) {
+        op.releaseMemory();
+        // make sure the callback is triggered in main worker pool
+        try {
+            clientCtx.getMainWorkerPool().executeOrdered(ledgerId, new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
+                    op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
+                            LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                }
+
+                @Override
+                public String toString() {
+                    return String.format("AsyncAddEntryToClosedLedger(lid=%d)", ledgerId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
+                                                                BKException.Code.InterruptedException),
+                    LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
         }
+    }
 
+    void sendAdd(PendingAddOp op) {
         DistributionSchedule.WriteSet ws = distributionSchedule.getWriteSet(op.getEntryId());
         try {
             if (!waitForWritable(ws, 0, clientCtx.getConf().waitForWriteSetMs)) {
@@ -1353,12 +1463,57 @@ public class LedgerHandle implements WriteHandle {
         try {
             clientCtx.getMainWorkerPool().executeOrdered(ledgerId, op);
         } catch (RejectedExecutionException e) {
+            op.releaseMemory();
             op.cb.addCompleteWithLatency(
                     BookKeeper.getReturnRc(clientCtx.getBookieClient(), BKException.Code.InterruptedException),
                     LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
         }
     }
 
+    /**
+     * Resume the adds waiting for the client memory once the first of them can reserve it.
+     */
+    private void awaitMemoryForAdds() {
+        PendingAddOp first;
+        synchronized (this) {
+            first = memoryWaitingAdds.peek();
+        }
+        first.awaitMemory().thenRun(() -> {
+            try {
+                clientCtx.getMainWorkerPool().executeOrdered(ledgerId,
+                        SafeRunnable.safeRun(this::resumeMemoryWaitingAdds));
+            } catch (RejectedExecutionException e) {
+                // the client is closing, fail the adds from here
+                resumeMemoryWaitingAdds();
+            }
+        });
+    }
+
+    private void resumeMemoryWaitingAdds() {
+        List<PendingAddOp> pushed = new ArrayList<>();
+        List<PendingAddOp> closed = new ArrayList<>();
+        boolean stillWaiting;
+        synchronized (this) {
+            PendingAddOp op;
+            while ((op = memoryWaitingAdds.peek()) != null) {
+                if (!isHandleWritable()) {
+                    closed.add(memoryWaitingAdds.poll());
+                } else if (op.tryReserveMemory()) {
+                    pushAdd(memoryWaitingAdds.poll());
+                    pushed.add(op);
+                } else {
+                    break;
+                }
+            }
+            stillWaiting = !memoryWaitingAdds.isEmpty();
+        }
+        closed.forEach(this::failAddToClosedLedger);
+        pushed.forEach(this::sendAdd);
+        if (stillWaiting) {
+            awaitMemoryForAdds();
+        }
+    }
+
     synchronized void updateLastConfirmed(long lac, long len) {
         if (lac > lastAddConfirmed) {
             lastAddConfirmed = lac;
@@ -1572,6 +1727,10 @@ public class LedgerHandle implements WriteHandle {
             public void readLastConfirmedAndEntryComplete(int rc, long lastAddConfirmed, LedgerEntry entry) {
                 if (rc == BKException.Code.OK) {
                     if (completed.compareAndSet(false, true)) {
+                        ClientEntryCache entryCache = clientCtx.getEntryCache();
+                        if (entryCache != null && entry != null && entry.getEntryId() <= lastAddConfirmed) {
+                            entryCache.put(ledgerId, entry.getEntryId(), entry.getLength(), entry.getEntryBuffer());
+                        }
                         cb.readLastConfirmedAndEntryComplete(rc, lastAddConfirmed, entry, ctx);
                     }
                 } else {
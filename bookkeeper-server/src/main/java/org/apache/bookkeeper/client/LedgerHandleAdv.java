@@ -221,48 +221,38 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
      * unaltered in the base class.
      */
     @Override
-    protected void doAsyncAddEntry(final PendingAddOp op) {
-        if (throttler != null) {
-            throttler.acquire();
-        }
-
-        boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
-            if (isHandleWritable()) {
-                long currentLength = addToLength(op.payload.readableBytes());
-                op.setLedgerLength(currentLength);
-                pendingAddOps.add(op);
-            } else {
-                wasClosed = true;
-            }
-        }
+    void pushAdd(PendingAddOp op) {
+        long currentLength = addToLength(op.payload.readableBytes());
+        op.setLedgerLength(currentLength);
+        pendingAddOps.add(op);
+    }
 
-        if (wasClosed) {
-            // make sure the callback is triggered in main worker pool
-            try {
-                clientCtx.getMainWorkerPool().submit(new SafeRunnable() {
-                    @Override
-                    public void safeRun() {
-                        LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
-                        op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
-                                LedgerHandleAdv.this, op.getEntryId(), 0, op.ctx);
-                    }
-                    @Override
-                    public String toString() {
-                        return String.format("AsyncAddEntryToClosedLedger(lid=%d)", ledgerId);
-                    }
-                });
-            } catch (RejectedExecutionException e) {
-                op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
-                                                                    BKException.Code.InterruptedException),
-                        LedgerHandleAdv.this, op.getEntryId(), 0, op.ctx);
-            }
-            return;
+    @Override
+    void failAddToClosedLedger(final PendingAddOp op) {
+        op.releaseMemory();
+        // make sure the callback is triggered in main worker pool
+        try {
+            clientCtx.getMainWorkerPool().submit(new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
+                    op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
+                            LedgerHandleAdv.this, op.getEntryId(), 0, op.ctx);
+                }
+                @Override
+                public String toString() {
+                    return String.format("AsyncAddEntryToClosedLedger(lid=%d)", ledgerId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
+                                                                BKException.Code.InterruptedException),
+                    LedgerHandleAdv.this, op.getEntryId(), 0, op.ctx);
         }
+    }
 
+    @Override
+    void sendAdd(PendingAddOp op) {
         if (!waitForWritable(distributionSchedule.getWriteSet(op.getEntryId()),
                     0, clientCtx.getConf().waitForWriteSetMs)) {
             op.allowFailFastOnUnwritableChannel();
@@ -271,6 +261,7 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
         try {
             clientCtx.getMainWorkerPool().executeOrdered(ledgerId, op);
         } catch (RejectedExecutionException e) {
+            op.releaseMemory();
             op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
                                                                 BKException.Code.InterruptedException),
                               LedgerHandleAdv.this, op.getEntryId(), 0, op.ctx);
@@ -0,0 +1,164 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+
+/**
+ * A cache of the metadata of the closed ledgers, so that opening the same ledgers again doesn't
+ * read their metadata from the metadata store each time.
+ *
+ * <p>Only closed ledgers are cached: their last entry can't change anymore, so the cached
+ * metadata is kept until it's evicted. Their ensembles can still be changed, e.g. when their
+ * entries are re-replicated, so the cache watches the ledgers it holds through
+ * {@link LedgerManager#registerLedgerMetadataListener(long, LedgerMetadataListener)}, replaces
+ * their metadata by the newer versions and drops the ledgers which are deleted. The ledgers are
+ * evicted in insertion order once the cache is full.
+ */
+public class LedgerMetadataCache implements LedgerMetadataListener {
+
+    private final LedgerManager ledgerManager;
+    private final int maxEntries;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    private final ConcurrentMap<Long, Versioned<LedgerMetadata>> cache = new ConcurrentHashMap<>();
+    // the ids of the cached ledgers in insertion order.
+    // guarded by 'this', like the registration of the listeners.
+    private final Set<Long> insertionOrder = new LinkedHashSet<>();
+
+    LedgerMetadataCache(LedgerManager ledgerManager, int maxEntries, BookKeeperClientStats clientStats) {
+        this.ledgerManager = ledgerManager;
+        this.maxEntries = maxEntries;
+        this.hitCounter = clientStats.getLedgerMetadataCacheHitCounter();
+        this.missCounter = clientStats.getLedgerMetadataCacheMissCounter();
+    }
+
+    /**
+     * Read the metadata of a ledger, from the cache if the ledger is closed and cached, from the
+     * metadata store otherwise.
+     */
+    CompletableFuture<Versioned<LedgerMetadata>> read(long ledgerId) {
+        Versioned<LedgerMetadata> metadata = cache.get(ledgerId);
+        if (metadata != null) {
+            hitCounter.inc();
+            return CompletableFuture.completedFuture(metadata);
+        }
+        missCounter.inc();
+        return ledgerManager.readLedgerMetadata(ledgerId).thenApply(readMetadata -> {
+            put(ledgerId, readMetadata);
+            return readMetadata;
+        });
+    }
+
+    Versioned<LedgerMetadata> get(long ledgerId) {
+        return cache.get(ledgerId);
+    }
+
+    /**
+     * Cache the metadata of a ledger, if it's closed. The cached metadata is only replaced by a
+     * newer version.
+     */
+    void put(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        if (!metadata.getValue().isClosed()) {
+            return;
+        }
+        if (null == cache.putIfAbsent(ledgerId, metadata)) {
+            synchronized (this) {
+                if (!cache.containsKey(ledgerId)) {
+                    // already invalidated by another thread
+                    return;
+                }
+                insertionOrder.add(ledgerId);
+                ledgerManager.registerLedgerMetadataListener(ledgerId, this);
+                Iterator<Long> oldest = insertionOrder.iterator();
+                while (insertionOrder.size() > maxEntries) {
+                    Long evictedId = oldest.next();
+                    oldest.remove();
+                    cache.remove(evictedId);
+                    ledgerManager.unregisterLedgerMetadataListener(evictedId, this);
+                }
+            }
+        } else {
+            update(ledgerId, metadata);
+        }
+    }
+
+    private void update(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        cache.computeIfPresent(ledgerId, (id, current) ->
+                Version.Occurred.BEFORE == current.getVersion().compare(metadata.getVersion()) ? metadata : current);
+    }
+
+    /**
+     * Remove a ledger from the cache, e.g. when it's deleted.
+     */
+    void invalidate(long ledgerId) {
+        synchronized (this) {
+            if (null != cache.remove(ledgerId)) {
+                insertionOrder.remove(ledgerId);
+                ledgerManager.unregisterLedgerMetadataListener(ledgerId, this);
+            }
+        }
+    }
+
+    /**
+     * Remove all the ledgers and stop watching them.
+     */
+    void clear() {
+        synchronized (this) {
+            for (Long ledgerId : cache.keySet()) {
+                invalidate(ledgerId);
+            }
+            insertionOrder.clear();
+        }
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    @VisibleForTesting
+    synchronized int insertionOrderSize() {
+        return insertionOrder.size();
+    }
+
+    @Override
+    public void onChanged(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        if (null == metadata || !metadata.getValue().isClosed()) {
+            // the ledger is deleted
+            invalidate(ledgerId);
+        } else {
+            update(ledgerId, metadata);
+        }
+    }
+}
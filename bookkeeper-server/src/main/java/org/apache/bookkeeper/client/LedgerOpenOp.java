@@ -111,7 +111,7 @@ class LedgerOpenOp {
         /**
          * Asynchronously read the ledger metadata node.
          */
-        bk.getLedgerManager().readLedgerMetadata(ledgerId)
+        bk.readLedgerMetadata(ledgerId)
             .whenComplete((metadata, exception) -> {
                     if (exception != null) {
                         openComplete(BKException.getExceptionCode(exception), null);
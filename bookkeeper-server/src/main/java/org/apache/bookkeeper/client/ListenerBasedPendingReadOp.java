@@ -68,6 +68,7 @@ class ListenerBasedPendingReadOp extends PendingReadOp {
         }
         // if all entries are already completed.
         cancelSpeculativeTask(true);
+        releaseResponseMemory();
     }
 
 }
@@ -34,6 +34,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallbackWithLatency;
@@ -82,6 +83,8 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
     boolean hasRun;
     EnumSet<WriteFlag> writeFlags;
     boolean allowFailFast = false;
+    boolean memoryReserved = false;
+    long memoryWaitStartNanos;
     List<BookieId> ensemble;
 
     static PendingAddOp create(LedgerHandle lh, ClientContext clientCtx,
@@ -107,6 +110,8 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         op.hasRun = false;
         op.requestTimeNanos = Long.MAX_VALUE;
         op.allowFailFast = false;
+        op.memoryReserved = false;
+        op.memoryWaitStartNanos = -1;
         op.qwcLatency = 0;
         op.writeFlags = writeFlags;
 
@@ -120,6 +125,43 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         return op;
     }
 
+    /**
+     * Reserve the memory of the payload from the client memory limit, if it is available.
+     *
+     * <p>The recovery adds are sent from the callbacks of the recovery reads, they don't wait.
+     *
+     * @return true if the memory was reserved, otherwise the add has to wait for it with
+     *         {@link #awaitMemory()} and try again
+     */
+    boolean tryReserveMemory() {
+        ClientMemoryLimiter memoryLimiter = clientCtx.getMemoryLimiter();
+        if (memoryLimiter == null || isRecoveryAdd) {
+            return true;
+        }
+        if (memoryWaitStartNanos < 0) {
+            memoryWaitStartNanos = MathUtils.nowInNano();
+        }
+        memoryReserved = memoryLimiter.tryReserveAddMemory(lh.ledgerId, entryLength, memoryWaitStartNanos);
+        return memoryReserved;
+    }
+
+    /**
+     * Wait for the memory of the payload to be available, without blocking.
+     */
+    CompletableFuture<Void> awaitMemory() {
+        return clientCtx.getMemoryLimiter().awaitMemory(lh.ledgerId, entryLength, memoryWaitStartNanos);
+    }
+
+    /**
+     * Release the memory of the payload, once it is no longer held by this operation.
+     */
+    void releaseMemory() {
+        if (memoryReserved) {
+            memoryReserved = false;
+            clientCtx.getMemoryLimiter().releaseAddMemory(lh.ledgerId, entryLength);
+        }
+    }
+
     /**
      * Enable the recovery add flag for this operation.
      * @see LedgerHandle#asyncRecoveryAddEntry
@@ -506,6 +548,7 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
             ReferenceCountUtil.release(payload);
             payload = null;
         }
+        releaseMemory();
         cb = null;
         ctx = null;
         ensemble = null;
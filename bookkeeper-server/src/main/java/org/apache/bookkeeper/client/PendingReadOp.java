@@ -79,6 +79,13 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
     final AtomicBoolean complete = new AtomicBoolean(false);
     boolean allowFailFast = false;
 
+    // The memory of the responses reserved from the client memory limit, null if it isn't limited
+    private final ClientMemoryLimiter memoryLimiter;
+    private long reservedMemory = 0;
+    private boolean memoryReleased = false;
+    // The memory reserved for each entry before sending the reads
+    private long entryMemoryEstimate = 0;
+
     abstract class LedgerEntryRequest implements SpeculativeRequestExecutor, AutoCloseable {
 
         final AtomicBoolean complete = new AtomicBoolean(false);
@@ -106,6 +113,41 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             } else {
                 writeSet = lh.getWriteSetForReadOperation(eId);
             }
+            if (clientCtx.getConf().enableLatencyAwareReads) {
+                moveFastestReplicaFirst();
+            }
+        }
+
+        /**
+         * Read from the fastest replica first, if the first replica of the read sequence is much
+         * slower. The replicas which failed recently, and the ones whose latency is unknown, are
+         * left where the placement policy put them.
+         */
+        private void moveFastestReplicaFirst() {
+            float threshold = clientCtx.getConf().latencyAwareReadsReorderThreshold;
+            BookiesHealthInfo healthInfo = lh.getBookiesHealthInfo();
+            long firstLatency = healthInfo.getBookieReadLatencyNanos(ensemble.get(writeSet.get(0)));
+            if (threshold <= 1 || firstLatency < 0) {
+                return;
+            }
+            int fastestIdx = -1;
+            long fastestLatency = firstLatency;
+            for (int i = 1; i < writeSet.size(); i++) {
+                BookieId bookie = ensemble.get(writeSet.get(i));
+                long latency = healthInfo.getBookieReadLatencyNanos(bookie);
+                if (latency >= 0 && latency < fastestLatency && healthInfo.getBookieFailureHistory(bookie) < 0) {
+                    fastestIdx = i;
+                    fastestLatency = latency;
+                }
+            }
+            if (fastestIdx > 0 && firstLatency >= threshold * fastestLatency) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("read sequence of {} reordered from {} ({} ns) to {} ({} ns)", this,
+                            ensemble.get(writeSet.get(0)), firstLatency,
+                            ensemble.get(writeSet.get(fastestIdx)), fastestLatency);
+                }
+                writeSet.moveAndShift(fastestIdx, 0);
+            }
         }
 
         @Override
@@ -157,6 +199,7 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
                 entryImpl.setLength(buffer.getLong(DigestManager.METADATA_LENGTH - 8));
                 entryImpl.setEntryBuf(content);
                 writeSet.recycle();
+                settleResponseMemory(buffer.readableBytes());
                 return true;
             } else {
                 return false;
@@ -333,6 +376,7 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
 
         final BitSet sentReplicas;
         final BitSet erroredReplicas;
+        volatile BookieId lastSentTo = null;
 
         SequenceReadRequest(List<BookieId> ensemble, long lId, long eId) {
             super(ensemble, lId, eId);
@@ -406,6 +450,7 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
 
             try {
                 BookieId to = ensemble.get(bookieIndex);
+                lastSentTo = to;
                 sendReadTo(bookieIndex, to, this);
                 sentToHosts.add(to);
                 sentReplicas.set(replica);
@@ -441,6 +486,12 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             }
         }
 
+        @Override
+        public long getExpectedLatencyNanos() {
+            BookieId to = lastSentTo;
+            return to == null ? -1L : lh.getBookiesHealthInfo().getBookieReadLatencyNanos(to);
+        }
+
         @Override
         boolean complete(int bookieIndex, BookieId host, ByteBuf buffer) {
             boolean completed = super.complete(bookieIndex, host, buffer);
@@ -470,6 +521,8 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         this.startEntryId = startEntryId;
         this.endEntryId = endEntryId;
         this.isRecoveryRead = isRecoveryRead;
+        // the recovery reads are needed to close the ledger, they aren't limited
+        this.memoryLimiter = isRecoveryRead ? null : clientCtx.getMemoryLimiter();
 
         this.allowFailFast = false;
         numPendingEntries = endEntryId - startEntryId + 1;
@@ -514,6 +567,7 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
     void initiate() {
         long nextEnsembleChange = startEntryId, i = startEntryId;
         this.requestTimeNanos = MathUtils.nowInNano();
+        reserveEstimatedMemory();
         List<BookieId> ensemble = null;
         do {
             if (i == nextEnsembleChange) {
@@ -548,12 +602,14 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         final int bookieIndex;
         final BookieId to;
         final LedgerEntryRequest entry;
+        final long sentTimeNanos;
         long lac = LedgerHandle.INVALID_ENTRY_ID;
 
         ReadContext(int bookieIndex, BookieId to, LedgerEntryRequest entry) {
             this.bookieIndex = bookieIndex;
             this.to = to;
             this.entry = entry;
+            this.sentTimeNanos = MathUtils.nowInNano();
         }
 
         @Override
@@ -596,6 +652,13 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             return;
         }
 
+        // Only the reads served by the bookie tell how fast it is: an error can be answered
+        // right away, or only after the request timed out
+        BookieLatencyTracker latencyTracker = clientCtx.getBookieLatencyTracker();
+        if (latencyTracker != null) {
+            latencyTracker.recordLatency(rctx.to, MathUtils.elapsedNanos(rctx.sentTimeNanos));
+        }
+
         heardFromHosts.add(rctx.to);
         heardFromHostsBitSet.set(rctx.bookieIndex, true);
 
@@ -617,6 +680,35 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         }
     }
 
+    private synchronized void reserveEstimatedMemory() {
+        if (memoryLimiter != null) {
+            entryMemoryEstimate = lh.estimateReadEntrySize();
+            reservedMemory = entryMemoryEstimate * (endEntryId - startEntryId + 1);
+            memoryLimiter.reserveReadMemory(lh.ledgerId, reservedMemory);
+        }
+    }
+
+    private synchronized void settleResponseMemory(long bytes) {
+        // the entries completed after the failure of the read are released with it
+        if (memoryLimiter != null && !memoryReleased) {
+            memoryLimiter.settleReadMemory(lh.ledgerId, entryMemoryEstimate, bytes);
+            reservedMemory += bytes - entryMemoryEstimate;
+            lh.lastReadEntrySize = bytes;
+        }
+    }
+
+    /**
+     * Release the memory of the responses, once the entries have been handed to the application
+     * or released.
+     */
+    protected synchronized void releaseResponseMemory() {
+        if (memoryLimiter != null && !memoryReleased) {
+            memoryReleased = true;
+            memoryLimiter.releaseReadMemory(lh.ledgerId, reservedMemory);
+            reservedMemory = 0;
+        }
+    }
+
     protected void submitCallback(int code) {
         if (BKException.Code.OK == code) {
             numPendingEntries--;
@@ -651,9 +743,11 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             clientCtx.getClientStats().getReadOpLogger().registerFailedEvent(latencyNanos, TimeUnit.NANOSECONDS);
             // release the entries
             seq.forEach(LedgerEntryRequest::close);
+            releaseResponseMemory();
             future.completeExceptionally(BKException.create(code));
         } else {
             clientCtx.getClientStats().getReadOpLogger().registerSuccessfulEvent(latencyNanos, TimeUnit.NANOSECONDS);
+            releaseResponseMemory();
             future.complete(LedgerEntriesImpl.create(Lists.transform(seq, input -> input.entryImpl)));
         }
     }
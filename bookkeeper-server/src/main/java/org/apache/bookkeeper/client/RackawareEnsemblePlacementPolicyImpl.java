@@ -35,6 +35,7 @@ import io.netty.util.HashedWheelTimer;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -43,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -94,6 +96,9 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
 
     static final int RACKNAME_DISTANCE_FROM_LEAVES = 1;
 
+    // number of random samples tried for each bookie to choose, before scanning all the candidates
+    static final int MAX_RANDOM_SAMPLES = 16;
+
     // masks for reordering
     static final int LOCAL_MASK       = 0x01 << 24;
     static final int LOCAL_FAIL_MASK  = 0x02 << 24;
@@ -319,16 +324,12 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         Set<BookieId> comprehensiveExclusionBookiesSet;
         if (enforceMinNumRacksPerWriteQuorum) {
             Set<BookieId> bookiesInDefaultRack = null;
-            Set<Node> defaultRackLeaves = topology.getLeaves(getDefaultRack());
-            for (Node node : defaultRackLeaves) {
-                if (node instanceof BookieNode) {
-                    if (bookiesInDefaultRack == null) {
-                        bookiesInDefaultRack = new HashSet<BookieId>(excludeBookies);
-                    }
-                    bookiesInDefaultRack.add(((BookieNode) node).getAddr());
-                } else {
-                    LOG.error("found non-BookieNode: {} as leaf of defaultrack: {}", node, getDefaultRack());
+            BookieNode[] defaultRackLeaves = bookieIndex.getLeaves(getDefaultRack());
+            for (BookieNode node : defaultRackLeaves) {
+                if (bookiesInDefaultRack == null) {
+                    bookiesInDefaultRack = new HashSet<BookieId>(excludeBookies);
                 }
+                bookiesInDefaultRack.add(node.getAddr());
             }
             if ((bookiesInDefaultRack == null) || bookiesInDefaultRack.isEmpty()) {
                 comprehensiveExclusionBookiesSet = excludeBookies;
@@ -398,7 +399,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
                             parentPredicate,
                             minNumRacksPerWriteQuorumForThisEnsemble);
             BookieNode prevNode = null;
-            int numRacks = topology.getNumOfRacks();
+            int numRacks = bookieIndex.getNumOfLocations();
             // only one rack, use the random algorithm.
             if (numRacks < 2) {
                 if (enforceMinNumRacksPerWriteQuorum && (minNumRacksPerWriteQuorumForThisEnsemble > 1)) {
@@ -560,16 +561,21 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
                                                    Ensemble<BookieNode> ensemble,
                                                    boolean fallbackToRandom)
             throws BKNotEnoughBookiesException {
-
-        List<BookieNode> knownNodes = new ArrayList<>(knownBookies.values());
-        Set<Node> fullExclusionBookiesList = new HashSet<Node>(excludeBookies);
-        for (BookieNode knownNode : knownNodes) {
-            if (excludeRacks.contains(knownNode.getNetworkLocation())) {
-                fullExclusionBookiesList.add(knownNode);
-            }
-        }
-
         try {
+            if (!isWeighted) {
+                // sample the whole cluster rather than excluding the bookies of the racks upfront
+                return selectRandomFromNodes(bookieIndex.getAll(), 1, excludeBookies,
+                        (candidate, chosenBookies) -> !excludeRacks.contains(candidate.getNetworkLocation())
+                                && (!enforceDurability || predicate.apply(candidate, chosenBookies)),
+                        ensemble, false).get(0);
+            }
+            List<BookieNode> knownNodes = new ArrayList<>(knownBookies.values());
+            Set<Node> fullExclusionBookiesList = new HashSet<Node>(excludeBookies);
+            for (BookieNode knownNode : knownNodes) {
+                if (excludeRacks.contains(knownNode.getNetworkLocation())) {
+                    fullExclusionBookiesList.add(knownNode);
+                }
+            }
             return selectRandomInternal(knownNodes, 1, fullExclusionBookiesList, predicate, ensemble).get(0);
         } catch (BKNotEnoughBookiesException e) {
             if (!fallbackToRandom) {
@@ -628,38 +634,37 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
      */
     protected BookieNode selectRandomFromRack(String netPath, Set<Node> excludeBookies, Predicate<BookieNode> predicate,
             Ensemble<BookieNode> ensemble) throws BKNotEnoughBookiesException {
-        WeightedRandomSelection<BookieNode> wRSelection = null;
-        List<Node> leaves = new ArrayList<Node>(topology.getLeaves(netPath));
         if (!this.isWeighted) {
-            Collections.shuffle(leaves);
-        } else {
-            if (CollectionUtils.subtract(leaves, excludeBookies).size() < 1) {
-                throw new BKNotEnoughBookiesException();
-            }
-            wRSelection = prepareForWeightedSelection(leaves);
-            if (wRSelection == null) {
-                throw new BKNotEnoughBookiesException();
+            BookieNodeIndex index = bookieIndex;
+            if (BookieNodeIndex.isExclusionScope(netPath)) {
+                // sample the whole cluster rather than copying the bookies outside of the excluded scopes
+                Set<String> excludedScopes = BookieNodeIndex.getExcludedScopes(netPath);
+                return selectRandomFromNodes(index.getAll(), 1, excludeBookies,
+                        (candidate, chosenBookies) ->
+                                !BookieNodeIndex.isUnderAnyScope(candidate.getNetworkLocation(), excludedScopes)
+                                && predicate.apply(candidate, chosenBookies),
+                        ensemble, true).get(0);
             }
+            return selectRandomFromNodes(index.getLeaves(netPath), 1, excludeBookies, predicate, ensemble,
+                    true).get(0);
+        }
+        List<Node> leaves = new ArrayList<Node>(topology.getLeaves(netPath));
+        if (CollectionUtils.subtract(leaves, excludeBookies).size() < 1) {
+            throw new BKNotEnoughBookiesException();
+        }
+        WeightedRandomSelection<BookieNode> wRSelection = prepareForWeightedSelection(leaves);
+        if (wRSelection == null) {
+            throw new BKNotEnoughBookiesException();
         }
 
-        Iterator<Node> it = leaves.iterator();
         Set<Node> bookiesSeenSoFar = new HashSet<Node>();
         while (true) {
-            Node n;
-            if (isWeighted) {
-                if (bookiesSeenSoFar.size() == leaves.size()) {
-                    // Don't loop infinitely.
-                    break;
-                }
-                n = wRSelection.getNextRandom();
-                bookiesSeenSoFar.add(n);
-            } else {
-                if (it.hasNext()) {
-                    n = it.next();
-                } else {
-                    break;
-                }
+            if (bookiesSeenSoFar.size() == leaves.size()) {
+                // Don't loop infinitely.
+                break;
             }
+            Node n = wRSelection.getNextRandom();
+            bookiesSeenSoFar.add(n);
             if (excludeBookies.contains(n)) {
                 continue;
             }
@@ -677,6 +682,79 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         throw new BKNotEnoughBookiesException();
     }
 
+    /**
+     * Choose random nodes among the given nodes.
+     *
+     * <p>A few nodes are first sampled at random, so that a pick from a large cluster doesn't
+     * have to copy and shuffle all its nodes. If the sampling doesn't find enough candidates, e.g.
+     * when most of the nodes are excluded, the remaining nodes are scanned in a random order.
+     *
+     * @param nodes
+     *          nodes to choose from, which are not modified
+     * @param selectIfNotAdded
+     *          whether a candidate which the ensemble doesn't add is chosen anyway
+     * @return the chosen nodes.
+     */
+    private List<BookieNode> selectRandomFromNodes(BookieNode[] nodes,
+                                                   int numBookies,
+                                                   Set<Node> excludeBookies,
+                                                   Predicate<BookieNode> predicate,
+                                                   Ensemble<BookieNode> ensemble,
+                                                   boolean selectIfNotAdded)
+            throws BKNotEnoughBookiesException {
+        List<BookieNode> newBookies = new ArrayList<BookieNode>(numBookies);
+        Set<BookieNode> rejectedBookies = new HashSet<BookieNode>();
+        if (nodes.length == 0) {
+            throw new BKNotEnoughBookiesException();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int numSamples = Math.min(nodes.length, MAX_RANDOM_SAMPLES) * numBookies;
+        for (int i = 0; i < numSamples && newBookies.size() < numBookies; i++) {
+            BookieNode bookie = nodes[random.nextInt(nodes.length)];
+            if (trySelect(bookie, excludeBookies, predicate, ensemble, selectIfNotAdded, rejectedBookies)) {
+                newBookies.add(bookie);
+            }
+        }
+        if (newBookies.size() < numBookies) {
+            List<BookieNode> remaining = new ArrayList<BookieNode>(Arrays.asList(nodes));
+            Collections.shuffle(remaining, random);
+            for (BookieNode bookie : remaining) {
+                if (newBookies.size() == numBookies) {
+                    break;
+                }
+                if (!newBookies.contains(bookie)
+                        && trySelect(bookie, excludeBookies, predicate, ensemble, selectIfNotAdded, rejectedBookies)) {
+                    newBookies.add(bookie);
+                }
+            }
+        }
+        if (newBookies.size() < numBookies) {
+            throw new BKNotEnoughBookiesException();
+        }
+        return newBookies;
+    }
+
+    private static boolean trySelect(BookieNode bookie,
+                                     Set<Node> excludeBookies,
+                                     Predicate<BookieNode> predicate,
+                                     Ensemble<BookieNode> ensemble,
+                                     boolean selectIfNotAdded,
+                                     Set<BookieNode> rejectedBookies) {
+        if (excludeBookies.contains(bookie) || rejectedBookies.contains(bookie)
+                || !predicate.apply(bookie, ensemble)) {
+            return false;
+        }
+        if (ensemble.addNode(bookie)) {
+            // add the candidate to exclude set
+            excludeBookies.add(bookie);
+            return true;
+        }
+        if (!selectIfNotAdded) {
+            rejectedBookies.add(bookie);
+        }
+        return selectIfNotAdded;
+    }
+
     /**
      * Choose a random node from whole cluster.
      *
@@ -703,6 +781,19 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
                                                     Predicate<BookieNode> predicate,
                                                     Ensemble<BookieNode> ensemble)
         throws BKNotEnoughBookiesException {
+        if (!isWeighted && bookiesToSelectFrom == null) {
+            // When durability is being enforced; we must not violate the
+            // predicate even when selecting a random bookie; as durability
+            // guarantee is not best effort; correctness is implied by it
+            try {
+                return selectRandomFromNodes(bookieIndex.getAll(), numBookies, excludeBookies,
+                        enforceDurability ? predicate : TruePredicate.INSTANCE, ensemble, false);
+            } catch (BKNotEnoughBookiesException e) {
+                LOG.warn("Failed to find {} bookies : excludeBookies {}, allBookies {}.",
+                    numBookies, excludeBookies, Arrays.asList(bookieIndex.getAll()));
+                throw e;
+            }
+        }
         WeightedRandomSelection<BookieNode> wRSelection = null;
         if (bookiesToSelectFrom == null) {
             // If the list is null, we need to select from the entire knownBookies set
@@ -0,0 +1,281 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException.BKDigestMatchException;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.common.util.SafeRunnable;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallbackCtx;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read a sequence of entries of a ledger from a single bookie, using range read
+ * requests which return many entries per response.
+ *
+ * <p>This is only used for ledgers whose ensemble size equals the write quorum size,
+ * so that the chosen bookie stores every entry of the sequence. Any entries which
+ * can't be read this way (the bookie fails, doesn't support range reads, or returns
+ * a corrupted entry) are read by a regular {@link PendingReadOp}.
+ */
+class RangeReadOp implements ReadEntriesCallback, SafeRunnable {
+    private static final Logger LOG = LoggerFactory.getLogger(RangeReadOp.class);
+
+    private final LedgerHandle lh;
+    private final ClientContext clientCtx;
+    private final CompletableFuture<LedgerEntries> future;
+    private final List<LedgerEntry> entries;
+
+    final long startEntryId;
+    final long endEntryId;
+    long nextEntryId;
+    long requestTimeNanos;
+
+    int bookieIndex;
+    BookieId bookie;
+
+    // Whether the entries which couldn't be range read were read by a pending read op, which
+    // accounts for the read in the read op stats
+    private boolean readByPendingReadOp = false;
+
+    // The memory of the responses reserved from the client memory limit, null if it isn't limited
+    private final ClientMemoryLimiter memoryLimiter;
+    private long reservedMemory = 0;
+    // The memory reserved for each entry before sending the reads
+    private long entryMemoryEstimate = 0;
+
+    RangeReadOp(LedgerHandle lh,
+                ClientContext clientCtx,
+                long startEntryId,
+                long endEntryId) {
+        this.lh = lh;
+        this.clientCtx = clientCtx;
+        this.startEntryId = startEntryId;
+        this.endEntryId = endEntryId;
+        this.nextEntryId = startEntryId;
+        this.future = new CompletableFuture<>();
+        this.entries = new ArrayList<>((int) (endEntryId - startEntryId + 1));
+        this.memoryLimiter = clientCtx.getMemoryLimiter();
+    }
+
+    CompletableFuture<LedgerEntries> future() {
+        return future;
+    }
+
+    /**
+     * Check whether a sequence of entries can be read with range reads.
+     */
+    static boolean canRangeRead(LedgerHandle lh, ClientContext clientCtx,
+                                long startEntryId, long endEntryId) {
+        if (!clientCtx.getConf().enableRangeReads || startEntryId == endEntryId) {
+            return false;
+        }
+        if (lh.getLedgerMetadata().getEnsembleSize() != lh.getLedgerMetadata().getWriteQuorumSize()) {
+            return false;
+        }
+        // keep it simple and stay within one ensemble
+        return LedgerMetadataUtils.getNextEnsembleChange(lh.getLedgerMetadata(), startEntryId) > endEntryId;
+    }
+
+    void initiate() {
+        this.requestTimeNanos = MathUtils.nowInNano();
+        reserveEstimatedMemory();
+        List<BookieId> ensemble = lh.getLedgerMetadata().getEnsembleAt(startEntryId);
+        DistributionSchedule.WriteSet writeSet = lh.getWriteSetForReadOperation(startEntryId);
+        try {
+            bookieIndex = writeSet.get(0);
+        } finally {
+            writeSet.recycle();
+        }
+        bookie = ensemble.get(bookieIndex);
+        sendNextRead();
+    }
+
+    @Override
+    public void safeRun() {
+        initiate();
+    }
+
+    private void sendNextRead() {
+        if (!clientCtx.getBookieClient().isRangeReadSupported(bookie)) {
+            readRemainingEntries();
+            return;
+        }
+        if (lh.throttler != null) {
+            lh.throttler.acquire();
+        }
+        int maxCount = (int) Math.min(endEntryId - nextEntryId + 1, clientCtx.getConf().rangeReadMaxEntries);
+        clientCtx.getBookieClient().readEntries(bookie, lh.ledgerId, nextEntryId, maxCount,
+                clientCtx.getConf().rangeReadMaxBytes, this, new RangeReadContext(), BookieProtocol.FLAG_NONE);
+    }
+
+    @Override
+    public void readEntriesComplete(int rc, long ledgerId, long startEntryId, List<ByteBuf> buffers, Object ctx) {
+        if (rc != BKException.Code.OK || buffers.isEmpty()) {
+            if (rc != BKException.Code.OK && rc != BKException.Code.IllegalOpException) {
+                LOG.info("Error {} while range reading L{} E{} from bookie: {}",
+                        BKException.getMessage(rc), ledgerId, startEntryId, bookie);
+                lh.recordReadErrorOnBookie(bookieIndex);
+            }
+            buffers.forEach(ByteBuf::release);
+            readRemainingEntries();
+            return;
+        }
+
+        boolean corrupted = false;
+        long entryId = startEntryId;
+        for (ByteBuf buffer : buffers) {
+            if (corrupted || entryId > endEntryId) {
+                buffer.release();
+                continue;
+            }
+            try {
+                ByteBuf content = lh.macManager.verifyDigestAndReturnData(entryId, buffer);
+                LedgerEntryImpl entry = LedgerEntryImpl.create(ledgerId, entryId);
+                /*
+                 * The length is a long and it is the last field of the metadata of an entry.
+                 * Consequently, we have to subtract 8 from METADATA_LENGTH to get the length.
+                 */
+                entry.setLength(buffer.getLong(DigestManager.METADATA_LENGTH - 8));
+                entry.setEntryBuf(content);
+                entries.add(entry);
+                settleResponseMemory(buffer.readableBytes());
+                entryId++;
+            } catch (BKDigestMatchException e) {
+                clientCtx.getClientStats().getReadOpDmCounter().inc();
+                LOG.info("Mac mismatch while range reading L{} E{} from bookie: {}", ledgerId, entryId, bookie);
+                lh.recordReadErrorOnBookie(bookieIndex);
+                buffer.release();
+                corrupted = true;
+            }
+        }
+        nextEntryId = entryId;
+        lh.updateLastConfirmed(((RangeReadContext) ctx).getLastAddConfirmed(), 0L);
+
+        if (corrupted) {
+            readRemainingEntries();
+        } else if (nextEntryId > endEntryId) {
+            complete();
+        } else {
+            sendNextRead();
+        }
+    }
+
+    /**
+     * Read the entries which haven't been returned by range reads, entry by entry.
+     */
+    private void readRemainingEntries() {
+        if (nextEntryId > endEntryId) {
+            complete();
+            return;
+        }
+        readByPendingReadOp = true;
+        // the pending read op reserves the memory of the remaining entries
+        releaseEstimatedMemory(endEntryId - nextEntryId + 1);
+        PendingReadOp op = new PendingReadOp(lh, clientCtx, nextEntryId, endEntryId, false);
+        op.future().whenComplete((remaining, cause) -> {
+            if (null != cause) {
+                failed(cause);
+            } else {
+                for (LedgerEntry entry : remaining) {
+                    entries.add(LedgerEntryImpl.duplicate(entry));
+                }
+                remaining.close();
+                complete();
+            }
+        });
+        op.run();
+    }
+
+    private void reserveEstimatedMemory() {
+        if (memoryLimiter != null) {
+            entryMemoryEstimate = lh.estimateReadEntrySize();
+            reservedMemory = entryMemoryEstimate * (endEntryId - startEntryId + 1);
+            memoryLimiter.reserveReadMemory(lh.ledgerId, reservedMemory);
+        }
+    }
+
+    private void settleResponseMemory(long bytes) {
+        if (memoryLimiter != null) {
+            memoryLimiter.settleReadMemory(lh.ledgerId, entryMemoryEstimate, bytes);
+            reservedMemory += bytes - entryMemoryEstimate;
+            lh.lastReadEntrySize = bytes;
+        }
+    }
+
+    private void releaseEstimatedMemory(long numEntries) {
+        if (memoryLimiter != null) {
+            memoryLimiter.releaseReadMemory(lh.ledgerId, entryMemoryEstimate * numEntries);
+            reservedMemory -= entryMemoryEstimate * numEntries;
+        }
+    }
+
+    private void releaseResponseMemory() {
+        if (memoryLimiter != null) {
+            memoryLimiter.releaseReadMemory(lh.ledgerId, reservedMemory);
+            reservedMemory = 0;
+        }
+    }
+
+    private void complete() {
+        releaseResponseMemory();
+        if (!readByPendingReadOp) {
+            long latencyNanos = MathUtils.elapsedNanos(requestTimeNanos);
+            clientCtx.getClientStats().getReadOpLogger().registerSuccessfulEvent(latencyNanos, TimeUnit.NANOSECONDS);
+        }
+        future.complete(LedgerEntriesImpl.create(entries));
+    }
+
+    private void failed(Throwable cause) {
+        // the failed read has been already accounted by the pending read op
+        entries.forEach(LedgerEntry::close);
+        entries.clear();
+        releaseResponseMemory();
+        future.completeExceptionally(cause);
+    }
+
+    private static class RangeReadContext implements ReadEntryCallbackCtx {
+        long lac = LedgerHandle.INVALID_ENTRY_ID;
+
+        @Override
+        public void setLastAddConfirmed(long lac) {
+            this.lac = lac;
+        }
+
+        @Override
+        public long getLastAddConfirmed() {
+            return lac;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.bookkeeper.client;
 import io.netty.util.HashedWheelTimer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -123,12 +124,14 @@ public class RegionAwareEnsemblePlacementPolicy extends RackawareEnsemblePlaceme
     @Override
     public void handleBookiesThatJoined(Set<BookieId> joinedBookies) {
         Map<String, Set<BookieId>> perRegionClusterChange = new HashMap<String, Set<BookieId>>();
+        List<BookieNode> addedNodes = new ArrayList<BookieNode>(joinedBookies.size());
 
         // node joined
         for (BookieId addr : joinedBookies) {
             BookieNode node = createBookieNode(addr);
             topology.add(node);
             knownBookies.put(addr, node);
+            addedNodes.add(node);
             String region = getLocalRegion(node);
             if (null == perRegionPlacement.get(region)) {
                 perRegionPlacement.put(region, new RackawareEnsemblePlacementPolicy()
@@ -152,6 +155,7 @@ public class RegionAwareEnsemblePlacementPolicy extends RackawareEnsemblePlaceme
                 LOG.debug("Cluster changed : bookie {} joined the cluster.", addr);
             }
         }
+        bookieIndex = bookieIndex.update(Collections.emptyList(), addedNodes);
 
         for (Map.Entry<String, TopologyAwareEnsemblePlacementPolicy> regionEntry : perRegionPlacement.entrySet()) {
             Set<BookieId> regionSet = perRegionClusterChange.get(regionEntry.getKey());
@@ -39,4 +39,14 @@ public interface SpeculativeRequestExecutor {
      * @return whether more speculative requests should be issued
      */
     ListenableFuture<Boolean> issueSpeculativeRequest();
+
+    /**
+     * Returns the expected latency of the last request issued, e.g. the latency observed on
+     * the bookie it was sent to.
+     *
+     * @return the expected latency in nanoseconds, -1 if it is unknown
+     */
+    default long getExpectedLatencyNanos() {
+        return -1L;
+    }
 }
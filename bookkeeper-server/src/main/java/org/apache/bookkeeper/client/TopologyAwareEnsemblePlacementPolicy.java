@@ -61,6 +61,8 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
     static final Logger LOG = LoggerFactory.getLogger(TopologyAwareEnsemblePlacementPolicy.class);
     public static final String REPP_DNS_RESOLVER_CLASS = "reppDnsResolverClass";
     protected final Map<BookieId, BookieNode> knownBookies = new HashMap<BookieId, BookieNode>();
+    // snapshot of the known bookies by network location, updated with 'knownBookies'
+    protected volatile BookieNodeIndex bookieIndex = BookieNodeIndex.EMPTY;
     protected final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
     protected Map<BookieNode, WeightedObject> bookieInfoMap = new HashMap<BookieNode, WeightedObject>();
     // Initialize to empty set
@@ -679,10 +681,12 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
      */
     @Override
     public void handleBookiesThatLeft(Set<BookieId> leftBookies) {
+        List<BookieNode> removedNodes = new ArrayList<BookieNode>(leftBookies.size());
         for (BookieId addr : leftBookies) {
             try {
                 BookieNode node = knownBookies.remove(addr);
                 if (null != node) {
+                    removedNodes.add(node);
                     topology.remove(node);
                     if (this.isWeighted) {
                         this.bookieInfoMap.remove(node);
@@ -703,6 +707,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                 // exception anyways will be caught/logged/suppressed in the ZK's event handler
             }
         }
+        bookieIndex = bookieIndex.update(removedNodes, Collections.emptyList());
     }
 
     /*
@@ -710,12 +715,14 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
      */
     @Override
     public void handleBookiesThatJoined(Set<BookieId> joinedBookies) {
+        List<BookieNode> addedNodes = new ArrayList<BookieNode>(joinedBookies.size());
         // node joined
         for (BookieId addr : joinedBookies) {
             try {
                 BookieNode node = createBookieNode(addr);
                 topology.add(node);
                 knownBookies.put(addr, node);
+                addedNodes.add(node);
                 if (this.isWeighted) {
                     this.bookieInfoMap.putIfAbsent(node, new BookieInfo());
                 }
@@ -734,11 +741,14 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                 // exception anyways will be caught/logged/suppressed in the ZK's event handler
             }
         }
+        bookieIndex = bookieIndex.update(Collections.emptyList(), addedNodes);
     }
 
     @Override
     public void onBookieRackChange(List<BookieId> bookieAddressList) {
         rwLock.writeLock().lock();
+        List<BookieNode> removedNodes = new ArrayList<BookieNode>();
+        List<BookieNode> addedNodes = new ArrayList<BookieNode>();
         try {
             for (BookieId bookieAddress : bookieAddressList) {
                 BookieNode node = knownBookies.get(bookieAddress);
@@ -746,11 +756,14 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                     // refresh the rack info if its a known bookie
                     BookieNode newNode = createBookieNode(bookieAddress);
                     topology.remove(node);
+                    removedNodes.add(node);
                     topology.add(newNode);
                     knownBookies.put(bookieAddress, newNode);
+                    addedNodes.add(newNode);
                 }
             }
         } finally {
+            bookieIndex = bookieIndex.update(removedNodes, addedNodes);
             rwLock.writeLock().unlock();
         }
     }
@@ -450,10 +450,19 @@ public class ZoneawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
             throw new BKNotEnoughBookiesException();
         }
 
-        for (int i = 0; i < ensembleSize; i++) {
-            BookieNode candidateNode = selectCandidateNode(bookiesToConsider);
-            newEnsemble.set(i, candidateNode.getAddr());
-            bookiesToConsider.remove(candidateNode);
+        if (!this.isWeighted) {
+            // pick the ensemble with a partial shuffle, rather than walking the set for each bookie
+            List<BookieNode> candidates = new ArrayList<BookieNode>(bookiesToConsider);
+            for (int i = 0; i < ensembleSize; i++) {
+                Collections.swap(candidates, i, i + rand.nextInt(candidates.size() - i));
+                newEnsemble.set(i, candidates.get(i).getAddr());
+            }
+        } else {
+            for (int i = 0; i < ensembleSize; i++) {
+                BookieNode candidateNode = selectCandidateNode(bookiesToConsider);
+                newEnsemble.set(i, candidateNode.getAddr());
+                bookiesToConsider.remove(candidateNode);
+            }
         }
         return PlacementResult.of(newEnsemble,
                 isEnsembleAdheringToPlacementPolicy(newEnsemble, writeQuorumSize, ackQuorumSize));
@@ -478,19 +487,7 @@ public class ZoneawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
     }
 
     private Set<BookieNode> getBookiesToConsider(Set<BookieId> excludeBookies) {
-        Set<Node> leaves = topology.getLeaves(NodeBase.ROOT);
-        Set<BookieNode> bookiesToConsider = new HashSet<BookieNode>();
-        BookieNode bookieNode;
-        for (Node leaf : leaves) {
-            if (leaf instanceof BookieNode) {
-                bookieNode = ((BookieNode) leaf);
-                if (excludeBookies.contains(bookieNode.getAddr())) {
-                    continue;
-                }
-                bookiesToConsider.add(bookieNode);
-            }
-        }
-        return bookiesToConsider;
+        return getBookiesToConsider(NodeBase.ROOT, excludeBookies);
     }
 
     /*
@@ -580,13 +577,8 @@ public class ZoneawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
      */
     protected Set<BookieId> addDefaultFaultDomainBookies(Set<BookieId> excludeBookies) {
         Set<BookieId> comprehensiveExclusionBookiesSet = new HashSet<BookieId>(excludeBookies);
-        Set<Node> defaultFaultDomainLeaves = topology.getLeaves(getDefaultFaultDomain());
-        for (Node node : defaultFaultDomainLeaves) {
-            if (node instanceof BookieNode) {
-                comprehensiveExclusionBookiesSet.add(((BookieNode) node).getAddr());
-            } else {
-                LOG.error("found non-BookieNode: {} as leaf of defaultFaultDomain: {}", node, getDefaultFaultDomain());
-            }
+        for (BookieNode node : bookieIndex.getLeaves(getDefaultFaultDomain())) {
+            comprehensiveExclusionBookiesSet.add(node.getAddr());
         }
         return comprehensiveExclusionBookiesSet;
     }
@@ -632,9 +624,7 @@ public class ZoneawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
 
     private Set<BookieNode> getBookiesToConsider(String excludedZonesString, Set<BookieId> excludeBookies) {
         Set<BookieNode> bookiesToConsider = new HashSet<BookieNode>();
-        Set<Node> leaves = topology.getLeaves(excludedZonesString);
-        for (Node leaf : leaves) {
-            BookieNode bookieNode = ((BookieNode) leaf);
+        for (BookieNode bookieNode : bookieIndex.getLeaves(excludedZonesString)) {
             if (excludeBookies.contains(bookieNode.getAddr())) {
                 continue;
             }
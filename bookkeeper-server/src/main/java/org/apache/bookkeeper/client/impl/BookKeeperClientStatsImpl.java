@@ -140,6 +140,38 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         help = "The number of speculative read requests"
     )
     private final Counter speculativeReadCounter;
+    @StatsDoc(
+        name = ENTRY_CACHE_HITS,
+        help = "The number of entries read from the client entry cache"
+    )
+    private final Counter entryCacheHitCounter;
+    @StatsDoc(
+        name = ENTRY_CACHE_MISSES,
+        help = "The number of entries missing from the client entry cache, read from the bookies"
+    )
+    private final Counter entryCacheMissCounter;
+    @StatsDoc(
+        name = ENTRY_CACHE_PENDING_HITS,
+        help = "The number of entries missing from the client entry cache, which were already being read"
+            + " from the bookies by another reader"
+    )
+    private final Counter entryCachePendingHitCounter;
+    @StatsDoc(
+        name = LEDGER_METADATA_CACHE_HITS,
+        help = "The number of ledger metadata read from the client ledger metadata cache"
+    )
+    private final Counter ledgerMetadataCacheHitCounter;
+    @StatsDoc(
+        name = LEDGER_METADATA_CACHE_MISSES,
+        help = "The number of ledger metadata missing from the client ledger metadata cache, read from the"
+            + " metadata store"
+    )
+    private final Counter ledgerMetadataCacheMissCounter;
+    @StatsDoc(
+        name = CLIENT_MEMORY_WAIT,
+        help = "The latency distribution of waiting for the client memory limit, failed when the wait timed out"
+    )
+    private final OpStatsLogger clientMemoryWaitStats;
 
     @StatsDoc(
         name = WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY,
@@ -184,6 +216,12 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.clientChannelWriteWaitStats = stats.getOpStatsLogger(CLIENT_CHANNEL_WRITE_WAIT);
 
         speculativeReadCounter = stats.getCounter(SPECULATIVE_READ_COUNT);
+        this.entryCacheHitCounter = stats.getCounter(ENTRY_CACHE_HITS);
+        this.entryCacheMissCounter = stats.getCounter(ENTRY_CACHE_MISSES);
+        this.entryCachePendingHitCounter = stats.getCounter(ENTRY_CACHE_PENDING_HITS);
+        this.ledgerMetadataCacheHitCounter = stats.getCounter(LEDGER_METADATA_CACHE_HITS);
+        this.ledgerMetadataCacheMissCounter = stats.getCounter(LEDGER_METADATA_CACHE_MISSES);
+        this.clientMemoryWaitStats = stats.getOpStatsLogger(CLIENT_MEMORY_WAIT);
 
         this.writeDelayedDueToNotEnoughFaultDomainsLatency =
                 stats.getOpStatsLogger(WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY);
@@ -257,6 +295,30 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return speculativeReadCounter;
     }
     @Override
+    public Counter getEntryCacheHitCounter() {
+        return entryCacheHitCounter;
+    }
+    @Override
+    public Counter getEntryCacheMissCounter() {
+        return entryCacheMissCounter;
+    }
+    @Override
+    public Counter getEntryCachePendingHitCounter() {
+        return entryCachePendingHitCounter;
+    }
+    @Override
+    public Counter getLedgerMetadataCacheHitCounter() {
+        return ledgerMetadataCacheHitCounter;
+    }
+    @Override
+    public Counter getLedgerMetadataCacheMissCounter() {
+        return ledgerMetadataCacheMissCounter;
+    }
+    @Override
+    public OpStatsLogger getClientMemoryWaitLogger() {
+        return clientMemoryWaitStats;
+    }
+    @Override
     public Counter getEnsembleChangeCounter() {
         return ensembleChangeCounter;
     }
@@ -292,4 +354,8 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
     public void registerPendingAddsGauge(Gauge<Integer> gauge) {
         stats.registerGauge(PENDING_ADDS, gauge);
     }
+    @Override
+    public void registerClientMemoryGauge(String name, Gauge<Long> gauge) {
+        stats.registerGauge(name, gauge);
+    }
 }
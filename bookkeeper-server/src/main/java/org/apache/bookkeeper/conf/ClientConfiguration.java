@@ -99,6 +99,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String CLIENT_CONNECT_TIMEOUT_MILLIS = "clientConnectTimeoutMillis";
     protected static final String CLIENT_TCP_USER_TIMEOUT_MILLIS = "clientTcpUserTimeoutMillis";
     protected static final String NUM_CHANNELS_PER_BOOKIE = "numChannelsPerBookie";
+    protected static final String MAX_CHANNELS_PER_BOOKIE = "maxChannelsPerBookie";
+    protected static final String CHANNEL_SCALE_UP_PENDING_ADD_BYTES = "channelScaleUpPendingAddBytes";
     protected static final String USE_V2_WIRE_PROTOCOL = "useV2WireProtocol";
     protected static final String NETTY_USE_POOLED_BUFFERS = "nettyUsePooledBuffers";
 
@@ -117,10 +119,26 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String RANGE_READ_ENABLED = "rangeReadEnabled";
+    protected static final String RANGE_READ_MAX_ENTRIES = "rangeReadMaxEntries";
+    protected static final String RANGE_READ_MAX_BYTES = "rangeReadMaxBytes";
+    protected static final String LATENCY_AWARE_READS_ENABLED = "latencyAwareReadsEnabled";
+    protected static final String LATENCY_AWARE_READS_QUANTILE = "latencyAwareReadsQuantile";
+    protected static final String LATENCY_AWARE_READS_REORDER_THRESHOLD = "latencyAwareReadsReorderThreshold";
+    protected static final String ENTRY_CACHE_SIZE_BYTES = "entryCacheSizeBytes";
+    protected static final String LEDGER_METADATA_CACHE_SIZE = "ledgerMetadataCacheSize";
+    // Memory Limit Parameters
+    protected static final String CLIENT_MEMORY_LIMIT_BYTES = "clientMemoryLimitBytes";
+    protected static final String CLIENT_MEMORY_LIMIT_MAX_WAIT_MS = "clientMemoryLimitMaxWaitMs";
+    protected static final String CLIENT_MEMORY_READ_ENTRY_SIZE_BYTES = "clientMemoryReadEntrySizeBytes";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
     protected static final String DELAY_ENSEMBLE_CHANGE = "delayEnsembleChange";
     protected static final String MAX_ALLOWED_ENSEMBLE_CHANGES = "maxNumEnsembleChanges";
+    protected static final String RANGE_ADD_ENABLED = "rangeAddEnabled";
+    protected static final String RANGE_ADD_MAX_DELAY_MICROS = "rangeAddMaxDelayMicros";
+    protected static final String RANGE_ADD_MAX_ENTRIES = "rangeAddMaxEntries";
+    protected static final String RANGE_ADD_MAX_BYTES = "rangeAddMaxBytes";
     // Timeout Setting
     protected static final String ADD_ENTRY_TIMEOUT_SEC = "addEntryTimeoutSec";
     protected static final String ADD_ENTRY_QUORUM_TIMEOUT_SEC = "addEntryQuorumTimeoutSec";
@@ -575,6 +593,61 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum number of channels per bookie.
+     *
+     * @return the maximum number of channels per bookie, 0 if the pools don't scale.
+     * @see #setMaxChannelsPerBookie(int)
+     */
+    public int getMaxChannelsPerBookie() {
+        return getInt(MAX_CHANNELS_PER_BOOKIE, 0);
+    }
+
+    /**
+     * Set the maximum number of channels per bookie.
+     *
+     * <p>If it is greater than {@link #getNumChannelsPerBookie()}, the pool of channels of each
+     * bookie scales between these two numbers of channels, depending on the adds pending on
+     * them, and the reads and adds are sent on the least loaded channel of the pool rather than
+     * on the channel of their ledger. The adds of a ledger stay on the channel of the ledger
+     * when range adds are enabled, so that they can be batched, and so do the fencing reads and
+     * the other operations. A channel is added when the least loaded channel has more than
+     * {@link #getChannelScaleUpPendingAddBytes()} bytes of adds pending, and the extra channels
+     * are closed once they are idle, on the timeout monitor interval.
+     *
+     * @param maxChannelsPerBookie
+     *          the maximum number of channels per bookie, 0 to disable the scaling.
+     * @return client configuration.
+     */
+    public ClientConfiguration setMaxChannelsPerBookie(int maxChannelsPerBookie) {
+        setProperty(MAX_CHANNELS_PER_BOOKIE, maxChannelsPerBookie);
+        return this;
+    }
+
+    /**
+     * Get the number of bytes of adds pending on the least loaded channel of a bookie above
+     * which another channel is opened to the bookie.
+     *
+     * @return the pending add bytes triggering a scale up of the pool of channels.
+     * @see #setMaxChannelsPerBookie(int)
+     */
+    public long getChannelScaleUpPendingAddBytes() {
+        return getLong(CHANNEL_SCALE_UP_PENDING_ADD_BYTES, 4 * 1024 * 1024L);
+    }
+
+    /**
+     * Set the number of bytes of adds pending on the least loaded channel of a bookie above
+     * which another channel is opened to the bookie.
+     *
+     * @param pendingAddBytes
+     *          the pending add bytes triggering a scale up of the pool of channels.
+     * @return client configuration.
+     */
+    public ClientConfiguration setChannelScaleUpPendingAddBytes(long pendingAddBytes) {
+        setProperty(CHANNEL_SCALE_UP_PENDING_ADD_BYTES, pendingAddBytes);
+        return this;
+    }
+
     /**
      * Use older Bookkeeper wire protocol (no protobuf).
      *
@@ -1198,6 +1271,362 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * If range reads are enabled or not.
+     *
+     * @return true if range reads are enabled, otherwise false. Default is false.
+     */
+    public boolean isRangeReadEnabled() {
+        return getBoolean(RANGE_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable range reads.
+     *
+     * <p>If this flag is enabled, reads of multiple entries from a ledger whose ensemble
+     * size equals its write quorum size are sent to a single bookie as range read requests,
+     * each returning many entries in one response. Bookies which don't support range reads
+     * are detected on the first request and read entry by entry afterwards.
+     *
+     * @param enabled the flag to enable/disable range reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setRangeReadEnabled(boolean enabled) {
+        setProperty(RANGE_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of entries requested by a single range read.
+     *
+     * @return the maximum number of entries per range read.
+     */
+    public int getRangeReadMaxEntries() {
+        return getInt(RANGE_READ_MAX_ENTRIES, 1000);
+    }
+
+    /**
+     * Set the maximum number of entries requested by a single range read.
+     *
+     * @param maxEntries the maximum number of entries per range read.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setRangeReadMaxEntries(int maxEntries) {
+        setProperty(RANGE_READ_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of bytes returned by a single range read.
+     *
+     * <p>A non-positive value means the limit is derived from
+     * {@link #getNettyMaxFrameSizeBytes()}.
+     *
+     * @return the maximum number of bytes per range read.
+     */
+    public long getRangeReadMaxBytes() {
+        return getLong(RANGE_READ_MAX_BYTES, 0L);
+    }
+
+    /**
+     * Set the maximum number of bytes returned by a single range read.
+     *
+     * @param maxBytes the maximum number of bytes per range read.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setRangeReadMaxBytes(long maxBytes) {
+        setProperty(RANGE_READ_MAX_BYTES, maxBytes);
+        return this;
+    }
+
+    /**
+     * If latency aware reads are enabled or not.
+     *
+     * @return true if latency aware reads are enabled, otherwise false.
+     */
+    public boolean isLatencyAwareReadsEnabled() {
+        return getBoolean(LATENCY_AWARE_READS_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable latency aware reads.
+     *
+     * <p>If this flag is enabled, the client tracks a quantile of the read latency of each bookie
+     * (see {@link #getLatencyAwareReadsQuantile()}). A speculative read is sent as soon as a read
+     * has been outstanding for longer than the latency quantile of its bookie, bounded by
+     * {@link #getMaxSpeculativeReadTimeout()}, instead of waiting for
+     * {@link #getFirstSpeculativeReadTimeout()}. Speculative reads still have to be enabled for
+     * that. The reads are also sent first to the fastest replica when the latency of the first
+     * replica of the read sequence exceeds it by {@link #getLatencyAwareReadsReorderThreshold()}.
+     *
+     * @param enabled the flag to enable/disable latency aware reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadsEnabled(boolean enabled) {
+        setProperty(LATENCY_AWARE_READS_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the quantile of the read latency of each bookie tracked by latency aware reads.
+     *
+     * @return the latency quantile, between 0 and 1.
+     */
+    public double getLatencyAwareReadsQuantile() {
+        return getDouble(LATENCY_AWARE_READS_QUANTILE, 0.95);
+    }
+
+    /**
+     * Set the quantile of the read latency of each bookie tracked by latency aware reads.
+     *
+     * @param quantile the latency quantile, between 0 and 1.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadsQuantile(double quantile) {
+        setProperty(LATENCY_AWARE_READS_QUANTILE, quantile);
+        return this;
+    }
+
+    /**
+     * Get the ratio between the read latency of the first replica of a read sequence and the
+     * one of the fastest replica above which the fastest replica is read first.
+     *
+     * <p>A value less than or equal to 1 disables the reordering.
+     *
+     * @return the latency ratio triggering a reordering of the read sequence.
+     */
+    public float getLatencyAwareReadsReorderThreshold() {
+        return getFloat(LATENCY_AWARE_READS_REORDER_THRESHOLD, 2.0f);
+    }
+
+    /**
+     * Set the ratio between the read latency of the first replica of a read sequence and the
+     * one of the fastest replica above which the fastest replica is read first.
+     *
+     * @param threshold the latency ratio triggering a reordering of the read sequence.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadsReorderThreshold(float threshold) {
+        setProperty(LATENCY_AWARE_READS_REORDER_THRESHOLD, threshold);
+        return this;
+    }
+
+    /**
+     * Get the size of the client entry cache.
+     *
+     * @return the maximum size in bytes of the entry cache, 0 if it is disabled.
+     */
+    public long getEntryCacheSizeBytes() {
+        return getLong(ENTRY_CACHE_SIZE_BYTES, 0L);
+    }
+
+    /**
+     * Set the size of the client entry cache.
+     *
+     * <p>The entry cache is shared by all the ledger handles of the client. The confirmed entries
+     * read from the bookies are kept in direct memory, so that the readers tailing the same ledger
+     * read each entry only once from the bookies, and the reads of entries which are already
+     * being read by another reader wait for that read instead of sending the same requests again.
+     * It is useful when many readers of the same ledgers share a client. The entries are
+     * evicted in insertion order.
+     *
+     * @param sizeBytes the maximum size in bytes of the entry cache, 0 to disable it.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setEntryCacheSizeBytes(long sizeBytes) {
+        setProperty(ENTRY_CACHE_SIZE_BYTES, sizeBytes);
+        return this;
+    }
+
+    /**
+     * Get the number of closed ledgers whose metadata is cached by the client.
+     *
+     * @return the maximum number of ledgers in the ledger metadata cache, 0 if it is disabled.
+     */
+    public int getLedgerMetadataCacheSize() {
+        return getInt(LEDGER_METADATA_CACHE_SIZE, 0);
+    }
+
+    /**
+     * Set the number of closed ledgers whose metadata is cached by the client.
+     *
+     * <p>The metadata of the closed ledgers opened or closed by the client is cached, so that
+     * opening them again doesn't read it from the metadata store, e.g. when many readers
+     * reconnect and open the same ledgers again. The client watches the cached ledgers, to
+     * follow the changes of their ensembles and their deletion, which costs one watch on the
+     * metadata store per cached ledger. The ledgers are evicted in insertion order.
+     *
+     * @param size the maximum number of ledgers in the ledger metadata cache, 0 to disable it.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLedgerMetadataCacheSize(int size) {
+        setProperty(LEDGER_METADATA_CACHE_SIZE, size);
+        return this;
+    }
+
+    /**
+     * Get the limit of the memory held by the client for the entries of the pending adds and reads.
+     *
+     * @return the memory limit in bytes, 0 if it is disabled.
+     */
+    public long getClientMemoryLimitBytes() {
+        return getLong(CLIENT_MEMORY_LIMIT_BYTES, 0L);
+    }
+
+    /**
+     * Set the limit of the memory held by the client for the entries of the pending adds and reads.
+     *
+     * <p>The limit is shared by all the ledger handles of the client, and covers the payloads of
+     * the pending adds and the responses of the pending reads. Once it is reached, the adds and
+     * the reads of the ledgers holding more than their share of the limit wait for memory to be
+     * released before being sent, so that a single ledger can't starve the others.
+     *
+     * @param limitBytes the memory limit in bytes, 0 to disable it.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setClientMemoryLimitBytes(long limitBytes) {
+        setProperty(CLIENT_MEMORY_LIMIT_BYTES, limitBytes);
+        return this;
+    }
+
+    /**
+     * Get the maximum time an operation waits for the client memory limit.
+     *
+     * @return the maximum wait time in milliseconds.
+     */
+    public long getClientMemoryLimitMaxWaitMs() {
+        return getLong(CLIENT_MEMORY_LIMIT_MAX_WAIT_MS, 10000L);
+    }
+
+    /**
+     * Set the maximum time an operation waits for the client memory limit.
+     *
+     * <p>The operation is queued without blocking the caller, and is sent over the limit once
+     * this time has elapsed, so that an application sending operations from the callbacks of
+     * its previous operations can't deadlock.
+     *
+     * @param maxWaitMs the maximum wait time in milliseconds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setClientMemoryLimitMaxWaitMs(long maxWaitMs) {
+        setProperty(CLIENT_MEMORY_LIMIT_MAX_WAIT_MS, maxWaitMs);
+        return this;
+    }
+
+    /**
+     * Get the size of the entries reserved for the reads of a ledger whose entry size is unknown.
+     *
+     * @return the size of an entry in bytes.
+     */
+    public long getClientMemoryReadEntrySizeBytes() {
+        return getLong(CLIENT_MEMORY_READ_ENTRY_SIZE_BYTES, 64 * 1024L);
+    }
+
+    /**
+     * Set the size of the entries reserved for the reads of a ledger whose entry size is unknown.
+     *
+     * <p>The memory of a read is reserved before it is sent, for an estimate of the size of its
+     * entries: the size of the last entry read from the ledger, or else the average size of its
+     * entries. When neither is known, e.g. on the first read of a ledger which is still open, this
+     * typical entry size is reserved. The reservation is corrected as the entries are received.
+     *
+     * @param sizeBytes the size of an entry in bytes.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setClientMemoryReadEntrySizeBytes(long sizeBytes) {
+        setProperty(CLIENT_MEMORY_READ_ENTRY_SIZE_BYTES, sizeBytes);
+        return this;
+    }
+
+    /**
+     * If range adds are enabled or not.
+     *
+     * @return true if range adds are enabled, otherwise false.
+     */
+    public boolean isRangeAddEnabled() {
+        return getBoolean(RANGE_ADD_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable range adds.
+     *
+     * <p>If this flag is enabled, consecutive adds of the same ledger sent to the same bookie
+     * within {@link #getRangeAddMaxDelayMicros()} are coalesced in a single range add request,
+     * which the bookie journals with a single enqueue while still acknowledging every entry.
+     * Only supported by the v3 protocol. Bookies which don't support range adds are detected
+     * on the first request and written entry by entry afterwards. An add is only held back to
+     * be batched while other adds are pending on the connection to the bookie.
+     *
+     * @param enabled the flag to enable/disable range adds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setRangeAddEnabled(boolean enabled) {
+        setProperty(RANGE_ADD_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the maximum time an add waits for more adds to be batched with, in microseconds.
+     *
+     * @return the maximum delay of a batched add, in microseconds.
+     */
+    public long getRangeAddMaxDelayMicros() {
+        return getLong(RANGE_ADD_MAX_DELAY_MICROS, 500L);
+    }
+
+    /**
+     * Set the maximum time an add waits for more adds to be batched with, in microseconds.
+     *
+     * @param maxDelayMicros the maximum delay of a batched add, in microseconds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setRangeAddMaxDelayMicros(long maxDelayMicros) {
+        setProperty(RANGE_ADD_MAX_DELAY_MICROS, maxDelayMicros);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of entries sent in a single range add.
+     *
+     * @return the maximum number of entries per range add.
+     */
+    public int getRangeAddMaxEntries() {
+        return getInt(RANGE_ADD_MAX_ENTRIES, 100);
+    }
+
+    /**
+     * Set the maximum number of entries sent in a single range add.
+     *
+     * @param maxEntries the maximum number of entries per range add.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setRangeAddMaxEntries(int maxEntries) {
+        setProperty(RANGE_ADD_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of bytes sent in a single range add.
+     *
+     * <p>The limit is always capped by {@link #getNettyMaxFrameSizeBytes()}.
+     *
+     * @return the maximum number of bytes per range add.
+     */
+    public long getRangeAddMaxBytes() {
+        return getLong(RANGE_ADD_MAX_BYTES, 1024 * 1024L);
+    }
+
+    /**
+     * Set the maximum number of bytes sent in a single range add.
+     *
+     * @param maxBytes the maximum number of bytes per range add.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setRangeAddMaxBytes(long maxBytes) {
+        setProperty(RANGE_ADD_MAX_BYTES, maxBytes);
+        return this;
+    }
+
     /**
      * Get Ensemble Placement Policy Class.
      *
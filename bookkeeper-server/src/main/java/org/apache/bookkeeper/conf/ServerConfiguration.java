@@ -93,6 +93,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         .build();
 
     protected static final String ENTRY_LOG_FILE_PREALLOCATION_ENABLED = "entryLogFilePreallocationEnabled";
+    protected static final String ENTRY_LOG_DIRECT_IO_ENABLED = "entryLogDirectIOEnabled";
+    protected static final String ENTRY_LOG_MMAP_READ_ENABLED = "entryLogMmapReadEnabled";
+    protected static final String ENTRY_LOG_MMAP_MAX_MAPPED_LOGS = "entryLogMmapMaxMappedLogs";
 
 
     protected static final String FORCE_ALLOW_COMPACTION = "forceAllowCompaction";
@@ -142,6 +145,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_MAX_GROUP_WAIT_MSEC = "journalMaxGroupWaitMSec";
     protected static final String JOURNAL_BUFFERED_WRITES_THRESHOLD = "journalBufferedWritesThreshold";
     protected static final String JOURNAL_BUFFERED_ENTRIES_THRESHOLD = "journalBufferedEntriesThreshold";
+    protected static final String JOURNAL_GROUP_COMMIT_AUTO_TUNING = "journalGroupCommitAutoTuning";
     protected static final String JOURNAL_FLUSH_WHEN_QUEUE_EMPTY = "journalFlushWhenQueueEmpty";
     protected static final String JOURNAL_REMOVE_FROM_PAGE_CACHE = "journalRemoveFromPageCache";
     protected static final String JOURNAL_PRE_ALLOC_SIZE = "journalPreAllocSizeMB";
@@ -149,6 +153,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_ALIGNMENT_SIZE = "journalAlignmentSize";
     protected static final String NUM_JOURNAL_CALLBACK_THREADS = "numJournalCallbackThreads";
     protected static final String JOURNAL_FORMAT_VERSION_TO_WRITE = "journalFormatVersionToWrite";
+    protected static final String JOURNAL_REUSE_FILES = "journalReuseFiles";
+    protected static final String JOURNAL_MAX_REUSABLE_FILES = "journalMaxReusableFiles";
+    protected static final String JOURNAL_PRE_ALLOC_WITH_FALLOCATE = "journalPreAllocWithFallocate";
     protected static final String JOURNAL_QUEUE_SIZE = "journalQueueSize";
     protected static final String JOURNAL_MAX_MEMORY_SIZE_MB = "journalMaxMemorySizeMb";
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
@@ -156,6 +163,11 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
+    protected static final String REQUEST_SCHEDULING_ENABLED = "requestSchedulingEnabled";
+    protected static final String REQUEST_SCHEDULING_CLASSIFIER = "requestSchedulingClassifier";
+    protected static final String REQUEST_SCHEDULING_NUM_LEDGER_GROUPS = "requestSchedulingNumLedgerGroups";
+    protected static final String REQUEST_SCHEDULING_CLASS_WEIGHTS = "requestSchedulingClassWeights";
+    protected static final String REQUEST_SCHEDULING_MAX_IN_FLIGHT_PER_CLASS = "requestSchedulingMaxInFlightPerClass";
     protected static final String CLOSE_CHANNEL_ON_RESPONSE_TIMEOUT = "closeChannelOnResponseTimeout";
     protected static final String WAIT_TIMEOUT_ON_RESPONSE_BACKPRESSURE = "waitTimeoutOnResponseBackpressureMs";
 
@@ -179,6 +191,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String SERVER_WRITEBUFFER_LOW_WATER_MARK = "serverWriteBufferLowWaterMark";
     protected static final String SERVER_WRITEBUFFER_HIGH_WATER_MARK = "serverWriteBufferHighWaterMark";
     protected static final String SERVER_NUM_IO_THREADS = "serverNumIOThreads";
+    protected static final String SERVER_THREAD_PER_CORE_ENABLED = "serverThreadPerCoreEnabled";
 
     // Zookeeper Parameters
     protected static final String ZK_RETRY_BACKOFF_START_MS = "zkRetryBackoffStartMs";
@@ -224,6 +237,10 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String NUM_LONG_POLL_WORKER_THREADS = "numLongPollWorkerThreads";
     protected static final String NUM_HIGH_PRIORITY_WORKER_THREADS = "numHighPriorityWorkerThreads";
     protected static final String READ_WORKER_THREADS_THROTTLING_ENABLED = "readWorkerThreadsThrottlingEnabled";
+    protected static final String READ_FROM_CACHE_ON_IO_THREADS_ENABLED = "readFromCacheOnIoThreadsEnabled";
+    protected static final String READ_WORKER_VIRTUAL_THREADS_ENABLED = "readWorkerVirtualThreadsEnabled";
+    protected static final String READ_WORKER_VIRTUAL_THREADS_MAX_CONCURRENCY =
+            "readWorkerVirtualThreadsMaxConcurrency";
 
     // Long poll parameters
     protected static final String REQUEST_TIMER_TICK_DURATION_MILLISEC = "requestTimerTickDurationMs";
@@ -392,6 +409,80 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Is direct I/O enabled for writing the entry log files.
+     *
+     * <p>When enabled, the entry logs are written bypassing the OS page cache, so that the writes
+     * don't evict the pages used by the readers. It's only available on 64-bit Linux, the regular
+     * buffered writes are used elsewhere.
+     *
+     * @return whether direct I/O is enabled for writing the entry log files.
+     */
+    public boolean isEntryLogDirectIOEnabled() {
+        return this.getBoolean(ENTRY_LOG_DIRECT_IO_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable direct I/O for writing the entry log files.
+     *
+     * @param enabled
+     *          enable/disable direct I/O for writing the entry log files.
+     * @return server configuration object.
+     */
+    public ServerConfiguration setEntryLogDirectIOEnabled(boolean enabled) {
+        this.setProperty(ENTRY_LOG_DIRECT_IO_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Is reading the sealed entry log files through memory mappings enabled.
+     *
+     * <p>When enabled, the entry logs which are not written anymore are mapped in memory and shared
+     * by all the reader threads, and the entries are returned without copying them.
+     *
+     * @return whether the sealed entry log files are read through memory mappings.
+     */
+    public boolean isEntryLogMmapReadEnabled() {
+        return this.getBoolean(ENTRY_LOG_MMAP_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable reading the sealed entry log files through memory mappings.
+     *
+     * @param enabled
+     *          enable/disable reading the sealed entry log files through memory mappings.
+     * @return server configuration object.
+     */
+    public ServerConfiguration setEntryLogMmapReadEnabled(boolean enabled) {
+        this.setProperty(ENTRY_LOG_MMAP_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of sealed entry log files mapped in memory at the same time.
+     *
+     * <p>Every mapping counts against the max number of memory map areas of the process
+     * ({@code vm.max_map_count}), so the least recently read logs are unmapped once this
+     * number is reached. Default value is 1024.
+     *
+     * @return the max number of entry log files mapped in memory.
+     */
+    public int getEntryLogMmapMaxMappedLogs() {
+        return this.getInt(ENTRY_LOG_MMAP_MAX_MAPPED_LOGS, 1024);
+    }
+
+    /**
+     * Set the max number of sealed entry log files mapped in memory at the same time.
+     *
+     * @param maxMappedLogs
+     *          max number of entry log files mapped in memory.
+     * @return server configuration object.
+     */
+    public ServerConfiguration setEntryLogMmapMaxMappedLogs(int maxMappedLogs) {
+        this.setProperty(ENTRY_LOG_MMAP_MAX_MAPPED_LOGS, maxMappedLogs);
+        return this;
+    }
+
     /**
      * Get Garbage collection wait time. Default value is 10 minutes.
      * The guideline is not to set a too low value for this, if using zookeeper based
@@ -860,6 +951,79 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the old journal files are reused instead of being deleted.
+     *
+     * <p>Writing over the space already allocated by an old journal file avoids updating the file
+     * system metadata when the journal is synced. Up to {@link #getJournalMaxReusableFiles()} old
+     * journal files are kept to be reused, besides the backup journals.
+     *
+     * <p>It requires {@link #getJournalFormatVersionToWrite()} to be at least 7, which can't be
+     * read by older bookies. This is the default format version when the journal files are
+     * reused, and the reuse is disabled if an older format version is configured.
+     *
+     * @return whether the old journal files are reused
+     */
+    public boolean getJournalReuseFiles() {
+        return this.getBoolean(JOURNAL_REUSE_FILES, false);
+    }
+
+    /**
+     * Set whether the old journal files are reused instead of being deleted.
+     *
+     * @param journalReuseFiles
+     *          whether the old journal files are reused
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalReuseFiles(boolean journalReuseFiles) {
+        this.setProperty(JOURNAL_REUSE_FILES, journalReuseFiles);
+        return this;
+    }
+
+    /**
+     * Get the max number of old journal files kept to be reused, when
+     * {@link #getJournalReuseFiles()} is enabled. Default is 2.
+     *
+     * @return the max number of journal files kept to be reused
+     */
+    public int getJournalMaxReusableFiles() {
+        return this.getInt(JOURNAL_MAX_REUSABLE_FILES, 2);
+    }
+
+    /**
+     * Set the max number of old journal files kept to be reused.
+     *
+     * @param maxReusableFiles
+     *          the max number of journal files kept to be reused
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalMaxReusableFiles(int maxReusableFiles) {
+        this.setProperty(JOURNAL_MAX_REUSABLE_FILES, maxReusableFiles);
+        return this;
+    }
+
+    /**
+     * Whether the space of the journal files is pre-allocated with fallocate, instead of
+     * extending the files by writing zeros at the end. It's only available on 64-bit Linux.
+     *
+     * @return whether the journal files are pre-allocated with fallocate
+     */
+    public boolean getJournalPreAllocWithFallocate() {
+        return this.getBoolean(JOURNAL_PRE_ALLOC_WITH_FALLOCATE, false);
+    }
+
+    /**
+     * Set whether the space of the journal files is pre-allocated with fallocate.
+     *
+     * @param preAllocWithFallocate
+     *          whether the journal files are pre-allocated with fallocate
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalPreAllocWithFallocate(boolean preAllocWithFallocate) {
+        this.setProperty(JOURNAL_PRE_ALLOC_WITH_FALLOCATE, preAllocWithFallocate);
+        return this;
+    }
+
     /**
      * All the journal writes and commits should be aligned to given size. If not,
      * zeros will be padded to align to given size.
@@ -883,12 +1047,13 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     }
 
     /**
-     * Get journal format version to write.
+     * Get journal format version to write. Default is 6, or 7 when {@link #getJournalReuseFiles()}
+     * is enabled.
      *
      * @return journal format version to write.
      */
     public int getJournalFormatVersionToWrite() {
-        return this.getInt(JOURNAL_FORMAT_VERSION_TO_WRITE, 6);
+        return this.getInt(JOURNAL_FORMAT_VERSION_TO_WRITE, getJournalReuseFiles() ? 7 : 6);
     }
 
     /**
@@ -1030,6 +1195,121 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether the read requests are scheduled fairly between classes of requests, e.g. between
+     * the clients, before being executed by the read worker threads (default: false). Each class has
+     * its own queue, and only a few reads are in flight in the read worker threads at the same time,
+     * so that a client reading a lot doesn't fill the queues of the read worker threads.
+     *
+     * @return whether the read requests are scheduled fairly between classes of requests.
+     */
+    public boolean isRequestSchedulingEnabled() {
+        return this.getBoolean(REQUEST_SCHEDULING_ENABLED, false);
+    }
+
+    /**
+     * Set whether the read requests are scheduled fairly between classes of requests.
+     *
+     * @param enabled
+     *          whether to schedule the read requests fairly between classes of requests.
+     * @return server configuration.
+     */
+    public ServerConfiguration setRequestSchedulingEnabled(boolean enabled) {
+        this.setProperty(REQUEST_SCHEDULING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get how the requests are classified when they're scheduled fairly: {@code principal} for the
+     * principal of the client connection, or its remote host if the connection is anonymous, or
+     * {@code ledgerGroup} for groups of ledgers (default: principal).
+     *
+     * @return how the requests are classified.
+     */
+    public String getRequestSchedulingClassifier() {
+        return this.getString(REQUEST_SCHEDULING_CLASSIFIER, "principal");
+    }
+
+    /**
+     * Set how the requests are classified when they're scheduled fairly.
+     *
+     * @param classifier
+     *          {@code principal} or {@code ledgerGroup}.
+     * @return server configuration.
+     */
+    public ServerConfiguration setRequestSchedulingClassifier(String classifier) {
+        this.setProperty(REQUEST_SCHEDULING_CLASSIFIER, classifier);
+        return this;
+    }
+
+    /**
+     * Get the number of groups of ledgers, when the requests are classified by groups of ledgers. The
+     * class of a ledger is the ledger id modulo the number of groups (default: 16).
+     *
+     * @return the number of groups of ledgers.
+     */
+    public int getRequestSchedulingNumLedgerGroups() {
+        return this.getInt(REQUEST_SCHEDULING_NUM_LEDGER_GROUPS, 16);
+    }
+
+    /**
+     * Set the number of groups of ledgers, when the requests are classified by groups of ledgers.
+     *
+     * @param numLedgerGroups
+     *          number of groups of ledgers.
+     * @return server configuration.
+     */
+    public ServerConfiguration setRequestSchedulingNumLedgerGroups(int numLedgerGroups) {
+        this.setProperty(REQUEST_SCHEDULING_NUM_LEDGER_GROUPS, numLedgerGroups);
+        return this;
+    }
+
+    /**
+     * Get the weights of the classes of requests, formatted as {@code class:weight}. The classes get
+     * shares of the read worker threads proportional to their weights, the classes without a weight
+     * have a weight of 1. When the requests are classified by principal, only the classes with a
+     * weight get their own scheduling stats, the others share the stats of the class {@code other}.
+     *
+     * @return the weights of the classes of requests.
+     */
+    public String[] getRequestSchedulingClassWeights() {
+        return this.getStringArray(REQUEST_SCHEDULING_CLASS_WEIGHTS);
+    }
+
+    /**
+     * Set the weights of the classes of requests.
+     *
+     * @param weights
+     *          weights formatted as {@code class:weight}.
+     * @return server configuration.
+     */
+    public ServerConfiguration setRequestSchedulingClassWeights(String[] weights) {
+        this.setProperty(REQUEST_SCHEDULING_CLASS_WEIGHTS, weights);
+        return this;
+    }
+
+    /**
+     * Get the max number of requests of a class in flight in the read worker threads at the same
+     * time, so that a class can't occupy all the read worker threads. 0 == unlimited.
+     *
+     * @return the max number of requests of a class in flight.
+     */
+    public int getRequestSchedulingMaxInFlightPerClass() {
+        return this.getInt(REQUEST_SCHEDULING_MAX_IN_FLIGHT_PER_CLASS, 0);
+    }
+
+    /**
+     * Set the max number of requests of a class in flight in the read worker threads. 0 == unlimited.
+     *
+     * @param maxInFlightPerClass
+     *          max number of requests of a class in flight.
+     * @return server configuration.
+     */
+    public ServerConfiguration setRequestSchedulingMaxInFlightPerClass(int maxInFlightPerClass) {
+        this.setProperty(REQUEST_SCHEDULING_MAX_IN_FLIGHT_PER_CLASS, maxInFlightPerClass);
+        return this;
+    }
+
     /**
      * Configures action in case if server timed out sending response to the client.
      * true == close the channel and drop response
@@ -1491,6 +1771,43 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the bookie runs in thread-per-core mode.
+     *
+     * <p>In thread-per-core mode, each Netty IO thread is pinned to a cpu core and processes the add
+     * and read requests of the ledgers whose ids hash to it, in place of the add and read worker
+     * threads. A request received by the IO thread of its ledger is processed without changing
+     * thread, and the other requests are handed over to the IO thread of their ledger. The number of
+     * IO threads should then be set to the number of cores available to the bookie, and the cores
+     * should be isolated as required by {@link org.apache.bookkeeper.common.util.affinity.CpuAffinity}.
+     *
+     * <p>As the requests are processed on the IO threads, this mode suits the bookies whose reads
+     * are mostly served from memory. The limits of the adds and reads in progress, the wait on
+     * the response backpressure and the throttling of the read responses
+     * ({@link #isReadWorkerThreadsThrottlingEnabled()}) would block the IO threads, so they are not
+     * applied in this mode.
+     * The requests handed over to an IO thread are rejected instead once more than
+     * {@link #getMaxPendingAddRequestPerThread()} adds or {@link #getMaxPendingReadRequestPerThread()}
+     * reads are waiting for it.
+     *
+     * @return true if the bookie runs in thread-per-core mode
+     */
+    public boolean isServerThreadPerCoreEnabled() {
+        return getBoolean(SERVER_THREAD_PER_CORE_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the thread-per-core mode.
+     *
+     * @see #isServerThreadPerCoreEnabled()
+     * @param enabled flag to enable/disable the thread-per-core mode
+     * @return server configuration
+     */
+    public ServerConfiguration setServerThreadPerCoreEnabled(boolean enabled) {
+        setProperty(SERVER_THREAD_PER_CORE_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Timeout to drain the socket on close.
      *
@@ -1982,6 +2299,28 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getBoolean(READ_WORKER_THREADS_THROTTLING_ENABLED, true);
     }
 
+    /**
+     * Set whether the regular reads are served on the IO threads which receive them, when the ledger
+     * storage can read their entry from memory without blocking.
+     *
+     * @param enabled
+     *          whether to serve the cached reads on the IO threads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadFromCacheOnIoThreadsEnabled(boolean enabled) {
+        setProperty(READ_FROM_CACHE_ON_IO_THREADS_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get whether the regular reads are served on the IO threads which receive them, when the ledger
+     * storage can read their entry from memory without blocking. Otherwise all the reads are handed
+     * over to the read worker threads (default: true).
+     */
+    public boolean isReadFromCacheOnIoThreadsEnabled() {
+        return getBoolean(READ_FROM_CACHE_ON_IO_THREADS_ENABLED, true);
+    }
+
 
 
     /**
@@ -2003,6 +2342,51 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(NUM_READ_WORKER_THREADS, 8);
     }
 
+    /**
+     * Set whether the read requests should be executed on virtual threads rather than by the read
+     * worker threads, when the JDK supports virtual threads.
+     *
+     * @param enabled
+     *          whether to execute the read requests on virtual threads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadWorkerVirtualThreadsEnabled(boolean enabled) {
+        setProperty(READ_WORKER_VIRTUAL_THREADS_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get whether the read requests are executed on virtual threads rather than by the read worker
+     * threads. Only the regular reads are executed on virtual threads, and only if the JDK supports
+     * them and the read worker threads are enabled (default: false).
+     */
+    public boolean isReadWorkerVirtualThreadsEnabled() {
+        return getBoolean(READ_WORKER_VIRTUAL_THREADS_ENABLED, false);
+    }
+
+    /**
+     * Set the max number of read requests executed at the same time on virtual threads.
+     *
+     * @param maxConcurrency
+     *          max number of reads in progress on virtual threads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadWorkerVirtualThreadsMaxConcurrency(int maxConcurrency) {
+        setProperty(READ_WORKER_VIRTUAL_THREADS_MAX_CONCURRENCY, maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Get the max number of read requests executed at the same time on virtual threads, which
+     * replaces the number of read worker threads as the bound of the concurrent reads
+     * (default: 256). Each read is executed on its own virtual thread, which waits for its turn
+     * once that many reads are in progress. The number of pending reads is still limited by
+     * {@link #getMaxPendingReadRequestPerThread()} for each read worker thread.
+     */
+    public int getReadWorkerVirtualThreadsMaxConcurrency() {
+        return getInt(READ_WORKER_VIRTUAL_THREADS_MAX_CONCURRENCY, 256);
+    }
+
     /**
      * Set the tick duration in milliseconds.
      *
@@ -2355,6 +2739,29 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journal group commit window is adjusted to the load and to the force write
+     * latency. When enabled, {@link #getJournalMaxGroupWaitMSec()},
+     * {@link #getJournalBufferedWritesThreshold()} and {@link #getJournalBufferedEntriesThreshold()}
+     * are used as upper bounds.
+     *
+     * @return whether the journal group commit auto tuning is enabled
+     */
+    public boolean getJournalGroupCommitAutoTuning() {
+        return getBoolean(JOURNAL_GROUP_COMMIT_AUTO_TUNING, false);
+    }
+
+    /**
+     * Enable/disable the journal group commit auto tuning.
+     *
+     * @param enabled flag to enable/disable the journal group commit auto tuning
+     * @return server configuration.
+     */
+    public ServerConfiguration setJournalGroupCommitAutoTuning(boolean enabled) {
+        setProperty(JOURNAL_GROUP_COMMIT_AUTO_TUNING, enabled);
+        return this;
+    }
+
     /**
      * Set if we should flush the journal when queue is empty.
      */
@@ -28,6 +28,7 @@ import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
@@ -180,6 +181,38 @@ public interface BookieClient {
                    ReadEntryCallback cb, Object ctx, int flags, byte[] masterKey,
                    boolean allowFastFail);
 
+    /**
+     * Check whether the bookie at {@code address} can serve range reads.
+     * Bookies are assumed to support them until one of them rejects a
+     * {@link #readEntries(BookieId,long,long,int,long,ReadEntriesCallback,Object,int) range read}
+     * as an unknown operation.
+     *
+     * @param address the address of the bookie
+     * @return true if range reads may be sent to the bookie
+     */
+    boolean isRangeReadSupported(BookieId address);
+
+    /**
+     * Read up to {@code maxCount} consecutive entries, starting at {@code startEntryId},
+     * from the bookie at address {@code address} in a single request. The bookie may return
+     * fewer entries than requested, if it hits {@code maxBytes} or an entry it doesn't have.
+     *
+     * <p>A bookie which doesn't support range reads fails the request with
+     * {@link org.apache.bookkeeper.client.BKException.Code#IllegalOpException}.
+     *
+     * @param address address of the bookie to read from
+     * @param ledgerId id of the ledger the entries belong to
+     * @param startEntryId id of the first entry we wish to read
+     * @param maxCount maximum number of entries to read
+     * @param maxBytes maximum number of bytes to return, 0 to let the bookie decide
+     * @param cb the callback notified when the request completes
+     * @param ctx a context object passed to the callback on completion
+     * @param flags a bit mask of flags from BookieProtocol.FLAG_*
+     *              {@link org.apache.bookkeeper.proto.BookieProtocol}
+     */
+    void readEntries(BookieId address, long ledgerId, long startEntryId, int maxCount, long maxBytes,
+                     ReadEntriesCallback cb, Object ctx, int flags);
+
     /**
      * Send a long poll request to bookie, waiting for the last add confirmed
      * to be updated. The client can also request that the full entry is returned
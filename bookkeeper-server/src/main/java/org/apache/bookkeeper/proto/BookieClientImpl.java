@@ -36,8 +36,10 @@ import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -61,6 +63,7 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallba
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedger;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
@@ -100,10 +103,14 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
     private final ReentrantReadWriteLock closeLock;
     private final StatsLogger statsLogger;
     private final int numConnectionsPerBookie;
+    private final int maxConnectionsPerBookie;
     private final BookieAddressResolver bookieAddressResolver;
 
     private final long bookieErrorThresholdPerInterval;
 
+    // bookies which rejected a range read, so we don't keep sending them
+    private final Set<BookieId> rangeReadUnsupportedBookies = ConcurrentHashMap.newKeySet();
+
     public BookieClientImpl(ClientConfiguration conf, EventLoopGroup eventLoopGroup,
                             ByteBufAllocator allocator,
                             OrderedExecutor executor, ScheduledExecutorService scheduler,
@@ -123,6 +130,7 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
 
         this.statsLogger = statsLogger;
         this.numConnectionsPerBookie = conf.getNumChannelsPerBookie();
+        this.maxConnectionsPerBookie = Math.max(conf.getMaxChannelsPerBookie(), numConnectionsPerBookie);
         this.bookieErrorThresholdPerInterval = conf.getBookieErrorThresholdPerInterval();
 
         this.scheduler = scheduler;
@@ -209,7 +217,8 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
                     return null;
                 }
                 PerChannelBookieClientPool newClientPool =
-                    new DefaultPerChannelBookieClientPool(conf, this, addr, numConnectionsPerBookie);
+                    new DefaultPerChannelBookieClientPool(conf, this, addr, numConnectionsPerBookie,
+                            maxConnectionsPerBookie);
                 PerChannelBookieClientPool oldClientPool = channels.putIfAbsent(addr, newClientPool);
                 if (null == oldClientPool) {
                     clientPool = newClientPool;
@@ -326,10 +335,9 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         // the PendingApp might have already failed
         toSend.retain();
 
-        client.obtain(ChannelReadyForAddEntryCallback.create(
-                              this, toSend, ledgerId, entryId, addr,
-                                  ctx, cb, options, masterKey, allowFastFail, writeFlags),
-                      ledgerId);
+        ChannelReadyForAddEntryCallback callback = ChannelReadyForAddEntryCallback.create(
+                this, toSend, ledgerId, entryId, addr, ctx, cb, options, masterKey, allowFastFail, writeFlags);
+        client.obtainForAdd(callback, ledgerId);
     }
 
     @Override
@@ -506,15 +514,61 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
             return;
         }
 
-        client.obtain((rc, pcbc) -> {
+        GenericCallback<PerChannelBookieClient> callback = (rc, pcbc) -> {
             if (rc != BKException.Code.OK) {
                 completeRead(rc, ledgerId, entryId, null, cb, ctx);
             } else {
                 pcbc.readEntry(ledgerId, entryId, cb, ctx, flags, masterKey, allowFastFail);
             }
-        }, ledgerId);
+        };
+        if ((flags & BookieProtocol.FLAG_DO_FENCING) == BookieProtocol.FLAG_DO_FENCING) {
+            // The fencing reads are routed like the adds of the ledger. They don't need to be
+            // ordered with the adds: the recovery adds are only sent once the ledger is fenced,
+            // and the bookie fences the ledger whatever the order of the other adds
+            client.obtainForAdd(callback, ledgerId);
+        } else {
+            client.obtainLeastLoaded(callback, ledgerId, false);
+        }
+    }
+
+    @Override
+    public boolean isRangeReadSupported(BookieId addr) {
+        return !rangeReadUnsupportedBookies.contains(addr);
     }
 
+    @Override
+    public void readEntries(final BookieId addr, final long ledgerId, final long startEntryId,
+                            final int maxCount, final long maxBytes,
+                            final ReadEntriesCallback cb, final Object ctx, int flags) {
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            cb.readEntriesComplete(getRc(BKException.Code.BookieHandleNotAvailableException),
+                                   ledgerId, startEntryId, Collections.emptyList(), ctx);
+            return;
+        }
+
+        final ReadEntriesCallback rangeReadCb = (rc, lId, eId, entries, c) -> {
+            if (rc == BKException.Code.IllegalOpException && rangeReadUnsupportedBookies.add(addr)) {
+                LOG.info("Bookie {} does not support range reads, falling back to single entry reads", addr);
+            }
+            cb.readEntriesComplete(rc, lId, eId, entries, c);
+        };
+        // range reads are only part of the v3 protocol
+        client.obtainLeastLoaded((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                try {
+                    executor.executeOrdered(ledgerId, safeRun(() -> {
+                        cb.readEntriesComplete(rc, ledgerId, startEntryId, Collections.emptyList(), ctx);
+                    }));
+                } catch (RejectedExecutionException re) {
+                    cb.readEntriesComplete(getRc(BKException.Code.InterruptedException),
+                                           ledgerId, startEntryId, Collections.emptyList(), ctx);
+                }
+            } else {
+                pcbc.readEntries(ledgerId, startEntryId, maxCount, maxBytes, rangeReadCb, ctx, flags);
+            }
+        }, ledgerId, useV3Enforced);
+    }
 
     @Override
     public void readEntryWaitForLACUpdate(final BookieId addr,
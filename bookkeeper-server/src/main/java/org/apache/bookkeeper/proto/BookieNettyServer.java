@@ -169,6 +169,13 @@ class BookieNettyServer {
         listenOn(bindAddress, bookieAddress);
     }
 
+    /**
+     * Get the IO threads processing the add and read requests in thread-per-core mode.
+     */
+    EventLoopGroup getShardEventLoopGroup() {
+        return null != eventLoopGroup ? eventLoopGroup : jvmEventLoopGroup;
+    }
+
     public BookieNettyServer setRequestProcessor(RequestProcessor processor) {
         this.requestProcessor = processor;
         return this;
@@ -20,10 +20,14 @@
  */
 package org.apache.bookkeeper.proto;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -36,8 +40,11 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 
 import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
@@ -54,6 +61,16 @@ import org.slf4j.LoggerFactory;
 public class BookieProtoEncoding {
     private static final Logger LOG = LoggerFactory.getLogger(BookieProtoEncoding.class);
 
+    // the frame the V3 message being handed over to the next handlers was decoded from, when the
+    // bytes fields of the message alias the frame
+    private static final FastThreadLocal<ByteBuf> ALIASED_FRAME = new FastThreadLocal<>();
+
+    // the tags of the header of a V3 request and of the operation in the header
+    private static final int REQUEST_HEADER_TAG = (BookkeeperProtocol.Request.HEADER_FIELD_NUMBER << 3)
+            | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int HEADER_OPERATION_TAG = (BookkeeperProtocol.BKPacketHeader.OPERATION_FIELD_NUMBER << 3)
+            | WireFormat.WIRETYPE_VARINT;
+
     /**
      * An encoder/decoder interface for the Bookkeeper protocol.
      */
@@ -319,6 +336,13 @@ public class BookieProtoEncoding {
 
         @Override
         public Object decode(ByteBuf packet) throws Exception {
+            // Only the adds alias the frame, the other requests are small and parsed once copying their bytes
+            if (canAlias(packet) && isAliasingRequest(packet)) {
+                CodedInputStream input = newAliasingInput(packet);
+                BookkeeperProtocol.Request request = BookkeeperProtocol.Request.parseFrom(input, extensionRegistry);
+                input.checkLastTagWas(0);
+                return request;
+            }
             return BookkeeperProtocol.Request.parseFrom(new ByteBufInputStream(packet), extensionRegistry);
         }
 
@@ -342,6 +366,12 @@ public class BookieProtoEncoding {
 
         @Override
         public Object decode(ByteBuf packet) throws Exception {
+            if (canAlias(packet)) {
+                CodedInputStream input = newAliasingInput(packet);
+                BookkeeperProtocol.Response response = BookkeeperProtocol.Response.parseFrom(input, extensionRegistry);
+                input.checkLastTagWas(0);
+                return response;
+            }
             return BookkeeperProtocol.Response.parseFrom(new ByteBufInputStream(packet),
                                                          extensionRegistry);
         }
@@ -354,6 +384,127 @@ public class BookieProtoEncoding {
 
     }
 
+    /**
+     * Whether the bytes fields of the V3 messages decoded from a packet can alias the packet, rather
+     * than being copied out of it. The packet must be a single direct buffer, so that the aliased
+     * bytes can be mapped back to slices of the packet by their memory address.
+     */
+    static boolean canAlias(ByteBuf packet) {
+        return packet.hasMemoryAddress() && packet.nioBufferCount() == 1;
+    }
+
+    /**
+     * Whether the bytes fields of a V3 request decoded from a direct frame alias the frame. Only the adds,
+     * whose entries are handed to the bookie as slices of the frame, keep aliasing it.
+     */
+    static boolean aliasesFrame(BookkeeperProtocol.Request request) {
+        return aliasesFrame(request.getHeader().getOperation().getNumber());
+    }
+
+    private static boolean aliasesFrame(int operation) {
+        return OperationType.ADD_ENTRY_VALUE == operation || OperationType.RANGE_ADD_ENTRY_VALUE == operation;
+    }
+
+    /**
+     * Whether the V3 request in a packet is decoded aliasing the packet, which is decided from the
+     * operation in the header of the request before parsing it. The header is written first, so only
+     * the first bytes of the packet are read.
+     */
+    static boolean isAliasingRequest(ByteBuf packet) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(packet.nioBuffer());
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag != REQUEST_HEADER_TAG) {
+                input.skipField(tag);
+                continue;
+            }
+            int limit = input.pushLimit(input.readRawVarint32());
+            while ((tag = input.readTag()) != 0) {
+                if (tag == HEADER_OPERATION_TAG) {
+                    return aliasesFrame(input.readEnum());
+                }
+                input.skipField(tag);
+            }
+            input.popLimit(limit);
+        }
+        return false;
+    }
+
+    private static CodedInputStream newAliasingInput(ByteBuf packet) {
+        CodedInputStream input = UnsafeByteOperations.unsafeWrap(packet.nioBuffer()).newCodedInput();
+        input.enableAliasing(true);
+        return input;
+    }
+
+    /**
+     * Get the index in a frame of bytes aliasing the frame.
+     *
+     * @return the index of the bytes in the frame, or -1 if the bytes don't alias the frame
+     */
+    static int aliasedIndex(ByteBuf frame, ByteString bytes) {
+        if (null == frame || !frame.hasMemoryAddress() || bytes.isEmpty()) {
+            return -1;
+        }
+        ByteBuffer buffer = bytes.asReadOnlyByteBuffer();
+        if (!buffer.isDirect()) {
+            return -1;
+        }
+        long index = PlatformDependent.directBufferAddress(buffer) + buffer.position() - frame.memoryAddress();
+        if (index < 0 || index + buffer.remaining() > frame.capacity()) {
+            return -1;
+        }
+        return (int) index;
+    }
+
+    /**
+     * Get a buffer holding bytes of a V3 message, which is a retained slice of the frame the message
+     * was decoded from when the bytes alias it, so that the buffer keeps the frame alive. The bytes
+     * which don't alias the frame are wrapped instead.
+     *
+     * @param frame the frame the message was decoded from, or null
+     * @return the buffer, to release once it isn't used anymore
+     */
+    static ByteBuf retainedSlice(ByteBuf frame, ByteString bytes) {
+        int index = aliasedIndex(frame, bytes);
+        if (index >= 0) {
+            return frame.retainedSlice(index, bytes.size());
+        }
+        return Unpooled.wrappedBuffer(bytes.asReadOnlyByteBuffer());
+    }
+
+    /**
+     * Retain the frame the V3 message being read from the channel was decoded from, when the bytes
+     * fields of the message alias the frame. The frame is released once the message is read, so the
+     * handlers using the message after that, e.g. from another thread, must retain the frame.
+     *
+     * @return the retained frame, to release once the message isn't used anymore, or null if the
+     *         message doesn't alias a frame
+     */
+    static ByteBuf retainAliasedFrame() {
+        ByteBuf frame = ALIASED_FRAME.get();
+        return null == frame ? null : frame.retain();
+    }
+
+    /**
+     * Hand a decoded message over to the next handlers, exposing the frame it was decoded from
+     * through {@link #retainAliasedFrame()} if the message aliases it.
+     */
+    private static void fireChannelRead(ChannelHandlerContext ctx, Object result, ByteBuf frame) {
+        if (!(result instanceof MessageLite) || !canAlias(frame)
+                || (result instanceof BookkeeperProtocol.Request
+                    && !aliasesFrame((BookkeeperProtocol.Request) result))) {
+            ctx.fireChannelRead(result);
+            return;
+        }
+        ByteBuf previous = ALIASED_FRAME.get();
+        ALIASED_FRAME.set(frame);
+        try {
+            ctx.fireChannelRead(result);
+        } finally {
+            ALIASED_FRAME.set(previous);
+        }
+    }
+
     private static ByteBuf serializeProtobuf(MessageLite msg, ByteBufAllocator allocator) {
         int size = msg.getSerializedSize();
         // Protobuf serialization is the last step of the netty pipeline. We used to allocate
@@ -447,7 +598,7 @@ public class BookieProtoEncoding {
                 } else {
                     result = reqPreV3.decode(buffer);
                 }
-                ctx.fireChannelRead(result);
+                fireChannelRead(ctx, result, buffer);
             } finally {
                 ReferenceCountUtil.release(msg);
             }
@@ -542,7 +693,7 @@ public class BookieProtoEncoding {
                         result = repPreV3.decode(buffer);
                     }
                 }
-                ctx.fireChannelRead(result);
+                fireChannelRead(ctx, result, buffer);
             } finally {
                 ReferenceCountUtil.release(msg);
             }
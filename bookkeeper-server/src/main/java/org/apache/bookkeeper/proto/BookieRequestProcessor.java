@@ -31,6 +31,7 @@ import com.google.protobuf.ByteString;
 
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.concurrent.Future;
@@ -51,6 +52,7 @@ import org.apache.bookkeeper.auth.AuthToken;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.SafeRunnable;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.processor.RequestProcessor;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -87,11 +89,26 @@ public class BookieRequestProcessor implements RequestProcessor {
      */
     private final OrderedExecutor readThreadPool;
 
+    /**
+     * The virtual threads executing the regular read entry requests in place of the read threadpool, if enabled.
+     */
+    private final VirtualReadThreads readVirtualThreads;
+
+    /**
+     * The scheduler sharing the read threadpool fairly between the classes of read requests, if enabled.
+     */
+    private final FairRequestScheduler readScheduler;
+
     /**
      * The threadpool used to execute all add entry requests issued to this server.
      */
     private final OrderedExecutor writeThreadPool;
 
+    /**
+     * The shards processing the add and read requests in place of the thread pools, in thread-per-core mode.
+     */
+    private final BookieShards shards;
+
     /**
      * TLS management.
      */
@@ -130,24 +147,103 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private final boolean throttleReadResponses;
 
+    private final boolean readFromCacheEnabled;
+
     public BookieRequestProcessor(ServerConfiguration serverCfg, Bookie bookie, StatsLogger statsLogger,
             SecurityHandlerFactory shFactory, ByteBufAllocator allocator) throws SecurityException {
+        this(serverCfg, bookie, statsLogger, shFactory, allocator, null);
+    }
+
+    /**
+     * Create a request processor.
+     *
+     * @param shardEventLoopGroup the IO threads processing the add and read requests in thread-per-core
+     *                            mode, or null to process them in the add and read worker threads
+     */
+    public BookieRequestProcessor(ServerConfiguration serverCfg, Bookie bookie, StatsLogger statsLogger,
+            SecurityHandlerFactory shFactory, ByteBufAllocator allocator, EventLoopGroup shardEventLoopGroup)
+            throws SecurityException {
         this.serverCfg = serverCfg;
         this.allocator = allocator;
-        this.waitTimeoutOnBackpressureMillis = serverCfg.getWaitTimeoutOnResponseBackpressureMillis();
+        if (null != shardEventLoopGroup && serverCfg.getWaitTimeoutOnResponseBackpressureMillis() >= 0) {
+            LOG.warn("The wait on the response backpressure is not applied in thread-per-core mode");
+            this.waitTimeoutOnBackpressureMillis = -1;
+        } else {
+            this.waitTimeoutOnBackpressureMillis = serverCfg.getWaitTimeoutOnResponseBackpressureMillis();
+        }
         this.preserveMdcForTaskExecution = serverCfg.getPreserveMdcForTaskExecution();
         this.bookie = bookie;
-        this.throttleReadResponses = serverCfg.isReadWorkerThreadsThrottlingEnabled();
-        this.readThreadPool = createExecutor(
-                this.serverCfg.getNumReadWorkerThreads(),
-                "BookieReadThreadPool",
-                serverCfg.getMaxPendingReadRequestPerThread(),
-                statsLogger);
-        this.writeThreadPool = createExecutor(
-                this.serverCfg.getNumAddWorkerThreads(),
-                "BookieWriteThreadPool",
-                serverCfg.getMaxPendingAddRequestPerThread(),
-                statsLogger);
+        if (null != shardEventLoopGroup && serverCfg.isReadWorkerThreadsThrottlingEnabled()) {
+            // the IO threads would wait for the responses they have to write themselves
+            LOG.warn("The read responses are not throttled in thread-per-core mode");
+            this.throttleReadResponses = false;
+        } else {
+            this.throttleReadResponses = serverCfg.isReadWorkerThreadsThrottlingEnabled();
+        }
+        this.readFromCacheEnabled = serverCfg.isReadFromCacheOnIoThreadsEnabled();
+        if (null != shardEventLoopGroup) {
+            this.shards = new BookieShards(shardEventLoopGroup,
+                    Math.max(0, serverCfg.getMaxPendingAddRequestPerThread()),
+                    Math.max(0, serverCfg.getMaxPendingReadRequestPerThread()));
+            LOG.info("Processing the add and read requests on {} shards", shards.getNumShards());
+            this.readThreadPool = null;
+            this.writeThreadPool = null;
+        } else {
+            this.shards = null;
+            this.readThreadPool = createExecutor(
+                    this.serverCfg.getNumReadWorkerThreads(),
+                    "BookieReadThreadPool",
+                    serverCfg.getMaxPendingReadRequestPerThread(),
+                    statsLogger);
+            this.writeThreadPool = createExecutor(
+                    this.serverCfg.getNumAddWorkerThreads(),
+                    "BookieWriteThreadPool",
+                    serverCfg.getMaxPendingAddRequestPerThread(),
+                    statsLogger);
+        }
+        if (serverCfg.isReadWorkerVirtualThreadsEnabled() && null != readThreadPool) {
+            int maxPendingReads = Math.max(0, serverCfg.getMaxPendingReadRequestPerThread())
+                    * serverCfg.getNumReadWorkerThreads();
+            this.readVirtualThreads = VirtualReadThreads.create(
+                    serverCfg.getReadWorkerVirtualThreadsMaxConcurrency(),
+                    maxPendingReads,
+                    serverCfg.getPreserveMdcForTaskExecution());
+            if (null == readVirtualThreads) {
+                LOG.warn("Virtual threads aren't supported by the JDK, the reads are executed by the read threadpool");
+            } else {
+                LOG.info("Executing the read requests on virtual threads, at most {} at the same time",
+                        serverCfg.getReadWorkerVirtualThreadsMaxConcurrency());
+            }
+        } else {
+            this.readVirtualThreads = null;
+        }
+        if (serverCfg.isRequestSchedulingEnabled() && null != readThreadPool) {
+            int maxInFlight;
+            if (null != readVirtualThreads) {
+                maxInFlight = serverCfg.getReadWorkerVirtualThreadsMaxConcurrency();
+            } else {
+                // a few reads for each thread, so that the threads don't idle between the reads
+                maxInFlight = 2 * serverCfg.getNumReadWorkerThreads();
+                if (serverCfg.getMaxPendingReadRequestPerThread() > 0) {
+                    maxInFlight = Math.min(maxInFlight, serverCfg.getMaxPendingReadRequestPerThread());
+                }
+            }
+            this.readScheduler = new FairRequestScheduler(
+                    serverCfg.getRequestSchedulingClassifier(),
+                    serverCfg.getRequestSchedulingNumLedgerGroups(),
+                    FairRequestScheduler.parseWeights(serverCfg.getRequestSchedulingClassWeights()),
+                    maxInFlight,
+                    serverCfg.getRequestSchedulingMaxInFlightPerClass(),
+                    Math.max(0, serverCfg.getMaxPendingReadRequestPerThread()) * serverCfg.getNumReadWorkerThreads(),
+                    statsLogger);
+            LOG.info("Scheduling the read requests fairly by {}, with at most {} reads in flight",
+                    serverCfg.getRequestSchedulingClassifier(), maxInFlight);
+        } else {
+            if (serverCfg.isRequestSchedulingEnabled()) {
+                LOG.warn("The read requests are only scheduled fairly when executed by the read worker threads");
+            }
+            this.readScheduler = null;
+        }
         if (serverCfg.getNumLongPollWorkerThreads() <= 0 && readThreadPool != null) {
             this.longPollThreadPool = this.readThreadPool;
         } else {
@@ -198,9 +294,14 @@ public class BookieRequestProcessor implements RequestProcessor {
         this.requestStats = new RequestStats(statsLogger);
 
         int maxAdds = serverCfg.getMaxAddsInProgressLimit();
-        addsSemaphore = maxAdds > 0 ? new Semaphore(maxAdds, true) : null;
-
         int maxReads = serverCfg.getMaxReadsInProgressLimit();
+        if (null != shards && (maxAdds > 0 || maxReads > 0)) {
+            // the IO threads would wait for the requests they have to process themselves
+            LOG.warn("The limits of the adds and reads in progress are not applied in thread-per-core mode");
+            maxAdds = 0;
+            maxReads = 0;
+        }
+        addsSemaphore = maxAdds > 0 ? new Semaphore(maxAdds, true) : null;
         readsSemaphore = maxReads > 0 ? new Semaphore(maxReads, true) : null;
     }
 
@@ -262,10 +363,18 @@ public class BookieRequestProcessor implements RequestProcessor {
         return requestStats.maxReadsInProgressCount();
     }
 
+    @VisibleForTesting
+    boolean isThrottlingReadResponses() {
+        return throttleReadResponses;
+    }
+
     @Override
     public void close() {
         LOG.info("Closing RequestProcessor");
         shutdownExecutor(writeThreadPool);
+        if (null != readVirtualThreads) {
+            readVirtualThreads.shutdown(10, TimeUnit.SECONDS);
+        }
         shutdownExecutor(readThreadPool);
         if (serverCfg.getNumLongPollWorkerThreads() > 0 || readThreadPool == null) {
             shutdownExecutor(longPollThreadPool);
@@ -302,6 +411,27 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    /**
+     * Process a request of a ledger in order with the other requests of the ledger: on the thread of
+     * the ledger in the thread pool, or on the shard of the ledger if there's no thread pool in
+     * thread-per-core mode, or else on the calling thread.
+     *
+     * @param isRead whether the request counts against the pending reads or the pending adds of the shard
+     */
+    private void executeOrdered(OrderedExecutor threadPool, boolean isRead, long ledgerId, SafeRunnable request) {
+        if (null != threadPool) {
+            threadPool.executeOrdered(ledgerId, request);
+        } else if (null != shards) {
+            if (isRead) {
+                shards.executeRead(ledgerId, request);
+            } else {
+                shards.executeAdd(ledgerId, request);
+            }
+        } else {
+            request.run();
+        }
+    }
+
     @Override
     public void processRequest(Object msg, Channel c) {
         // If we can decode this packet as a Request protobuf packet, process
@@ -318,6 +448,12 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case READ_ENTRY:
                         processReadRequestV3(r, c);
                         break;
+                    case RANGE_READ_ENTRY:
+                        processRangeReadRequestV3(r, c);
+                        break;
+                    case RANGE_ADD_ENTRY:
+                        processRangeAddRequestV3(r, c);
+                        break;
                     case FORCE_LEDGER:
                         processForceLedgerRequestV3(r, c);
                         break;
@@ -408,20 +544,12 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private void processWriteLacRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         WriteLacProcessorV3 writeLac = new WriteLacProcessorV3(r, c, this);
-        if (null == writeThreadPool) {
-            writeLac.run();
-        } else {
-            writeThreadPool.executeOrdered(r.getAddRequest().getLedgerId(), writeLac);
-        }
+        executeOrdered(writeThreadPool, false, r.getAddRequest().getLedgerId(), writeLac);
     }
 
     private void processReadLacRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         ReadLacProcessorV3 readLac = new ReadLacProcessorV3(r, c, this);
-        if (null == readThreadPool) {
-            readLac.run();
-        } else {
-            readThreadPool.executeOrdered(r.getAddRequest().getLedgerId(), readLac);
-        }
+        executeOrdered(readThreadPool, true, r.getAddRequest().getLedgerId(), readLac);
     }
 
     private void processAddRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
@@ -434,28 +562,50 @@ public class BookieRequestProcessor implements RequestProcessor {
             threadPool = writeThreadPool;
         }
 
-        if (null == threadPool) {
-            write.run();
+        try {
+            executeOrdered(threadPool, false, r.getAddRequest().getLedgerId(), write);
+        } catch (RejectedExecutionException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
+                          r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
+            }
+            getRequestStats().getAddEntryRejectedCounter().inc();
+            BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
+                    .setLedgerId(r.getAddRequest().getLedgerId())
+                    .setEntryId(r.getAddRequest().getEntryId())
+                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+            BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                    .setHeader(write.getHeader())
+                    .setStatus(addResponse.getStatus())
+                    .setAddResponse(addResponse);
+            BookkeeperProtocol.Response resp = response.build();
+            write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+        }
+    }
+
+    private void processRangeAddRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        RangeAddEntryProcessorV3 write = new RangeAddEntryProcessorV3(r, c, this);
+
+        final OrderedExecutor threadPool;
+        if (RequestUtils.isHighPriority(r)) {
+            threadPool = highPriorityThreadPool;
         } else {
-            try {
-                threadPool.executeOrdered(r.getAddRequest().getLedgerId(), write);
-            } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
-                              r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-                BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
-                        .setLedgerId(r.getAddRequest().getLedgerId())
-                        .setEntryId(r.getAddRequest().getEntryId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(write.getHeader())
-                        .setStatus(addResponse.getStatus())
-                        .setAddResponse(addResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+            threadPool = writeThreadPool;
+        }
+
+        try {
+            executeOrdered(threadPool, false, r.getRangeAddRequest().getLedgerId(), write);
+        } catch (RejectedExecutionException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to process request to add entries from {}:{}. Too many pending requests",
+                          r.getRangeAddRequest().getLedgerId(), r.getRangeAddRequest().getStartEntryId());
             }
+            getRequestStats().getAddEntryRejectedCounter().inc();
+            write.sendResponse(BookkeeperProtocol.RangeAddResponse.newBuilder()
+                    .setLedgerId(r.getRangeAddRequest().getLedgerId())
+                    .setStartEntryId(r.getRangeAddRequest().getStartEntryId())
+                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS)
+                    .build());
         }
     }
 
@@ -469,30 +619,26 @@ public class BookieRequestProcessor implements RequestProcessor {
             threadPool = writeThreadPool;
         }
 
-        if (null == threadPool) {
-            forceLedger.run();
-        } else {
-            try {
-                threadPool.executeOrdered(r.getForceLedgerRequest().getLedgerId(), forceLedger);
-            } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to force ledger {}. Too many pending requests",
-                              r.getForceLedgerRequest().getLedgerId());
-                }
-                BookkeeperProtocol.ForceLedgerResponse.Builder forceLedgerResponse =
-                        BookkeeperProtocol.ForceLedgerResponse.newBuilder()
-                        .setLedgerId(r.getForceLedgerRequest().getLedgerId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(forceLedger.getHeader())
-                        .setStatus(forceLedgerResponse.getStatus())
-                        .setForceLedgerResponse(forceLedgerResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                forceLedger.sendResponse(
-                    forceLedgerResponse.getStatus(),
-                    resp,
-                    requestStats.getForceLedgerRequestStats());
+        try {
+            executeOrdered(threadPool, false, r.getForceLedgerRequest().getLedgerId(), forceLedger);
+        } catch (RejectedExecutionException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to process request to force ledger {}. Too many pending requests",
+                          r.getForceLedgerRequest().getLedgerId());
             }
+            BookkeeperProtocol.ForceLedgerResponse.Builder forceLedgerResponse =
+                    BookkeeperProtocol.ForceLedgerResponse.newBuilder()
+                    .setLedgerId(r.getForceLedgerRequest().getLedgerId())
+                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+            BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                    .setHeader(forceLedger.getHeader())
+                    .setStatus(forceLedgerResponse.getStatus())
+                    .setForceLedgerResponse(forceLedgerResponse);
+            BookkeeperProtocol.Response resp = response.build();
+            forceLedger.sendResponse(
+                forceLedgerResponse.getStatus(),
+                resp,
+                requestStats.getForceLedgerRequestStats());
         }
     }
 
@@ -501,6 +647,7 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         final ReadEntryProcessorV3 read;
         final OrderedExecutor threadPool;
+        boolean isRegularRead = false;
         if (RequestUtils.isLongPollReadRequest(r.getReadRequest())) {
             ExecutorService lpThread = longPollThreadPool.chooseThread(c);
 
@@ -519,31 +666,65 @@ public class BookieRequestProcessor implements RequestProcessor {
                 threadPool = highPriorityThreadPool;
             } else {
                 threadPool = readThreadPool;
+                isRegularRead = true;
+                if (canReadFromCache() && read.tryReadFromCache()) {
+                    getRequestStats().getReadEntryFromCacheCounter().inc();
+                    return;
+                }
             }
         }
 
-        if (null == threadPool) {
-            read.run();
+        Runnable onRejected = () -> {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
+                          r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
+            }
+            getRequestStats().getReadEntryRejectedCounter().inc();
+            BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
+                .setLedgerId(r.getReadRequest().getLedgerId())
+                .setEntryId(r.getReadRequest().getEntryId())
+                .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+            BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(read.getHeader())
+                .setStatus(readResponse.getStatus())
+                .setReadResponse(readResponse);
+            BookkeeperProtocol.Response resp = response.build();
+            read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
+        };
+        try {
+            executeRead(isRegularRead, threadPool, r.getReadRequest().getLedgerId(), read, c, onRejected);
+        } catch (RejectedExecutionException e) {
+            onRejected.run();
+        }
+    }
+
+    private void processRangeReadRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        RangeReadEntryProcessorV3 read = new RangeReadEntryProcessorV3(r, c, this);
+
+        final OrderedExecutor threadPool;
+        final boolean isRegularRead = !RequestUtils.isHighPriority(r);
+        if (!isRegularRead) {
+            threadPool = highPriorityThreadPool;
         } else {
-            try {
-                threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
-            } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
-                              r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
-                    .setLedgerId(r.getReadRequest().getLedgerId())
-                    .setEntryId(r.getReadRequest().getEntryId())
-                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                    .setHeader(read.getHeader())
-                    .setStatus(readResponse.getStatus())
-                    .setReadResponse(readResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
+            threadPool = readThreadPool;
+        }
+
+        Runnable onRejected = () -> {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to process request to range read entries from {}:{}. Too many pending requests",
+                          r.getRangeReadRequest().getLedgerId(), r.getRangeReadRequest().getStartEntryId());
             }
+            getRequestStats().getReadEntryRejectedCounter().inc();
+            read.sendResponse(BookkeeperProtocol.RangeReadResponse.newBuilder()
+                    .setLedgerId(r.getRangeReadRequest().getLedgerId())
+                    .setStartEntryId(r.getRangeReadRequest().getStartEntryId())
+                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS)
+                    .build());
+        };
+        try {
+            executeRead(isRegularRead, threadPool, r.getRangeReadRequest().getLedgerId(), read, c, onRejected);
+        } catch (RejectedExecutionException e) {
+            onRejected.run();
         }
     }
 
@@ -601,23 +782,34 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private void processGetBookieInfoRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         GetBookieInfoProcessorV3 getBookieInfo = new GetBookieInfoProcessorV3(r, c, this);
-        if (null == readThreadPool) {
+        OrderedExecutor threadPool = getInfoThreadPool();
+        if (null == threadPool) {
             getBookieInfo.run();
         } else {
-            readThreadPool.submit(getBookieInfo);
+            threadPool.submit(getBookieInfo);
         }
     }
 
     private void processGetListOfEntriesOfLedgerProcessorV3(final BookkeeperProtocol.Request r, final Channel c) {
         GetListOfEntriesOfLedgerProcessorV3 getListOfEntriesOfLedger = new GetListOfEntriesOfLedgerProcessorV3(r, c,
                 this);
-        if (null == readThreadPool) {
+        OrderedExecutor threadPool = getInfoThreadPool();
+        if (null == threadPool) {
             getListOfEntriesOfLedger.run();
         } else {
-            readThreadPool.submit(getListOfEntriesOfLedger);
+            threadPool.submit(getListOfEntriesOfLedger);
         }
     }
 
+    /**
+     * The thread pool of the requests for the info of the bookie or of a ledger, which may have to scan
+     * the disks. In thread-per-core mode, they are executed by the long poll threads rather than on the
+     * IO threads, which process the add and read requests.
+     */
+    private OrderedExecutor getInfoThreadPool() {
+        return null != shards ? longPollThreadPool : readThreadPool;
+    }
+
     private void processAddRequest(final BookieProtocol.ParsedAddRequest r, final Channel c) {
         WriteEntryProcessor write = WriteEntryProcessor.create(r, c, this);
 
@@ -630,23 +822,19 @@ public class BookieRequestProcessor implements RequestProcessor {
             threadPool = writeThreadPool;
         }
 
-        if (null == threadPool) {
-            write.run();
-        } else {
-            try {
-                threadPool.executeOrdered(r.getLedgerId(), write);
-            } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-
-                write.sendResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getAddRequestStats());
+        try {
+            executeOrdered(threadPool, false, r.getLedgerId(), write);
+        } catch (RejectedExecutionException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
+                        r.entryId);
             }
+            getRequestStats().getAddEntryRejectedCounter().inc();
+
+            write.sendResponse(
+                BookieProtocol.ETOOMANYREQUESTS,
+                ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+                requestStats.getAddRequestStats());
         }
     }
 
@@ -659,31 +847,75 @@ public class BookieRequestProcessor implements RequestProcessor {
         // gets executed as fast as possible, so bypass the normal readThreadPool
         // and execute in highPriorityThreadPool
         final OrderedExecutor threadPool;
-        if (r.isHighPriority() || r.isFencing()) {
+        final boolean isRegularRead = !(r.isHighPriority() || r.isFencing());
+        if (!isRegularRead) {
             threadPool = highPriorityThreadPool;
         } else {
             threadPool = readThreadPool;
+            if (canReadFromCache() && read.tryReadFromCache()) {
+                getRequestStats().getReadEntryFromCacheCounter().inc();
+                return;
+            }
         }
 
-        if (null == threadPool) {
-            read.run();
-        } else {
-            try {
-                threadPool.executeOrdered(r.getLedgerId(), read);
-            } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                read.sendResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getReadRequestStats());
+        Runnable onRejected = () -> {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
+                        r.entryId);
             }
+            getRequestStats().getReadEntryRejectedCounter().inc();
+            read.sendResponse(
+                BookieProtocol.ETOOMANYREQUESTS,
+                ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+                requestStats.getReadRequestStats());
+        };
+        try {
+            executeRead(isRegularRead, threadPool, r.getLedgerId(), read, c, onRejected);
+        } catch (RejectedExecutionException e) {
+            onRejected.run();
+        }
+    }
+
+    /**
+     * Execute a read request. The regular reads are scheduled fairly between the classes of requests, and
+     * executed on the virtual threads, if enabled. The regular reads don't need to be ordered, the long poll
+     * and the high priority reads keep their threadpools.
+     *
+     * @param onRejected answers the read with ETOOMANYREQUESTS, when the read is rejected, either right away or
+     *                   once it's dropped by the scheduler, so that its processor is always released
+     * @throws RejectedExecutionException if the read is rejected right away
+     */
+    private void executeRead(boolean isRegularRead, OrderedExecutor threadPool, long ledgerId, SafeRunnable read,
+                             Channel c, Runnable onRejected) {
+        if (isRegularRead && null != readScheduler) {
+            readScheduler.execute(readScheduler.getRequestClass(c, ledgerId), read,
+                    scheduledRead -> dispatchRead(true, threadPool, ledgerId, scheduledRead), onRejected);
+        } else {
+            dispatchRead(isRegularRead, threadPool, ledgerId, read);
         }
     }
 
+    private void dispatchRead(boolean isRegularRead, OrderedExecutor threadPool, long ledgerId, SafeRunnable read) {
+        if (isRegularRead && null != readVirtualThreads) {
+            readVirtualThreads.execute(read);
+        } else if (isRegularRead && null != readScheduler && null != threadPool) {
+            // the scheduled reads are spread over the threads rather than ordered by ledger, otherwise
+            // the reads in flight of a class whose ledgers map to the same thread would queue behind each other
+            threadPool.execute(read);
+        } else {
+            executeOrdered(threadPool, true, ledgerId, read);
+        }
+    }
+
+    /**
+     * The reads are served from the caches on the IO threads when they would otherwise be handed over
+     * to other threads, unless disabled by the configuration. Without a read thread pool, the reads are
+     * already executed on the IO threads.
+     */
+    private boolean canReadFromCache() {
+        return readFromCacheEnabled && (null != readThreadPool || null != shards);
+    }
+
     public long getWaitTimeoutOnBackpressureMillis() {
         return waitTimeoutOnBackpressureMillis;
     }
@@ -103,7 +103,8 @@ public class BookieServer {
         shFactory = SecurityProviderFactoryFactory
                 .getSecurityProviderFactory(conf.getTLSProviderFactoryClass());
         this.requestProcessor = new BookieRequestProcessor(conf, bookie,
-                statsLogger.scope(SERVER_SCOPE), shFactory, allocator);
+                statsLogger.scope(SERVER_SCOPE), shFactory, allocator,
+                conf.isServerThreadPerCoreEnabled() ? nettyServer.getShardEventLoopGroup() : null);
         this.nettyServer.setRequestProcessor(this.requestProcessor);
     }
 
@@ -0,0 +1,130 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.apache.bookkeeper.common.util.MathUtils;
+
+/**
+ * The shards of a bookie running in thread-per-core mode.
+ *
+ * <p>Each shard is one of the Netty IO threads of the bookie, which processes the requests of the
+ * ledgers whose ids hash to it, in the order they're handed over to it. The requests are handed
+ * over through the lock-free task queue of the IO thread, and the requests received by the IO
+ * thread of their ledger are processed right away.
+ *
+ * <p>Like the task queues of the add and read thread pools, the number of add and read requests
+ * waiting in the task queue of each shard is bounded, so that a shard falling behind rejects the
+ * requests of its ledgers instead of queueing them without limit.
+ */
+class BookieShards {
+
+    private final EventExecutor[] shards;
+    private final int maxPendingAddsPerShard;
+    private final int maxPendingReadsPerShard;
+    // the add and read requests handed over to each shard and not started yet
+    private final AtomicIntegerArray pendingAdds;
+    private final AtomicIntegerArray pendingReads;
+
+    /**
+     * Create the shards of the bookie.
+     *
+     * @param maxPendingAddsPerShard the maximum number of add requests waiting for each shard, or 0 for no limit
+     * @param maxPendingReadsPerShard the maximum number of read requests waiting for each shard, or 0 for no limit
+     */
+    BookieShards(EventLoopGroup eventLoopGroup, int maxPendingAddsPerShard, int maxPendingReadsPerShard) {
+        List<EventExecutor> executors = new ArrayList<>();
+        eventLoopGroup.forEach(executors::add);
+        this.shards = executors.toArray(new EventExecutor[0]);
+        this.maxPendingAddsPerShard = maxPendingAddsPerShard;
+        this.maxPendingReadsPerShard = maxPendingReadsPerShard;
+        this.pendingAdds = new AtomicIntegerArray(shards.length);
+        this.pendingReads = new AtomicIntegerArray(shards.length);
+    }
+
+    int getNumShards() {
+        return shards.length;
+    }
+
+    /**
+     * Get the shard of a ledger, picked like {@link org.apache.bookkeeper.common.util.OrderedExecutor}
+     * picks the thread of an ordering key.
+     */
+    private int getShardIndex(long ledgerId) {
+        return MathUtils.signSafeMod(ledgerId >>> 1, shards.length);
+    }
+
+    /**
+     * Process an add request of a ledger on the shard of the ledger.
+     *
+     * @throws RejectedExecutionException if the shard is shut down or has too many pending add requests
+     */
+    void executeAdd(long ledgerId, Runnable request) {
+        executeOrdered(ledgerId, request, pendingAdds, maxPendingAddsPerShard);
+    }
+
+    /**
+     * Process a read request of a ledger on the shard of the ledger.
+     *
+     * @throws RejectedExecutionException if the shard is shut down or has too many pending read requests
+     */
+    void executeRead(long ledgerId, Runnable request) {
+        executeOrdered(ledgerId, request, pendingReads, maxPendingReadsPerShard);
+    }
+
+    private void executeOrdered(long ledgerId, Runnable request, AtomicIntegerArray pending, int maxPending) {
+        int index = getShardIndex(ledgerId);
+        EventExecutor shard = shards[index];
+        if (shard.inEventLoop()) {
+            request.run();
+            return;
+        }
+        if (pending.incrementAndGet(index) > maxPending && maxPending > 0) {
+            pending.decrementAndGet(index);
+            throw new RejectedExecutionException("Too many requests pending on shard " + index);
+        }
+        try {
+            shard.execute(() -> {
+                pending.decrementAndGet(index);
+                request.run();
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet(index);
+            throw e;
+        }
+    }
+
+    @VisibleForTesting
+    int getPendingAdds(long ledgerId) {
+        return pendingAdds.get(getShardIndex(ledgerId));
+    }
+
+    @VisibleForTesting
+    int getPendingReads(long ledgerId) {
+        return pendingReads.get(getShardIndex(ledgerId));
+    }
+}
@@ -23,6 +23,7 @@ package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -223,6 +224,15 @@ public class BookkeeperInternalCallbacks {
         void readEntryComplete(int rc, long ledgerId, long entryId, ByteBuf buffer, Object ctx);
     }
 
+    /**
+     * Declaration of a callback implementation for range reads. The entries are
+     * consecutive, starting at {@code startEntryId}, and may be fewer than requested.
+     * The callback owns the returned buffers.
+     */
+    public interface ReadEntriesCallback {
+        void readEntriesComplete(int rc, long ledgerId, long startEntryId, List<ByteBuf> entries, Object ctx);
+    }
+
     /**
      * Listener on entries responded.
      */
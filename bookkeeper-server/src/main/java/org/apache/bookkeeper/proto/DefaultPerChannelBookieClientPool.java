@@ -22,6 +22,10 @@ package org.apache.bookkeeper.proto;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -38,6 +42,16 @@ import org.slf4j.LoggerFactory;
 /**
  *  Provide a simple round-robin style channel pool. We could improve it later to do more
  *  fantastic things.
+ *
+ *  <p>The operations are sent on the channel of their key, among the {@code coreSize} first
+ *  channels of the pool, so that the operations of a ledger are ordered. When the pool can
+ *  scale ({@code maxSize > coreSize}), the operations which don't need to be ordered are sent on
+ *  the least loaded channel instead, and channels are added when it is loaded with more than
+ *  {@code scaleUpPendingAddBytes} of adds, up to {@code maxSize}. The extra channels are removed
+ *  when they are idle, and closed on the next check once their last operations completed.
+ *
+ *  <p>The adds are sent on the least loaded channel too, unless range adds are enabled: the adds
+ *  of a ledger are then batched on the channel of the ledger.
  */
 class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
         GenericCallback<PerChannelBookieClient> {
@@ -47,9 +61,19 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
     final PerChannelBookieClientFactory factory;
     final BookieId address;
 
-    final PerChannelBookieClient[] clients;
+    // Replaced as a whole when the pool scales, the first coreSize clients are never removed
+    volatile PerChannelBookieClient[] clients;
+    // Null when the clients already use the v3 protocol
     final PerChannelBookieClient[] clientsV3Enforced;
 
+    final int coreSize;
+    final int maxSize;
+    final long scaleUpPendingAddBytes;
+    // Whether the adds of a key are all sent on the channel of the key
+    final boolean stickyAdds;
+    // Removed from the pool, closed once their pending operations completed. Guarded by this
+    private final List<PerChannelBookieClient> retiredClients = new ArrayList<>();
+
     final ClientConfiguration conf;
     SecurityHandlerFactory shFactory;
 
@@ -59,17 +83,29 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
     DefaultPerChannelBookieClientPool(ClientConfiguration conf, PerChannelBookieClientFactory factory,
                                       BookieId address,
                                       int coreSize) throws SecurityException {
+        this(conf, factory, address, coreSize, coreSize);
+    }
+
+    DefaultPerChannelBookieClientPool(ClientConfiguration conf, PerChannelBookieClientFactory factory,
+                                      BookieId address,
+                                      int coreSize, int maxSize) throws SecurityException {
         checkArgument(coreSize > 0);
+        checkArgument(maxSize >= coreSize);
         this.factory = factory;
         this.address = address;
         this.conf = conf;
+        this.coreSize = coreSize;
+        this.maxSize = maxSize;
+        this.scaleUpPendingAddBytes = conf.getChannelScaleUpPendingAddBytes();
+        this.stickyAdds = !isScalable() || conf.isRangeAddEnabled();
 
         this.shFactory = SecurityProviderFactoryFactory.getSecurityProviderFactory(conf.getTLSProviderFactoryClass());
 
-        this.clients = new PerChannelBookieClient[coreSize];
+        PerChannelBookieClient[] pcbcs = new PerChannelBookieClient[coreSize];
         for (int i = 0; i < coreSize; i++) {
-            this.clients[i] = factory.create(address, this, shFactory, false);
+            pcbcs[i] = factory.create(address, this, shFactory, false);
         }
+        this.clients = pcbcs;
 
         if (conf.getUseV2WireProtocol()) {
             this.clientsV3Enforced = new PerChannelBookieClient[coreSize];
@@ -77,7 +113,7 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
                 this.clientsV3Enforced[i] = factory.create(address, this, shFactory, true);
             }
         } else {
-            this.clientsV3Enforced = this.clients;
+            this.clientsV3Enforced = null;
         }
     }
 
@@ -98,17 +134,26 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
     }
 
     private PerChannelBookieClient getClient(long key, PerChannelBookieClient[] pcbc) {
-        if (1 == pcbc.length) {
+        if (1 == coreSize) {
             return pcbc[0];
         }
-        int idx = MathUtils.signSafeMod(key, pcbc.length);
+        // only the core clients, the mapping of the keys must not change when the pool scales
+        int idx = MathUtils.signSafeMod(key, coreSize);
         return pcbc[idx];
     }
     private PerChannelBookieClient getClient(long key, boolean forceUseV3) {
-        if (forceUseV3) {
-            return getClient(key, clientsV3Enforced);
+        return getClient(key, getClients(forceUseV3));
+    }
+
+    private PerChannelBookieClient[] getClients(boolean forceUseV3) {
+        if (forceUseV3 && clientsV3Enforced != null) {
+            return clientsV3Enforced;
         }
-        return getClient(key, clients);
+        return clients;
+    }
+
+    private boolean isScalable() {
+        return maxSize > coreSize;
     }
 
     @Override
@@ -121,18 +166,125 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
         getClient(key, forceUseV3).connectIfNeededAndDoOp(callback);
     }
 
+    @Override
+    public void obtainLeastLoaded(GenericCallback<PerChannelBookieClient> callback, long key, boolean forceUseV3) {
+        if (!isScalable()) {
+            obtain(callback, key, forceUseV3);
+            return;
+        }
+        PerChannelBookieClient[] pcbcs = getClients(forceUseV3);
+        PerChannelBookieClient pcbc = getLeastLoadedClient(pcbcs);
+        if (pcbcs == clients && pcbc.getPendingAddBytes() >= scaleUpPendingAddBytes) {
+            scaleUp();
+        }
+        pcbc.connectIfNeededAndDoOp(callback);
+    }
+
+    @Override
+    public void obtainForAdd(GenericCallback<PerChannelBookieClient> callback, long key) {
+        if (stickyAdds) {
+            obtain(callback, key);
+        } else {
+            obtainLeastLoaded(callback, key, false);
+        }
+    }
+
+    private static PerChannelBookieClient getLeastLoadedClient(PerChannelBookieClient[] pcbcs) {
+        PerChannelBookieClient leastLoaded = pcbcs[0];
+        long leastPendingBytes = leastLoaded.getPendingAddBytes();
+        long leastPendingRequests = leastLoaded.getNumPendingCompletionRequests();
+        for (int i = 1; i < pcbcs.length; i++) {
+            PerChannelBookieClient pcbc = pcbcs[i];
+            if (leastLoaded.isWritable() && !pcbc.isWritable()) {
+                continue;
+            }
+            long pendingBytes = pcbc.getPendingAddBytes();
+            long pendingRequests = pcbc.getNumPendingCompletionRequests();
+            if ((pcbc.isWritable() && !leastLoaded.isWritable())
+                    || pendingBytes < leastPendingBytes
+                    || (pendingBytes == leastPendingBytes && pendingRequests < leastPendingRequests)) {
+                leastLoaded = pcbc;
+                leastPendingBytes = pendingBytes;
+                leastPendingRequests = pendingRequests;
+            }
+        }
+        return leastLoaded;
+    }
+
+    private synchronized void scaleUp() {
+        PerChannelBookieClient[] pcbcs = clients;
+        if (pcbcs.length >= maxSize) {
+            return;
+        }
+        PerChannelBookieClient pcbc;
+        try {
+            pcbc = factory.create(address, this, shFactory, false);
+        } catch (SecurityException e) {
+            LOG.warn("Failed to add a channel to bookie {} : ", address, e);
+            return;
+        }
+        pcbc.connectIfNeededAndDoOp(this);
+        PerChannelBookieClient[] newPcbcs = Arrays.copyOf(pcbcs, pcbcs.length + 1);
+        newPcbcs[pcbcs.length] = pcbc;
+        clients = newPcbcs;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Scaled up the channels to bookie {} to {}", address, newPcbcs.length);
+        }
+    }
+
+    private synchronized void maybeScaleDown() {
+        Iterator<PerChannelBookieClient> iter = retiredClients.iterator();
+        while (iter.hasNext()) {
+            PerChannelBookieClient pcbc = iter.next();
+            if (pcbc.getNumPendingCompletionRequests() == 0) {
+                pcbc.close(false);
+                iter.remove();
+            }
+        }
+
+        PerChannelBookieClient[] pcbcs = clients;
+        if (pcbcs.length <= coreSize) {
+            return;
+        }
+        long pendingAddBytes = 0;
+        for (PerChannelBookieClient pcbc : pcbcs) {
+            pendingAddBytes += pcbc.getPendingAddBytes();
+        }
+        PerChannelBookieClient last = pcbcs[pcbcs.length - 1];
+        if (pendingAddBytes < scaleUpPendingAddBytes && last.getNumPendingCompletionRequests() == 0) {
+            // the operations which already obtained it may still be sent on it, close it on the next check
+            clients = Arrays.copyOf(pcbcs, pcbcs.length - 1);
+            retiredClients.add(last);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Scaled down the channels to bookie {} to {}", address, pcbcs.length - 1);
+            }
+        }
+    }
+
+    private synchronized List<PerChannelBookieClient> getAllClients() {
+        List<PerChannelBookieClient> pcbcs = new ArrayList<>(Arrays.asList(clients));
+        if (clientsV3Enforced != null) {
+            pcbcs.addAll(Arrays.asList(clientsV3Enforced));
+        }
+        pcbcs.addAll(retiredClients);
+        return pcbcs;
+    }
+
     @Override
     public boolean isWritable(long key) {
-        return getClient(key).isWritable();
+        if (stickyAdds) {
+            return getClient(key).isWritable();
+        }
+        return getLeastLoadedClient(clients).isWritable();
     }
 
     @Override
     public void checkTimeoutOnPendingOperations() {
-        for (int i = 0; i < clients.length; i++) {
-            clients[i].checkTimeoutOnPendingOperations();
-            if (clients != clientsV3Enforced) {
-                clientsV3Enforced[i].checkTimeoutOnPendingOperations();
-            }
+        for (PerChannelBookieClient pcbc : getAllClients()) {
+            pcbc.checkTimeoutOnPendingOperations();
+        }
+        if (isScalable()) {
+            maybeScaleDown();
         }
     }
 
@@ -143,35 +295,24 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
     @Override
     public void disconnect(boolean wait) {
-        for (int i = 0; i < clients.length; i++) {
-            clients[i].disconnect();
-            if (clients != clientsV3Enforced) {
-                clientsV3Enforced[i].disconnect();
-            }
+        for (PerChannelBookieClient pcbc : getAllClients()) {
+            pcbc.disconnect();
         }
     }
 
     @Override
     public void close(boolean wait) {
-        for (int i = 0; i < clients.length; i++) {
-            clients[i].close(wait);
-            if (clients != clientsV3Enforced) {
-                clientsV3Enforced[i].close(wait);
-            }
+        for (PerChannelBookieClient pcbc : getAllClients()) {
+            pcbc.close(wait);
         }
     }
 
     @Override
     public long getNumPendingCompletionRequests() {
         long numPending = 0;
-        for (PerChannelBookieClient pcbc : clients) {
+        for (PerChannelBookieClient pcbc : getAllClients()) {
             numPending += pcbc.getNumPendingCompletionRequests();
         }
-        if (clients != clientsV3Enforced) {
-            for (PerChannelBookieClient pcbc : clientsV3Enforced) {
-                numPending += pcbc.getNumPendingCompletionRequests();
-            }
-        }
         return numPending;
     }
 }
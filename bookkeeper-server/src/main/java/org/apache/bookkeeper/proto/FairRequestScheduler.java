@@ -0,0 +1,369 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.REQUEST_SCHEDULING_WAIT;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.util.AttributeKey;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.SafeRunnable;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the requests of a bookie fairly between classes of requests, e.g. between the clients,
+ * before handing them over to the thread pool executing them.
+ *
+ * <p>Each class has its own queue of requests, and only a bounded number of requests are in
+ * flight in the thread pool at the same time, so that the requests of a class aren't queued
+ * behind all the requests of another class. The next request is taken from the classes with
+ * stride scheduling: each class advances by the inverse of its weight when one of its requests is
+ * dispatched, and the class which advanced the least is picked, so that the classes get shares of
+ * the thread pool proportional to their weights. The classes with requests ready to be dispatched
+ * are kept ordered by their pass, so that picking the next one doesn't go through all the
+ * classes. The number of requests of a class in flight can be capped as well, so that a class
+ * can't occupy the whole thread pool even when the other classes are idle.
+ *
+ * <p>The requests of a class are dispatched in the order they're received, so the requests of a
+ * ledger keep their order as long as they belong to the same class.
+ *
+ * <p>The wait of the requests is recorded for each group of ledgers, and for each principal with a
+ * configured weight. The other principals or hosts are unbounded in number, so they share the
+ * stats labelled {@value #OTHER_REQUEST_CLASS}.
+ */
+class FairRequestScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FairRequestScheduler.class);
+
+    static final String CLASSIFIER_PRINCIPAL = "principal";
+    static final String CLASSIFIER_LEDGER_GROUP = "ledgerGroup";
+
+    static final String REQUEST_CLASS_LABEL = "requestClass";
+    // the label of the wait stats shared by the classes which aren't labelled on their own
+    static final String OTHER_REQUEST_CLASS = "other";
+
+    private static final AttributeKey<String> PRINCIPAL_REQUEST_CLASS =
+            AttributeKey.valueOf("bookiePrincipalRequestClass");
+
+    private final int maxInFlight;
+    private final int maxInFlightPerClass;
+    private final int maxPending;
+    private final boolean classifyByLedgerGroup;
+    private final int numLedgerGroups;
+    private final Map<String, Integer> weights;
+    private final StatsLogger statsLogger;
+    private final Map<String, OpStatsLogger> waitStats = new ConcurrentHashMap<>();
+
+    // the classes with requests pending or in flight. guarded by 'this'.
+    private final Map<String, RequestClass> classes = new HashMap<>();
+    // the classes with requests pending and below their cap of requests in flight, ordered by pass.
+    // guarded by 'this'.
+    private final PriorityQueue<RequestClass> readyClasses =
+            new PriorityQueue<>(Comparator.comparingDouble((RequestClass rc) -> rc.pass));
+    private int numInFlight = 0;
+    private int numPending = 0;
+    // the pass of the last class picked, which the classes becoming active start from
+    private double virtualTime = 0;
+
+    /**
+     * Create a scheduler.
+     *
+     * @param classifier how the requests are classified: by the principal of the client connection,
+     *                   or the remote host for the anonymous connections, or by groups of ledgers
+     * @param numLedgerGroups the number of groups of ledgers, when classified by ledger group
+     * @param weights the weights of the classes, the classes without a weight have a weight of 1
+     * @param maxInFlight the max number of requests in flight in the thread pool
+     * @param maxInFlightPerClass the max number of requests of a class in flight, or 0 for no limit
+     * @param maxPending the max number of requests waiting to be dispatched, after which the new
+     *                   requests are rejected, or 0 for no limit
+     */
+    FairRequestScheduler(String classifier, int numLedgerGroups, Map<String, Integer> weights,
+                         int maxInFlight, int maxInFlightPerClass, int maxPending, StatsLogger statsLogger) {
+        if (CLASSIFIER_LEDGER_GROUP.equals(classifier)) {
+            this.classifyByLedgerGroup = true;
+        } else if (CLASSIFIER_PRINCIPAL.equals(classifier)) {
+            this.classifyByLedgerGroup = false;
+        } else {
+            throw new IllegalArgumentException("Unknown request scheduling classifier : " + classifier);
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("The max number of requests in flight must be positive : "
+                    + maxInFlight);
+        }
+        this.numLedgerGroups = Math.max(1, numLedgerGroups);
+        this.weights = Collections.unmodifiableMap(new HashMap<>(weights));
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerClass = maxInFlightPerClass;
+        this.maxPending = maxPending;
+        this.statsLogger = statsLogger;
+    }
+
+    /**
+     * Parse the weights of the request classes.
+     *
+     * @param weights the weights, formatted as {@code class:weight}
+     */
+    static Map<String, Integer> parseWeights(String[] weights) {
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String weight : weights) {
+            int separator = weight.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid request class weight, expected class:weight : " + weight);
+            }
+            int value = Integer.parseInt(weight.substring(separator + 1).trim());
+            if (value <= 0) {
+                throw new IllegalArgumentException("The weight of a request class must be positive : " + weight);
+            }
+            parsed.put(weight.substring(0, separator).trim(), value);
+        }
+        return parsed;
+    }
+
+    /**
+     * Get the class of a request.
+     */
+    String getRequestClass(Channel channel, long ledgerId) {
+        if (classifyByLedgerGroup) {
+            return String.valueOf(MathUtils.signSafeMod(ledgerId, numLedgerGroups));
+        }
+        String requestClass = channel.attr(PRINCIPAL_REQUEST_CLASS).get();
+        if (null != requestClass) {
+            return requestClass;
+        }
+        BookKeeperPrincipal principal = null;
+        ChannelHandler contextHandler = channel.pipeline().get("contextHandler");
+        if (contextHandler instanceof BookieNettyServer.BookieSideConnectionPeerContextHandler) {
+            principal = ((BookieNettyServer.BookieSideConnectionPeerContextHandler) contextHandler)
+                    .getConnectionPeer().getAuthorizedId();
+        }
+        if (null != principal && !BookKeeperPrincipal.ANONYMOUS.equals(principal)) {
+            requestClass = principal.getName();
+        } else {
+            SocketAddress address = channel.remoteAddress();
+            requestClass = address instanceof InetSocketAddress
+                    ? ((InetSocketAddress) address).getHostString() : String.valueOf(address);
+        }
+        if (null != principal) {
+            // the connection is authenticated, its principal won't change anymore
+            channel.attr(PRINCIPAL_REQUEST_CLASS).set(requestClass);
+        }
+        return requestClass;
+    }
+
+    /**
+     * Schedule a request.
+     *
+     * @param requestClass the class of the request
+     * @param request the request
+     * @param dispatcher hands the request over to the thread pool once it's scheduled, possibly from
+     *                   the thread calling this method
+     * @param onRejected answers the request when it's dropped after being queued, as the thread pool
+     *                   rejects it
+     * @throws RejectedExecutionException if too many requests are pending, or if the request is
+     *                                    rejected by the dispatcher
+     */
+    void execute(String requestClass, SafeRunnable request, Consumer<SafeRunnable> dispatcher,
+                 Runnable onRejected) {
+        PendingRequest next;
+        synchronized (this) {
+            if (maxPending > 0 && numPending >= maxPending) {
+                throw new RejectedExecutionException("Too many pending requests : " + numPending);
+            }
+            RequestClass rc = classes.get(requestClass);
+            if (null == rc) {
+                rc = new RequestClass(requestClass, weights.getOrDefault(requestClass, 1));
+                rc.pass = virtualTime;
+                classes.put(requestClass, rc);
+            }
+            rc.queue.add(new PendingRequest(rc, request, dispatcher, onRejected));
+            numPending++;
+            updateReady(rc);
+            next = poll();
+        }
+        if (null != next) {
+            if (next.request == request) {
+                try {
+                    dispatch(next);
+                } catch (RejectedExecutionException e) {
+                    onComplete(next.requestClass);
+                    throw e;
+                }
+            } else {
+                dispatchOrDrop(next);
+            }
+        }
+    }
+
+    /**
+     * Pick the next request to dispatch, if a request can be dispatched.
+     */
+    private PendingRequest poll() {
+        if (numInFlight >= maxInFlight) {
+            return null;
+        }
+        RequestClass next = readyClasses.poll();
+        if (null == next) {
+            return null;
+        }
+        next.ready = false;
+        virtualTime = next.pass;
+        next.pass += next.stride;
+        next.numInFlight++;
+        numInFlight++;
+        numPending--;
+        PendingRequest request = next.queue.poll();
+        // the class is ordered again by its new pass
+        updateReady(next);
+        return request;
+    }
+
+    /**
+     * Add a class to the ready classes if it has requests pending and is below its cap of requests in
+     * flight. A class leaves the ready classes only when it's picked, so its pass doesn't change while
+     * it's ordered by it.
+     */
+    private void updateReady(RequestClass rc) {
+        if (!rc.ready && !rc.queue.isEmpty()
+                && (maxInFlightPerClass <= 0 || rc.numInFlight < maxInFlightPerClass)) {
+            rc.ready = true;
+            readyClasses.add(rc);
+        }
+    }
+
+    /**
+     * Account for a request of a class which left the thread pool, completed or dropped.
+     */
+    private void onRequestDone(RequestClass rc) {
+        rc.numInFlight--;
+        numInFlight--;
+        if (rc.numInFlight == 0 && rc.queue.isEmpty()) {
+            classes.remove(rc.name);
+        } else {
+            updateReady(rc);
+        }
+    }
+
+    private void dispatch(PendingRequest pending) {
+        pending.requestClass.waitStats.registerSuccessfulEvent(
+                MathUtils.elapsedNanos(pending.enqueueNanos), TimeUnit.NANOSECONDS);
+        pending.dispatcher.accept(new SafeRunnable() {
+            @Override
+            public void safeRun() {
+                try {
+                    pending.request.run();
+                } finally {
+                    onComplete(pending.requestClass);
+                }
+            }
+        });
+    }
+
+    private void onComplete(RequestClass completed) {
+        PendingRequest next;
+        synchronized (this) {
+            onRequestDone(completed);
+            next = poll();
+        }
+        if (null != next) {
+            dispatchOrDrop(next);
+        }
+    }
+
+    /**
+     * Dispatch a request which was queued, dropping it if the thread pool rejects it, e.g. once the
+     * thread pool is shut down or when too many requests are pending in it. The dropped requests
+     * are still answered, so that they're released.
+     */
+    private void dispatchOrDrop(PendingRequest pending) {
+        while (null != pending) {
+            try {
+                dispatch(pending);
+                return;
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Dropping the request {} of class {}, rejected by the thread pool",
+                        pending.request, pending.requestClass.name, e);
+                try {
+                    pending.onRejected.run();
+                } catch (RuntimeException re) {
+                    LOG.warn("Failed to answer the dropped request {} of class {}",
+                            pending.request, pending.requestClass.name, re);
+                }
+            }
+            synchronized (this) {
+                onRequestDone(pending.requestClass);
+                pending = poll();
+            }
+        }
+    }
+
+    private final class RequestClass {
+        final String name;
+        final double stride;
+        final OpStatsLogger waitStats;
+        final ArrayDeque<PendingRequest> queue = new ArrayDeque<>();
+        int numInFlight = 0;
+        double pass;
+        // whether the class is in the ready classes
+        boolean ready = false;
+
+        RequestClass(String name, int weight) {
+            this.name = name;
+            this.stride = 1.0 / weight;
+            String statsLabel = classifyByLedgerGroup || weights.containsKey(name) ? name : OTHER_REQUEST_CLASS;
+            this.waitStats = FairRequestScheduler.this.waitStats.computeIfAbsent(statsLabel,
+                    label -> statsLogger.scopeLabel(REQUEST_CLASS_LABEL, label)
+                            .getOpStatsLogger(REQUEST_SCHEDULING_WAIT));
+        }
+    }
+
+    private static final class PendingRequest {
+        final RequestClass requestClass;
+        final SafeRunnable request;
+        final Consumer<SafeRunnable> dispatcher;
+        final Runnable onRejected;
+        final long enqueueNanos = MathUtils.nowInNano();
+
+        PendingRequest(RequestClass requestClass, SafeRunnable request, Consumer<SafeRunnable> dispatcher,
+                       Runnable onRejected) {
+            this.requestClass = requestClass;
+            this.request = request;
+            this.dispatcher = dispatcher;
+            this.onRejected = onRejected;
+        }
+    }
+}
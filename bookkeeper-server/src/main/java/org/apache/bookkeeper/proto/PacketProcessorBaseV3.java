@@ -20,9 +20,15 @@
  */
 package org.apache.bookkeeper.proto;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.util.ReferenceCountUtil;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
@@ -43,6 +49,8 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
     final Channel channel;
     final BookieRequestProcessor requestProcessor;
     final long enqueueNanos;
+    // the frame the bytes fields of an add request alias, kept until the entries are sliced out of it
+    private ByteBuf requestFrame;
 
     public PacketProcessorBaseV3(Request request, Channel channel,
                                  BookieRequestProcessor requestProcessor) {
@@ -52,7 +60,61 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
         this.enqueueNanos = MathUtils.nowInNano();
     }
 
+    /**
+     * Retain the frame the bytes fields of the request alias, for the processors which slice them out
+     * of the frame once they run on another thread. The frame must be released through
+     * {@link #releaseRequestFrame()} on every path, which {@link #sendResponse} does.
+     */
+    protected void retainRequestFrame() {
+        this.requestFrame = BookieProtoEncoding.retainAliasedFrame();
+    }
+
+    /**
+     * Get a buffer holding bytes of the request, without copying them when they alias the frame of
+     * the request.
+     *
+     * @return the buffer, to release once it isn't used anymore
+     */
+    protected ByteBuf retainedSlice(ByteString bytes) {
+        return BookieProtoEncoding.retainedSlice(requestFrame, bytes);
+    }
+
     protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
+        sendResponse(code, response, statsLogger, Collections.emptyList());
+    }
+
+    /**
+     * Send a response whose bytes fields wrap buffers, rather than copies of them. The buffers are
+     * released once the response is written, or dropped.
+     */
+    protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger,
+                                List<ByteBuf> responseBuffers) {
+        try {
+            writeResponse(code, response, statsLogger, responseBuffers);
+        } finally {
+            releaseRequestFrame();
+        }
+    }
+
+    protected void releaseRequestFrame() {
+        ByteBuf frame = requestFrame;
+        if (null != frame) {
+            requestFrame = null;
+            frame.release();
+        }
+    }
+
+    @VisibleForTesting
+    ByteBuf getRequestFrame() {
+        return requestFrame;
+    }
+
+    private static void release(List<ByteBuf> buffers) {
+        buffers.forEach(ReferenceCountUtil::safeRelease);
+    }
+
+    private void writeResponse(StatusCode code, Object response, OpStatsLogger statsLogger,
+                               List<ByteBuf> responseBuffers) {
         final long writeNanos = MathUtils.nowInNano();
 
         final long timeOut = requestProcessor.getWaitTimeoutOnBackpressureMillis();
@@ -82,6 +144,7 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
                 requestProcessor.getRequestStats().getChannelWriteStats()
                         .registerFailedEvent(MathUtils.elapsedNanos(writeNanos), TimeUnit.NANOSECONDS);
                 statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+                release(responseBuffers);
                 return;
             } else {
                 requestProcessor.invalidateBlacklist(channel);
@@ -91,6 +154,8 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
             channel.writeAndFlush(response).addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture future) throws Exception {
+                    // the response has been serialized by now
+                    release(responseBuffers);
                     long writeElapsedNanos = MathUtils.elapsedNanos(writeNanos);
                     if (!future.isSuccess()) {
                         requestProcessor.getRequestStats().getChannelWriteStats()
@@ -109,6 +174,7 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
         } else {
             LOGGER.debug("Netty channel {} is inactive, "
                     + "hence bypassing netty channel writeAndFlush during sendResponse", channel);
+            release(responseBuffers);
         }
     }
 
@@ -57,11 +57,13 @@ import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.security.cert.Certificate;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -79,8 +81,10 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiPredicate;
+import java.util.function.Supplier;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import lombok.SneakyThrows;
@@ -99,6 +103,7 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallba
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetListOfEntriesOfLedgerCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallbackCtx;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
@@ -116,6 +121,10 @@ import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerRe
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeReadResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
@@ -138,7 +147,8 @@ import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.SafeRunnable;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongPairHashMap;
 import org.apache.bookkeeper.util.collections.SynchronizedHashMultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -180,8 +190,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final long getBookieInfoTimeoutNanos;
     final int startTLSTimeout;
 
-    private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
-            ConcurrentOpenHashMap.<CompletionKey, CompletionValue>newBuilder().build();
+    // Pending v3 requests, by txnId
+    private final ConcurrentLongHashMap<CompletionValue> completionObjects =
+            ConcurrentLongHashMap.<CompletionValue>newBuilder().build();
+
+    // Pending v2 requests, by ledgerId/entryId. There's no txnId in the v2 protocol, so the responses
+    // are matched by operation type too
+    private final ConcurrentLongPairHashMap<CompletionValue> addCompletionObjectsV2;
+    private final ConcurrentLongPairHashMap<CompletionValue> readCompletionObjectsV2;
+    private final ConcurrentLongPairHashMap<CompletionValue> readLacCompletionObjectsV2;
 
     // Map that hold duplicated read requests. The idea is to only use this map (synchronized) when there is a duplicate
     // read request for the same ledgerId/entryId
@@ -239,6 +256,26 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "timeout stats of read_lac requests"
     )
     private final OpStatsLogger readLacTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_RANGE_READ_OP,
+        help = "channel stats of range_read_entry requests"
+    )
+    private final OpStatsLogger rangeReadOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_RANGE_READ,
+        help = "timeout stats of range_read_entry requests"
+    )
+    private final OpStatsLogger rangeReadTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_RANGE_ADD_OP,
+        help = "channel stats of range_add_entry requests"
+    )
+    private final OpStatsLogger rangeAddOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_RANGE_ADD,
+        help = "timeout stats of range_add_entry requests"
+    )
+    private final OpStatsLogger rangeAddTimeoutOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.GET_BOOKIE_INFO_OP,
         help = "channel stats of get_bookie_info requests"
@@ -344,6 +381,18 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private volatile boolean isWritable = true;
     private long lastBookieUnavailableLogTimestamp = 0;
 
+    // Adds waiting to be sent in a range add, by ledger
+    private final ConcurrentLongHashMap<RangeAddBatch> rangeAddBatches =
+            ConcurrentLongHashMap.<RangeAddBatch>newBuilder().build();
+    private final boolean rangeAddEnabled;
+    private final long rangeAddMaxDelayNanos;
+    private final int rangeAddMaxEntries;
+    private final long rangeAddMaxBytes;
+    // Cleared when the bookie rejects a range add, it predates them
+    private volatile boolean rangeAddSupported = true;
+    // Bytes of the adds sent on the channel which are not completed yet
+    private final LongAdder pendingAddBytes = new LongAdder();
+
     public PerChannelBookieClient(OrderedExecutor executor, EventLoopGroup eventLoopGroup,
                                   BookieId addr, BookieAddressResolver bookieAddressResolver) throws SecurityException {
         this(new ClientConfiguration(), executor, eventLoopGroup, addr, NullStatsLogger.INSTANCE, null, null,
@@ -397,6 +446,20 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
+        if (useV2WireProtocol) {
+            this.addCompletionObjectsV2 = ConcurrentLongPairHashMap.<CompletionValue>newBuilder().build();
+            this.readCompletionObjectsV2 = ConcurrentLongPairHashMap.<CompletionValue>newBuilder().build();
+            this.readLacCompletionObjectsV2 = ConcurrentLongPairHashMap.<CompletionValue>newBuilder().build();
+        } else {
+            this.addCompletionObjectsV2 = null;
+            this.readCompletionObjectsV2 = null;
+            this.readLacCompletionObjectsV2 = null;
+        }
+        this.rangeAddEnabled = conf.isRangeAddEnabled() && !useV2WireProtocol;
+        this.rangeAddMaxDelayNanos = TimeUnit.MICROSECONDS.toNanos(conf.getRangeAddMaxDelayMicros());
+        this.rangeAddMaxEntries = conf.getRangeAddMaxEntries();
+        // leave room for the headers in the frame
+        this.rangeAddMaxBytes = Math.min(conf.getRangeAddMaxBytes(), maxFrameSize - 64 * 1024);
 
         this.authProviderFactory = authProviderFactory;
         this.extRegistry = extRegistry;
@@ -413,6 +476,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeLacOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_WRITE_LAC_OP);
         forceLedgerOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_FORCE_OP);
         readLacOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_READ_LAC_OP);
+        rangeReadOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_RANGE_READ_OP);
+        rangeAddOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_RANGE_ADD_OP);
         getBookieInfoOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.GET_BOOKIE_INFO_OP);
         getListOfEntriesOfLedgerCompletionOpLogger = statsLogger
                 .getOpStatsLogger(BookKeeperClientStats.GET_LIST_OF_ENTRIES_OF_LEDGER_OP);
@@ -421,6 +486,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_WRITE_LAC);
         forceLedgerTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_FORCE);
         readLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_READ_LAC);
+        rangeReadTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_RANGE_READ);
+        rangeAddTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_RANGE_ADD);
         getBookieInfoTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.TIMEOUT_GET_BOOKIE_INFO);
         startTLSOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_START_TLS_OP);
         startTLSTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_START_TLS_OP);
@@ -520,7 +587,19 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     protected long getNumPendingCompletionRequests() {
-        return completionObjects.size();
+        long pending = completionObjects.size();
+        if (useV2WireProtocol) {
+            pending += addCompletionObjectsV2.size() + readCompletionObjectsV2.size()
+                + readLacCompletionObjectsV2.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Get the number of bytes of the adds pending on the channel.
+     */
+    long getPendingAddBytes() {
+        return pendingAddBytes.sum();
     }
 
     protected ChannelFuture connect() {
@@ -675,10 +754,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void writeLac(final long ledgerId, final byte[] masterKey, final long lac, ByteBufList toSend, WriteLacCallback cb,
             Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId,
-                                                                OperationType.WRITE_LAC);
+        final CompletionKey completionKey = acquireV3Key(txnId, OperationType.WRITE_LAC);
         // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new WriteLacCompletion(completionKey, cb,
                                                      ctx, lac));
 
@@ -717,10 +795,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return;
         }
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId,
-                                                                OperationType.FORCE_LEDGER);
+        final CompletionKey completionKey = acquireV3Key(txnId, OperationType.FORCE_LEDGER);
         // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new ForceLedgerCompletion(completionKey, cb,
                                                      ctx, ledgerId));
 
@@ -762,6 +839,17 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
     void addEntry(final long ledgerId, byte[] masterKey, final long entryId, ByteBufList toSend, WriteCallback cb,
                   Object ctx, final int options, boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
+        if (rangeAddEnabled && rangeAddSupported
+                && addToRangeAddBatch(ledgerId, masterKey, entryId, toSend, cb, ctx, options, allowFastFail,
+                                      writeFlags)) {
+            return;
+        }
+        addSingleEntry(ledgerId, masterKey, entryId, toSend, cb, ctx, options, allowFastFail, writeFlags);
+    }
+
+    private void addSingleEntry(final long ledgerId, byte[] masterKey, final long entryId, ByteBufList toSend,
+                                WriteCallback cb, Object ctx, final int options, boolean allowFastFail,
+                                final EnumSet<WriteFlag> writeFlags) {
         Object request = null;
         CompletionKey completionKey = null;
         if (useV2WireProtocol) {
@@ -778,7 +866,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     (short) options, masterKey, toSend);
         } else {
             final long txnId = getTxnId();
-            completionKey = new V3CompletionKey(txnId, OperationType.ADD_ENTRY);
+            completionKey = acquireV3Key(txnId, OperationType.ADD_ENTRY);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -789,21 +877,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
             }
 
-            ByteString body = null;
-            if (toSend.hasArray()) {
-                body = UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
-            } else {
-                for (int i = 0; i < toSend.size(); i++) {
-                    ByteString piece = UnsafeByteOperations.unsafeWrap(toSend.getBuffer(i).nioBuffer());
-                    // use ByteString.concat to avoid byte[] allocation when toSend has multiple ByteBufs
-                    body = (body == null) ? piece : body.concat(piece);
-                }
-            }
             AddRequest.Builder addBuilder = AddRequest.newBuilder()
                     .setLedgerId(ledgerId)
                     .setEntryId(entryId)
                     .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
-                    .setBody(body);
+                    .setBody(toByteString(toSend));
 
             if (((short) options & BookieProtocol.FLAG_RECOVERY_ADD) == BookieProtocol.FLAG_RECOVERY_ADD) {
                 addBuilder.setFlag(AddRequest.Flag.RECOVERY_ADD);
@@ -822,7 +900,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
         putCompletionKeyValue(completionKey,
                               acquireAddCompletion(completionKey,
-                                                   cb, ctx, ledgerId, entryId));
+                                                   cb, ctx, ledgerId, entryId, toSend.readableBytes()));
         final Channel c = channel;
         if (c == null) {
             // usually checked in writeAndFlush, but we have extra check
@@ -836,6 +914,135 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    private static ByteString toByteString(ByteBufList toSend) {
+        ByteString body = null;
+        if (toSend.hasArray()) {
+            body = UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
+        } else {
+            for (int i = 0; i < toSend.size(); i++) {
+                // wrap each nio buffer of composite buffers, rather than merging them with nioBuffer()
+                for (ByteBuffer buffer : toSend.getBuffer(i).nioBuffers()) {
+                    ByteString piece = UnsafeByteOperations.unsafeWrap(buffer);
+                    // use ByteString.concat to avoid byte[] allocation when toSend has multiple ByteBufs
+                    body = (body == null) ? piece : body.concat(piece);
+                }
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Add the entry to the range add batch of its ledger, sending the pending batch first if
+     * the entry can't be appended to it.
+     *
+     * <p>A new batch is only opened when other adds are pending on the channel: otherwise there is
+     * nothing to wait for, and the entry is sent right away.
+     *
+     * @return false if the entry can't be batched and must be sent on its own
+     */
+    private boolean addToRangeAddBatch(final long ledgerId, byte[] masterKey, final long entryId,
+                                       ByteBufList toSend, WriteCallback cb, Object ctx, final int options,
+                                       boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
+        final Channel c = channel;
+        if (c == null) {
+            return false;
+        }
+        boolean batchable = ((short) options & BookieProtocol.FLAG_RECOVERY_ADD) == 0
+                && toSend.readableBytes() < rangeAddMaxBytes;
+
+        RangeAddBatch batch = rangeAddBatches.get(ledgerId);
+        if (batch != null) {
+            if (batchable && batch.tryAppend(entryId, options, allowFastFail, writeFlags, toSend, cb, ctx)) {
+                if (batch.isFull()) {
+                    flushRangeAddBatch(batch);
+                }
+                return true;
+            }
+            // the pending batch goes first
+            flushRangeAddBatch(batch);
+        }
+        if (!batchable || pendingAddBytes.sum() == 0) {
+            return false;
+        }
+
+        final RangeAddBatch newBatch = new RangeAddBatch(ledgerId, masterKey, entryId, options, allowFastFail,
+                                                         writeFlags);
+        newBatch.append(toSend, cb, ctx);
+        if (rangeAddBatches.putIfAbsent(ledgerId, newBatch) != null) {
+            // a concurrent add of the ledger opened a batch first
+            newBatch.release();
+            return false;
+        }
+        if (newBatch.isFull()) {
+            flushRangeAddBatch(newBatch);
+        } else {
+            c.eventLoop().schedule(() -> flushRangeAddBatch(newBatch), rangeAddMaxDelayNanos,
+                                   TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    private void flushRangeAddBatch(RangeAddBatch batch) {
+        // the batch is built and sent without any lock, once no entry can be appended anymore
+        if (batch.close()) {
+            rangeAddBatches.remove(batch.ledgerId, batch);
+            sendRangeAdd(batch);
+        }
+    }
+
+    private void sendRangeAdd(RangeAddBatch batch) {
+        if (batch.size() == 1) {
+            // nothing was batched with it
+            addSingleEntry(batch.ledgerId, batch.masterKey, batch.startEntryId, batch.toSend.get(0),
+                           batch.callbacks.get(0), batch.ctxs.get(0), batch.options, batch.allowFastFail,
+                           batch.writeFlags);
+            batch.release();
+            return;
+        }
+
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = acquireV3Key(txnId, OperationType.RANGE_ADD_ENTRY);
+
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.RANGE_ADD_ENTRY)
+                .setTxnId(txnId);
+        if (((short) batch.options & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
+            headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
+        }
+
+        RangeAddRequest.Builder rangeAddBuilder = RangeAddRequest.newBuilder()
+                .setLedgerId(batch.ledgerId)
+                .setStartEntryId(batch.startEntryId)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(batch.masterKey));
+        for (ByteBufList toSend : batch.toSend) {
+            rangeAddBuilder.addBody(toByteString(toSend));
+        }
+        if (!batch.writeFlags.isEmpty()) {
+            rangeAddBuilder.setWriteFlags(WriteFlag.getWriteFlagsValue(batch.writeFlags));
+        }
+
+        final Request rangeAddRequest = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setRangeAddRequest(rangeAddBuilder)
+                .build();
+
+        putCompletionKeyValue(completionKey, new RangeAddCompletion(completionKey, batch));
+        writeAndFlush(channel, completionKey, rangeAddRequest, batch.allowFastFail);
+    }
+
+    /**
+     * Fails the adds which are still waiting to be batched.
+     */
+    private void errorOutPendingRangeAdds(int rc) {
+        for (RangeAddBatch batch : rangeAddBatches.values()) {
+            if (batch.close()) {
+                rangeAddBatches.remove(batch.ledgerId, batch);
+                executor.executeOrdered(batch.ledgerId, () -> batch.complete(rc, null));
+            }
+        }
+    }
+
     public void readLac(final long ledgerId, ReadLacCallback cb, Object ctx) {
         Object request = null;
         CompletionKey completionKey = null;
@@ -845,7 +1052,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             completionKey = acquireV2Key(ledgerId, 0, OperationType.READ_LAC);
         } else {
             final long txnId = getTxnId();
-            completionKey = new V3CompletionKey(txnId, OperationType.READ_LAC);
+            completionKey = acquireV3Key(txnId, OperationType.READ_LAC);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -867,8 +1074,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        final CompletionKey completionKey = acquireV3Key(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
+        putCompletionKeyValue(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -929,7 +1136,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             completionKey = acquireV2Key(ledgerId, entryId, OperationType.READ_ENTRY);
         } else {
             final long txnId = getTxnId();
-            completionKey = new V3CompletionKey(txnId, OperationType.READ_ENTRY);
+            completionKey = acquireV3Key(txnId, OperationType.READ_ENTRY);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -985,16 +1192,56 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .build();
         }
 
-        ReadCompletion readCompletion = new ReadCompletion(completionKey, cb, ctx, ledgerId, entryId);
-        putCompletionKeyValue(completionKey, readCompletion);
+        putCompletionKeyValue(completionKey,
+                              acquireReadCompletion(completionKey,
+                                                    cb, ctx, ledgerId, entryId));
 
         writeAndFlush(channel, completionKey, request, allowFastFail);
     }
 
+    /**
+     * Range Reads. Only supported by the v3 protocol.
+     */
+    public void readEntries(final long ledgerId,
+                            final long startEntryId,
+                            final int maxCount,
+                            final long maxBytes,
+                            ReadEntriesCallback cb,
+                            Object ctx,
+                            int flags) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = acquireV3Key(txnId, OperationType.RANGE_READ_ENTRY);
+
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.RANGE_READ_ENTRY)
+                .setTxnId(txnId);
+        if (((short) flags & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
+            headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
+        }
+
+        RangeReadRequest.Builder rangeReadBuilder = RangeReadRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setStartEntryId(startEntryId)
+                .setMaxCount(maxCount);
+        if (maxBytes > 0) {
+            rangeReadBuilder.setMaxBytes(maxBytes);
+        }
+
+        final Request rangeReadRequest = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setRangeReadRequest(rangeReadBuilder)
+                .build();
+
+        putCompletionKeyValue(completionKey,
+                              new RangeReadCompletion(completionKey, cb, ctx, ledgerId, startEntryId));
+        writeAndFlush(channel, completionKey, rangeReadRequest);
+    }
+
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
+        final CompletionKey completionKey = acquireV3Key(txnId, OperationType.GET_BOOKIE_INFO);
+        putCompletionKeyValue(completionKey,
                               new GetBookieInfoCompletion(
                                       completionKey, cb, ctx));
 
@@ -1020,7 +1267,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     };
 
     public void checkTimeoutOnPendingOperations() {
-        int timedOutOperations = completionObjects.removeIf(timeoutCheck);
+        int timedOutOperations = completionObjects.removeIf((txnId, value) -> value.maybeTimeout());
+        if (useV2WireProtocol) {
+            timedOutOperations += addCompletionObjectsV2.removeIf((ledgerId, entryId, value) -> value.maybeTimeout());
+            timedOutOperations += readCompletionObjectsV2.removeIf((ledgerId, entryId, value) -> value.maybeTimeout());
+            timedOutOperations += readLacCompletionObjectsV2.removeIf(
+                    (ledgerId, entryId, value) -> value.maybeTimeout());
+        }
 
         timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
 
@@ -1139,11 +1392,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
         try {
             final long startTime = MathUtils.nowInNano();
+            // the key may be released and recycled for another request before the write completes
+            final Supplier<CompletionValue> completionLookup = key.lookup();
 
             ChannelPromise promise = channel.newPromise().addListener(future -> {
                 if (future.isSuccess()) {
                     nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                    CompletionValue completion = completionObjects.get(key);
+                    CompletionValue completion = completionLookup.get();
                     if (completion != null) {
                         completion.setOutstanding();
                     }
@@ -1163,7 +1418,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = key.remove();
         if (completion != null) {
             completion.errorOut();
         } else {
@@ -1176,7 +1431,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = key.remove();
         if (completion != null) {
             completion.errorOut(rc);
         } else {
@@ -1210,13 +1465,22 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     void errorOutOutstandingEntries(int rc) {
+        errorOutPendingRangeAdds(rc);
         Optional<CompletionKey> multikey = completionObjectsV2Conflicts.getAnyKey();
         while (multikey.isPresent()) {
             multikey.ifPresent(k -> errorOut(k, rc));
             multikey = completionObjectsV2Conflicts.getAnyKey();
         }
-        for (CompletionKey key : completionObjects.keys()) {
-            errorOut(key, rc);
+        // error out the completions once removed, not while holding the locks of the maps
+        List<CompletionValue> outstanding = new ArrayList<>();
+        completionObjects.removeIf((txnId, value) -> outstanding.add(value));
+        if (useV2WireProtocol) {
+            addCompletionObjectsV2.removeIf((ledgerId, entryId, value) -> outstanding.add(value));
+            readCompletionObjectsV2.removeIf((ledgerId, entryId, value) -> outstanding.add(value));
+            readLacCompletionObjectsV2.removeIf((ledgerId, entryId, value) -> outstanding.add(value));
+        }
+        for (CompletionValue completion : outstanding) {
+            completion.errorOut(rc);
         }
     }
 
@@ -1338,9 +1602,17 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         OperationType operationType = getOperationType(response.getOpCode());
         StatusCode status = getStatusCodeFromErrorCode(response.errorCode);
 
-        CompletionKey key = acquireV2Key(response.ledgerId, response.entryId, operationType);
-        CompletionValue completionValue = getCompletionValue(key);
-        key.release();
+        CompletionValue completionValue = null;
+        ConcurrentLongPairHashMap<CompletionValue> completionObjectsV2 = getCompletionObjectsV2(operationType);
+        if (completionObjectsV2 != null) {
+            completionValue = completionObjectsV2.remove(response.ledgerId, response.entryId);
+        }
+        if (completionValue == null) {
+            // If there's no completion object here, try in the multimap
+            CompletionKey key = acquireV2Key(response.ledgerId, response.entryId, operationType);
+            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
+            key.release();
+        }
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1455,8 +1727,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private void readV3Response(final Response response) {
         final BKPacketHeader header = response.getHeader();
 
-        final CompletionKey key = newCompletionKey(header.getTxnId(), header.getOperation());
-        final CompletionValue completionValue = completionObjects.get(key);
+        // txnIds are unique, so the completion can be removed at once
+        final CompletionValue completionValue = completionObjects.remove(header.getTxnId());
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1466,23 +1738,32 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         } else {
             long orderingKey = completionValue.ledgerId;
-            executor.executeOrdered(orderingKey, new SafeRunnable() {
-                @Override
-                public void safeRun() {
-                    completionValue.restoreMdcContext();
-                    completionValue.handleV3Response(response);
-                }
+            // the response is handled on another thread, after the frame it may alias is released by the decoder
+            final ByteBuf frame = BookieProtoEncoding.retainAliasedFrame();
+            try {
+                executor.executeOrdered(orderingKey, new SafeRunnable() {
+                    @Override
+                    public void safeRun() {
+                        try {
+                            completionValue.restoreMdcContext();
+                            completionValue.handleV3Response(response, frame);
+                        } finally {
+                            ReferenceCountUtil.release(frame);
+                        }
+                    }
 
-                @Override
-                public String toString() {
-                    return String.format("HandleResponse(Txn=%d, Type=%s, Entry=(%d, %d))",
-                                         header.getTxnId(), header.getOperation(),
-                                         completionValue.ledgerId, completionValue.entryId);
-                }
-            });
+                    @Override
+                    public String toString() {
+                        return String.format("HandleResponse(Txn=%d, Type=%s, Entry=(%d, %d))",
+                                             header.getTxnId(), header.getOperation(),
+                                             completionValue.ledgerId, completionValue.entryId);
+                    }
+                });
+            } catch (RuntimeException e) {
+                ReferenceCountUtil.release(frame);
+                throw e;
+            }
         }
-
-        completionObjects.remove(key);
     }
 
     void initTLSHandshake() {
@@ -1571,7 +1852,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         private final OpStatsLogger opLogger;
         private final OpStatsLogger timeoutOpLogger;
         private final String operationName;
-        private final Map<String, String> mdcContextMap;
+        private Map<String, String> mdcContextMap;
         protected Object ctx;
         protected long ledgerId;
         protected long entryId;
@@ -1592,6 +1873,17 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             this.mdcContextMap = preserveMdcForTaskExecution ? MDC.getCopyOfContextMap() : null;
         }
 
+        /**
+         * Reset the state of a recycled completion for a new request.
+         */
+        protected void reset(Object ctx, long ledgerId, long entryId) {
+            this.ctx = ctx;
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+            this.startTime = MathUtils.nowInNano();
+            this.mdcContextMap = preserveMdcForTaskExecution ? MDC.getCopyOfContextMap() : null;
+        }
+
         private long latency() {
             return MathUtils.elapsedNanos(startTime);
         }
@@ -1681,6 +1973,17 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
         public abstract void handleV3Response(
                 BookkeeperProtocol.Response response);
+
+        /**
+         * Handle a V3 response, whose bytes fields may alias the frame the response was decoded from.
+         * The frame is released once the response is handled, so the bytes the callbacks may hold on to
+         * must be sliced from the frame, see {@link BookieProtoEncoding#retainedSlice(ByteBuf, ByteString)}.
+         *
+         * @param frame the frame aliased by the response, or null
+         */
+        public void handleV3Response(BookkeeperProtocol.Response response, ByteBuf frame) {
+            handleV3Response(response);
+        }
     }
 
     // visible for testing
@@ -1843,28 +2146,56 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     // visible for testing
-    class ReadCompletion extends CompletionValue {
-        final ReadEntryCallback cb;
+    private final Recycler<ReadCompletion> readCompletionRecycler = new Recycler<ReadCompletion>() {
+            @Override
+            protected ReadCompletion newObject(Recycler.Handle<ReadCompletion> handle) {
+                return new ReadCompletion(handle);
+            }
+        };
 
-        public ReadCompletion(final CompletionKey key,
-                              final ReadEntryCallback originalCallback,
-                              final Object originalCtx,
-                              long ledgerId, final long entryId) {
-            super("Read", originalCtx, ledgerId, entryId,
-                  readEntryOpLogger, readTimeoutOpLogger);
+    ReadCompletion acquireReadCompletion(final CompletionKey key,
+                                         final ReadEntryCallback originalCallback,
+                                         final Object originalCtx,
+                                         final long ledgerId, final long entryId) {
+        ReadCompletion completion = readCompletionRecycler.get();
+        completion.reset(key, originalCallback, originalCtx, ledgerId, entryId);
+        return completion;
+    }
 
-            this.cb = new ReadEntryCallback() {
-                    @Override
-                    public void readEntryComplete(int rc, long ledgerId,
-                                                  long entryId, ByteBuf buffer,
-                                                  Object ctx) {
-                        logOpResult(rc);
-                        originalCallback.readEntryComplete(rc,
-                                                           ledgerId, entryId,
-                                                           buffer, originalCtx);
-                        key.release();
-                    }
-                };
+    // visible for testing
+    class ReadCompletion extends CompletionValue implements ReadEntryCallback {
+        final Recycler.Handle<ReadCompletion> handle;
+
+        CompletionKey key = null;
+        ReadEntryCallback originalCallback = null;
+
+        ReadCompletion(Recycler.Handle<ReadCompletion> handle) {
+            super("Read", null, -1, -1, readEntryOpLogger, readTimeoutOpLogger);
+            this.handle = handle;
+        }
+
+        void reset(final CompletionKey key,
+                   final ReadEntryCallback originalCallback,
+                   final Object originalCtx,
+                   final long ledgerId, final long entryId) {
+            this.key = key;
+            this.originalCallback = originalCallback;
+            reset(originalCtx, ledgerId, entryId);
+        }
+
+        @Override
+        public void readEntryComplete(int rc, long ledgerId, long entryId,
+                                      ByteBuf buffer, Object ctx) {
+            logOpResult(rc);
+            ReadEntryCallback callback = originalCallback;
+            CompletionKey completionKey = key;
+            key = null;
+            originalCallback = null;
+            this.ctx = null;
+            handle.recycle(this);
+            // the callback may issue a new read, which can reuse this completion
+            callback.readEntryComplete(rc, ledgerId, entryId, buffer, ctx);
+            completionKey.release();
         }
 
         @Override
@@ -1875,8 +2206,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         @Override
         public void errorOut(final int rc) {
             errorOutAndRunCallback(
-                    () -> cb.readEntryComplete(rc, ledgerId,
-                                               entryId, null, ctx));
+                    () -> readEntryComplete(rc, ledgerId,
+                                            entryId, null, ctx));
         }
 
         @Override
@@ -1899,13 +2230,18 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
         @Override
         public void handleV3Response(BookkeeperProtocol.Response response) {
+            handleV3Response(response, null);
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response, ByteBuf frame) {
             readEntryOutstanding.dec();
             ReadResponse readResponse = response.getReadResponse();
             StatusCode status = response.getStatus() == StatusCode.EOK
                 ? readResponse.getStatus() : response.getStatus();
             ByteBuf buffer = Unpooled.EMPTY_BUFFER;
             if (readResponse.hasBody()) {
-                buffer = Unpooled.wrappedBuffer(readResponse.getBody().asReadOnlyByteBuffer());
+                buffer = BookieProtoEncoding.retainedSlice(frame, readResponse.getBody());
             }
             long maxLAC = INVALID_ENTRY_ID;
             if (readResponse.hasMaxLAC()) {
@@ -1918,7 +2254,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             handleReadResponse(readResponse.getLedgerId(),
                                readResponse.getEntryId(),
                                status, buffer, maxLAC, lacUpdateTimestamp);
-            buffer.release(); // meaningless using unpooled, but client may expect to hold the last reference
+            buffer.release(); // the buffer may be a slice of the frame, the client retains it to hold on to it
         }
 
         private void handleReadResponse(long ledgerId,
@@ -1940,7 +2276,273 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             if (lacUpdateTimestamp > -1L && (ctx instanceof ReadLastConfirmedAndEntryContext)) {
                 ((ReadLastConfirmedAndEntryContext) ctx).setLacUpdateTimestamp(lacUpdateTimestamp);
             }
-            cb.readEntryComplete(rc, ledgerId, entryId, buffer.slice(), ctx);
+            readEntryComplete(rc, ledgerId, entryId, buffer.slice(), ctx);
+        }
+    }
+
+    // visible for testing
+    class RangeReadCompletion extends CompletionValue {
+        final ReadEntriesCallback cb;
+
+        public RangeReadCompletion(final CompletionKey key,
+                                   final ReadEntriesCallback originalCallback,
+                                   final Object originalCtx,
+                                   long ledgerId, final long startEntryId) {
+            super("RangeRead", originalCtx, ledgerId, startEntryId,
+                  rangeReadOpLogger, rangeReadTimeoutOpLogger);
+
+            this.cb = new ReadEntriesCallback() {
+                    @Override
+                    public void readEntriesComplete(int rc, long ledgerId, long startEntryId,
+                                                    List<ByteBuf> entries, Object ctx) {
+                        logOpResult(rc);
+                        originalCallback.readEntriesComplete(rc, ledgerId, startEntryId, entries, originalCtx);
+                        key.release();
+                    }
+                };
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(
+                    () -> cb.readEntriesComplete(rc, ledgerId, entryId, Collections.emptyList(), ctx));
+        }
+
+        @Override
+        public void setOutstanding() {
+            readEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            handleV3Response(response, null);
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response, ByteBuf frame) {
+            readEntryOutstanding.dec();
+            RangeReadResponse rangeReadResponse = response.getRangeReadResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? rangeReadResponse.getStatus() : response.getStatus();
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "startEntry", entryId,
+                            "numEntries", rangeReadResponse.getBodyCount(),
+                            "endStatus", rangeReadResponse.getEndStatus());
+            }
+
+            int rc;
+            if (StatusCode.EBADREQ == status && !response.hasRangeReadResponse()) {
+                // bookies which predate range reads reject the operation as unknown, without a range
+                // read response, while the bookies supporting them reject invalid requests with one
+                rc = BKException.Code.IllegalOpException;
+            } else {
+                rc = convertStatus(status, BKException.Code.ReadException);
+            }
+
+            if (rc == BKException.Code.OK && rangeReadResponse.hasMaxLAC()
+                    && (ctx instanceof ReadEntryCallbackCtx)) {
+                ((ReadEntryCallbackCtx) ctx).setLastAddConfirmed(rangeReadResponse.getMaxLAC());
+            }
+
+            List<ByteBuf> entries;
+            if (rc == BKException.Code.OK) {
+                entries = new ArrayList<>(rangeReadResponse.getBodyCount());
+                for (ByteString body : rangeReadResponse.getBodyList()) {
+                    entries.add(BookieProtoEncoding.retainedSlice(frame, body));
+                }
+            } else {
+                entries = Collections.emptyList();
+            }
+            cb.readEntriesComplete(rc, ledgerId, entryId, entries, ctx);
+        }
+    }
+
+    /**
+     * Consecutive adds of a ledger, sent to the bookie in a single range add request.
+     *
+     * <p>Entries are appended under the monitor of the batch until it's closed. Once closed, the
+     * batch is owned by the thread which closed it.
+     */
+    private class RangeAddBatch {
+        final long ledgerId;
+        final byte[] masterKey;
+        final long startEntryId;
+        final int options;
+        final boolean allowFastFail;
+        final EnumSet<WriteFlag> writeFlags;
+        final List<ByteBufList> toSend = new ArrayList<>();
+        final List<WriteCallback> callbacks = new ArrayList<>();
+        final List<Object> ctxs = new ArrayList<>();
+        long bytes = 0;
+        private boolean closed = false;
+
+        RangeAddBatch(long ledgerId, byte[] masterKey, long startEntryId, int options, boolean allowFastFail,
+                      EnumSet<WriteFlag> writeFlags) {
+            this.ledgerId = ledgerId;
+            this.masterKey = masterKey;
+            this.startEntryId = startEntryId;
+            this.options = options;
+            this.allowFastFail = allowFastFail;
+            this.writeFlags = writeFlags;
+        }
+
+        int size() {
+            return toSend.size();
+        }
+
+        boolean canAppend(long entryId, int options, boolean allowFastFail, EnumSet<WriteFlag> writeFlags,
+                          int entrySize) {
+            return entryId == startEntryId + size()
+                    && options == this.options
+                    && allowFastFail == this.allowFastFail
+                    && writeFlags.equals(this.writeFlags)
+                    && bytes + entrySize <= rangeAddMaxBytes;
+        }
+
+        synchronized boolean tryAppend(long entryId, int options, boolean allowFastFail,
+                                       EnumSet<WriteFlag> writeFlags, ByteBufList entry, WriteCallback cb,
+                                       Object ctx) {
+            if (closed || !canAppend(entryId, options, allowFastFail, writeFlags, entry.readableBytes())) {
+                return false;
+            }
+            append(entry, cb, ctx);
+            return true;
+        }
+
+        synchronized boolean isFull() {
+            return size() >= rangeAddMaxEntries || bytes >= rangeAddMaxBytes;
+        }
+
+        /**
+         * Stop appending entries to the batch.
+         *
+         * @return false if the batch was already closed by another thread
+         */
+        synchronized boolean close() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+
+        void append(ByteBufList entry, WriteCallback cb, Object ctx) {
+            // the caller releases its reference once the entry is handed over
+            toSend.add(entry.retain());
+            callbacks.add(cb);
+            ctxs.add(ctx);
+            bytes += entry.readableBytes();
+        }
+
+        /**
+         * Complete every entry with the status returned for it, or with rc if there's none.
+         */
+        void complete(int rc, int[] entryRcs) {
+            for (int i = 0; i < size(); i++) {
+                int entryRc = entryRcs != null ? entryRcs[i] : rc;
+                callbacks.get(i).writeComplete(entryRc, ledgerId, startEntryId + i, bookieId, ctxs.get(i));
+            }
+            release();
+        }
+
+        void release() {
+            for (ByteBufList entry : toSend) {
+                entry.release();
+            }
+            toSend.clear();
+        }
+    }
+
+    // visible for testing
+    class RangeAddCompletion extends CompletionValue {
+        final CompletionKey key;
+        final RangeAddBatch batch;
+
+        RangeAddCompletion(final CompletionKey key, final RangeAddBatch batch) {
+            super("RangeAdd", null, batch.ledgerId, batch.startEntryId,
+                  rangeAddOpLogger, rangeAddTimeoutOpLogger);
+            this.key = key;
+            this.batch = batch;
+            pendingAddBytes.add(batch.bytes);
+        }
+
+        @Override
+        boolean maybeTimeout() {
+            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
+                timeout();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> complete(rc, null));
+        }
+
+        @Override
+        public void setOutstanding() {
+            addEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            addEntryOutstanding.dec();
+            RangeAddResponse rangeAddResponse = response.getRangeAddResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? rangeAddResponse.getStatus() : response.getStatus();
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "startEntry", entryId,
+                            "numEntries", batch.size());
+            }
+
+            if (StatusCode.EBADREQ == status && !response.hasRangeAddResponse()) {
+                // bookies which predate range adds reject the operation as unknown, without a
+                // range add response, send the entries one by one instead
+                rangeAddSupported = false;
+                pendingAddBytes.add(-batch.bytes);
+                logOpResult(BKException.Code.IllegalOpException);
+                for (int i = 0; i < batch.size(); i++) {
+                    addSingleEntry(ledgerId, batch.masterKey, entryId + i, batch.toSend.get(i),
+                                   batch.callbacks.get(i), batch.ctxs.get(i), batch.options,
+                                   batch.allowFastFail, batch.writeFlags);
+                }
+                batch.release();
+                key.release();
+                return;
+            }
+
+            int rc = convertStatus(status, BKException.Code.WriteException);
+            int[] entryRcs = null;
+            if (rc == BKException.Code.OK) {
+                entryRcs = new int[batch.size()];
+                for (int i = 0; i < entryRcs.length; i++) {
+                    entryRcs[i] = i < rangeAddResponse.getEntryStatusCount()
+                        ? convertStatus(rangeAddResponse.getEntryStatus(i), BKException.Code.WriteException)
+                        : BKException.Code.WriteException;
+                }
+            }
+            complete(rc, entryRcs);
+        }
+
+        private void complete(int rc, int[] entryRcs) {
+            pendingAddBytes.add(-batch.bytes);
+            logOpResult(rc);
+            batch.complete(rc, entryRcs);
+            key.release();
         }
     }
 
@@ -2121,9 +2723,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     AddCompletion acquireAddCompletion(final CompletionKey key,
                                        final WriteCallback originalCallback,
                                        final Object originalCtx,
-                                       final long ledgerId, final long entryId) {
+                                       final long ledgerId, final long entryId,
+                                       final int addBytes) {
         AddCompletion completion = addCompletionRecycler.get();
-        completion.reset(key, originalCallback, originalCtx, ledgerId, entryId);
+        completion.reset(key, originalCallback, originalCtx, ledgerId, entryId, addBytes);
         return completion;
     }
 
@@ -2133,6 +2736,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
         CompletionKey key = null;
         WriteCallback originalCallback = null;
+        int addBytes = 0;
 
         AddCompletion(Recycler.Handle<AddCompletion> handle) {
             super("Add", null, -1, -1, addEntryOpLogger, addTimeoutOpLogger);
@@ -2142,19 +2746,20 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         void reset(final CompletionKey key,
                    final WriteCallback originalCallback,
                    final Object originalCtx,
-                   final long ledgerId, final long entryId) {
+                   final long ledgerId, final long entryId,
+                   final int addBytes) {
             this.key = key;
             this.originalCallback = originalCallback;
-            this.ctx = originalCtx;
-            this.ledgerId = ledgerId;
-            this.entryId = entryId;
-            this.startTime = MathUtils.nowInNano();
+            this.addBytes = addBytes;
+            pendingAddBytes.add(addBytes);
+            reset(originalCtx, ledgerId, entryId);
         }
 
         @Override
         public void writeComplete(int rc, long ledgerId, long entryId,
                                   BookieId addr,
                                   Object ctx) {
+            pendingAddBytes.add(-addBytes);
             logOpResult(rc);
             originalCallback.writeComplete(rc, ledgerId, entryId, addr, ctx);
             key.release();
@@ -2217,29 +2822,53 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    // visable for testing
-    CompletionKey newCompletionKey(long txnId, OperationType operationType) {
-        return new V3CompletionKey(txnId, operationType);
+    private final Recycler<V3CompletionKey> v3KeyRecycler = new Recycler<V3CompletionKey>() {
+            @Override
+            protected V3CompletionKey newObject(
+                    Recycler.Handle<V3CompletionKey> handle) {
+                return new V3CompletionKey(handle);
+            }
+        };
+
+    V3CompletionKey acquireV3Key(long txnId, OperationType operationType) {
+        V3CompletionKey key = v3KeyRecycler.get();
+        key.reset(txnId, operationType);
+        return key;
     }
 
     class V3CompletionKey extends CompletionKey {
+        private final Handle<V3CompletionKey> recyclerHandle;
+        long txnId;
 
-        public V3CompletionKey(long txnId, OperationType operationType) {
-            super(txnId, operationType);
+        private V3CompletionKey(Handle<V3CompletionKey> handle) {
+            super(null);
+            this.recyclerHandle = handle;
+        }
+
+        void reset(long txnId, OperationType operationType) {
+            this.txnId = txnId;
+            this.operationType = operationType;
         }
 
         @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof V3CompletionKey)) {
-                return false;
-            }
-            V3CompletionKey that = (V3CompletionKey) obj;
-            return this.txnId == that.txnId && this.operationType == that.operationType;
+        CompletionValue putIfAbsent(CompletionValue value) {
+            return completionObjects.putIfAbsent(txnId, value);
         }
 
         @Override
-        public int hashCode() {
-            return ((int) txnId);
+        CompletionValue get() {
+            return completionObjects.get(txnId);
+        }
+
+        @Override
+        CompletionValue remove() {
+            return completionObjects.remove(txnId);
+        }
+
+        @Override
+        Supplier<CompletionValue> lookup() {
+            final long txnId = this.txnId;
+            return () -> completionObjects.get(txnId);
         }
 
         @Override
@@ -2247,18 +2876,35 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             return String.format("TxnId(%d), OperationType(%s)", txnId, operationType);
         }
 
+        @Override
+        public void release() {
+            recyclerHandle.recycle(this);
+        }
     }
 
     abstract class CompletionKey {
-        final long txnId;
         OperationType operationType;
 
-        CompletionKey(long txnId,
-                      OperationType operationType) {
-            this.txnId = txnId;
+        CompletionKey(OperationType operationType) {
             this.operationType = operationType;
         }
 
+        /**
+         * Add the completion to the pending requests, unless there's already one with the same key.
+         *
+         * @return the completion already pending, or null
+         */
+        abstract CompletionValue putIfAbsent(CompletionValue value);
+
+        abstract CompletionValue get();
+
+        abstract CompletionValue remove();
+
+        /**
+         * Get a lookup of the completion of this key, which stays valid once the key is released.
+         */
+        abstract Supplier<CompletionValue> lookup();
+
         public void release() {}
     }
 
@@ -2296,20 +2942,24 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
-        CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
+        CompletionValue existingValue = key.putIfAbsent(value);
         if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
             // There's a pending read request on same ledger/entry. Use the multimap to track all of them
             completionObjectsV2Conflicts.put(key, value);
         }
     }
 
-    private CompletionValue getCompletionValue(CompletionKey key) {
-        CompletionValue completionValue = completionObjects.remove(key);
-        if (completionValue == null) {
-            // If there's no completion object here, try in the multimap
-            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
+    private ConcurrentLongPairHashMap<CompletionValue> getCompletionObjectsV2(OperationType operationType) {
+        switch (operationType) {
+            case ADD_ENTRY:
+                return addCompletionObjectsV2;
+            case READ_ENTRY:
+                return readCompletionObjectsV2;
+            case READ_LAC:
+                return readLacCompletionObjectsV2;
+            default:
+                return null;
         }
-        return completionValue;
     }
 
     private long getTxnId() {
@@ -2337,7 +2987,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         long entryId;
 
         private V2CompletionKey(Handle<V2CompletionKey> handle) {
-            super(-1, null);
+            super(null);
             this.recyclerHandle = handle;
         }
 
@@ -2347,6 +2997,29 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             this.operationType = operationType;
         }
 
+        @Override
+        CompletionValue putIfAbsent(CompletionValue value) {
+            return getCompletionObjectsV2(operationType).putIfAbsent(ledgerId, entryId, value);
+        }
+
+        @Override
+        CompletionValue get() {
+            return getCompletionObjectsV2(operationType).get(ledgerId, entryId);
+        }
+
+        @Override
+        CompletionValue remove() {
+            return getCompletionObjectsV2(operationType).remove(ledgerId, entryId);
+        }
+
+        @Override
+        Supplier<CompletionValue> lookup() {
+            final ConcurrentLongPairHashMap<CompletionValue> completions = getCompletionObjectsV2(operationType);
+            final long ledgerId = this.ledgerId;
+            final long entryId = this.entryId;
+            return () -> completions.get(ledgerId, entryId);
+        }
+
         @Override
         public boolean equals(Object object) {
             if (!(object instanceof V2CompletionKey)) {
@@ -2544,8 +3217,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         LOG.info("Initializing TLS to {}", channel);
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
+        final CompletionKey completionKey = acquireV3Key(txnId, OperationType.START_TLS);
+        putCompletionKeyValue(completionKey,
                               new StartTLSCompletion(completionKey));
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -51,7 +51,31 @@ public interface PerChannelBookieClientPool {
     void obtain(GenericCallback<PerChannelBookieClient> callback, long key, boolean forceUseV3);
 
     /**
-     * Returns status of a client.
+     * Obtain the least loaded channel from channel pool, to execute operations which don't need
+     * to be ordered with the other operations of the same key.
+     *
+     * @param callback
+     *          callback to return channel from channel pool
+     * @param forceUseV3
+     *          whether or not use v3 protocol for connection
+     */
+    default void obtainLeastLoaded(GenericCallback<PerChannelBookieClient> callback, long key, boolean forceUseV3) {
+        obtain(callback, key, forceUseV3);
+    }
+
+    /**
+     * Obtain the channel to send an add of the key on. The fencing reads of a ledger are sent
+     * on the same channels as its adds.
+     *
+     * @param callback
+     *          callback to return channel from channel pool
+     */
+    default void obtainForAdd(GenericCallback<PerChannelBookieClient> callback, long key) {
+        obtain(callback, key);
+    }
+
+    /**
+     * Returns status of the client the adds of the key are sent on.
      * It is suggested to delay/throttle requests to this channel if isWritable is false.
      *
      * @param key
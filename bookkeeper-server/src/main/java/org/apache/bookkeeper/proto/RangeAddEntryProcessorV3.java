@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor for v3 range add packets. It adds a batch of consecutive entries of a ledger,
+ * which are journaled together, and acknowledges each of them in a single response frame,
+ * once all of them have been persisted.
+ */
+class RangeAddEntryProcessorV3 extends PacketProcessorBaseV3 {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RangeAddEntryProcessorV3.class);
+
+    private final RangeAddRequest rangeAddRequest;
+    private final long ledgerId;
+    private final long startEntryId;
+
+    RangeAddEntryProcessorV3(Request request,
+                             Channel channel,
+                             BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+        retainRequestFrame();
+        requestProcessor.onAddRequestStart(channel);
+
+        this.rangeAddRequest = request.getRangeAddRequest();
+        this.ledgerId = rangeAddRequest.getLedgerId();
+        this.startEntryId = rangeAddRequest.getStartEntryId();
+    }
+
+    // Returns null if the entries were handed to the bookie, the response is sent once they are persisted
+    private RangeAddResponse getRangeAddResponse() {
+        final long startTimeNanos = MathUtils.nowInNano();
+        final RangeAddResponse.Builder rangeAddResponse = RangeAddResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setStartEntryId(startEntryId);
+
+        if (!isVersionCompatible()) {
+            return rangeAddResponse.setStatus(StatusCode.EBADVERSION).build();
+        }
+
+        if (requestProcessor.getBookie().isReadOnly()
+            && !(RequestUtils.isHighPriority(request)
+                    && requestProcessor.getBookie().isAvailableForHighPriorityWrites())) {
+            LOG.warn("BookieServer is running as readonly mode, so rejecting the request from the client!");
+            return rangeAddResponse.setStatus(StatusCode.EREADONLY).build();
+        }
+
+        final int numEntries = rangeAddRequest.getBodyCount();
+        if (numEntries == 0) {
+            return rangeAddResponse.setStatus(StatusCode.EBADREQ).build();
+        }
+        List<ByteBuf> entries = new ArrayList<>(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            ByteString body = rangeAddRequest.getBody(i);
+            ByteBuf entry = retainedSlice(body);
+            entries.add(entry);
+            // The entries must be the consecutive entries of the ledger of the request
+            if (entry.readableBytes() < 16
+                    || entry.getLong(entry.readerIndex()) != ledgerId
+                    || entry.getLong(entry.readerIndex() + 8) != startEntryId + i) {
+                LOG.error("Invalid entry at position {} of range add to ledger {} from entry {}",
+                        i, ledgerId, startEntryId);
+                entries.forEach(ByteBuf::release);
+                return rangeAddResponse.setStatus(StatusCode.EBADREQ).build();
+            }
+        }
+        // the entries keep the frame alive, release it before the entries are handed to the bookie
+        releaseRequestFrame();
+
+        final StatusCode[] entryStatus = new StatusCode[numEntries];
+        final AtomicInteger pendingEntries = new AtomicInteger(numEntries);
+        BookkeeperInternalCallbacks.WriteCallback wcb = (rc, ledgerId, entryId, addr, ctx) -> {
+            if (BookieProtocol.EOK == rc) {
+                requestProcessor.getRequestStats().getAddEntryStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                requestProcessor.getRequestStats().getAddEntryStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+
+            StatusCode status;
+            switch (rc) {
+                case BookieProtocol.EOK:
+                    status = StatusCode.EOK;
+                    break;
+                case BookieProtocol.EIO:
+                    status = StatusCode.EIO;
+                    break;
+                default:
+                    status = StatusCode.EUA;
+                    break;
+            }
+            // The callbacks may run on different threads, the last one sends the response
+            entryStatus[(int) (entryId - startEntryId)] = status;
+            if (pendingEntries.decrementAndGet() == 0) {
+                rangeAddResponse.setStatus(StatusCode.EOK)
+                        .addAllEntryStatus(Arrays.asList(entryStatus));
+                sendResponse(rangeAddResponse.build());
+            }
+        };
+
+        final EnumSet<WriteFlag> writeFlags;
+        if (rangeAddRequest.hasWriteFlags()) {
+            writeFlags = WriteFlag.getWriteFlags(rangeAddRequest.getWriteFlags());
+        } else {
+            writeFlags = WriteFlag.NONE;
+        }
+        final boolean ackBeforeSync = writeFlags.contains(WriteFlag.DEFERRED_SYNC);
+        StatusCode status;
+        byte[] masterKey = rangeAddRequest.getMasterKey().toByteArray();
+        try {
+            requestProcessor.getBookie().addEntries(entries, ackBeforeSync, wcb, channel, masterKey);
+            requestProcessor.getRequestStats().getRangeAddEntryCounter().add(numEntries);
+            status = StatusCode.EOK;
+        } catch (OperationRejectedException e) {
+            requestProcessor.getRequestStats().getAddEntryRejectedCounter().inc();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Operation rejected while writing {}", request, e);
+            }
+            status = StatusCode.ETOOMANYREQUESTS;
+        } catch (IOException e) {
+            LOG.error("Error writing entries from {} to ledger:{}", startEntryId, ledgerId, e);
+            status = StatusCode.EIO;
+        } catch (BookieException.LedgerFencedException e) {
+            LOG.error("Ledger fenced while writing entries from {} to ledger:{}", startEntryId, ledgerId, e);
+            status = StatusCode.EFENCED;
+        } catch (BookieException e) {
+            LOG.error("Unauthorized access to ledger:{} while writing entries from {}", ledgerId, startEntryId, e);
+            status = StatusCode.EUA;
+        } catch (Throwable t) {
+            LOG.error("Unexpected exception while writing entries from {}@{} : ", startEntryId, ledgerId, t);
+            status = StatusCode.EBADREQ;
+        }
+
+        if (!status.equals(StatusCode.EOK)) {
+            return rangeAddResponse.setStatus(status).build();
+        }
+        return null;
+    }
+
+    @Override
+    public void safeRun() {
+        try {
+            RangeAddResponse rangeAddResponse = getRangeAddResponse();
+            if (null != rangeAddResponse) {
+                // This means there was an error and we should send this back.
+                sendResponse(rangeAddResponse);
+            }
+        } finally {
+            releaseRequestFrame();
+        }
+    }
+
+    void sendResponse(RangeAddResponse rangeAddResponse) {
+        Response.Builder response = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(rangeAddResponse.getStatus())
+                .setRangeAddResponse(rangeAddResponse);
+        sendResponse(response.getStatus(),
+                     response.build(),
+                     requestProcessor.getRequestStats().getRangeAddRequestStats());
+        requestProcessor.onAddRequestFinish();
+    }
+
+    /**
+     * this toString method filters out body and masterKey from the output.
+     * masterKey contains the password of the ledger and body is customer data,
+     * so it is not appropriate to have these in logs or system output.
+     */
+    @Override
+    public String toString() {
+        return RequestUtils.toSafeString(request);
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.ReferenceCountUtil;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeReadResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor for v3 range read packets. It reads up to {@code maxCount} consecutive
+ * entries of a ledger, starting at {@code startEntryId}, and returns them in a single
+ * response frame.
+ */
+class RangeReadEntryProcessorV3 extends PacketProcessorBaseV3 {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RangeReadEntryProcessorV3.class);
+
+    // room left in a frame for the response header, the framing of each entry is counted as it's read
+    static final int RESPONSE_HEADER_BYTES = 1024;
+
+    private final RangeReadRequest rangeReadRequest;
+    private final long ledgerId;
+    private final long startEntryId;
+
+    RangeReadEntryProcessorV3(Request request,
+                              Channel channel,
+                              BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+        requestProcessor.onReadRequestStart(channel);
+
+        this.rangeReadRequest = request.getRangeReadRequest();
+        this.ledgerId = rangeReadRequest.getLedgerId();
+        this.startEntryId = rangeReadRequest.getStartEntryId();
+    }
+
+    private long getMaxBytes() {
+        long frameLimit = requestProcessor.getServerCfg().getNettyMaxFrameSizeBytes() - RESPONSE_HEADER_BYTES;
+        if (rangeReadRequest.hasMaxBytes() && rangeReadRequest.getMaxBytes() > 0) {
+            return Math.min(rangeReadRequest.getMaxBytes(), frameLimit);
+        }
+        return frameLimit;
+    }
+
+    /**
+     * The bytes an entry takes in the response: its body, plus the tag and the length of the body field.
+     */
+    static long getFramedSize(int entrySize) {
+        return 1 + CodedOutputStream.computeUInt32SizeNoTag(entrySize) + entrySize;
+    }
+
+    /**
+     * Wrap an entry into a body of the response without copying it, the components of a composite
+     * entry are wrapped one by one rather than merged into a single buffer.
+     */
+    static ByteString wrapEntry(ByteBuf entry) {
+        if (entry.nioBufferCount() == 1) {
+            return UnsafeByteOperations.unsafeWrap(entry.nioBuffer());
+        }
+        ByteString body = ByteString.EMPTY;
+        for (ByteBuffer component : entry.nioBuffers()) {
+            body = body.concat(UnsafeByteOperations.unsafeWrap(component));
+        }
+        return body;
+    }
+
+    // the entries wrapped by the bodies of the response, released once it's written
+    private final List<ByteBuf> entryBodies = new ArrayList<>();
+
+    private RangeReadResponse getRangeReadResponse() {
+        final long startTimeNanos = MathUtils.nowInNano();
+        final RangeReadResponse.Builder rangeReadResponse = RangeReadResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setStartEntryId(startEntryId);
+
+        if (!isVersionCompatible()) {
+            return buildResponse(rangeReadResponse, StatusCode.EBADVERSION, startTimeNanos);
+        }
+        if (startEntryId < 0 || rangeReadRequest.getMaxCount() <= 0) {
+            return buildResponse(rangeReadResponse, StatusCode.EBADREQ, startTimeNanos);
+        }
+
+        final Bookie bookie = requestProcessor.getBookie();
+        final long maxBytes = getMaxBytes();
+        final int maxCount = rangeReadRequest.getMaxCount();
+        long readBytes = 0;
+        long entryId = startEntryId;
+        try {
+            while (entryId - startEntryId < maxCount) {
+                ByteBuf entryBody;
+                try {
+                    entryBody = bookie.readEntry(ledgerId, entryId);
+                } catch (Bookie.NoEntryException e) {
+                    if (entryId == startEntryId) {
+                        throw e;
+                    }
+                    // the range ends at the first entry this bookie doesn't have
+                    break;
+                } catch (Bookie.NoLedgerException e) {
+                    throw e;
+                } catch (IOException e) {
+                    if (entryId == startEntryId) {
+                        throw e;
+                    }
+                    // the entries already read are returned, the reader reads the rest of the range again
+                    LOG.error("IOException while range reading entry: {} from ledger {}, returning the entries from {}",
+                            entryId, ledgerId, startEntryId, e);
+                    rangeReadResponse.setEndStatus(StatusCode.EIO);
+                    break;
+                }
+                long entryBytes = getFramedSize(entryBody.readableBytes());
+                if (entryId != startEntryId && readBytes + entryBytes > maxBytes) {
+                    ReferenceCountUtil.release(entryBody);
+                    break;
+                }
+                entryBodies.add(entryBody);
+                rangeReadResponse.addBody(wrapEntry(entryBody));
+                readBytes += entryBytes;
+                entryId++;
+            }
+            rangeReadResponse.setMaxLAC(bookie.readLastAddConfirmed(ledgerId));
+            requestProcessor.getRequestStats().getRangeReadEntryCounter().add(entryId - startEntryId);
+            return buildResponse(rangeReadResponse, StatusCode.EOK, startTimeNanos);
+        } catch (Bookie.NoLedgerException e) {
+            LOG.info("No ledger found while range reading entries from {} in ledger {}", startEntryId, ledgerId);
+            return buildResponse(rangeReadResponse, StatusCode.ENOLEDGER, startTimeNanos);
+        } catch (Bookie.NoEntryException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No entry found while range reading entry: {} from ledger: {}", startEntryId, ledgerId);
+            }
+            return buildResponse(rangeReadResponse, StatusCode.ENOENTRY, startTimeNanos);
+        } catch (IOException e) {
+            LOG.error("IOException while range reading entry: {} from ledger {} ", entryId, ledgerId, e);
+            return buildResponse(rangeReadResponse, StatusCode.EIO, startTimeNanos);
+        } catch (BookieException.DataUnknownException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Ledger has unknown state for entry: {} from ledger {}", entryId, ledgerId);
+            }
+            return buildResponse(rangeReadResponse, StatusCode.EUNKNOWNLEDGERSTATE, startTimeNanos);
+        } catch (BookieException e) {
+            LOG.error("Unauthorized access to ledger:{} while range reading entry:{} in request from address: {}",
+                    ledgerId, entryId, channel.remoteAddress());
+            return buildResponse(rangeReadResponse, StatusCode.EUA, startTimeNanos);
+        }
+    }
+
+    private RangeReadResponse buildResponse(RangeReadResponse.Builder rangeReadResponse,
+                                            StatusCode statusCode,
+                                            long startTimeNanos) {
+        if (StatusCode.EOK == statusCode) {
+            requestProcessor.getRequestStats().getRangeReadEntryStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestProcessor.getRequestStats().getRangeReadEntryStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+        rangeReadResponse.setStatus(statusCode);
+        if (StatusCode.EOK != statusCode) {
+            // the entries read before the error are not returned
+            rangeReadResponse.clearBody();
+            rangeReadResponse.clearEndStatus();
+            entryBodies.forEach(ReferenceCountUtil::release);
+            entryBodies.clear();
+        }
+        return rangeReadResponse.build();
+    }
+
+    @Override
+    public void safeRun() {
+        requestProcessor.getRequestStats().getReadEntrySchedulingDelayStats().registerSuccessfulEvent(
+            MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+        sendResponse(getRangeReadResponse());
+    }
+
+    void sendResponse(RangeReadResponse rangeReadResponse) {
+        Response.Builder response = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(rangeReadResponse.getStatus())
+                .setRangeReadResponse(rangeReadResponse);
+        sendResponse(response.getStatus(),
+                     response.build(),
+                     requestProcessor.getRequestStats().getRangeReadRequestStats(),
+                     entryBodies);
+        requestProcessor.onReadRequestFinish();
+    }
+}
@@ -117,7 +117,42 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
         sendResponse(data, errorCode, startTimeNanos);
     }
 
+    /**
+     * Serve the read right away if the entry can be read without blocking, e.g. from the caches of
+     * the bookie, so that it doesn't wait behind the reads of the read thread pool. The processor is
+     * recycled once the response is sent.
+     *
+     * <p>The response is never awaited, as the IO thread writes it itself: when the read responses are
+     * throttled, the read is only served if the channel is writable.
+     *
+     * @return true if the response has been sent, false if the read must be executed by the read
+     *         thread pool
+     */
+    boolean tryReadFromCache() {
+        if (throttleReadResponses && !channel.isWritable()) {
+            return false;
+        }
+        long startTimeNanos = MathUtils.nowInNano();
+        ByteBuf data;
+        try {
+            data = requestProcessor.getBookie().tryReadEntryFromCache(request.getLedgerId(), request.getEntryId(),
+                    false);
+        } catch (IOException | BookieException e) {
+            // let the read thread pool handle the error
+            return false;
+        }
+        if (null == data) {
+            return false;
+        }
+        sendResponse(data, BookieProtocol.EOK, startTimeNanos, false);
+        return true;
+    }
+
     private void sendResponse(ByteBuf data, int errorCode, long startTimeNanos) {
+        sendResponse(data, errorCode, startTimeNanos, throttleReadResponses);
+    }
+
+    private void sendResponse(ByteBuf data, int errorCode, long startTimeNanos, boolean waitForResponse) {
         final RequestStats stats = requestProcessor.getRequestStats();
         final OpStatsLogger logger = stats.getReadEntryStats();
         BookieProtocol.Response response;
@@ -132,7 +167,7 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
             response = ResponseBuilder.buildErrorResponse(errorCode, request);
         }
 
-        if (throttleReadResponses) {
+        if (waitForResponse) {
             sendResponseAndWait(errorCode, response, stats.getReadRequestStats());
         } else {
             sendResponse(errorCode, response, stats.getReadRequestStats());
@@ -175,21 +175,63 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
             handleReadResultForFenceRead(entryBody, readResponseBuilder, entryId, startTimeSw);
             return null;
         } else {
-            try {
-                readResponseBuilder.setBody(ByteString.copyFrom(entryBody.nioBuffer()));
-                if (readLACPiggyBack) {
-                    readResponseBuilder.setEntryId(entryId);
-                } else {
-                    long knownLAC = requestProcessor.getBookie().readLastAddConfirmed(ledgerId);
-                    readResponseBuilder.setMaxLAC(knownLAC);
-                }
-                registerSuccessfulEvent(readStats, startTimeSw);
-                readResponseBuilder.setStatus(StatusCode.EOK);
-                return readResponseBuilder.build();
-            } finally {
-                ReferenceCountUtil.release(entryBody);
+            return buildReadResponse(readResponseBuilder, entryBody, entryId, readLACPiggyBack, startTimeSw);
+        }
+    }
+
+    private ReadResponse buildReadResponse(ReadResponse.Builder readResponseBuilder,
+                                           ByteBuf entryBody,
+                                           long entryId,
+                                           boolean readLACPiggyBack,
+                                           Stopwatch startTimeSw)
+        throws IOException, BookieException {
+        try {
+            readResponseBuilder.setBody(ByteString.copyFrom(entryBody.nioBuffer()));
+            if (readLACPiggyBack) {
+                readResponseBuilder.setEntryId(entryId);
+            } else {
+                long knownLAC = requestProcessor.getBookie().readLastAddConfirmed(ledgerId);
+                readResponseBuilder.setMaxLAC(knownLAC);
+            }
+            registerSuccessfulEvent(readStats, startTimeSw);
+            readResponseBuilder.setStatus(StatusCode.EOK);
+            return readResponseBuilder.build();
+        } finally {
+            ReferenceCountUtil.release(entryBody);
+        }
+    }
+
+    /**
+     * Serve the read right away if the entry can be read without blocking, e.g. from the caches of
+     * the bookie, so that it doesn't wait behind the reads of the read thread pool. The response
+     * would wait for a non writable channel when the wait on the response backpressure is enabled,
+     * so the read is then left to the read thread pool.
+     *
+     * @return true if the response has been sent, false if the read must be executed by the read
+     *         thread pool
+     */
+    boolean tryReadFromCache() {
+        if (!isVersionCompatible()) {
+            return false;
+        }
+        if (requestProcessor.getWaitTimeoutOnBackpressureMillis() >= 0 && !channel.isWritable()) {
+            return false;
+        }
+        final Stopwatch startTimeSw = Stopwatch.createStarted();
+        ReadResponse readResponse;
+        try {
+            ByteBuf entryBody = requestProcessor.getBookie().tryReadEntryFromCache(ledgerId, entryId, true);
+            if (null == entryBody) {
+                return false;
             }
+            readResponse = buildReadResponse(ReadResponse.newBuilder().setLedgerId(ledgerId).setEntryId(entryId),
+                    entryBody, entryId, false, startTimeSw);
+        } catch (IOException | BookieException e) {
+            // let the read thread pool handle the error
+            return false;
         }
+        sendResponse(readResponse);
+        return true;
     }
 
     protected ReadResponse getReadResponse() {
@@ -68,6 +68,16 @@ class RequestUtils {
                 stringHelper.add("writeFlags", addRequest.getWriteFlags());
             }
             return stringHelper.toString();
+        } else if (request.hasRangeAddRequest()) {
+            BookkeeperProtocol.RangeAddRequest rangeAddRequest = request.getRangeAddRequest();
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("ledgerId", rangeAddRequest.getLedgerId());
+            stringHelper.add("startEntryId", rangeAddRequest.getStartEntryId());
+            stringHelper.add("numEntries", rangeAddRequest.getBodyCount());
+            if (rangeAddRequest.hasWriteFlags()) {
+                stringHelper.add("writeFlags", rangeAddRequest.getWriteFlags());
+            }
+            return stringHelper.toString();
         } else if (request.hasReadRequest()) {
             BookkeeperProtocol.ReadRequest readRequest = request.getReadRequest();
             includeHeaderFields(stringHelper, header);
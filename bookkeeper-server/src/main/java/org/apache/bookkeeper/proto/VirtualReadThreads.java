@@ -0,0 +1,159 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.common.util.MdcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Executes the read requests of a bookie on virtual threads, on the JDKs supporting them.
+ *
+ * <p>Each read is executed on its own virtual thread, so that the blocking reads of the entry logs
+ * don't hold a platform thread each. A semaphore bounds the reads in progress, the other ones wait
+ * for a permit on their virtual thread. The entry logger doesn't keep its per-thread caches on the
+ * virtual threads, see {@link org.apache.bookkeeper.bookie.EntryLogger}. The reads of the same ledger
+ * aren't ordered, as the requests relying on the order, e.g. the long-poll and the fencing reads, are
+ * still executed by their ordered thread pools.
+ */
+class VirtualReadThreads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualReadThreads.class);
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore readsInProgress;
+    private final int maxPendingReads;
+    private final boolean preserveMdcForTaskExecution;
+
+    private final AtomicInteger pendingReads = new AtomicInteger(0);
+    private volatile boolean shutdown = false;
+
+    @VisibleForTesting
+    VirtualReadThreads(ThreadFactory threadFactory, int maxReadsInProgress, int maxPendingReads,
+                       boolean preserveMdcForTaskExecution) {
+        this.threadFactory = threadFactory;
+        this.readsInProgress = new Semaphore(maxReadsInProgress);
+        this.maxPendingReads = maxPendingReads;
+        this.preserveMdcForTaskExecution = preserveMdcForTaskExecution;
+    }
+
+    /**
+     * Create the executor of the reads on virtual threads.
+     *
+     * @param maxReadsInProgress the max number of reads executed at the same time
+     * @param maxPendingReads the max number of reads waiting or in progress, after which the new reads
+     *                        are rejected, or 0 for no limit
+     * @return the executor, or null if the JDK doesn't support virtual threads
+     */
+    static VirtualReadThreads create(int maxReadsInProgress, int maxPendingReads,
+                                     boolean preserveMdcForTaskExecution) {
+        ThreadFactory threadFactory = newVirtualThreadFactory("BookieReadVirtualThread-");
+        if (null == threadFactory) {
+            return null;
+        }
+        return new VirtualReadThreads(threadFactory, Math.max(1, maxReadsInProgress), maxPendingReads,
+                preserveMdcForTaskExecution);
+    }
+
+    /**
+     * Get a factory of virtual threads through reflection, as the bookie is still built for JDKs
+     * without them.
+     */
+    private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("Virtual threads aren't supported", e);
+            return null;
+        }
+    }
+
+    /**
+     * Execute a read on a new virtual thread, once fewer than the max reads are in progress.
+     *
+     * @throws RejectedExecutionException if too many reads are pending or if the executor is shut down
+     */
+    void execute(Runnable read) {
+        if (shutdown) {
+            throw new RejectedExecutionException("The virtual read threads are shut down");
+        }
+        int pending = pendingReads.incrementAndGet();
+        if (maxPendingReads > 0 && pending > maxPendingReads) {
+            pendingReads.decrementAndGet();
+            throw new RejectedExecutionException("Too many pending reads : " + pending);
+        }
+        Map<String, String> mdcContextMap = preserveMdcForTaskExecution ? MDC.getCopyOfContextMap() : null;
+        try {
+            threadFactory.newThread(() -> executeRead(read, mdcContextMap)).start();
+        } catch (RuntimeException e) {
+            pendingReads.decrementAndGet();
+            throw new RejectedExecutionException("Failed to start a virtual read thread", e);
+        }
+    }
+
+    private void executeRead(Runnable read, Map<String, String> mdcContextMap) {
+        try {
+            readsInProgress.acquireUninterruptibly();
+            try {
+                if (preserveMdcForTaskExecution) {
+                    MdcUtils.restoreContext(mdcContextMap);
+                }
+                read.run();
+            } finally {
+                readsInProgress.release();
+            }
+        } catch (Throwable t) {
+            LOG.error("Unexpected exception while executing a read on a virtual thread", t);
+        } finally {
+            pendingReads.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reject the new reads and wait for the pending reads to complete.
+     */
+    void shutdown(long timeout, TimeUnit unit) {
+        shutdown = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pendingReads.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (pendingReads.get() > 0) {
+            LOG.warn("{} reads still pending on the virtual read threads after shutdown", pendingReads.get());
+        }
+    }
+}
@@ -21,7 +21,6 @@
 package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 
 import java.io.IOException;
@@ -48,6 +47,7 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
     public WriteEntryProcessorV3(Request request, Channel channel,
                                  BookieRequestProcessor requestProcessor) {
         super(request, channel, requestProcessor);
+        retainRequestFrame();
         requestProcessor.onAddRequestStart(channel);
     }
 
@@ -117,7 +117,9 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
         final boolean ackBeforeSync = writeFlags.contains(WriteFlag.DEFERRED_SYNC);
         StatusCode status = null;
         byte[] masterKey = addRequest.getMasterKey().toByteArray();
-        ByteBuf entryToAdd = Unpooled.wrappedBuffer(addRequest.getBody().asReadOnlyByteBuffer());
+        ByteBuf entryToAdd = retainedSlice(addRequest.getBody());
+        // the entry keeps the frame alive, release it before the entry is handed to the bookie
+        releaseRequestFrame();
         try {
             if (RequestUtils.hasFlag(addRequest, AddRequest.Flag.RECOVERY_ADD)) {
                 requestProcessor.getBookie().recoveryAddEntry(entryToAdd, wcb, channel, masterKey);
@@ -163,16 +165,20 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
 
     @Override
     public void safeRun() {
-        AddResponse addResponse = getAddResponse();
-        if (null != addResponse) {
-            // This means there was an error and we should send this back.
-            Response.Builder response = Response.newBuilder()
-                    .setHeader(getHeader())
-                    .setStatus(addResponse.getStatus())
-                    .setAddResponse(addResponse);
-            Response resp = response.build();
-            sendResponse(addResponse.getStatus(), resp,
-                         requestProcessor.getRequestStats().getAddRequestStats());
+        try {
+            AddResponse addResponse = getAddResponse();
+            if (null != addResponse) {
+                // This means there was an error and we should send this back.
+                Response.Builder response = Response.newBuilder()
+                        .setHeader(getHeader())
+                        .setStatus(addResponse.getStatus())
+                        .setAddResponse(addResponse);
+                Response resp = response.build();
+                sendResponse(addResponse.getStatus(), resp,
+                             requestProcessor.getRequestStats().getAddRequestStats());
+            }
+        } finally {
+            releaseRequestFrame();
         }
     }
 
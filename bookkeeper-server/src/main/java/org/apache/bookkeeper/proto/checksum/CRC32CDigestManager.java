@@ -24,6 +24,7 @@ import com.scurrilous.circe.crc.Sse42Crc32C;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.concurrent.FastThreadLocal;
+import java.nio.ByteBuffer;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -68,4 +69,11 @@ class CRC32CDigestManager extends DigestManager {
         final int lastCrc = current.intValue();
         current.setValue(Crc32cIntChecksum.resumeChecksum(lastCrc, data));
     }
+
+    @Override
+    void update(ByteBuffer data) {
+        MutableInt current = currentCrc.get();
+        final int lastCrc = current.intValue();
+        current.setValue(Crc32cIntChecksum.resumeChecksum(lastCrc, data));
+    }
 }
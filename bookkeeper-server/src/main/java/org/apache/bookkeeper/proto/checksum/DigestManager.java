@@ -17,12 +17,13 @@
  */
 package org.apache.bookkeeper.proto.checksum;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.util.ReferenceCountUtil;
 
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 
@@ -58,6 +59,32 @@ public abstract class DigestManager {
 
     abstract void update(ByteBuf buffer);
 
+    /**
+     * Update the digest with the remaining bytes of a nio buffer, e.g. one of the
+     * {@link ByteBuf#nioBuffers()} of a composite buffer. The buffer is wrapped without being copied,
+     * and its position is moved to its limit, like the other digest managers do.
+     */
+    void update(ByteBuffer buffer) {
+        update(Unpooled.wrappedBuffer(buffer));
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Update the digest with the readable bytes of a buffer. A buffer made of several ones, like a
+     * {@link CompositeByteBuf} or a slice of it, is digested one of its nio buffers after the other,
+     * rather than merged into a single buffer first.
+     */
+    @VisibleForTesting
+    void updateAll(ByteBuf data) {
+        if (data.nioBufferCount() > 1) {
+            for (ByteBuffer buffer : data.nioBuffers()) {
+                update(buffer);
+            }
+        } else {
+            update(data);
+        }
+    }
+
     abstract void populateValueAndReset(ByteBuf buffer);
 
     final int macCodeLength;
@@ -113,20 +140,11 @@ public abstract class DigestManager {
 
         update(headersBuffer);
 
-        // don't unwrap slices
-        final ByteBuf unwrapped = data.unwrap() != null && data.unwrap() instanceof CompositeByteBuf
-                ? data.unwrap() : data;
-        ReferenceCountUtil.retain(unwrapped);
-        ReferenceCountUtil.release(data);
-
-        if (unwrapped instanceof CompositeByteBuf) {
-            ((CompositeByteBuf) unwrapped).forEach(this::update);
-        } else {
-            update(unwrapped);
-        }
+        // the components of composite buffers are digested and sent as they are, without being merged
+        updateAll(data);
         populateValueAndReset(headersBuffer);
 
-        return ByteBufList.get(headersBuffer, unwrapped);
+        return ByteBufList.get(headersBuffer, data);
     }
 
     /**
@@ -170,10 +188,10 @@ public abstract class DigestManager {
                     this.getClass().getName(), dataReceived.readableBytes());
             throw new BKDigestMatchException();
         }
-        update(dataReceived.slice(0, METADATA_LENGTH));
+        updateAll(dataReceived.slice(0, METADATA_LENGTH));
 
         int offset = METADATA_LENGTH + macCodeLength;
-        update(dataReceived.slice(offset, dataReceived.readableBytes() - offset));
+        updateAll(dataReceived.slice(offset, dataReceived.readableBytes() - offset));
 
         ByteBuf digest = allocator.buffer(macCodeLength);
         populateValueAndReset(digest);
@@ -23,6 +23,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -101,5 +102,10 @@ public class MacDigestManager extends DigestManager {
         mac.get().update(data.nioBuffer());
     }
 
+    @Override
+    void update(ByteBuffer data) {
+        mac.get().update(data);
+    }
+
 
 }
@@ -22,14 +22,29 @@ package org.apache.bookkeeper.streaming;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.LedgerEntry;
 import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.client.api.LedgerEntries;
 
 /**
  * An input stream on reading data from a ledger.
+ *
+ * <p>By default the entries are read synchronously, one batch at a time, when the stream
+ * drains. With a read-ahead window, the stream keeps that many batches being read
+ * asynchronously ahead of the reader, so that it doesn't wait for a network round trip
+ * on each batch.
  */
 public class LedgerInputStream extends InputStream {
 
@@ -41,6 +56,12 @@ public class LedgerInputStream extends InputStream {
     int defaultSize = 1024 * 1024; // 1MB default size
     Enumeration<LedgerEntry> ledgerSeq = null;
 
+    // The number of batches read ahead, 0 if the batches are read synchronously
+    private final int readAheadBatches;
+    private final Deque<ReadAheadBatch> readAhead = new ArrayDeque<>();
+    private Iterator<byte[]> readAheadEntries = Collections.emptyIterator();
+    private long nextEntryToRead = 0;
+
     /**
      * construct a outputstream from a ledger handle.
      *
@@ -51,6 +72,7 @@ public class LedgerInputStream extends InputStream {
      */
     public LedgerInputStream(LedgerHandle lh) throws BKException, InterruptedException {
         this.lh = lh;
+        this.readAheadBatches = 0;
         bbytes = new byte[defaultSize];
         this.bytebuff = ByteBuffer.wrap(bbytes);
         this.bytebuff.position(this.bytebuff.limit());
@@ -69,12 +91,35 @@ public class LedgerInputStream extends InputStream {
      * @throws InterruptedException when opening a ledger input stream is interrupted.
      */
     public LedgerInputStream(LedgerHandle lh, int size) throws BKException, InterruptedException {
+        this(lh, size, 0);
+    }
+
+    /**
+     * construct an inputstream from a ledger handle, reading the entries ahead of the reader.
+     *
+     * @param lh
+     *            the ledger handle
+     * @param size
+     *            the size of the buffer
+     * @param readAheadBatches
+     *            the number of batches of entries being read asynchronously ahead of the reader,
+     *            0 to read each batch synchronously when the stream drains
+     * @throws BKException when encountered bookkeeper exceptions
+     * @throws InterruptedException when opening a ledger input stream is interrupted.
+     */
+    public LedgerInputStream(LedgerHandle lh, int size, int readAheadBatches)
+            throws BKException, InterruptedException {
         this.lh = lh;
+        this.readAheadBatches = Math.max(0, readAheadBatches);
         bbytes = new byte[size];
         this.bytebuff = ByteBuffer.wrap(bbytes);
         this.bytebuff.position(this.bytebuff.limit());
-        lastEntry = Math.min(lh.getLastAddConfirmed(), increment);
-        ledgerSeq = lh.readEntries(0, lastEntry);
+        if (this.readAheadBatches > 0) {
+            fillReadAheadWindow();
+        } else {
+            lastEntry = Math.min(lh.getLastAddConfirmed(), increment);
+            ledgerSeq = lh.readEntries(0, lastEntry);
+        }
     }
 
     /**
@@ -95,6 +140,9 @@ public class LedgerInputStream extends InputStream {
      * @return if we can refill or not
      */
     private synchronized boolean refill() throws IOException {
+        if (readAheadBatches > 0) {
+            return refillFromReadAhead();
+        }
         bytebuff.clear();
         if (!ledgerSeq.hasMoreElements() && lastEntry >= lh.getLastAddConfirmed()) {
             return false;
@@ -119,6 +167,77 @@ public class LedgerInputStream extends InputStream {
         return true;
     }
 
+    private boolean refillFromReadAhead() throws IOException {
+        while (!readAheadEntries.hasNext()) {
+            fillReadAheadWindow();
+            ReadAheadBatch batch = readAhead.peek();
+            if (batch == null) {
+                // all the entries up to the last add confirmed have been read
+                return false;
+            }
+            try {
+                readAheadEntries = batch.entries.get().iterator();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the ledger " + lh.getId());
+            } catch (ExecutionException ee) {
+                // the batch is kept, and read again for the next read of the reader, so that its
+                // entries aren't skipped
+                batch.entries = readBatch(batch.firstEntry, batch.lastEntry);
+                throw new IOException(ee.getCause().getMessage(), ee.getCause());
+            }
+            readAhead.remove();
+        }
+        // keep the window full while the reader consumes this batch
+        fillReadAheadWindow();
+        bbytes = readAheadEntries.next();
+        bytebuff = ByteBuffer.wrap(bbytes);
+        return true;
+    }
+
+    private void fillReadAheadWindow() {
+        long lastAddConfirmed = lh.getLastAddConfirmed();
+        while (readAhead.size() < readAheadBatches && nextEntryToRead <= lastAddConfirmed) {
+            long last = Math.min(nextEntryToRead + increment - 1, lastAddConfirmed);
+            readAhead.add(new ReadAheadBatch(nextEntryToRead, last, readBatch(nextEntryToRead, last)));
+            nextEntryToRead = last + 1;
+        }
+    }
+
+    private CompletableFuture<List<byte[]>> readBatch(long firstEntry, long lastEntry) {
+        return lh.readAsync(firstEntry, lastEntry).thenApply(LedgerInputStream::toBytes);
+    }
+
+    /**
+     * A batch of entries being read ahead of the reader.
+     */
+    private static class ReadAheadBatch {
+        final long firstEntry;
+        final long lastEntry;
+        CompletableFuture<List<byte[]>> entries;
+
+        ReadAheadBatch(long firstEntry, long lastEntry, CompletableFuture<List<byte[]>> entries) {
+            this.firstEntry = firstEntry;
+            this.lastEntry = lastEntry;
+            this.entries = entries;
+        }
+    }
+
+    private static List<byte[]> toBytes(LedgerEntries entries) {
+        try {
+            List<byte[]> batch = new ArrayList<>();
+            entries.forEach(entry -> {
+                // the empty entries have no bytes to read
+                if (entry.getEntryBuffer().isReadable()) {
+                    batch.add(entry.getEntryBytes());
+                }
+            });
+            return batch;
+        } finally {
+            entries.close();
+        }
+    }
+
     @Override
     public synchronized int read() throws IOException {
         boolean toread = true;
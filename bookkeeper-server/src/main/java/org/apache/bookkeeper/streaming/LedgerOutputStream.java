@@ -21,8 +21,11 @@
 package org.apache.bookkeeper.streaming;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.slf4j.Logger;
@@ -33,6 +36,11 @@ import org.slf4j.LoggerFactory;
  * handle and write to it as a stream of bytes. This is built on top of
  * ledgerhandle api and uses a buffer to cache the data written to it and writes
  * out the entry to the ledger.
+ *
+ * <p>By default each entry is added synchronously. When a maximum of outstanding bytes is
+ * given, the entries are added asynchronously, and the writer only waits when the outstanding
+ * adds exceed it. A failed add is then reported by the next write, flush or close with an
+ * {@link UncheckedIOException}, and flush waits for all the outstanding adds to complete.
  */
 public class LedgerOutputStream extends OutputStream {
 
@@ -43,6 +51,11 @@ public class LedgerOutputStream extends OutputStream {
     byte[] bbytes;
     int defaultSize = 1024 * 1024; // 1MB default size
 
+    // The maximum bytes of the outstanding adds, 0 if the entries are added synchronously
+    private final long maxOutstandingBytes;
+    private long outstandingBytes = 0;
+    private Throwable addError = null;
+
     /**
      * construct a outputstream from a ledger handle.
      *
@@ -51,6 +64,7 @@ public class LedgerOutputStream extends OutputStream {
      */
     public LedgerOutputStream(LedgerHandle lh) {
         this.lh = lh;
+        this.maxOutstandingBytes = 0;
         bbytes = new byte[defaultSize];
         this.bytebuff = ByteBuffer.wrap(bbytes);
     }
@@ -64,7 +78,23 @@ public class LedgerOutputStream extends OutputStream {
      *            the size of the buffer
      */
     public LedgerOutputStream(LedgerHandle lh, int size) {
+        this(lh, size, 0);
+    }
+
+    /**
+     * construct an outputstream from a ledger handle, adding the entries asynchronously.
+     *
+     * @param lh
+     *            the ledger handle
+     * @param size
+     *            the size of the buffer
+     * @param maxOutstandingBytes
+     *            the maximum bytes of the adds which haven't completed yet,
+     *            0 to add each entry synchronously
+     */
+    public LedgerOutputStream(LedgerHandle lh, int size, long maxOutstandingBytes) {
         this.lh = lh;
+        this.maxOutstandingBytes = Math.max(0, maxOutstandingBytes);
         bbytes = new byte[size];
         this.bytebuff = ByteBuffer.wrap(bbytes);
     }
@@ -78,6 +108,11 @@ public class LedgerOutputStream extends OutputStream {
 
     @Override
     public synchronized void flush() {
+        if (maxOutstandingBytes > 0) {
+            sendBuffered();
+            waitForOutstandingAdds(0);
+            return;
+        }
         // lets flush all the data
         // into the ledger entry
         if (bytebuff.position() > 0) {
@@ -105,17 +140,70 @@ public class LedgerOutputStream extends OutputStream {
      */
     private boolean makeSpace(int len) {
         if (bytebuff.remaining() < len) {
-            flush();
+            if (maxOutstandingBytes > 0) {
+                sendBuffered();
+            } else {
+                flush();
+            }
             bytebuff.clear();
             return bytebuff.capacity() >= len;
         }
         return true;
     }
 
+    /**
+     * Add the buffered bytes as an entry, without waiting for the add to complete.
+     */
+    private void sendBuffered() {
+        if (bytebuff.position() > 0) {
+            sendAsync(Arrays.copyOf(bbytes, bytebuff.position()));
+            bytebuff.clear();
+        }
+    }
+
+    private void sendAsync(byte[] entry) {
+        waitForOutstandingAdds(maxOutstandingBytes - entry.length);
+        outstandingBytes += entry.length;
+        lh.appendAsync(entry).whenComplete((entryId, cause) -> {
+            synchronized (LedgerOutputStream.this) {
+                outstandingBytes -= entry.length;
+                if (cause != null && addError == null) {
+                    addError = cause;
+                }
+                LedgerOutputStream.this.notifyAll();
+            }
+        });
+    }
+
+    /**
+     * Wait until the outstanding adds are below a number of bytes, or one of them failed.
+     *
+     * <p>The failures are unchecked, the synchronous stream doesn't declare any on flush, close
+     * and the array writes.
+     */
+    private void waitForOutstandingAdds(long maxBytes) {
+        try {
+            // one add larger than the limit can still be outstanding alone
+            while (addError == null && outstandingBytes > Math.max(0, maxBytes)) {
+                wait();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(
+                    new InterruptedIOException("Interrupted while adding to the ledger " + lh.getId()));
+        }
+        if (addError != null) {
+            throw new UncheckedIOException(new IOException("Failed to add to the ledger " + lh.getId(), addError));
+        }
+    }
+
     @Override
     public synchronized void write(byte[] b) {
         if (makeSpace(b.length)) {
             bytebuff.put(b);
+        } else if (maxOutstandingBytes > 0) {
+            // the caller may reuse its array once the write returns
+            sendAsync(Arrays.copyOf(b, b.length));
         } else {
             try {
                 lh.addEntry(b);
@@ -131,6 +219,11 @@ public class LedgerOutputStream extends OutputStream {
     @Override
     public synchronized void write(byte[] b, int off, int len) {
         if (!makeSpace(len)) {
+            if (maxOutstandingBytes > 0) {
+                // the caller may reuse its array once the write returns
+                sendAsync(Arrays.copyOfRange(b, off, off + len));
+                return;
+            }
             // lets try making the buffer bigger
             bbytes = new byte[len];
             bytebuff = ByteBuffer.wrap(bbytes);
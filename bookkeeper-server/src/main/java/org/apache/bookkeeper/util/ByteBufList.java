@@ -36,6 +36,7 @@ import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * ByteBufList is a holder of a sequence of {@link ByteBuf} objects.
@@ -137,19 +138,13 @@ public class ByteBufList extends AbstractReferenceCounted {
      * Append a {@link ByteBuf} at the end of this {@link ByteBufList}.
      */
     public void add(ByteBuf buf) {
-        final ByteBuf unwrapped = buf.unwrap() != null && buf.unwrap() instanceof CompositeByteBuf
-                ? buf.unwrap() : buf;
-        ReferenceCountUtil.retain(unwrapped);
-        ReferenceCountUtil.release(buf);
-
-        if (unwrapped instanceof CompositeByteBuf) {
-            ((CompositeByteBuf) unwrapped).forEach(b -> {
-                ReferenceCountUtil.retain(b);
+        if (buf instanceof CompositeByteBuf) {
+            for (ByteBuf b : components((CompositeByteBuf) buf)) {
                 buffers.add(b);
-            });
-            ReferenceCountUtil.release(unwrapped);
+            }
+            ReferenceCountUtil.release(buf);
         } else {
-            buffers.add(unwrapped);
+            buffers.add(buf);
         }
     }
 
@@ -157,23 +152,26 @@ public class ByteBufList extends AbstractReferenceCounted {
      * Prepend a {@link ByteBuf} at the beginning of this {@link ByteBufList}.
      */
     public void prepend(ByteBuf buf) {
-        // don't unwrap slices
-        final ByteBuf unwrapped = buf.unwrap() != null && buf.unwrap() instanceof CompositeByteBuf
-                ? buf.unwrap() : buf;
-        ReferenceCountUtil.retain(unwrapped);
-        ReferenceCountUtil.release(buf);
-
-        if (unwrapped instanceof CompositeByteBuf) {
-            CompositeByteBuf composite = (CompositeByteBuf) unwrapped;
-            for (int i = composite.numComponents() - 1; i >= 0; i--) {
-                ByteBuf b = composite.component(i);
-                ReferenceCountUtil.retain(b);
-                buffers.add(0, b);
-            }
-            ReferenceCountUtil.release(unwrapped);
+        if (buf instanceof CompositeByteBuf) {
+            buffers.addAll(0, components((CompositeByteBuf) buf));
+            ReferenceCountUtil.release(buf);
         } else {
-            buffers.add(0, unwrapped);
+            buffers.add(0, buf);
+        }
+    }
+
+    /**
+     * Get retained slices of the components of a composite buffer which hold its readable bytes, so that
+     * they are sent without being copied into a single buffer. The slices of composite buffers are kept
+     * as they are, as the bytes of their composite buffers aren't all part of them.
+     */
+    @VisibleForTesting
+    static List<ByteBuf> components(CompositeByteBuf composite) {
+        List<ByteBuf> components = composite.decompose(composite.readerIndex(), composite.readableBytes());
+        for (int i = 0; i < components.size(); i++) {
+            ReferenceCountUtil.retain(components.get(i));
         }
+        return components;
     }
 
     /**
@@ -40,15 +40,16 @@ import org.apache.commons.lang.SystemUtils;
 @UtilityClass
 public class EventLoopUtil {
     public static EventLoopGroup getClientEventLoopGroup(ClientConfiguration conf, ThreadFactory threadFactory) {
-        return getEventLoopGroup(threadFactory, conf.getNumIOThreads(), conf.isBusyWaitEnabled());
+        return getEventLoopGroup(threadFactory, conf.getNumIOThreads(), conf.isBusyWaitEnabled(), false);
     }
 
     public static EventLoopGroup getServerEventLoopGroup(ServerConfiguration conf, ThreadFactory threadFactory) {
-        return getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(), conf.isBusyWaitEnabled());
+        return getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(), conf.isBusyWaitEnabled(),
+                conf.isServerThreadPerCoreEnabled());
     }
 
     private static EventLoopGroup getEventLoopGroup(ThreadFactory threadFactory,
-            int numThreads, boolean enableBusyWait) {
+            int numThreads, boolean enableBusyWait, boolean enableCpuAffinity) {
         if (!SystemUtils.IS_OS_LINUX) {
             return new NioEventLoopGroup(numThreads, threadFactory);
         }
@@ -56,7 +57,12 @@ public class EventLoopUtil {
         try {
             if (!enableBusyWait) {
                 // Regular Epoll based event loop
-                return new EpollEventLoopGroup(numThreads, threadFactory);
+                EpollEventLoopGroup eventLoopGroup = new EpollEventLoopGroup(numThreads, threadFactory);
+                if (enableCpuAffinity) {
+                    // In thread-per-core mode, each IO thread owns the processing of a set of ledgers
+                    acquireCores(eventLoopGroup, numThreads);
+                }
+                return eventLoopGroup;
             }
 
             // With low latency setting, put the Netty event loop on busy-wait loop to reduce cost of
@@ -65,16 +71,7 @@ public class EventLoopUtil {
                     () -> (selectSupplier, hasTasks) -> SelectStrategy.BUSY_WAIT);
 
             // Enable CPU affinity on IO threads
-            for (int i = 0; i < numThreads; i++) {
-                eventLoopGroup.next().submit(() -> {
-                    try {
-                        CpuAffinity.acquireCore();
-                    } catch (Throwable t) {
-                        log.warn("Failed to acquire CPU core for thread {} err {} {}",
-                                Thread.currentThread().getName(), t.getMessage(), t);
-                    }
-                });
-            }
+            acquireCores(eventLoopGroup, numThreads);
 
             return eventLoopGroup;
         } catch (ExceptionInInitializerError | NoClassDefFoundError | UnsatisfiedLinkError e) {
@@ -82,4 +79,17 @@ public class EventLoopUtil {
             return new NioEventLoopGroup(numThreads, threadFactory);
         }
     }
+
+    private static void acquireCores(EventLoopGroup eventLoopGroup, int numThreads) {
+        for (int i = 0; i < numThreads; i++) {
+            eventLoopGroup.next().submit(() -> {
+                try {
+                    CpuAffinity.acquireCore();
+                } catch (Throwable t) {
+                    log.warn("Failed to acquire CPU core for thread {} err {} {}",
+                            Thread.currentThread().getName(), t.getMessage(), t);
+                }
+            });
+        }
+    }
 }
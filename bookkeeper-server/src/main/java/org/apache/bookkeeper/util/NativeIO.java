@@ -20,8 +20,11 @@ package org.apache.bookkeeper.util;
 
 import com.sun.jna.LastErrorException;
 import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
 
 import java.io.FileDescriptor;
+import java.io.IOException;
 import java.lang.reflect.Field;
 
 import org.slf4j.Logger;
@@ -35,8 +38,20 @@ public final class NativeIO {
 
     private static final int POSIX_FADV_DONTNEED = 4; /* fadvise.h */
 
+    /* fcntl.h, Linux values */
+    private static final int O_WRONLY = 01;
+    private static final int O_DIRECT = 040000;
+
+    private static final int EOPNOTSUPP = 95; /* errno.h, Linux value */
+
+    /**
+     * The alignment required for the offset, length and memory address of the direct I/O writes.
+     */
+    public static final int DIRECT_IO_ALIGNMENT = 4096;
+
     private static boolean initialized = false;
     private static boolean fadvisePossible = true;
+    private static boolean fallocatePossible = true;
 
     static {
         try {
@@ -54,6 +69,16 @@ public final class NativeIO {
     // fadvice
     public static native int posix_fadvise(int fd, long offset, long len, int flag) throws LastErrorException;
 
+    // off_t is mapped to long, fallocate is only used on 64 bits Linux
+    private static native int fallocate(int fd, int mode, long offset, long len) throws LastErrorException;
+
+    private static native int open(String pathname, int flags, int mode) throws LastErrorException;
+
+    // size_t and ssize_t are mapped to long, direct I/O is only enabled on 64 bits Linux
+    private static native long pwrite(int fd, Pointer buf, long count, long offset) throws LastErrorException;
+
+    private static native int close(int fd) throws LastErrorException;
+
     private NativeIO() {}
 
     private static Field getFieldByReflection(Class cls, String fieldName) {
@@ -87,6 +112,97 @@ public final class NativeIO {
         return -1;
     }
 
+    /**
+     * @return true if files can be opened for direct I/O writes on this platform
+     */
+    public static boolean isDirectIOAvailable() {
+        return initialized && Platform.isLinux() && Platform.is64Bit();
+    }
+
+    /**
+     * Open an existing file for direct I/O writes, bypassing the file system page cache.
+     *
+     * @param path the path of the file
+     * @return the file descriptor
+     * @throws IOException if the file cannot be opened with O_DIRECT
+     */
+    public static int openDirectForWrite(String path) throws IOException {
+        if (!isDirectIOAvailable()) {
+            throw new IOException("Direct I/O is not available");
+        }
+        try {
+            return open(path, O_WRONLY | O_DIRECT, 0);
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to open " + path + " with O_DIRECT, errno: " + e.getErrorCode(), e);
+        }
+    }
+
+    /**
+     * Write a block of memory at the given file position. With direct I/O, the address, the length
+     * and the position must be multiples of {@link #DIRECT_IO_ALIGNMENT}.
+     *
+     * @param fd the file descriptor
+     * @param address the memory address of the data
+     * @param length the number of bytes to write
+     * @param position the position in the file
+     */
+    public static void pwriteFully(int fd, long address, long length, long position) throws IOException {
+        long written = 0;
+        try {
+            while (written < length) {
+                long res = pwrite(fd, new Pointer(address + written), length - written, position + written);
+                if (res <= 0) {
+                    throw new IOException("Unable to write to file descriptor " + fd + " at position "
+                            + (position + written));
+                }
+                written += res;
+            }
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to write to file descriptor " + fd + ", errno: " + e.getErrorCode(), e);
+        }
+    }
+
+    /**
+     * Close a file descriptor opened with {@link #openDirectForWrite(String)}.
+     */
+    public static void closeFd(int fd) throws IOException {
+        try {
+            close(fd);
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to close file descriptor " + fd + ", errno: " + e.getErrorCode(), e);
+        }
+    }
+
+    /**
+     * Allocate the disk space for a range of a file, extending the file size if needed, so that
+     * writing in that range won't have to update the file system metadata.
+     *
+     * @param fd     The file descriptor of the file.
+     * @param offset The offset within the file.
+     * @param len    The length of the range to allocate.
+     * @return true if the space was allocated, false if fallocate is not available
+     */
+    public static boolean bestEffortPreAllocate(int fd, long offset, long len) {
+        if (!initialized || !fallocatePossible || fd < 0 || !Platform.isLinux() || !Platform.is64Bit()) {
+            return false;
+        }
+        try {
+            fallocate(fd, 0, offset, len);
+            return true;
+        } catch (UnsupportedOperationException | UnsatisfiedLinkError e) {
+            LOG.warn("fallocate is not supported : ", e);
+            fallocatePossible = false;
+        } catch (LastErrorException e) {
+            if (e.getErrorCode() == EOPNOTSUPP) {
+                LOG.warn("fallocate is not supported by the file system");
+                fallocatePossible = false;
+            } else {
+                LOG.warn("fallocate failed on file descriptor {}, offset {}, len {} : ", fd, offset, len, e);
+            }
+        }
+        return false;
+    }
+
     /**
      * Remove pages from the file system page cache when they wont
      * be accessed again.
@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.util.collections;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -268,6 +269,17 @@ public class ConcurrentLongLongPairHashMap {
         return getSection(h).remove(key1, key2, value1, value2, (int) h);
     }
 
+    public int removeIf(LongLongPairPredicate filter) {
+        checkNotNull(filter);
+
+        int removedCount = 0;
+        for (Section s : sections) {
+            removedCount += s.removeIf(filter);
+        }
+
+        return removedCount;
+    }
+
     private Section getSection(long hash) {
         // Use 32 msb out of long to get the section
         final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
@@ -498,6 +510,47 @@ public class ConcurrentLongLongPairHashMap {
             }
         }
 
+        int removeIf(LongLongPairPredicate filter) {
+            long stamp = writeLock();
+
+            int removedCount = 0;
+            try {
+                // Go through all the buckets for this section
+                for (int bucket = 0; bucket < table.length; bucket += 4) {
+                    long storedKey1 = table[bucket];
+                    long storedKey2 = table[bucket + 1];
+                    long storedValue1 = table[bucket + 2];
+                    long storedValue2 = table[bucket + 3];
+
+                    if (storedKey1 != DeletedKey && storedKey1 != EmptyKey) {
+                        if (filter.test(storedKey1, storedKey2, storedValue1, storedValue2)) {
+                            // Removing item
+                            --size;
+                            ++removedCount;
+                            cleanBucket(bucket);
+                        }
+                    }
+                }
+
+                return removedCount;
+            } finally {
+                if (autoShrink && size < resizeThresholdBelow) {
+                    try {
+                        int newCapacity = alignToPowerOfTwo((int) (capacity / shrinkFactor));
+                        int newResizeThresholdUp = (int) (newCapacity * mapFillFactor);
+                        if (newCapacity < capacity && newResizeThresholdUp > size) {
+                            // shrink the hashmap
+                            rehash(newCapacity);
+                        }
+                    } finally {
+                        unlockWrite(stamp);
+                    }
+                } else {
+                    unlockWrite(stamp);
+                }
+            }
+        }
+
         private void cleanBucket(int bucket) {
             int nextInArray = (bucket + 4) & (table.length - 1);
             if (table[nextInArray] == EmptyKey) {
@@ -0,0 +1,156 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the batches of entries added with a single call to the bookie.
+ */
+public class BookieAddEntriesTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final byte[] MASTER_KEY = "master".getBytes(StandardCharsets.UTF_8);
+
+    private File dir;
+    private Bookie bookie;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = IOUtils.createTempDir("bookie-add-entries", "test");
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration()
+                .setJournalDirName(dir.toString())
+                .setLedgerDirNames(new String[] { dir.getAbsolutePath() });
+        bookie = new TestBookieImpl(conf);
+        bookie.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bookie.shutdown();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static ByteBuf newEntry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer();
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeBytes(("entry " + entryId).getBytes(StandardCharsets.UTF_8));
+        return entry;
+    }
+
+    private static List<ByteBuf> newBatch(long startEntryId, int size) {
+        List<ByteBuf> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            entries.add(newEntry(LEDGER_ID, startEntryId + i));
+        }
+        return entries;
+    }
+
+    /**
+     * Callback recording the result of each entry of a batch.
+     */
+    private static class BatchCallback implements WriteCallback {
+        private final long startEntryId;
+        private final int[] rcs;
+        private final CountDownLatch latch;
+
+        BatchCallback(long startEntryId, int size) {
+            this.startEntryId = startEntryId;
+            this.rcs = new int[size];
+            this.latch = new CountDownLatch(size);
+        }
+
+        @Override
+        public void writeComplete(int rc, long ledgerId, long entryId,
+                                  BookieId addr, Object ctx) {
+            Assert.assertEquals(LEDGER_ID, ledgerId);
+            rcs[(int) (entryId - startEntryId)] = rc;
+            latch.countDown();
+        }
+
+        int[] await() throws InterruptedException {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            return rcs;
+        }
+    }
+
+    private void assertEntry(long entryId) throws Exception {
+        ByteBuf entry = bookie.readEntry(LEDGER_ID, entryId);
+        try {
+            Assert.assertEquals(newEntry(LEDGER_ID, entryId), entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testAddBatch() throws Exception {
+        List<ByteBuf> entries = newBatch(0, 5);
+        BatchCallback cb = new BatchCallback(0, 5);
+        bookie.addEntries(entries, false, cb, null, MASTER_KEY);
+
+        Assert.assertArrayEquals(new int[5], cb.await());
+        for (ByteBuf entry : entries) {
+            Assert.assertEquals(0, entry.refCnt());
+        }
+        for (long entryId = 0; entryId < 5; entryId++) {
+            assertEntry(entryId);
+        }
+    }
+
+    @Test
+    public void testStoreFailureAfterFirstEntry() throws Exception {
+        List<ByteBuf> entries = newBatch(0, 2);
+        // The ledger storage rejects an entry of another ledger
+        entries.add(newEntry(LEDGER_ID + 1, 2));
+        BatchCallback cb = new BatchCallback(0, 3);
+        bookie.addEntries(entries, false, cb, null, MASTER_KEY);
+
+        // The entries stored are still journaled and acknowledged
+        Assert.assertArrayEquals(new int[] { BookieProtocol.EOK, BookieProtocol.EOK, BookieProtocol.EIO },
+                cb.await());
+        assertEntry(0);
+        assertEntry(1);
+        for (ByteBuf entry : entries) {
+            Assert.assertEquals(0, entry.refCnt());
+        }
+    }
+
+    @Test
+    public void testFailureBeforeStoringAnything() throws Exception {
+        BatchCallback cb = new BatchCallback(0, 1);
+        bookie.addEntries(newBatch(0, 1), false, cb, null, MASTER_KEY);
+        cb.await();
+        bookie.fenceLedger(LEDGER_ID, MASTER_KEY).get(10, TimeUnit.SECONDS);
+
+        List<ByteBuf> entries = newBatch(1, 3);
+        cb = new BatchCallback(1, 3);
+        try {
+            bookie.addEntries(entries, false, cb, null, MASTER_KEY);
+            Assert.fail("The batch should be rejected by the fenced ledger");
+        } catch (BookieException.LedgerFencedException e) {
+            // expected
+        }
+        Assert.assertEquals(3, cb.latch.getCount());
+        for (ByteBuf entry : entries) {
+            Assert.assertEquals(0, entry.refCnt());
+        }
+    }
+}
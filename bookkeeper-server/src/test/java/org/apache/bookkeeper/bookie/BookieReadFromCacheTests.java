@@ -0,0 +1,80 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the reads served by the bookie from the caches of its ledger storage only.
+ */
+public class BookieReadFromCacheTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final byte[] MASTER_KEY = "master".getBytes(StandardCharsets.UTF_8);
+
+    private File dir;
+    private BookieImpl bookie;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = IOUtils.createTempDir("bookie-read-from-cache", "test");
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration()
+                .setJournalDirName(dir.toString())
+                .setLedgerDirNames(new String[] { dir.getAbsolutePath() })
+                .setLedgerStorageClass(InterleavedLedgerStorage.class.getName());
+        bookie = new TestBookieImpl(conf);
+        bookie.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bookie.shutdown();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static ByteBuf newEntry(long entryId) {
+        ByteBuf entry = Unpooled.buffer();
+        entry.writeLong(LEDGER_ID);
+        entry.writeLong(entryId);
+        entry.writeBytes(("entry " + entryId).getBytes(StandardCharsets.UTF_8));
+        return entry;
+    }
+
+    private void addEntry(long entryId) throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        bookie.addEntry(newEntry(entryId), false, (rc, ledgerId, eId, addr, ctx) -> latch.countDown(),
+                null, MASTER_KEY);
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDeletedLedgerNotServed() throws Exception {
+        addEntry(0);
+        bookie.readEntry(LEDGER_ID, 0).release();
+        bookie.getLedgerStorage().deleteLedger(LEDGER_ID);
+
+        try {
+            bookie.tryReadEntryFromCache(LEDGER_ID, 0, false);
+            Assert.fail("The entries of a deleted ledger should not be served");
+        } catch (Bookie.NoLedgerException e) {
+            // expected
+        }
+        try {
+            bookie.tryReadEntryFromCache(LEDGER_ID + 1, 0, false);
+            Assert.fail("The entries of an unknown ledger should not be served");
+        } catch (Bookie.NoLedgerException e) {
+            // expected
+        }
+    }
+}
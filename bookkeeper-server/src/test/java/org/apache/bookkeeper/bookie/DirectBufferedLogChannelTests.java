@@ -0,0 +1,100 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.NativeIO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the reads of an entry log written with direct I/O.
+ */
+public class DirectBufferedLogChannelTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final int ENTRY_SIZE = 1000;
+
+    private File ledgerDir;
+    private EntryLogger entryLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(NativeIO.isDirectIOAvailable());
+
+        ledgerDir = IOUtils.createTempDir("direct-io", "test");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        conf.setEntryLogDirectIOEnabled(true);
+        // Bigger than the direct I/O blocks, so that a read buffers past the flushed position
+        conf.setReadBufferBytes(4 * NativeIO.DIRECT_IO_ALIGNMENT);
+        conf.setWriteBufferBytes(16 * NativeIO.DIRECT_IO_ALIGNMENT);
+        entryLogger = new EntryLogger(conf);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (entryLogger != null) {
+            entryLogger.shutdown();
+        }
+        if (ledgerDir != null) {
+            Files.walk(ledgerDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> b.compareTo(a))
+                    .forEach(File::delete);
+        }
+    }
+
+    private static ByteBuf newEntry(long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        entry.writeLong(LEDGER_ID);
+        entry.writeLong(entryId);
+        while (entry.isWritable()) {
+            entry.writeByte((int) entryId);
+        }
+        return entry;
+    }
+
+    private void assertEntry(long entryId, long location) throws Exception {
+        ByteBuf entry = entryLogger.readEntry(LEDGER_ID, entryId, location);
+        try {
+            Assert.assertEquals(newEntry(entryId), entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testReadAfterTailBlockRewritten() throws Exception {
+        // Write more than a block, so that the flushed position moves past the first entries
+        int entries = 2 * NativeIO.DIRECT_IO_ALIGNMENT / ENTRY_SIZE;
+        long[] locations = new long[2 * entries];
+        for (int i = 0; i < entries; i++) {
+            locations[i] = entryLogger.addEntry(LEDGER_ID, newEntry(i));
+        }
+        entryLogger.flush();
+
+        // Read the first entry, with the read buffer reaching the zero padded tail block
+        assertEntry(0, locations[0]);
+
+        // Fill the tail block and flush it again
+        for (int i = entries; i < 2 * entries; i++) {
+            locations[i] = entryLogger.addEntry(LEDGER_ID, newEntry(i));
+        }
+        entryLogger.flush();
+
+        for (int i = 0; i < 2 * entries; i++) {
+            assertEntry(i, locations[i]);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the reads of the entry logs on virtual threads, which don't use the per-thread caches.
+ */
+public class EntryLoggerVirtualThreadsTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final int ENTRY_SIZE = 1000;
+    private static final int ENTRIES = 40;
+
+    private File ledgerDir;
+    private EntryLogger entryLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        ledgerDir = IOUtils.createTempDir("virtual-read", "test");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        // Roll the log every few entries, so that the entries are read from sealed logs and the current one
+        conf.setEntryLogSizeLimit(8 * ENTRY_SIZE);
+        entryLogger = new EntryLogger(conf);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (entryLogger != null) {
+            entryLogger.shutdown();
+        }
+        if (ledgerDir != null) {
+            Files.walk(ledgerDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> b.compareTo(a))
+                    .forEach(File::delete);
+        }
+    }
+
+    private static ByteBuf newEntry(long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        entry.writeLong(LEDGER_ID);
+        entry.writeLong(entryId);
+        while (entry.isWritable()) {
+            entry.writeByte((int) entryId);
+        }
+        return entry;
+    }
+
+    /**
+     * Run a task on a new virtual thread, if the JDK supports them.
+     */
+    private static void runOnVirtualThread(Runnable task) throws Exception {
+        Thread thread;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            thread = (Thread) Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class)
+                    .invoke(builder, task);
+        } catch (ReflectiveOperationException e) {
+            Assume.assumeNoException("Virtual threads aren't supported", e);
+            return;
+        }
+        thread.start();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void testReadOnVirtualThreads() throws Exception {
+        Assert.assertFalse(EntryLogger.isVirtualThread());
+
+        long[] locations = new long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            locations[i] = entryLogger.addEntry(LEDGER_ID, newEntry(i), true);
+        }
+        entryLogger.flush();
+
+        // each read is on its own thread, like the reads executed on virtual threads
+        for (int i = 0; i < ENTRIES; i++) {
+            long entryId = i;
+            CompletableFuture<Void> read = new CompletableFuture<>();
+            runOnVirtualThread(() -> {
+                try {
+                    Assert.assertTrue(EntryLogger.isVirtualThread());
+                    ByteBuf entry = entryLogger.readEntry(LEDGER_ID, entryId, locations[(int) entryId]);
+                    try {
+                        Assert.assertEquals(newEntry(entryId), entry);
+                    } finally {
+                        entry.release();
+                    }
+                    // the read channels of the logs aren't kept by the virtual threads
+                    Assert.assertNull(entryLogger.getFromChannels(locations[(int) entryId] >> 32));
+                    read.complete(null);
+                } catch (Throwable t) {
+                    read.completeExceptionally(t);
+                }
+            });
+            read.get(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the batches of entries enqueued at once in the journal, as a chain of
+ * queue entries.
+ */
+public class JournalAddEntriesTests {
+
+    private static final long LEDGER_ID = 1;
+
+    private File journalDir;
+    private Journal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        journalDir = IOUtils.createTempDir("journal-add-entries", "test");
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getAbsolutePath());
+        conf.setLedgerDirNames(new String[] { journalDir.getAbsolutePath() });
+        journal = new Journal(0, journalDir, conf, new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold())));
+        journal.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.shutdown();
+        FileUtils.deleteDirectory(journalDir);
+    }
+
+    private static List<ByteBuf> newBatch(long startEntryId, int size) {
+        List<ByteBuf> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ByteBuf entry = Unpooled.buffer();
+            entry.writeLong(LEDGER_ID);
+            entry.writeLong(startEntryId + i);
+            entry.writeZero(100 * (i + 1));
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private List<Long> scanEntryIds() throws Exception {
+        List<Long> entryIds = new ArrayList<>();
+        for (long journalId : Journal.listJournalIds(journalDir, null)) {
+            journal.scanJournal(journalId, 0, (version, offset, entry) -> {
+                if (entry.getLong(0) == LEDGER_ID && entry.getLong(8) >= 0) {
+                    entryIds.add(entry.getLong(8));
+                }
+            });
+        }
+        return entryIds;
+    }
+
+    @Test
+    public void testBatchesJournaledInOrder() throws Exception {
+        ConcurrentLinkedQueue<Long> acked = new ConcurrentLinkedQueue<>();
+        CountDownLatch latch = new CountDownLatch(10);
+        List<ByteBuf> entries = new ArrayList<>();
+        for (int batch = 0; batch < 2; batch++) {
+            List<ByteBuf> batchEntries = newBatch(batch * 5, 5);
+            entries.addAll(batchEntries);
+            journal.logAddEntries(LEDGER_ID, batchEntries, false, (rc, ledgerId, entryId, addr, ctx) -> {
+                Assert.assertEquals(0, rc);
+                acked.add(entryId);
+                latch.countDown();
+            }, null);
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        List<Long> expected = new ArrayList<>();
+        for (long entryId = 0; entryId < 10; entryId++) {
+            expected.add(entryId);
+        }
+        Assert.assertEquals(expected, new ArrayList<>(acked));
+        // The journal releases its reference once the entries are written
+        for (ByteBuf entry : entries) {
+            Assert.assertEquals(1, entry.refCnt());
+        }
+
+        journal.shutdown();
+        Assert.assertEquals(expected, scanEntryIds());
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+        AtomicInteger emptyBatchCallbacks = new AtomicInteger();
+        journal.logAddEntries(LEDGER_ID, new ArrayList<>(), false,
+                (rc, ledgerId, entryId, addr, ctx) -> emptyBatchCallbacks.incrementAndGet(), null);
+
+        // The journal keeps going with the next entries
+        CountDownLatch latch = new CountDownLatch(1);
+        journal.logAddEntry(newBatch(0, 1).get(0), false,
+                (rc, ledgerId, entryId, addr, ctx) -> latch.countDown(), null);
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, emptyBatchCallbacks.get());
+    }
+}
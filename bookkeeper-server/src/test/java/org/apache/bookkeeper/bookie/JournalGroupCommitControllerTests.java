@@ -0,0 +1,78 @@
+package org.apache.bookkeeper.bookie;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the adaptive group commit window of the journal.
+ */
+public class JournalGroupCommitControllerTests {
+
+    private static final long MAX_GROUP_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long MAX_BUFFERED_WRITES = 512 * 1024;
+    private static final long MAX_BUFFERED_ENTRIES = 100;
+    private static final long FORCE_WRITE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int ENTRY_SIZE = 1024;
+
+    private final JournalGroupCommitController controller = new JournalGroupCommitController(
+            MAX_GROUP_WAIT_NANOS, MAX_BUFFERED_WRITES, MAX_BUFFERED_ENTRIES);
+    private long now = 0;
+
+    /**
+     * Flush the given number of entries every millisecond, for long enough for the moving
+     * averages to converge.
+     */
+    private void flushSteadily(int entriesPerFlush) {
+        controller.onFlush(0, 0, now);
+        for (int i = 0; i < 100; i++) {
+            now += TimeUnit.MILLISECONDS.toNanos(1);
+            controller.onFlush(entriesPerFlush, (long) entriesPerFlush * ENTRY_SIZE, now);
+        }
+    }
+
+    @Test
+    public void testRateCountsFlushedEntries() {
+        controller.onForceWrite(FORCE_WRITE_NANOS);
+        flushSteadily(10);
+
+        // 10 entries per millisecond, whatever is left in the queue
+        Assert.assertEquals(10_000, controller.getEntriesPerSec(), 1);
+    }
+
+    @Test
+    public void testWindowFollowsForceWriteLatency() {
+        controller.onForceWrite(FORCE_WRITE_NANOS);
+        flushSteadily(10);
+
+        Assert.assertEquals(FORCE_WRITE_NANOS, controller.getGroupWaitNanos());
+        // Twice the entries expected during a force write
+        Assert.assertEquals(20, controller.getBufferedEntriesThreshold(), 1);
+        Assert.assertEquals(JournalGroupCommitController.MIN_BUFFERED_WRITES,
+                controller.getBufferedWritesThreshold());
+    }
+
+    @Test
+    public void testWindowShrinksUnderLowLoad() {
+        controller.onForceWrite(FORCE_WRITE_NANOS);
+        // One entry every 10 milliseconds, nothing to group with
+        controller.onFlush(0, 0, now);
+        for (int i = 0; i < 100; i++) {
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+            controller.onFlush(1, ENTRY_SIZE, now);
+        }
+
+        Assert.assertEquals(JournalGroupCommitController.MIN_GROUP_WAIT_NANOS, controller.getGroupWaitNanos());
+        Assert.assertEquals(1, controller.getBufferedEntriesThreshold());
+    }
+
+    @Test
+    public void testWindowBoundedByConfiguration() {
+        controller.onForceWrite(TimeUnit.MILLISECONDS.toNanos(50));
+        flushSteadily(1000);
+
+        Assert.assertEquals(MAX_GROUP_WAIT_NANOS, controller.getGroupWaitNanos());
+        Assert.assertEquals(MAX_BUFFERED_WRITES, controller.getBufferedWritesThreshold());
+        Assert.assertEquals(MAX_BUFFERED_ENTRIES, controller.getBufferedEntriesThreshold());
+    }
+}
@@ -0,0 +1,201 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the replay of the journal files written with the format V7, which can be
+ * reused with the records of their previous epoch left after the last record written.
+ */
+public class JournalReuseTests {
+
+    private static final int ALIGN_SIZE = 512;
+
+    private File journalDir;
+    private ServerConfiguration conf;
+    private Journal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        journalDir = IOUtils.createTempDir("journal-reuse", "test");
+        conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getAbsolutePath());
+        conf.setLedgerDirNames(new String[] { journalDir.getAbsolutePath() });
+        conf.setJournalAlignmentSize(ALIGN_SIZE);
+        conf.setJournalReuseFiles(true);
+        journal = newJournal();
+    }
+
+    private Journal newJournal() {
+        return new Journal(0, journalDir, conf, new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold())));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(journalDir.toPath())
+                .map(Path::toFile)
+                .sorted((a, b) -> b.compareTo(a))
+                .forEach(File::delete);
+    }
+
+    private JournalChannel openForWrite(long logId, File fileToReuse) throws IOException {
+        return new JournalChannel(journalDir, logId, 4 * Journal.MB, 64 * 1024, ALIGN_SIZE, false,
+                JournalChannel.V7, Journal.BufferedChannelBuilder.DEFAULT_BCBUILDER, fileToReuse, false,
+                conf, new DefaultFileChannelProvider());
+    }
+
+    private static void writeRecord(JournalChannel jc, int size, int fill) throws IOException {
+        ByteBuf record = Unpooled.buffer(12 + size);
+        record.writeInt(size);
+        record.writeLong(jc.getEpochTag());
+        for (int i = 0; i < size; i++) {
+            record.writeByte(fill);
+        }
+        jc.getBufferedChannel().write(record);
+    }
+
+    private static void writePadding(JournalChannel jc) throws IOException {
+        ByteBuf paddingBuff = Unpooled.buffer(2 * ALIGN_SIZE);
+        paddingBuff.writeZero(paddingBuff.capacity());
+        Journal.writePaddingBytes(jc, paddingBuff, ALIGN_SIZE);
+    }
+
+    private static void close(JournalChannel jc) throws IOException {
+        jc.getBufferedChannel().flushAndForceWrite(false);
+        jc.close();
+    }
+
+    private List<byte[]> scan(long logId, long[] scanOffset) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        scanOffset[0] = journal.scanJournal(logId, 0, (version, offset, entry) -> {
+            byte[] data = new byte[entry.remaining()];
+            entry.get(data);
+            records.add(data);
+        });
+        return records;
+    }
+
+    @Test
+    public void testReplayNewFile() throws Exception {
+        JournalChannel jc = openForWrite(1, null);
+        writeRecord(jc, 100, 1);
+        writePadding(jc);
+        writeRecord(jc, 200, 2);
+        close(jc);
+
+        long[] scanOffset = new long[1];
+        List<byte[]> records = scan(1, scanOffset);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals(100, records.get(0).length);
+        Assert.assertEquals(200, records.get(1).length);
+    }
+
+    @Test
+    public void testReplayReusedFileWithStaleTail() throws Exception {
+        // Previous epoch: a record, a padding record, then more records
+        JournalChannel jc = openForWrite(1, null);
+        writeRecord(jc, 100, 1);
+        writePadding(jc);
+        long stalePaddingEnd = jc.getBufferedChannel().position();
+        writeRecord(jc, 300, 2);
+        writeRecord(jc, 300, 3);
+        close(jc);
+
+        // New epoch: same size as the first record, so that the next one is the stale padding
+        File oldFile = new File(journalDir, Long.toHexString(1) + ".txn");
+        jc = openForWrite(2, oldFile);
+        Assert.assertFalse(oldFile.exists());
+        writeRecord(jc, 100, 4);
+        long lastRecordEnd = jc.getBufferedChannel().position();
+        close(jc);
+
+        long[] scanOffset = new long[1];
+        List<byte[]> records = scan(2, scanOffset);
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(100, records.get(0).length);
+        Assert.assertEquals(4, records.get(0)[0]);
+        // The stale padding record is not followed
+        Assert.assertTrue(scanOffset[0] > lastRecordEnd);
+        Assert.assertTrue(scanOffset[0] < stalePaddingEnd);
+    }
+
+    @Test
+    public void testReplayReusedFileWithStaleRecords() throws Exception {
+        JournalChannel jc = openForWrite(1, null);
+        for (int i = 0; i < 10; i++) {
+            writeRecord(jc, 100, i);
+        }
+        close(jc);
+
+        jc = openForWrite(2, new File(journalDir, Long.toHexString(1) + ".txn"));
+        for (int i = 0; i < 3; i++) {
+            writeRecord(jc, 100, 10 + i);
+        }
+        close(jc);
+
+        long[] scanOffset = new long[1];
+        List<byte[]> records = scan(2, scanOffset);
+        Assert.assertEquals(3, records.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(10 + i, records.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void testReplayReusedFileWithSameEpochLowBits() throws Exception {
+        long oldEpoch = 1;
+        JournalChannel jc = openForWrite(oldEpoch, null);
+        for (int i = 0; i < 10; i++) {
+            writeRecord(jc, 100, i);
+        }
+        close(jc);
+
+        // The stale records are told apart with the full epoch, not only its lower 32 bits
+        long newEpoch = oldEpoch + (1L << 32);
+        jc = openForWrite(newEpoch, new File(journalDir, Long.toHexString(oldEpoch) + ".txn"));
+        for (int i = 0; i < 3; i++) {
+            writeRecord(jc, 100, 10 + i);
+        }
+        close(jc);
+
+        long[] scanOffset = new long[1];
+        List<byte[]> records = scan(newEpoch, scanOffset);
+        Assert.assertEquals(3, records.size());
+    }
+
+    @Test
+    public void testFilesKeptForReuseFoundOnRestart() throws Exception {
+        conf.setMaxBackupJournals(1);
+        conf.setJournalMaxReusableFiles(2);
+        for (long logId = 1; logId <= 5; logId++) {
+            close(openForWrite(logId, null));
+        }
+        journal = newJournal();
+        journal.getLastLogMark().setCurLogMark(5, 0);
+        journal.getLastLogMark().rollLog(journal.getLastLogMark());
+
+        // After a restart, the files before the mark which are not backups are still kept to be
+        // reused, and only the ones over the max number of reusable files are deleted
+        journal = newJournal();
+        journal.checkpointComplete(journal.newCheckpoint(), true);
+        for (long logId = 1; logId <= 5; logId++) {
+            Assert.assertEquals("journal " + logId, logId != 3,
+                    new File(journalDir, Long.toHexString(logId) + ".txn").exists());
+        }
+    }
+}
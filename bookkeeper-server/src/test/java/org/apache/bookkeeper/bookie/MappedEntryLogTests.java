@@ -0,0 +1,153 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the reads of the sealed entry logs through a memory mapping.
+ */
+public class MappedEntryLogTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final int ENTRY_SIZE = 1000;
+    private static final int ENTRIES = 40;
+
+    private File ledgerDir;
+    private ServerConfiguration conf;
+    private EntryLogger entryLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        ledgerDir = IOUtils.createTempDir("mmap-read", "test");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+
+        conf = TestBKConfiguration.newServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        conf.setEntryLogMmapReadEnabled(true);
+        // Roll the log every few entries, so that the first logs are sealed
+        conf.setEntryLogSizeLimit(8 * ENTRY_SIZE);
+        entryLogger = new EntryLogger(conf);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (entryLogger != null) {
+            entryLogger.shutdown();
+        }
+        if (ledgerDir != null) {
+            Files.walk(ledgerDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> b.compareTo(a))
+                    .forEach(File::delete);
+        }
+    }
+
+    private static ByteBuf newEntry(long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        entry.writeLong(LEDGER_ID);
+        entry.writeLong(entryId);
+        while (entry.isWritable()) {
+            entry.writeByte((int) entryId);
+        }
+        return entry;
+    }
+
+    @Test
+    public void testReadSealedLogs() throws Exception {
+        long[] locations = new long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            locations[i] = entryLogger.addEntry(LEDGER_ID, newEntry(i), true);
+        }
+        entryLogger.flush();
+        Assert.assertNotEquals(locations[0] >> 32, locations[ENTRIES - 1] >> 32);
+
+        // Read twice, the second time from the existing mappings
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < ENTRIES; i++) {
+                ByteBuf entry = entryLogger.readEntry(LEDGER_ID, i, locations[i]);
+                try {
+                    Assert.assertEquals(newEntry(i), entry);
+                } finally {
+                    entry.release();
+                }
+            }
+        }
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testMappedEntriesAreReadOnly() throws Exception {
+        long location = entryLogger.addEntry(LEDGER_ID, newEntry(0), true);
+        for (int i = 1; i < ENTRIES; i++) {
+            entryLogger.addEntry(LEDGER_ID, newEntry(i), true);
+        }
+        entryLogger.flush();
+
+        ByteBuf entry = entryLogger.readEntry(LEDGER_ID, 0, location);
+        try {
+            entry.setByte(16, 0);
+        } finally {
+            entry.release();
+        }
+    }
+
+    private void assertRead(long entryId, long location) throws Exception {
+        ByteBuf entry = entryLogger.readEntry(LEDGER_ID, entryId, location);
+        try {
+            Assert.assertEquals(newEntry(entryId), entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyReadLogsUnmapped() throws Exception {
+        entryLogger.shutdown();
+        conf.setEntryLogMmapMaxMappedLogs(2);
+        entryLogger = new EntryLogger(conf);
+
+        long[] locations = new long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            locations[i] = entryLogger.addEntry(LEDGER_ID, newEntry(i), true);
+        }
+        entryLogger.flush();
+        // entries of 3 different sealed logs
+        int first = 0;
+        int second = 8;
+        int third = 16;
+        Assert.assertEquals(3, Arrays.stream(new int[] { first, second, third })
+                .mapToLong(i -> locations[i] >> 32).distinct().count());
+        Assert.assertNotEquals(locations[third] >> 32, locations[ENTRIES - 1] >> 32);
+
+        assertRead(first, locations[first]);
+        assertRead(second, locations[second]);
+        // an entry of the first log is held until after the log is unmapped
+        ByteBuf held = entryLogger.readEntry(LEDGER_ID, first, locations[first]);
+        try {
+            assertRead(third, locations[third]);
+            Assert.assertEquals(2, entryLogger.getMappedLogsCount());
+            Assert.assertFalse(entryLogger.isMappedLog(locations[second] >> 32));
+            Assert.assertTrue(entryLogger.isMappedLog(locations[first] >> 32));
+            Assert.assertTrue(entryLogger.isMappedLog(locations[third] >> 32));
+
+            // the evicted log is mapped again when it's read
+            assertRead(second, locations[second]);
+            Assert.assertEquals(2, entryLogger.getMappedLogsCount());
+            Assert.assertFalse(entryLogger.isMappedLog(locations[first] >> 32));
+            Assert.assertEquals(newEntry(first), held);
+        } finally {
+            held.release();
+        }
+    }
+}
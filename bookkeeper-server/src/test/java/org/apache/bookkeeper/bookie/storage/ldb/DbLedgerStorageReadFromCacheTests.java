@@ -0,0 +1,78 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.TestBookieImpl;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the reads tried from the caches of the ledger storage before reading the entry logs.
+ */
+public class DbLedgerStorageReadFromCacheTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final byte[] MASTER_KEY = "master".getBytes(StandardCharsets.UTF_8);
+
+    private File dir;
+    private BookieImpl bookie;
+    private SingleDirectoryDbLedgerStorage storage;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = IOUtils.createTempDir("db-read-from-cache", "test");
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration()
+                .setJournalDirName(dir.toString())
+                .setLedgerDirNames(new String[] { dir.getAbsolutePath() })
+                .setLedgerStorageClass(DbLedgerStorage.class.getName());
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, 4);
+        conf.setProperty(DbLedgerStorage.READ_AHEAD_CACHE_MAX_SIZE_MB, 4);
+        conf.setProperty(DbLedgerStorage.READ_CACHE_FREQUENCY_ADMISSION_ENABLED, true);
+        conf.setProperty(DbLedgerStorage.READ_AHEAD_ASYNC_ENABLED, true);
+        bookie = new TestBookieImpl(conf);
+        bookie.start();
+        storage = ((DbLedgerStorage) bookie.getLedgerStorage()).getLedgerStorageList().get(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bookie.shutdown();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static ByteBuf newEntry(long entryId) {
+        ByteBuf entry = Unpooled.buffer();
+        entry.writeLong(LEDGER_ID);
+        entry.writeLong(entryId);
+        entry.writeBytes(("entry " + entryId).getBytes(StandardCharsets.UTF_8));
+        return entry;
+    }
+
+    @Test
+    public void testColdReadMissedOnce() throws Exception {
+        storage.setMasterKey(LEDGER_ID, MASTER_KEY);
+        storage.addEntry(newEntry(0));
+        // the entry is only in the entry logs
+        storage.flush();
+
+        Assert.assertNull(storage.tryGetEntryFromCache(LEDGER_ID, 0));
+        ByteBuf entry = storage.getEntry(LEDGER_ID, 0);
+        try {
+            Assert.assertEquals(newEntry(0), entry);
+        } finally {
+            entry.release();
+        }
+
+        // a single cold read, e.g. of a one-time scan, doesn't count for the frequency of the ledger
+        Assert.assertEquals(0, storage.getReadCache().frequency(LEDGER_ID));
+    }
+}
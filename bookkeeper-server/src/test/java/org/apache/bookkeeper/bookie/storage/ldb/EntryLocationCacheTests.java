@@ -0,0 +1,86 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the EntryLocationCache class.
+ */
+public class EntryLocationCacheTests {
+
+    @Test
+    public void testPutAndGet() {
+        EntryLocationCache cache = new EntryLocationCache(100);
+        Assert.assertEquals(0, cache.get(1, 0));
+
+        cache.put(1, 0, 10);
+        Assert.assertEquals(10, cache.get(1, 0));
+
+        // A newer location replaces the cached one
+        cache.put(1, 0, 20);
+        Assert.assertEquals(20, cache.get(1, 0));
+
+        // A location read from the db doesn't replace the cached one
+        cache.putIfAbsent(1, 0, 30, cache.epoch());
+        Assert.assertEquals(20, cache.get(1, 0));
+    }
+
+    @Test
+    public void testRemoveLedgers() {
+        EntryLocationCache cache = new EntryLocationCache(100);
+        for (long ledgerId = 1; ledgerId <= 4; ledgerId++) {
+            for (long entryId = 0; entryId < 10; entryId++) {
+                cache.put(ledgerId, entryId, 1 + ledgerId * 100 + entryId);
+            }
+        }
+        Assert.assertEquals(40, cache.count());
+
+        Set<Long> deleted = new HashSet<>();
+        deleted.add(2L);
+        deleted.add(4L);
+        cache.removeLedgers(deleted);
+
+        Assert.assertEquals(20, cache.count());
+        for (long entryId = 0; entryId < 10; entryId++) {
+            Assert.assertEquals(1 + 100 + entryId, cache.get(1, entryId));
+            Assert.assertEquals(0, cache.get(2, entryId));
+            Assert.assertEquals(1 + 300 + entryId, cache.get(3, entryId));
+            Assert.assertEquals(0, cache.get(4, entryId));
+        }
+    }
+
+    @Test
+    public void testStaleReadNotInsertedAfterRemoval() {
+        EntryLocationCache cache = new EntryLocationCache(100);
+
+        // The location is read from the db before the ledger is deleted, but inserted after
+        long readEpoch = cache.epoch();
+        cache.removeLedgers(Collections.singleton(1L));
+        cache.putIfAbsent(1, 0, 10, readEpoch);
+
+        Assert.assertEquals(0, cache.get(1, 0));
+
+        // A read started after the removal is cached
+        cache.putIfAbsent(1, 0, 10, cache.epoch());
+        Assert.assertEquals(10, cache.get(1, 0));
+    }
+
+    @Test
+    public void testStaleReadNotInsertedAfterRotation() {
+        EntryLocationCache cache = new EntryLocationCache(4);
+
+        long readEpoch = cache.epoch();
+        // Update the location and push it out of the cache
+        cache.put(1, 0, 20);
+        for (long entryId = 1; entryId <= 4; entryId++) {
+            cache.put(2, entryId, 100 + entryId);
+        }
+        Assert.assertEquals(0, cache.get(1, 0));
+
+        cache.putIfAbsent(1, 0, 10, readEpoch);
+        Assert.assertEquals(0, cache.get(1, 0));
+    }
+}
@@ -0,0 +1,194 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.EntryLogger;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Test cases for the chunks of a write cache flush, and the pipelining of their index batches.
+ */
+public class FlushPipelineTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final int ENTRY_SIZE = 32;
+    private static final long CHUNK_SIZE = 2 * ENTRY_SIZE;
+
+    private EntryLogger entryLogger;
+    private EntryLocationIndex entryLocationIndex;
+    private DbLedgerStorageStats stats;
+    private ExecutorService indexFlushExecutor;
+    private final List<Batch> batches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        entryLogger = mock(EntryLogger.class);
+        AtomicLong nextLocation = new AtomicLong();
+        when(entryLogger.addEntry(anyLong(), any(ByteBuf.class), anyBoolean())).thenAnswer(
+                invocation -> nextLocation.getAndAdd(ENTRY_SIZE));
+        entryLocationIndex = mock(EntryLocationIndex.class);
+        when(entryLocationIndex.newBatch()).thenAnswer(invocation -> {
+            Batch batch = mock(Batch.class);
+            batches.add(batch);
+            return batch;
+        });
+        stats = new DbLedgerStorageStats(NullStatsLogger.INSTANCE, () -> 0L, () -> 0L, () -> 0L, () -> 0L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (indexFlushExecutor != null) {
+            indexFlushExecutor.shutdownNow();
+        }
+    }
+
+    private FlushPipeline newPipeline(boolean pipelined) {
+        if (pipelined) {
+            indexFlushExecutor = Executors.newSingleThreadExecutor();
+        }
+        return new FlushPipeline(entryLogger, entryLocationIndex, stats, indexFlushExecutor, CHUNK_SIZE, 2);
+    }
+
+    private static void add(FlushPipeline pipeline, long firstEntryId, long lastEntryId) {
+        for (long entryId = firstEntryId; entryId <= lastEntryId; entryId++) {
+            ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+            entry.writeZero(ENTRY_SIZE);
+            pipeline.accept(LEDGER_ID, entryId, entry);
+        }
+    }
+
+    @Test
+    public void testChunksIndexedAfterEntryLogFlush() throws Exception {
+        try (FlushPipeline pipeline = newPipeline(false)) {
+            add(pipeline, 0, 4);
+            pipeline.finish();
+        }
+
+        // 2 full chunks, the last one with a single entry
+        Assert.assertEquals(3, batches.size());
+        InOrder inOrder = inOrder(entryLogger, batches.get(0), batches.get(1), batches.get(2));
+        for (Batch batch : batches) {
+            inOrder.verify(entryLogger).flush();
+            inOrder.verify(batch).flush();
+            inOrder.verify(batch).close();
+        }
+    }
+
+    @Test
+    public void testEmptyLastChunk() throws Exception {
+        try (FlushPipeline pipeline = newPipeline(false)) {
+            add(pipeline, 0, 3);
+            pipeline.finish();
+        }
+
+        // the batch created after the last full chunk is closed without being flushed
+        Assert.assertEquals(3, batches.size());
+        verify(batches.get(2), never()).flush();
+        verify(batches.get(2)).close();
+    }
+
+    @Test
+    public void testNextChunkWrittenWhileIndexIsFlushed() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (FlushPipeline pipeline = newPipeline(true)) {
+            doAnswer(invocation -> {
+                flushing.countDown();
+                release.await();
+                return null;
+            }).when(batches.get(0)).flush();
+            add(pipeline, 0, 1);
+            Assert.assertTrue(flushing.await(10, TimeUnit.SECONDS));
+
+            // the next chunk is written while the index batch of the first one is being committed
+            add(pipeline, 2, 3);
+            verify(entryLogger, times(2)).flush();
+            verify(batches.get(1), never()).flush();
+
+            release.countDown();
+            pipeline.finish();
+        } finally {
+            release.countDown();
+        }
+
+        verify(batches.get(0)).close();
+        verify(batches.get(1)).flush();
+        verify(batches.get(1)).close();
+        verify(batches.get(2)).close();
+    }
+
+    @Test
+    public void testIndexFlushFailure() throws Exception {
+        try (FlushPipeline pipeline = newPipeline(true)) {
+            doThrow(new IOException("failed")).when(batches.get(0)).flush();
+            add(pipeline, 0, 3);
+            try {
+                pipeline.finish();
+                Assert.fail("the failure of the index batch should fail the flush");
+            } catch (IOException e) {
+                Assert.assertEquals("failed", e.getMessage());
+            }
+        }
+
+        // the batches of the other chunks are still committed and closed
+        verify(batches.get(1)).flush();
+        for (Batch batch : batches) {
+            verify(batch).close();
+        }
+    }
+
+    @Test
+    public void testEntryLogFailureWaitsForPendingBatches() throws Exception {
+        AtomicBoolean committed = new AtomicBoolean();
+        try (FlushPipeline pipeline = newPipeline(true)) {
+            doAnswer(invocation -> {
+                Thread.sleep(100);
+                committed.set(true);
+                return null;
+            }).when(batches.get(0)).flush();
+            add(pipeline, 0, 1);
+
+            when(entryLogger.addEntry(anyLong(), any(ByteBuf.class), anyBoolean()))
+                    .thenThrow(new IOException("failed"));
+            try {
+                add(pipeline, 2, 2);
+                Assert.fail("the failure of the entry logger should fail the flush");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+
+        // no index batch is still being committed once the flush is over
+        Assert.assertTrue(committed.get());
+        verify(batches.get(0)).close();
+        verify(batches.get(1), never()).flush();
+        verify(batches.get(1)).close();
+    }
+}
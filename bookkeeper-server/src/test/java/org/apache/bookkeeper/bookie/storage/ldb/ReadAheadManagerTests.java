@@ -0,0 +1,161 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.apache.bookkeeper.bookie.EntryLogger;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the batches read ahead by the ReadAheadManager class.
+ */
+public class ReadAheadManagerTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long OTHER_LEDGER_ID = 2;
+    private static final int ENTRY_SIZE = 32;
+    private static final long ENTRY_LOG_ID = 1;
+    // The entry log holds the entries of the ledger up to this one, followed by the entries of another ledger
+    private static final long LAST_ENTRY_ID = 19;
+
+    private EntryLogger entryLogger;
+    private EntryLocationIndex entryLocationIndex;
+    private ReadCache readCache;
+    private DbLedgerStorageStats stats;
+    private ReadAheadManager readAheadManager;
+
+    @Before
+    public void setUp() throws Exception {
+        entryLogger = mock(EntryLogger.class);
+        when(entryLogger.internalReadEntry(anyLong(), anyLong(), anyLong(), anyBoolean())).thenAnswer(invocation -> {
+            long location = invocation.getArgument(2);
+            long slot = (location & 0xffffffffL) / (4 + ENTRY_SIZE);
+            ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+            if (slot <= LAST_ENTRY_ID) {
+                entry.writeLong(LEDGER_ID);
+                entry.writeLong(slot);
+            } else {
+                entry.writeLong(OTHER_LEDGER_ID);
+                entry.writeLong(slot - LAST_ENTRY_ID - 1);
+            }
+            entry.writeZero(ENTRY_SIZE - 16);
+            return entry;
+        });
+        entryLocationIndex = mock(EntryLocationIndex.class);
+        when(entryLocationIndex.getLocation(eq(LEDGER_ID), anyLong())).thenAnswer(
+                invocation -> location(invocation.getArgument(1)));
+
+        readCache = new ReadCache(ByteBufAllocator.DEFAULT, 1024 * 1024, false);
+        stats = new DbLedgerStorageStats(NullStatsLogger.INSTANCE, () -> 0L, () -> 0L, () -> 0L, () -> 0L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (readAheadManager != null) {
+            readAheadManager.shutdown();
+        }
+        readCache.close();
+    }
+
+    private static long location(long entryId) {
+        return (ENTRY_LOG_ID << 32) + entryId * (4 + ENTRY_SIZE);
+    }
+
+    private void newReadAheadManager(boolean async) {
+        readAheadManager = new ReadAheadManager(entryLogger, entryLocationIndex, readCache, stats,
+                4 /* initial */, 1 /* min */, 16 /* max */, 1024 * 1024, async);
+    }
+
+    private void miss(long entryId) {
+        readAheadManager.onReadCacheMiss(LEDGER_ID, entryId, location(entryId + 1), true);
+    }
+
+    private void hit(long entryId) {
+        readAheadManager.onReadCacheHit(LEDGER_ID, entryId, ENTRY_SIZE);
+    }
+
+    private void assertCached(long firstEntryId, long lastEntryId) {
+        Assert.assertFalse(readCache.hasEntry(LEDGER_ID, firstEntryId - 1));
+        for (long entryId = firstEntryId; entryId <= lastEntryId; entryId++) {
+            Assert.assertTrue("entry " + entryId, readCache.hasEntry(LEDGER_ID, entryId));
+        }
+        Assert.assertFalse(readCache.hasEntry(LEDGER_ID, lastEntryId + 1));
+    }
+
+    @Test
+    public void testMissReadsAheadFollowingEntries() {
+        newReadAheadManager(false);
+
+        miss(0);
+        assertCached(1, 4);
+    }
+
+    @Test
+    public void testNoReadAheadWhenNotAdmitted() throws Exception {
+        newReadAheadManager(false);
+
+        readAheadManager.onReadCacheMiss(LEDGER_ID, 0, location(1), false);
+        Assert.assertEquals(0, readCache.count());
+        verify(entryLogger, never()).internalReadEntry(anyLong(), anyLong(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    public void testSequentialMissesGrowWindow() {
+        newReadAheadManager(false);
+
+        miss(0);
+        assertCached(1, 4);
+        // the reader went past the read-ahead, the window doubles
+        miss(1);
+        assertCached(1, 9);
+    }
+
+    @Test
+    public void testInlineReadAheadNotTriggeredByHits() {
+        newReadAheadManager(false);
+
+        miss(0);
+        for (long entryId = 1; entryId <= 4; entryId++) {
+            hit(entryId);
+        }
+        assertCached(1, 4);
+    }
+
+    @Test
+    public void testReadAheadStopsAtOtherLedger() {
+        newReadAheadManager(false);
+
+        miss(LAST_ENTRY_ID - 1);
+        Assert.assertTrue(readCache.hasEntry(LEDGER_ID, LAST_ENTRY_ID));
+        Assert.assertEquals(1, readCache.count());
+        Assert.assertFalse(readCache.hasEntry(OTHER_LEDGER_ID, 0));
+    }
+
+    @Test
+    public void testAsyncReadAheadTriggeredByHits() throws Exception {
+        newReadAheadManager(true);
+
+        miss(0);
+        // Wait for the batch read in the background. The next batches are then read inline
+        readAheadManager.shutdown();
+        assertCached(1, 4);
+
+        // Getting close to the end of the read-ahead reads the next batch, with a larger window
+        for (long entryId = 1; entryId <= 3; entryId++) {
+            hit(entryId);
+        }
+        assertCached(1, 12);
+    }
+}
@@ -0,0 +1,152 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the TinyLFU admission policy of the ReadCache class.
+ */
+public class ReadCacheTests {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int ENTRY_SIZE = 128;
+    private static final int ENTRIES_PER_SEGMENT = SEGMENT_SIZE / ENTRY_SIZE;
+
+    private ReadCache cache;
+    private ByteBuf entry;
+
+    @Before
+    public void setUp() {
+        cache = new ReadCache(ByteBufAllocator.DEFAULT, 2 * SEGMENT_SIZE, SEGMENT_SIZE, true,
+                NullStatsLogger.INSTANCE.getCounter("evicted"));
+        entry = Unpooled.wrappedBuffer(new byte[ENTRY_SIZE]);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+        entry.release();
+    }
+
+    /**
+     * Fill the first segment with the ledger and roll over to the second one, so that the
+     * next insertions would evict the entries of the ledger.
+     */
+    private void fill(long ledgerId, boolean readAhead) {
+        for (int i = 0; i <= ENTRIES_PER_SEGMENT; i++) {
+            boolean admitted = readAhead
+                    ? cache.putReadAhead(ledgerId, i, entry.duplicate())
+                    : cache.put(ledgerId, i, entry.duplicate());
+            Assert.assertTrue(admitted);
+        }
+    }
+
+    private void read(long ledgerId, long entryId, int times) {
+        for (int i = 0; i < times; i++) {
+            ByteBuf res = cache.get(ledgerId, entryId);
+            if (res != null) {
+                res.release();
+            }
+        }
+    }
+
+    @Test
+    public void testAdmitWhileNotFull() {
+        Assert.assertTrue(cache.isAdmitted(1));
+        Assert.assertTrue(cache.put(1, 0, entry.duplicate()));
+    }
+
+    @Test
+    public void testRejectLessFrequentLedger() {
+        fill(1, false);
+        read(1, 0, 3);
+
+        Assert.assertFalse(cache.isAdmitted(2));
+        Assert.assertFalse(cache.put(2, 0, entry.duplicate()));
+        Assert.assertNull(cache.get(2, 0));
+    }
+
+    @Test
+    public void testScanMissesDontCountForAdmission() {
+        fill(1, false);
+        read(1, 0, 3);
+
+        // A one-time sequential scan misses each entry once, it must not look hot
+        for (int i = 0; i < 64; i++) {
+            read(2, i, 1);
+        }
+        Assert.assertFalse(cache.isAdmitted(2));
+        Assert.assertFalse(cache.put(2, 0, entry.duplicate()));
+    }
+
+    @Test
+    public void testRepeatedMissesCountForAdmission() {
+        fill(1, false);
+        read(1, 0, 3);
+        Assert.assertFalse(cache.isAdmitted(2));
+
+        // The entries of a ledger that is not cached are missed again, which makes the ledger
+        // frequent enough to be admitted
+        for (int i = 0; i < 4; i++) {
+            read(2, i, 2);
+        }
+        Assert.assertTrue(cache.isAdmitted(2));
+        Assert.assertTrue(cache.put(2, 0, entry.duplicate()));
+    }
+
+    @Test
+    public void testMissesNotRecordedDontCount() {
+        // A lookup followed by another one on a miss, the entry is only missed once
+        Assert.assertNull(cache.get(2, 0, false));
+        read(2, 0, 1);
+        Assert.assertEquals(0, cache.frequency(2));
+
+        read(2, 0, 1);
+        Assert.assertEquals(1, cache.frequency(2));
+    }
+
+    @Test
+    public void testReadAheadHitsDontRaiseFrequency() {
+        fill(1, true);
+        for (int i = 0; i <= ENTRIES_PER_SEGMENT; i++) {
+            read(1, i, 3);
+        }
+
+        // A single re-read is enough to compete with a ledger that was only read ahead
+        read(2, 0, 2);
+        Assert.assertTrue(cache.isAdmitted(2));
+    }
+
+    @Test
+    public void testDemandHitsRaiseFrequency() {
+        fill(1, false);
+        for (int i = 0; i <= ENTRIES_PER_SEGMENT; i++) {
+            read(1, i, 3);
+        }
+
+        read(2, 0, 2);
+        Assert.assertFalse(cache.isAdmitted(2));
+    }
+
+    @Test
+    public void testReadAheadEntryKeepsItsSize() {
+        ByteBuf data = Unpooled.buffer(100);
+        for (int i = 0; i < 100; i++) {
+            data.writeByte(i);
+        }
+        Assert.assertTrue(cache.putReadAhead(1, 0, data.duplicate()));
+
+        // the read-ahead flag stored with the size is not part of the size
+        ByteBuf res = cache.get(1, 0);
+        Assert.assertEquals(100, res.readableBytes());
+        Assert.assertEquals(data, res);
+        res.release();
+        data.release();
+    }
+}
@@ -0,0 +1,91 @@
+package org.apache.bookkeeper.client;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the latency quantiles of the BookieLatencyTracker class.
+ */
+public class BookieLatencyTrackerTests {
+
+    private final BookieId bookie = BookieId.parse("bookie-0:3181");
+    private final BookieId otherBookie = BookieId.parse("bookie-1:3181");
+
+    private static void record(BookieLatencyTracker tracker, BookieId bookie, long firstMillis, long lastMillis) {
+        for (long millis = firstMillis; millis <= lastMillis; millis++) {
+            tracker.recordLatency(bookie, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private static long quantileMillis(BookieLatencyTracker tracker, BookieId bookie) {
+        long nanos = tracker.getLatencyQuantileNanos(bookie);
+        return nanos < 0 ? nanos : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Test
+    public void testUnknownWithoutEnoughSamples() {
+        BookieLatencyTracker tracker = new BookieLatencyTracker(0.95);
+        Assert.assertEquals(-1L, tracker.getLatencyQuantileNanos(bookie));
+
+        record(tracker, bookie, 1, BookieLatencyTracker.MIN_SAMPLES - 1);
+        Assert.assertEquals(-1L, tracker.getLatencyQuantileNanos(bookie));
+
+        record(tracker, bookie, BookieLatencyTracker.MIN_SAMPLES, BookieLatencyTracker.MIN_SAMPLES);
+        Assert.assertEquals(16, quantileMillis(tracker, bookie));
+    }
+
+    @Test
+    public void testQuantiles() {
+        BookieLatencyTracker p95 = new BookieLatencyTracker(0.95);
+        BookieLatencyTracker p50 = new BookieLatencyTracker(0.5);
+        BookieLatencyTracker max = new BookieLatencyTracker(1);
+        for (BookieLatencyTracker tracker : new BookieLatencyTracker[] { p95, p50, max }) {
+            record(tracker, bookie, 1, BookieLatencyTracker.WINDOW_SIZE);
+        }
+
+        Assert.assertEquals(122, quantileMillis(p95, bookie));
+        Assert.assertEquals(64, quantileMillis(p50, bookie));
+        Assert.assertEquals(BookieLatencyTracker.WINDOW_SIZE, quantileMillis(max, bookie));
+    }
+
+    @Test
+    public void testQuantileUpdatedEveryFewSamples() {
+        BookieLatencyTracker tracker = new BookieLatencyTracker(1);
+        record(tracker, bookie, 1, BookieLatencyTracker.MIN_SAMPLES);
+        Assert.assertEquals(BookieLatencyTracker.MIN_SAMPLES, quantileMillis(tracker, bookie));
+
+        record(tracker, bookie, 1000, 1000 + BookieLatencyTracker.UPDATE_INTERVAL - 2);
+        Assert.assertEquals(BookieLatencyTracker.MIN_SAMPLES, quantileMillis(tracker, bookie));
+        record(tracker, bookie, 2000, 2000);
+        Assert.assertEquals(2000, quantileMillis(tracker, bookie));
+    }
+
+    @Test
+    public void testOldestSamplesLeaveTheWindow() {
+        BookieLatencyTracker tracker = new BookieLatencyTracker(1);
+        record(tracker, bookie, 1000, 1000 + BookieLatencyTracker.WINDOW_SIZE - 1);
+        Assert.assertEquals(1000 + BookieLatencyTracker.WINDOW_SIZE - 1, quantileMillis(tracker, bookie));
+
+        // a full window of faster reads replaces the slow ones
+        record(tracker, bookie, 1, BookieLatencyTracker.WINDOW_SIZE);
+        Assert.assertEquals(BookieLatencyTracker.WINDOW_SIZE, quantileMillis(tracker, bookie));
+    }
+
+    @Test
+    public void testBookiesTrackedSeparately() {
+        BookieLatencyTracker tracker = new BookieLatencyTracker(0.5);
+        record(tracker, bookie, 1, BookieLatencyTracker.MIN_SAMPLES);
+        Assert.assertEquals(-1L, tracker.getLatencyQuantileNanos(otherBookie));
+
+        record(tracker, otherBookie, 101, 100 + BookieLatencyTracker.MIN_SAMPLES);
+        Assert.assertEquals(8, quantileMillis(tracker, bookie));
+        Assert.assertEquals(108, quantileMillis(tracker, otherBookie));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantile() {
+        new BookieLatencyTracker(0);
+    }
+}
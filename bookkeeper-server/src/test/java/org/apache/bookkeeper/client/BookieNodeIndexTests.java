@@ -0,0 +1,99 @@
+package org.apache.bookkeeper.client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the snapshots of the bookies of the BookieNodeIndex class.
+ */
+public class BookieNodeIndexTests {
+
+    private static BookieNode node(int i, String location) {
+        return new BookieNode(BookieId.parse("127.0.0." + i + ":3181"), location);
+    }
+
+    private static Set<BookieNode> set(BookieNode... nodes) {
+        return new HashSet<>(Arrays.asList(nodes));
+    }
+
+    private static void assertLeaves(BookieNodeIndex index, String scope, BookieNode... expected) {
+        Assert.assertEquals(set(expected), set(index.getLeaves(scope)));
+    }
+
+    @Test
+    public void testJoin() {
+        BookieNode a = node(1, "/rack1");
+        BookieNode b = node(2, "/rack1");
+        BookieNode c = node(3, "/rack2");
+        BookieNodeIndex index = BookieNodeIndex.EMPTY.update(Collections.emptyList(), Arrays.asList(a, b, c));
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(2, index.getNumOfLocations());
+        Assert.assertEquals(set(a, b, c), set(index.getAll()));
+        assertLeaves(index, "/rack1", a, b);
+        assertLeaves(index, "/rack2", c);
+        assertLeaves(index, "/", a, b, c);
+        assertLeaves(index, "/rack3");
+        // the snapshots are immutable
+        Assert.assertEquals(0, BookieNodeIndex.EMPTY.size());
+    }
+
+    @Test
+    public void testLeave() {
+        BookieNode a = node(1, "/rack1");
+        BookieNode b = node(2, "/rack1");
+        BookieNode c = node(3, "/rack2");
+        BookieNodeIndex index = BookieNodeIndex.EMPTY.update(Collections.emptyList(), Arrays.asList(a, b, c));
+
+        BookieNodeIndex withoutB = index.update(Collections.singletonList(b), Collections.emptyList());
+        Assert.assertEquals(2, withoutB.size());
+        assertLeaves(withoutB, "/rack1", a);
+        assertLeaves(index, "/rack1", a, b);
+
+        // the location is dropped with its last bookie
+        BookieNodeIndex withoutRack = withoutB.update(Collections.singletonList(a), Collections.emptyList());
+        Assert.assertEquals(1, withoutRack.getNumOfLocations());
+        assertLeaves(withoutRack, "/rack1");
+        Assert.assertEquals(set(c), set(withoutRack.getAll()));
+    }
+
+    @Test
+    public void testRackChange() {
+        BookieNode a = node(1, "/rack1");
+        BookieNode c = node(3, "/rack2");
+        BookieNodeIndex index = BookieNodeIndex.EMPTY.update(Collections.emptyList(), Arrays.asList(a, c));
+
+        BookieNode movedA = node(1, "/rack2");
+        index = index.update(Collections.singletonList(a), Collections.singletonList(movedA));
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(1, index.getNumOfLocations());
+        assertLeaves(index, "/rack1");
+        assertLeaves(index, "/rack2", movedA, c);
+        for (BookieNode node : index.getAll()) {
+            Assert.assertEquals("/rack2", node.getNetworkLocation());
+        }
+    }
+
+    @Test
+    public void testExclusionScope() {
+        BookieNode a = node(1, "/region1/rack1");
+        BookieNode b = node(2, "/region1/rack2");
+        BookieNode c = node(3, "/region2/rack1");
+        BookieNode d = node(4, "/region10/rack1");
+        BookieNodeIndex index = BookieNodeIndex.EMPTY.update(Collections.emptyList(), Arrays.asList(a, b, c, d));
+
+        assertLeaves(index, "~/region1/rack1", b, c, d);
+        assertLeaves(index, "~/region1", c, d);
+        assertLeaves(index, "~/region1,/region2", d);
+        assertLeaves(index, "~/region1,/region2,/region10");
+        // an upper level of the topology only holds the locations under it
+        assertLeaves(index, "/region1", a, b);
+        assertLeaves(index, "/region10", d);
+    }
+}
@@ -0,0 +1,110 @@
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the eviction and the invalidation of the ClientEntryCache class.
+ */
+public class ClientEntryCacheTests {
+
+    private static final int ENTRY_SIZE = 100;
+    private static final int CAPACITY = 10;
+
+    private ClientEntryCache cache;
+    private ByteBuf data;
+
+    @Before
+    public void setUp() {
+        cache = new ClientEntryCache(CAPACITY * ENTRY_SIZE, ByteBufAllocator.DEFAULT,
+                BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+        data = Unpooled.wrappedBuffer(new byte[ENTRY_SIZE]);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        data.release();
+    }
+
+    private void put(long ledgerId, long entryId) {
+        cache.put(ledgerId, entryId, ENTRY_SIZE, data);
+    }
+
+    private boolean isCached(long ledgerId, long entryId) {
+        LedgerEntryImpl entry = cache.get(ledgerId, entryId);
+        if (entry == null) {
+            return false;
+        }
+        entry.close();
+        return true;
+    }
+
+    @Test
+    public void testEvictInInsertionOrder() {
+        for (long entryId = 0; entryId < 2 * CAPACITY; entryId++) {
+            put(entryId % 2, entryId);
+        }
+        Assert.assertEquals(CAPACITY, cache.count());
+        Assert.assertEquals(CAPACITY * ENTRY_SIZE, cache.size());
+        for (long entryId = 0; entryId < 2 * CAPACITY; entryId++) {
+            Assert.assertEquals(entryId >= CAPACITY, isCached(entryId % 2, entryId));
+        }
+    }
+
+    @Test
+    public void testInvalidateRemovesFromInsertionOrder() {
+        // Repeatedly fill the cache with a ledger which is then deleted
+        for (long ledgerId = 0; ledgerId < 100; ledgerId++) {
+            for (long entryId = 0; entryId < CAPACITY / 2; entryId++) {
+                put(ledgerId, entryId);
+            }
+            cache.invalidate(ledgerId);
+            Assert.assertEquals(0, cache.count());
+            Assert.assertEquals(0, cache.size());
+        }
+
+        put(1000, 0);
+        put(1001, 0);
+        cache.invalidate(1000);
+        Assert.assertEquals(1, cache.count());
+        Assert.assertFalse(isCached(1000, 0));
+        Assert.assertTrue(isCached(1001, 0));
+    }
+
+    @Test
+    public void testEvictAfterInvalidate() {
+        for (long entryId = 0; entryId < CAPACITY; entryId++) {
+            put(entryId % 2, entryId);
+        }
+        cache.invalidate(0);
+        Assert.assertEquals(CAPACITY / 2, cache.count());
+
+        // The oldest entries left are evicted first
+        for (long entryId = 0; entryId < CAPACITY / 2 + 1; entryId++) {
+            put(2, entryId);
+        }
+        Assert.assertEquals(CAPACITY, cache.count());
+        Assert.assertFalse(isCached(1, 1));
+        Assert.assertTrue(isCached(1, 3));
+        Assert.assertTrue(isCached(2, 0));
+    }
+
+    @Test
+    public void testClear() {
+        for (long entryId = 0; entryId < CAPACITY; entryId++) {
+            put(entryId % 3, entryId);
+        }
+        cache.clear();
+        Assert.assertEquals(0, cache.count());
+        Assert.assertEquals(0, cache.size());
+        Assert.assertFalse(isCached(0, 0));
+    }
+}
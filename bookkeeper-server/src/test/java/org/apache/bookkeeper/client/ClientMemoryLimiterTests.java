@@ -0,0 +1,175 @@
+package org.apache.bookkeeper.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the non blocking waits of the ClientMemoryLimiter class.
+ */
+public class ClientMemoryLimiterTests {
+
+    private static final long LIMIT = 1000;
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private ClientMemoryLimiter newLimiter(long maxWaitMs) {
+        return new ClientMemoryLimiter(LIMIT, maxWaitMs, scheduler,
+                BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+    }
+
+    @Test
+    public void testReserveWithinFairShare() {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        long now = MathUtils.nowInNano();
+        Assert.assertTrue(limiter.tryReserveAddMemory(1, 800, now));
+        // Over the limit, but within the share of the ledgers
+        Assert.assertTrue(limiter.tryReserveAddMemory(2, 400, now));
+        Assert.assertEquals(1200, limiter.getUsedBytes());
+
+        // Over the limit, and over its share of it
+        Assert.assertFalse(limiter.tryReserveAddMemory(1, 100, now));
+        // Over the limit, but within its share of it
+        Assert.assertTrue(limiter.tryReserveAddMemory(2, 50, now));
+    }
+
+    @Test
+    public void testWaitResumedOnRelease() throws Exception {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        long now = MathUtils.nowInNano();
+        Assert.assertTrue(limiter.tryReserveAddMemory(1, 800, now));
+        Assert.assertTrue(limiter.tryReserveAddMemory(2, 400, now));
+
+        CompletableFuture<Void> addMemory = limiter.awaitMemory(1, 100, now);
+        CompletableFuture<Void> readMemory = limiter.awaitReadMemory(1, 100);
+        // The waits don't block the caller
+        Assert.assertFalse(addMemory.isDone());
+        Assert.assertFalse(readMemory.isDone());
+
+        limiter.releaseAddMemory(2, 400);
+        addMemory.get(10, TimeUnit.SECONDS);
+        readMemory.get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(limiter.tryReserveAddMemory(1, 100, now));
+        Assert.assertEquals(900, limiter.getLedgerBytes(1));
+        Assert.assertEquals(0, limiter.getLedgerBytes(2));
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        ClientMemoryLimiter limiter = newLimiter(100);
+        long now = MathUtils.nowInNano();
+        Assert.assertTrue(limiter.tryReserveAddMemory(1, 800, now));
+        Assert.assertTrue(limiter.tryReserveAddMemory(2, 400, now));
+        Assert.assertFalse(limiter.tryReserveAddMemory(1, 100, now));
+
+        // Once the max wait has elapsed, the add goes over the limit
+        limiter.awaitMemory(1, 100, now).get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(MathUtils.elapsedMSec(now) >= 100);
+        Assert.assertTrue(limiter.tryReserveAddMemory(1, 100, now));
+        Assert.assertEquals(1300, limiter.getUsedBytes());
+    }
+
+    @Test
+    public void testReadsWaitForFairShare() {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        limiter.reserveReadMemory(1, 1200);
+        // A single ledger has the whole limit as its share
+        Assert.assertFalse(limiter.awaitReadMemory(1, 100).isDone());
+        Assert.assertTrue(limiter.awaitReadMemory(2, 100).isDone());
+
+        limiter.releaseReadMemory(1, 1200);
+        Assert.assertTrue(limiter.awaitReadMemory(1, 100).isDone());
+        Assert.assertEquals(0, limiter.getUsedBytes());
+    }
+
+    @Test
+    public void testLedgerWithoutMemoryLimitedToFairShare() {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        long now = MathUtils.nowInNano();
+        Assert.assertTrue(limiter.tryReserveAddMemory(1, 1000, now));
+        // Over the limit and over its share of it, even if the ledger holds no memory yet
+        Assert.assertFalse(limiter.tryReserveAddMemory(2, 600, now));
+        Assert.assertFalse(limiter.awaitReadMemory(2, 600).isDone());
+        Assert.assertEquals(0, limiter.getLedgerBytes(2));
+    }
+
+    @Test
+    public void testRequestLargerThanLimit() {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        long now = MathUtils.nowInNano();
+        // It can only be reserved once no memory is held
+        Assert.assertTrue(limiter.tryReserveAddMemory(1, 100, now));
+        Assert.assertFalse(limiter.tryReserveAddMemory(2, 2 * LIMIT, now));
+        limiter.releaseAddMemory(1, 100);
+        Assert.assertTrue(limiter.tryReserveAddMemory(2, 2 * LIMIT, now));
+    }
+
+    @Test
+    public void testWaitersResumedInOrder() throws Exception {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        limiter.reserveReadMemory(1, LIMIT);
+        CompletableFuture<Void> first = limiter.awaitReadMemory(2, 900);
+        CompletableFuture<Void> second = limiter.awaitReadMemory(3, 600);
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+
+        // The second one would fit, but it waits for the first one
+        limiter.releaseReadMemory(1, 600);
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+
+        limiter.releaseReadMemory(1, 400);
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testResumedWaitersDontShareReleasedMemory() throws Exception {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        limiter.reserveReadMemory(1, 400);
+        limiter.reserveReadMemory(2, 300);
+        limiter.reserveReadMemory(3, 300);
+        CompletableFuture<Void> first = limiter.awaitReadMemory(1, 300);
+        CompletableFuture<Void> second = limiter.awaitReadMemory(1, 300);
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+
+        // Only enough memory for one of them
+        limiter.releaseReadMemory(3, 300);
+        first.get(10, TimeUnit.SECONDS);
+        Assert.assertFalse(second.isDone());
+    }
+
+    @Test
+    public void testSettleReadMemory() {
+        ClientMemoryLimiter limiter = newLimiter(10000);
+        limiter.reserveReadMemory(1, 300);
+        // The responses were larger than estimated
+        limiter.settleReadMemory(1, 100, 150);
+        Assert.assertEquals(350, limiter.getLedgerBytes(1));
+        // The responses were smaller than estimated
+        limiter.settleReadMemory(1, 100, 20);
+        limiter.settleReadMemory(1, 100, 100);
+        Assert.assertEquals(270, limiter.getLedgerBytes(1));
+        limiter.releaseReadMemory(1, 270);
+        Assert.assertEquals(0, limiter.getUsedBytes());
+    }
+}
+}
@@ -0,0 +1,173 @@
+package org.apache.bookkeeper.client;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Test cases for the order in which the replicas of an entry are read when latency aware reads
+ * are enabled, and for the latencies recorded from the read responses.
+ */
+public class LatencyAwareReadsTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final byte[] PASSWORD = "password".getBytes();
+
+    private final List<BookieId> ensemble = Arrays.asList(
+            BookieId.parse("bookie-0:3181"), BookieId.parse("bookie-1:3181"), BookieId.parse("bookie-2:3181"));
+
+    private BookieClient bookieClient;
+    private BookieLatencyTracker latencyTracker;
+    private ClientContext clientCtx;
+    private LedgerHandle lh;
+
+    @Before
+    public void setUp() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setLatencyAwareReadsEnabled(true);
+        conf.setLatencyAwareReadsQuantile(0.5);
+        conf.setLatencyAwareReadsReorderThreshold(2.0f);
+        // no speculative reads, only the first read of each entry is checked
+        conf.setFirstSpeculativeReadTimeout(0);
+
+        bookieClient = mock(BookieClient.class);
+        latencyTracker = new BookieLatencyTracker(0.5);
+        clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+        BookKeeperClientStats clientStats = mock(BookKeeperClientStats.class);
+        when(clientStats.getReadOpLogger()).thenReturn(mock(OpStatsLogger.class));
+        when(clientCtx.getClientStats()).thenReturn(clientStats);
+        when(clientCtx.getByteBufAllocator()).thenReturn(ByteBufAllocator.DEFAULT);
+        when(clientCtx.getBookieLatencyTracker()).thenReturn(latencyTracker);
+
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(LEDGER_ID)
+                .withDigestType(DigestType.CRC32)
+                .withPassword(PASSWORD)
+                .withEnsembleSize(3)
+                .withWriteQuorumSize(3)
+                .withAckQuorumSize(2)
+                .newEnsembleEntry(0L, ensemble)
+                .withClosedState()
+                .withLastEntryId(0)
+                .withLength(10)
+                .build();
+        lh = new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0)),
+                BookKeeper.DigestType.CRC32, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+    }
+
+    private void recordLatency(int bookieIndex, long latencyMillis, int samples) {
+        for (int i = 0; i < samples; i++) {
+            latencyTracker.recordLatency(ensemble.get(bookieIndex), TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        }
+    }
+
+    private void recordLatency(int bookieIndex, long latencyMillis) {
+        recordLatency(bookieIndex, latencyMillis, BookieLatencyTracker.MIN_SAMPLES);
+    }
+
+    private PendingReadOp initiateRead() {
+        PendingReadOp op = new PendingReadOp(lh, clientCtx, 0, 0, false);
+        op.initiate();
+        return op;
+    }
+
+    private ArgumentCaptor<Object> verifyReadFrom(int bookieIndex) {
+        ArgumentCaptor<Object> ctx = ArgumentCaptor.forClass(Object.class);
+        verify(bookieClient).readEntry(eq(ensemble.get(bookieIndex)), eq(LEDGER_ID), eq(0L),
+                any(ReadEntryCallback.class), ctx.capture(), anyInt());
+        return ctx;
+    }
+
+    @Test
+    public void testFastestReplicaReadFirst() {
+        recordLatency(0, 10);
+        recordLatency(1, 1);
+        recordLatency(2, 4);
+
+        initiateRead();
+        verifyReadFrom(1);
+    }
+
+    @Test
+    public void testNoReorderBelowThreshold() {
+        recordLatency(0, 3);
+        recordLatency(1, 2);
+
+        initiateRead();
+        verifyReadFrom(0);
+    }
+
+    @Test
+    public void testNoReorderWhenFirstLatencyUnknown() {
+        recordLatency(1, 1);
+        recordLatency(2, 1);
+
+        initiateRead();
+        verifyReadFrom(0);
+    }
+
+    @Test
+    public void testRecentlyFailedReplicaNotReadFirst() {
+        recordLatency(0, 10);
+        recordLatency(1, 1);
+        recordLatency(2, 4);
+        lh.bookieFailureHistory.put(ensemble.get(1), 0L);
+
+        initiateRead();
+        verifyReadFrom(2);
+    }
+
+    @Test
+    public void testErrorResponseLatencyNotRecorded() {
+        // one sample short of a known latency
+        recordLatency(0, 1, BookieLatencyTracker.MIN_SAMPLES - 1);
+
+        PendingReadOp op = initiateRead();
+        op.readEntryComplete(BKException.Code.ReadException, LEDGER_ID, 0, null, verifyReadFrom(0).getValue());
+        Assert.assertEquals(-1L, latencyTracker.getLatencyQuantileNanos(ensemble.get(0)));
+    }
+
+    @Test
+    public void testSuccessfulResponseLatencyRecorded() throws Exception {
+        recordLatency(0, 1, BookieLatencyTracker.MIN_SAMPLES - 1);
+
+        PendingReadOp op = initiateRead();
+        ByteBufList packaged = lh.macManager.computeDigestAndPackageForSending(0, 0, 10,
+                Unpooled.wrappedBuffer(new byte[10]));
+        ByteBuf entry = ByteBufList.coalesce(packaged);
+        packaged.release();
+        op.readEntryComplete(BKException.Code.OK, LEDGER_ID, 0, entry, verifyReadFrom(0).getValue());
+        entry.release();
+        op.future().get(10, TimeUnit.SECONDS).close();
+
+        Assert.assertNotEquals(-1L, latencyTracker.getLatencyQuantileNanos(ensemble.get(0)));
+    }
+}
@@ -0,0 +1,53 @@
+package org.apache.bookkeeper.client;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the timeouts of the LatencyAwareSpeculativeRequestExecutionPolicy class.
+ */
+public class LatencyAwareSpeculativeRequestExecutionPolicyTests {
+
+    private static final int FIRST_TIMEOUT = 10;
+    private static final int MAX_TIMEOUT = 100;
+
+    private final LatencyAwareSpeculativeRequestExecutionPolicy policy =
+            new LatencyAwareSpeculativeRequestExecutionPolicy(FIRST_TIMEOUT, MAX_TIMEOUT, 2.0f);
+
+    private static SpeculativeRequestExecutor executor(long expectedLatencyNanos) {
+        SpeculativeRequestExecutor executor = mock(SpeculativeRequestExecutor.class);
+        when(executor.getExpectedLatencyNanos()).thenReturn(expectedLatencyNanos);
+        return executor;
+    }
+
+    @Test
+    public void testBackoffWhenLatencyUnknown() {
+        SpeculativeRequestExecutor executor = executor(-1L);
+        Assert.assertEquals(FIRST_TIMEOUT, policy.getFirstSpeculativeRequestTimeout(executor));
+        Assert.assertEquals(2 * FIRST_TIMEOUT, policy.getNextSpeculativeRequestTimeout(executor, FIRST_TIMEOUT));
+        Assert.assertEquals(MAX_TIMEOUT, policy.getNextSpeculativeRequestTimeout(executor, MAX_TIMEOUT));
+    }
+
+    @Test
+    public void testTimeoutFollowsLatency() {
+        SpeculativeRequestExecutor executor = executor(TimeUnit.MICROSECONDS.toNanos(3500));
+        // rounded up to the next millisecond
+        Assert.assertEquals(4, policy.getFirstSpeculativeRequestTimeout(executor));
+        // the latency of the bookie the last request was sent to, no backoff
+        Assert.assertEquals(4, policy.getNextSpeculativeRequestTimeout(executor, 4));
+
+        Assert.assertEquals(3, policy.getFirstSpeculativeRequestTimeout(executor(TimeUnit.MILLISECONDS.toNanos(3))));
+    }
+
+    @Test
+    public void testTimeoutBounds() {
+        Assert.assertEquals(1, policy.getFirstSpeculativeRequestTimeout(executor(0L)));
+        Assert.assertEquals(1, policy.getFirstSpeculativeRequestTimeout(executor(1000L)));
+        Assert.assertEquals(MAX_TIMEOUT,
+                policy.getFirstSpeculativeRequestTimeout(executor(TimeUnit.SECONDS.toNanos(10))));
+    }
+}
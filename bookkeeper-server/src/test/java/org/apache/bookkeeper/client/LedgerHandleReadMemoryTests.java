@@ -0,0 +1,108 @@
+package org.apache.bookkeeper.client;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBufAllocator;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the memory reserved for the reads of a ledger whose entry size is unknown.
+ */
+public class LedgerHandleReadMemoryTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long OTHER_LEDGER_ID = 2;
+    private static final long LIMIT = 1024 * 1024;
+    private static final int BATCH_SIZE = 5;
+    private static final byte[] PASSWORD = "password".getBytes();
+
+    private final List<BookieId> ensemble = Arrays.asList(
+            BookieId.parse("bookie-0:3181"), BookieId.parse("bookie-1:3181"), BookieId.parse("bookie-2:3181"));
+
+    private ScheduledExecutorService scheduler;
+    private ClientConfiguration conf;
+    private ClientMemoryLimiter memoryLimiter;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        conf = new ClientConfiguration();
+        conf.setClientMemoryLimitBytes(LIMIT);
+        memoryLimiter = new ClientMemoryLimiter(LIMIT, 10000, scheduler,
+                BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private LedgerHandle newOpenLedgerHandle() throws Exception {
+        ClientContext clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getBookieClient()).thenReturn(mock(BookieClient.class));
+        when(clientCtx.getClientStats()).thenReturn(mock(BookKeeperClientStats.class));
+        when(clientCtx.getByteBufAllocator()).thenReturn(ByteBufAllocator.DEFAULT);
+        when(clientCtx.getMemoryLimiter()).thenReturn(memoryLimiter);
+
+        // a ledger which is still being written, neither its last entry nor its length are known
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(LEDGER_ID)
+                .withDigestType(DigestType.CRC32)
+                .withPassword(PASSWORD)
+                .withEnsembleSize(3)
+                .withWriteQuorumSize(3)
+                .withAckQuorumSize(2)
+                .newEnsembleEntry(0L, ensemble)
+                .build();
+        return new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0)),
+                BookKeeper.DigestType.CRC32, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+    }
+
+    @Test
+    public void testFirstReadOfOpenLedgerWithinSmallLimit() throws Exception {
+        LedgerHandle lh = newOpenLedgerHandle();
+        long estimate = lh.estimateReadEntrySize();
+        Assert.assertEquals(conf.getClientMemoryReadEntrySizeBytes(), estimate);
+        Assert.assertTrue(estimate < conf.getNettyMaxFrameSizeBytes());
+
+        // another ledger holds half of the limit, a batch of typical entries still fits in the memory left
+        memoryLimiter.reserveReadMemory(OTHER_LEDGER_ID, LIMIT / 2 + 1);
+        CompletableFuture<Void> memoryAvailable = memoryLimiter.awaitReadMemory(LEDGER_ID, BATCH_SIZE * estimate);
+        Assert.assertTrue(memoryAvailable.isDone());
+
+        // the reservation is corrected as the entries are received
+        memoryLimiter.reserveReadMemory(LEDGER_ID, BATCH_SIZE * estimate);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            memoryLimiter.settleReadMemory(LEDGER_ID, estimate, 100);
+            lh.lastReadEntrySize = 100;
+        }
+        Assert.assertEquals(BATCH_SIZE * 100, memoryLimiter.getLedgerBytes(LEDGER_ID));
+        Assert.assertEquals(100, lh.estimateReadEntrySize());
+    }
+
+    @Test
+    public void testReadEntrySizeBoundedByFrameSize() throws Exception {
+        conf.setNettyMaxFrameSizeBytes(32 * 1024);
+        Assert.assertEquals(32 * 1024, newOpenLedgerHandle().estimateReadEntrySize());
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.bookkeeper.client;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the cache of the metadata of the closed ledgers.
+ */
+public class LedgerMetadataCacheTests {
+
+    private final LedgerManager ledgerManager = mock(LedgerManager.class);
+    private final LedgerMetadataCache cache = new LedgerMetadataCache(ledgerManager, 3,
+            BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+
+    private static Versioned<LedgerMetadata> closedMetadata(long ledgerId) {
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withEnsembleSize(1).withWriteQuorumSize(1).withAckQuorumSize(1)
+                .newEnsembleEntry(0, Arrays.asList(BookieId.parse("bookie-1:3181")))
+                .withClosedState().withLastEntryId(10).withLength(100)
+                .build();
+        return new Versioned<>(metadata, new LongVersion(1));
+    }
+
+    @Test
+    public void testEvictedInInsertionOrder() {
+        for (long ledgerId = 1; ledgerId <= 4; ledgerId++) {
+            cache.put(ledgerId, closedMetadata(ledgerId));
+        }
+        Assert.assertEquals(3, cache.size());
+        Assert.assertNull(cache.get(1));
+        Assert.assertNotNull(cache.get(4));
+        verify(ledgerManager).unregisterLedgerMetadataListener(eq(1L), eq(cache));
+    }
+
+    @Test
+    public void testInvalidatedLedgersLeaveInsertionOrder() {
+        for (long round = 0; round < 100; round++) {
+            long ledgerId = round + 1;
+            cache.put(ledgerId, closedMetadata(ledgerId));
+            cache.invalidate(ledgerId);
+        }
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.insertionOrderSize());
+
+        // The invalidated ledgers don't count against the live ones
+        for (long ledgerId = 1000; ledgerId < 1003; ledgerId++) {
+            cache.put(ledgerId, closedMetadata(ledgerId));
+        }
+        cache.invalidate(1001);
+        cache.put(1003, closedMetadata(1003));
+        Assert.assertEquals(3, cache.size());
+        Assert.assertNotNull(cache.get(1000));
+        verify(ledgerManager, never()).unregisterLedgerMetadataListener(eq(1000L), eq(cache));
+    }
+
+    @Test
+    public void testDeletedLedgerInvalidated() {
+        cache.put(1, closedMetadata(1));
+        cache.onChanged(1, null);
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(0, cache.insertionOrderSize());
+    }
+
+    @Test
+    public void testClear() {
+        for (long ledgerId = 1; ledgerId <= 3; ledgerId++) {
+            cache.put(ledgerId, closedMetadata(ledgerId));
+        }
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.insertionOrderSize());
+        verify(ledgerManager, times(3)).unregisterLedgerMetadataListener(anyLong(), eq(cache));
+    }
+}
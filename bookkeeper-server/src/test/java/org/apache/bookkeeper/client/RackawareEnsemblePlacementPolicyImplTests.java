@@ -0,0 +1,158 @@
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.client.BKException.BKNotEnoughBookiesException;
+import org.apache.bookkeeper.client.TopologyAwareEnsemblePlacementPolicy.EnsembleForReplacementWithNoConstraints;
+import org.apache.bookkeeper.client.TopologyAwareEnsemblePlacementPolicy.TruePredicate;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieNode;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.net.DNSToSwitchMapping;
+import org.apache.bookkeeper.net.NetworkTopology;
+import org.apache.bookkeeper.net.Node;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the selection of the bookies from the index of the RackawareEnsemblePlacementPolicyImpl class.
+ */
+public class RackawareEnsemblePlacementPolicyImplTests {
+
+    private static final int ROUNDS = 50;
+
+    // the racks of the hosts of the bookies
+    private final Map<String, String> racks = new HashMap<>();
+    private RackawareEnsemblePlacementPolicyImpl policy;
+
+    @Before
+    public void setUp() {
+        DNSToSwitchMapping resolver = new DNSToSwitchMapping() {
+            @Override
+            public List<String> resolve(List<String> names) {
+                return names.stream()
+                        .map(name -> racks.getOrDefault(name, NetworkTopology.DEFAULT_RACK))
+                        .collect(Collectors.toList());
+            }
+
+            @Override
+            public void reloadCachedMappings() {
+            }
+        };
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setIgnoreLocalNodeInPlacementPolicy(true);
+        policy = new RackawareEnsemblePlacementPolicyImpl().initialize(conf, Optional.of(resolver), null,
+                SettableFeatureProvider.DISABLE_ALL, NullStatsLogger.INSTANCE,
+                BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+    }
+
+    private BookieId bookie(int i, String rack) {
+        racks.put("127.0.0." + i, rack);
+        return BookieId.parse("127.0.0." + i + ":3181");
+    }
+
+    private Set<BookieId> addrs(BookieNode[] nodes) {
+        return Arrays.stream(nodes).map(BookieNode::getAddr).collect(Collectors.toSet());
+    }
+
+    private BookieNode select(String scope, Set<Node> excludeBookies) throws BKNotEnoughBookiesException {
+        return policy.selectFromNetworkLocation(scope, excludeBookies, TruePredicate.INSTANCE,
+                EnsembleForReplacementWithNoConstraints.INSTANCE, false);
+    }
+
+    @Test
+    public void testIndexFollowsClusterChanges() {
+        BookieId a = bookie(1, "/rack1");
+        BookieId b = bookie(2, "/rack1");
+        BookieId c = bookie(3, "/rack2");
+        policy.onClusterChanged(new HashSet<>(Arrays.asList(a, b, c)), Collections.emptySet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), addrs(policy.bookieIndex.getLeaves("/rack1")));
+        Assert.assertEquals(2, policy.bookieIndex.getNumOfLocations());
+
+        // leave
+        policy.onClusterChanged(new HashSet<>(Arrays.asList(a, c)), Collections.emptySet());
+        Assert.assertEquals(Collections.singleton(a), addrs(policy.bookieIndex.getLeaves("/rack1")));
+        Assert.assertEquals(2, policy.bookieIndex.size());
+
+        // rack change
+        bookie(1, "/rack2");
+        policy.onBookieRackChange(Collections.singletonList(a));
+        Assert.assertEquals(0, policy.bookieIndex.getLeaves("/rack1").length);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, c)), addrs(policy.bookieIndex.getLeaves("/rack2")));
+        Assert.assertEquals(1, policy.bookieIndex.getNumOfLocations());
+
+        // join
+        BookieId d = bookie(4, "/rack3");
+        policy.onClusterChanged(new HashSet<>(Arrays.asList(a, c, d)), Collections.emptySet());
+        Assert.assertEquals(Collections.singleton(d), addrs(policy.bookieIndex.getLeaves("/rack3")));
+        Assert.assertEquals(3, policy.bookieIndex.size());
+    }
+
+    @Test
+    public void testExclusionScope() throws Exception {
+        Set<BookieId> bookies = new HashSet<>();
+        Set<BookieId> rack2 = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            BookieId addr = bookie(i, i % 2 == 0 ? "/rack1" : "/rack2");
+            bookies.add(addr);
+            if (i % 2 == 1) {
+                rack2.add(addr);
+            }
+        }
+        policy.onClusterChanged(bookies, Collections.emptySet());
+
+        for (int i = 0; i < ROUNDS; i++) {
+            Assert.assertTrue(rack2.contains(select("~/rack1", new HashSet<>()).getAddr()));
+        }
+        try {
+            select("~/rack1,/rack2", new HashSet<>());
+            Assert.fail("All the bookies are excluded");
+        } catch (BKNotEnoughBookiesException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFallbackToScanWhenMostBookiesExcluded() throws Exception {
+        List<BookieNode> nodes = new ArrayList<>();
+        Set<BookieId> bookies = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            bookies.add(bookie(i, "/rack1"));
+        }
+        policy.onClusterChanged(bookies, Collections.emptySet());
+        nodes.addAll(Arrays.asList(policy.bookieIndex.getAll()));
+
+        // far fewer candidates than random samples would find
+        BookieNode left = nodes.get(0);
+        Set<Node> excluded = new HashSet<>(nodes.subList(1, nodes.size()));
+        for (int i = 0; i < ROUNDS; i++) {
+            Assert.assertEquals(left, select("/rack1", new HashSet<>(excluded)));
+        }
+
+        List<BookieNode> threeLeft = nodes.subList(0, 3);
+        Set<Node> excludedForThree = new HashSet<>(nodes.subList(3, nodes.size()));
+        List<BookieNode> selected = policy.selectRandom(3, excludedForThree, TruePredicate.INSTANCE,
+                EnsembleForReplacementWithNoConstraints.INSTANCE);
+        Assert.assertEquals(new HashSet<>(threeLeft), new HashSet<>(selected));
+
+        excluded.add(left);
+        try {
+            select("/rack1", excluded);
+            Assert.fail("All the bookies are excluded");
+        } catch (BKNotEnoughBookiesException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.apache.bookkeeper.client;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the range reads of the RangeReadOp class, and its fallback to entry by entry reads.
+ */
+public class RangeReadOpTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long LAST_ENTRY_ID = 9;
+    private static final byte[] PASSWORD = "password".getBytes();
+
+    private final List<BookieId> ensemble = Arrays.asList(
+            BookieId.parse("bookie-0:3181"), BookieId.parse("bookie-1:3181"), BookieId.parse("bookie-2:3181"));
+
+    private BookieClient bookieClient;
+    private OpStatsLogger readOpLogger;
+    private ClientContext clientCtx;
+    private LedgerHandle lh;
+    private LedgerEntries result;
+
+    @Before
+    public void setUp() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setRangeReadEnabled(true);
+        conf.setRangeReadMaxEntries(4);
+
+        bookieClient = mock(BookieClient.class);
+        readOpLogger = mock(OpStatsLogger.class);
+        BookKeeperClientStats clientStats = mock(BookKeeperClientStats.class);
+        when(clientStats.getReadOpLogger()).thenReturn(readOpLogger);
+
+        clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+        when(clientCtx.getClientStats()).thenReturn(clientStats);
+        when(clientCtx.getByteBufAllocator()).thenReturn(ByteBufAllocator.DEFAULT);
+
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(LEDGER_ID)
+                .withDigestType(DigestType.CRC32)
+                .withPassword(PASSWORD)
+                .withEnsembleSize(3)
+                .withWriteQuorumSize(3)
+                .withAckQuorumSize(2)
+                .newEnsembleEntry(0L, ensemble)
+                .withClosedState()
+                .withLastEntryId(LAST_ENTRY_ID)
+                .withLength((LAST_ENTRY_ID + 1) * 10)
+                .build();
+        lh = new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0)),
+                BookKeeper.DigestType.CRC32, PASSWORD, EnumSet.noneOf(WriteFlag.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (result != null) {
+            result.close();
+        }
+    }
+
+    private ByteBuf newEntry(long entryId) {
+        ByteBufList packaged = lh.macManager.computeDigestAndPackageForSending(entryId, LAST_ENTRY_ID,
+                (entryId + 1) * 10, Unpooled.wrappedBuffer(new byte[10]));
+        ByteBuf entry = ByteBufList.coalesce(packaged);
+        packaged.release();
+        return entry;
+    }
+
+    /**
+     * Make the bookies return the entries up to {@code lastRangeReadEntryId} by range reads,
+     * and any entry by single entry reads.
+     */
+    private void storeEntries(long lastRangeReadEntryId) {
+        when(bookieClient.isRangeReadSupported(any())).thenReturn(true);
+        doAnswer(invocation -> {
+            long startEntryId = invocation.getArgument(2);
+            int maxCount = invocation.getArgument(3);
+            ReadEntriesCallback cb = invocation.getArgument(5);
+            List<ByteBuf> entries = new ArrayList<>();
+            for (long entryId = startEntryId;
+                 entryId < startEntryId + maxCount && entryId <= lastRangeReadEntryId; entryId++) {
+                entries.add(newEntry(entryId));
+            }
+            int rc = entries.isEmpty() ? BKException.Code.NoSuchEntryException : BKException.Code.OK;
+            cb.readEntriesComplete(rc, LEDGER_ID, startEntryId, entries, invocation.getArgument(6));
+            return null;
+        }).when(bookieClient).readEntries(any(), eq(LEDGER_ID), anyLong(), anyInt(), anyLong(), any(), any(),
+                anyInt());
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            cb.readEntryComplete(BKException.Code.OK, LEDGER_ID, entryId, newEntry(entryId),
+                    invocation.getArgument(4));
+            return null;
+        }).when(bookieClient).readEntry(any(), eq(LEDGER_ID), anyLong(), any(), any(), anyInt());
+    }
+
+    private void read() throws Exception {
+        Assert.assertTrue(RangeReadOp.canRangeRead(lh, clientCtx, 0, LAST_ENTRY_ID));
+        RangeReadOp op = new RangeReadOp(lh, clientCtx, 0, LAST_ENTRY_ID);
+        op.initiate();
+        result = op.future().get(10, TimeUnit.SECONDS);
+
+        long entryId = 0;
+        for (LedgerEntry entry : result) {
+            Assert.assertEquals(entryId++, entry.getEntryId());
+            Assert.assertEquals(10, entry.getEntryBytes().length);
+        }
+        Assert.assertEquals(LAST_ENTRY_ID + 1, entryId);
+        // the read is accounted once, whichever op read the entries
+        verify(readOpLogger, times(1)).registerSuccessfulEvent(anyLong(), any());
+    }
+
+    @Test
+    public void testFullRange() throws Exception {
+        storeEntries(LAST_ENTRY_ID);
+
+        read();
+        verify(bookieClient, times(3)).readEntries(any(), eq(LEDGER_ID), anyLong(), anyInt(), anyLong(), any(),
+                any(), anyInt());
+        verify(bookieClient, never()).readEntry(any(), anyLong(), anyLong(), any(), any(), anyInt());
+    }
+
+    @Test
+    public void testPartialRangeWithMissingEntry() throws Exception {
+        storeEntries(5);
+
+        read();
+        // the entries after the missing one are read entry by entry
+        verify(bookieClient, times((int) (LAST_ENTRY_ID - 5))).readEntry(any(), eq(LEDGER_ID), anyLong(), any(),
+                any(), anyInt());
+    }
+
+    @Test
+    public void testFallbackWhenRangeReadsUnsupported() throws Exception {
+        storeEntries(LAST_ENTRY_ID);
+        when(bookieClient.isRangeReadSupported(any())).thenReturn(false);
+
+        read();
+        verify(bookieClient, never()).readEntries(any(), anyLong(), anyLong(), anyInt(), anyLong(), any(), any(),
+                anyInt());
+        verify(bookieClient, times((int) (LAST_ENTRY_ID + 1))).readEntry(any(), eq(LEDGER_ID), anyLong(), any(),
+                any(), anyInt());
+    }
+}
@@ -0,0 +1,128 @@
+package org.apache.bookkeeper.proto;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledUnsafeDirectByteBuf;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Test cases for the V3 requests decoded aliasing the frames they are read from.
+ */
+public class BookieProtoEncodingTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long ENTRY_ID = 10;
+
+    private final BookieProtoEncoding.RequestEnDecoderV3 decoder =
+            new BookieProtoEncoding.RequestEnDecoderV3(ExtensionRegistry.newInstance());
+    // the number of times the bytes of the frame are looked at through a nio buffer, i.e. parsed from memory
+    private final AtomicInteger nioBuffers = new AtomicInteger();
+    private ByteBuf frame;
+
+    @After
+    public void tearDown() {
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    private void newFrame(byte[] bytes) {
+        frame = new UnpooledUnsafeDirectByteBuf(UnpooledByteBufAllocator.DEFAULT, bytes.length, bytes.length) {
+            @Override
+            public ByteBuffer nioBuffer(int index, int length) {
+                nioBuffers.incrementAndGet();
+                return super.nioBuffer(index, length);
+            }
+        };
+        frame.writeBytes(bytes);
+        Assume.assumeTrue("The frames can't be aliased", BookieProtoEncoding.canAlias(frame));
+    }
+
+    private static BKPacketHeader.Builder newHeader(OperationType operation) {
+        return BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(operation)
+                .setTxnId(1);
+    }
+
+    private static AddRequest.Builder newAddRequest() {
+        return AddRequest.newBuilder()
+                .setLedgerId(LEDGER_ID)
+                .setEntryId(ENTRY_ID)
+                .setMasterKey(ByteString.copyFromUtf8("master"))
+                .setBody(ByteString.copyFrom(new byte[64]));
+    }
+
+    @Test
+    public void testReadParsedOnce() throws Exception {
+        Request read = Request.newBuilder()
+                .setHeader(newHeader(OperationType.READ_ENTRY))
+                .setReadRequest(ReadRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setEntryId(ENTRY_ID)
+                        .setMasterKey(ByteString.copyFromUtf8("master")))
+                .build();
+        newFrame(read.toByteArray());
+
+        Request decoded = (Request) decoder.decode(frame);
+        Assert.assertEquals(read, decoded);
+        // only the header is peeked at in memory, the request is parsed once by copying its bytes
+        Assert.assertEquals(1, nioBuffers.get());
+        Assert.assertFalse(frame.isReadable());
+        Assert.assertFalse(decoded.getReadRequest().getMasterKey().asReadOnlyByteBuffer().isDirect());
+        Assert.assertFalse(BookieProtoEncoding.aliasesFrame(decoded));
+    }
+
+    @Test
+    public void testAddAliasesFrame() throws Exception {
+        Request add = Request.newBuilder()
+                .setHeader(newHeader(OperationType.ADD_ENTRY))
+                .setAddRequest(newAddRequest())
+                .build();
+        newFrame(add.toByteArray());
+
+        Request decoded = (Request) decoder.decode(frame);
+        Assert.assertEquals(add, decoded);
+        Assert.assertEquals(2, nioBuffers.get());
+        Assert.assertTrue(BookieProtoEncoding.aliasesFrame(decoded));
+
+        // the body is a slice of the frame, rather than a copy
+        ByteString body = decoded.getAddRequest().getBody();
+        Assert.assertTrue(BookieProtoEncoding.aliasedIndex(frame, body) >= 0);
+        ByteBuf entry = BookieProtoEncoding.retainedSlice(frame, body);
+        try {
+            Assert.assertEquals(2, frame.refCnt());
+            Assert.assertEquals(frame.memoryAddress() + BookieProtoEncoding.aliasedIndex(frame, body),
+                    entry.memoryAddress());
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testOperationOfHeaderAfterRequest() throws Exception {
+        // the fields of a message may be in any order, e.g. when it is made of several messages
+        ByteString add = Request.newBuilder().setAddRequest(newAddRequest()).buildPartial().toByteString()
+                .concat(Request.newBuilder().setHeader(newHeader(OperationType.ADD_ENTRY)).buildPartial()
+                        .toByteString());
+        newFrame(add.toByteArray());
+
+        Assert.assertTrue(BookieProtoEncoding.isAliasingRequest(frame));
+        Request decoded = (Request) decoder.decode(frame);
+        Assert.assertEquals(OperationType.ADD_ENTRY, decoded.getHeader().getOperation());
+        Assert.assertTrue(BookieProtoEncoding.aliasedIndex(frame, decoded.getAddRequest().getBody()) >= 0);
+    }
+}
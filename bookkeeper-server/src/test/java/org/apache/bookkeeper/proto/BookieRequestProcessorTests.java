@@ -0,0 +1,97 @@
+package org.apache.bookkeeper.proto;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the threads processing the requests of a bookie in thread-per-core mode.
+ */
+public class BookieRequestProcessorTests {
+
+    private ServerConfiguration conf;
+    private Bookie bookie;
+    private EventLoopGroup eventLoopGroup;
+    private BookieRequestProcessor requestProcessor;
+
+    @Before
+    public void setUp() {
+        conf = TestBKConfiguration.newServerConfiguration();
+        conf.setReadWorkerThreadsThrottlingEnabled(true);
+        bookie = mock(Bookie.class);
+        eventLoopGroup = new DefaultEventLoopGroup(2);
+    }
+
+    @After
+    public void tearDown() {
+        if (requestProcessor != null) {
+            requestProcessor.close();
+        }
+        eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    private void newRequestProcessor(EventLoopGroup shardEventLoopGroup) throws Exception {
+        requestProcessor = new BookieRequestProcessor(conf, bookie, NullStatsLogger.INSTANCE, null,
+                UnpooledByteBufAllocator.DEFAULT, shardEventLoopGroup);
+    }
+
+    @Test
+    public void testReadResponsesThrottled() throws Exception {
+        newRequestProcessor(null);
+        Assert.assertTrue(requestProcessor.isThrottlingReadResponses());
+    }
+
+    @Test
+    public void testReadResponsesNotThrottledInThreadPerCoreMode() throws Exception {
+        newRequestProcessor(eventLoopGroup);
+        // the IO threads would wait for the responses they have to write themselves
+        Assert.assertFalse(requestProcessor.isThrottlingReadResponses());
+    }
+
+    @Test
+    public void testGetBookieInfoNotProcessedOnIoThreadInThreadPerCoreMode() throws Exception {
+        newRequestProcessor(eventLoopGroup);
+        CompletableFuture<Thread> processingThread = new CompletableFuture<>();
+        when(bookie.getTotalFreeSpace()).thenAnswer(invocation -> {
+            processingThread.complete(Thread.currentThread());
+            return 0L;
+        });
+
+        Request request = Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.GET_BOOKIE_INFO)
+                        .setTxnId(1))
+                .setGetBookieInfoRequest(GetBookieInfoRequest.newBuilder()
+                        .setRequested(GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE))
+                .build();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        try {
+            requestProcessor.processRequest(request, channel);
+            Thread thread = processingThread.get(10, TimeUnit.SECONDS);
+            Assert.assertNotSame(Thread.currentThread(), thread);
+            Assert.assertTrue(thread.getName(), thread.getName().startsWith("BookieLongPollThread"));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the admission control of the shards of a bookie in thread-per-core mode.
+ */
+public class BookieShardsTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final int MAX_PENDING_ADDS = 3;
+    private static final int MAX_PENDING_READS = 2;
+
+    private EventLoopGroup eventLoopGroup;
+    private BookieShards shards;
+
+    @Before
+    public void setUp() {
+        eventLoopGroup = new DefaultEventLoopGroup(2);
+        shards = new BookieShards(eventLoopGroup, MAX_PENDING_ADDS, MAX_PENDING_READS);
+    }
+
+    @After
+    public void tearDown() {
+        eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    private CountDownLatch blockShard() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        shards.executeAdd(LEDGER_ID, () -> {
+            started.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        return unblock;
+    }
+
+    @Test
+    public void testPendingRequestsBounded() throws Exception {
+        CountDownLatch unblock = blockShard();
+        AtomicInteger processed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(MAX_PENDING_ADDS + MAX_PENDING_READS);
+        Runnable request = () -> {
+            processed.incrementAndGet();
+            done.countDown();
+        };
+
+        for (int i = 0; i < MAX_PENDING_ADDS; i++) {
+            shards.executeAdd(LEDGER_ID, request);
+        }
+        try {
+            shards.executeAdd(LEDGER_ID, request);
+            Assert.fail("The add should be rejected by the busy shard");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        // The reads have their own bound
+        for (int i = 0; i < MAX_PENDING_READS; i++) {
+            shards.executeRead(LEDGER_ID, request);
+        }
+        try {
+            shards.executeRead(LEDGER_ID, request);
+            Assert.fail("The read should be rejected by the busy shard");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        Assert.assertEquals(MAX_PENDING_ADDS, shards.getPendingAdds(LEDGER_ID));
+        Assert.assertEquals(MAX_PENDING_READS, shards.getPendingReads(LEDGER_ID));
+
+        unblock.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(MAX_PENDING_ADDS + MAX_PENDING_READS, processed.get());
+        Assert.assertEquals(0, shards.getPendingAdds(LEDGER_ID));
+        Assert.assertEquals(0, shards.getPendingReads(LEDGER_ID));
+
+        // The shard accepts requests again once it has caught up
+        CountDownLatch accepted = new CountDownLatch(1);
+        shards.executeAdd(LEDGER_ID, accepted::countDown);
+        Assert.assertTrue(accepted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRequestsOfShardProcessedInPlace() throws Exception {
+        CountDownLatch queueFull = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger nested = new AtomicInteger();
+        shards.executeAdd(LEDGER_ID, () -> {
+            try {
+                queueFull.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // A request received by the shard itself doesn't wait in its queue
+            shards.executeAdd(LEDGER_ID, nested::incrementAndGet);
+            Assert.assertEquals(1, nested.get());
+            done.countDown();
+        });
+        while (shards.getPendingAdds(LEDGER_ID) > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < MAX_PENDING_ADDS; i++) {
+            shards.executeAdd(LEDGER_ID, () -> { });
+        }
+
+        queueFull.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,178 @@
+package org.apache.bookkeeper.proto;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the choice of the channels of the DefaultPerChannelBookieClientPool class, and
+ * for the scaling of the pool.
+ */
+public class DefaultPerChannelBookieClientPoolTests {
+
+    private static final int CORE_SIZE = 2;
+    private static final int MAX_SIZE = 3;
+    private static final long SCALE_UP_BYTES = 1000;
+
+    private final BookieId address = BookieId.parse("bookie-0:3181");
+    private final GenericCallback<PerChannelBookieClient> callback = (rc, pcbc) -> { };
+    private final List<PerChannelBookieClient> created = new ArrayList<>();
+    private ClientConfiguration conf;
+    private PerChannelBookieClientFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        conf = new ClientConfiguration();
+        conf.setChannelScaleUpPendingAddBytes(SCALE_UP_BYTES);
+        factory = mock(PerChannelBookieClientFactory.class);
+        when(factory.create(any(), any(), any(), anyBoolean())).thenAnswer(invocation -> {
+            PerChannelBookieClient pcbc = mock(PerChannelBookieClient.class);
+            when(pcbc.isWritable()).thenReturn(true);
+            created.add(pcbc);
+            return pcbc;
+        });
+    }
+
+    private DefaultPerChannelBookieClientPool newPool(int maxSize) throws Exception {
+        return new DefaultPerChannelBookieClientPool(conf, factory, address, CORE_SIZE, maxSize);
+    }
+
+    private void load(int channel, long pendingAddBytes, long pendingRequests) {
+        when(created.get(channel).getPendingAddBytes()).thenReturn(pendingAddBytes);
+        when(created.get(channel).getNumPendingCompletionRequests()).thenReturn(pendingRequests);
+    }
+
+    @Test
+    public void testStickyOperationsOnCoreChannels() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(MAX_SIZE);
+        load(0, SCALE_UP_BYTES, 1);
+        load(1, SCALE_UP_BYTES, 1);
+        pool.obtainLeastLoaded(callback, 0, false);
+        Assert.assertEquals(MAX_SIZE, pool.clients.length);
+
+        // the keys keep their channel when the pool scales
+        GenericCallback<PerChannelBookieClient> stickyCallback = (rc, pcbc) -> { };
+        pool.obtain(stickyCallback, 0);
+        pool.obtain(stickyCallback, 3);
+        verify(created.get(0)).connectIfNeededAndDoOp(stickyCallback);
+        verify(created.get(1)).connectIfNeededAndDoOp(stickyCallback);
+        verify(created.get(MAX_SIZE - 1), never()).connectIfNeededAndDoOp(stickyCallback);
+    }
+
+    @Test
+    public void testLeastLoadedChannel() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(MAX_SIZE);
+        load(0, 100, 1);
+        load(1, 10, 5);
+
+        pool.obtainLeastLoaded(callback, 0, false);
+        verify(created.get(1)).connectIfNeededAndDoOp(callback);
+        verify(created.get(0), never()).connectIfNeededAndDoOp(callback);
+        Assert.assertEquals(CORE_SIZE, pool.clients.length);
+    }
+
+    @Test
+    public void testUnwritableChannelNotLeastLoaded() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(MAX_SIZE);
+        load(0, 10, 1);
+        load(1, 100, 1);
+        when(created.get(0).isWritable()).thenReturn(false);
+
+        pool.obtainLeastLoaded(callback, 0, false);
+        verify(created.get(1)).connectIfNeededAndDoOp(callback);
+    }
+
+    @Test
+    public void testNoLeastLoadedWithoutScaling() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(CORE_SIZE);
+        load(0, 100, 1);
+        load(1, 10, 1);
+
+        pool.obtainLeastLoaded(callback, 0, false);
+        verify(created.get(0)).connectIfNeededAndDoOp(callback);
+    }
+
+    @Test
+    public void testScaleUpToMaxSize() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(MAX_SIZE);
+        load(0, SCALE_UP_BYTES - 1, 1);
+        load(1, SCALE_UP_BYTES, 1);
+        pool.obtainLeastLoaded(callback, 0, false);
+        Assert.assertEquals(CORE_SIZE, pool.clients.length);
+
+        load(0, SCALE_UP_BYTES, 1);
+        pool.obtainLeastLoaded(callback, 0, false);
+        Assert.assertEquals(MAX_SIZE, pool.clients.length);
+        verify(created.get(MAX_SIZE - 1)).connectIfNeededAndDoOp(pool);
+
+        load(MAX_SIZE - 1, SCALE_UP_BYTES, 1);
+        pool.obtainLeastLoaded(callback, 0, false);
+        Assert.assertEquals(MAX_SIZE, pool.clients.length);
+        Assert.assertEquals(MAX_SIZE, created.size());
+    }
+
+    @Test
+    public void testScaleDownWhenIdle() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(MAX_SIZE);
+        load(0, SCALE_UP_BYTES, 1);
+        load(1, SCALE_UP_BYTES, 1);
+        pool.obtainLeastLoaded(callback, 0, false);
+        PerChannelBookieClient extra = created.get(MAX_SIZE - 1);
+
+        // still loaded
+        pool.checkTimeoutOnPendingOperations();
+        Assert.assertEquals(MAX_SIZE, pool.clients.length);
+
+        load(0, 0, 0);
+        load(1, 0, 0);
+        pool.checkTimeoutOnPendingOperations();
+        Assert.assertEquals(CORE_SIZE, pool.clients.length);
+        // the operations which obtained the channel before it was removed can still be sent on it
+        verify(extra, never()).close(false);
+
+        pool.checkTimeoutOnPendingOperations();
+        verify(extra).close(false);
+        verify(created.get(0), never()).close(false);
+    }
+
+    @Test
+    public void testAddsOnLeastLoadedChannel() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(MAX_SIZE);
+        load(0, 100, 1);
+        load(1, 10, 1);
+        when(created.get(0).isWritable()).thenReturn(true);
+        when(created.get(1).isWritable()).thenReturn(false);
+
+        pool.obtainForAdd(callback, 1);
+        verify(created.get(0)).connectIfNeededAndDoOp(callback);
+        // the writability of the channel the adds of the key are sent on
+        Assert.assertTrue(pool.isWritable(1));
+    }
+
+    @Test
+    public void testRangeAddsOnChannelOfLedger() throws Exception {
+        conf.setRangeAddEnabled(true);
+        DefaultPerChannelBookieClientPool pool = newPool(MAX_SIZE);
+        load(0, 100, 1);
+        load(1, 10, 1);
+        when(created.get(0).isWritable()).thenReturn(false);
+
+        pool.obtainForAdd(callback, 0);
+        verify(created.get(0)).connectIfNeededAndDoOp(callback);
+        verify(created.get(1), never()).connectIfNeededAndDoOp(callback);
+        Assert.assertFalse(pool.isWritable(0));
+        Assert.assertTrue(pool.isWritable(1));
+    }
+}
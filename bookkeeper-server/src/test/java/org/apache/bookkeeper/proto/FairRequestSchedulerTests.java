@@ -0,0 +1,215 @@
+package org.apache.bookkeeper.proto;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.apache.bookkeeper.common.util.SafeRunnable;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the fair scheduling of the read requests between classes of requests.
+ */
+public class FairRequestSchedulerTests {
+
+    /**
+     * Thread pool which holds the requests handed over to it until they're run, and rejects them
+     * once it's shut down.
+     */
+    private static class HeldRequests implements Consumer<SafeRunnable> {
+        final List<SafeRunnable> requests = new ArrayList<>();
+        boolean shutdown = false;
+
+        @Override
+        public void accept(SafeRunnable request) {
+            if (shutdown) {
+                throw new RejectedExecutionException("shut down");
+            }
+            requests.add(request);
+        }
+
+        void runAll() {
+            List<SafeRunnable> toRun = new ArrayList<>(requests);
+            requests.clear();
+            toRun.forEach(Runnable::run);
+        }
+    }
+
+    private static SafeRunnable noop() {
+        return SafeRunnable.safeRun(() -> { });
+    }
+
+    /**
+     * A request which records its class once run.
+     */
+    private static SafeRunnable request(String requestClass, List<String> runClasses) {
+        return SafeRunnable.safeRun(() -> runClasses.add(requestClass));
+    }
+
+    /**
+     * Run the requests handed over to the thread pool one at a time, until it's idle.
+     */
+    private static void runOneByOne(HeldRequests threadPool) {
+        while (!threadPool.requests.isEmpty()) {
+            threadPool.requests.remove(0).run();
+        }
+    }
+
+    @Test
+    public void testSharesProportionalToWeights() {
+        FairRequestScheduler scheduler = new FairRequestScheduler(FairRequestScheduler.CLASSIFIER_PRINCIPAL, 1,
+                Collections.singletonMap("heavy", 3), 1, 0, 0, NullStatsLogger.INSTANCE);
+        HeldRequests threadPool = new HeldRequests();
+        List<String> runClasses = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            scheduler.execute("heavy", request("heavy", runClasses), threadPool, () -> { });
+            scheduler.execute("light", request("light", runClasses), threadPool, () -> { });
+        }
+        runOneByOne(threadPool);
+        Assert.assertEquals(80, runClasses.size());
+
+        // while both classes have requests pending, the heavy class gets 3 times the share of the light one
+        List<String> contended = runClasses.subList(0, 40);
+        Assert.assertEquals(30, Collections.frequency(contended, "heavy"));
+        Assert.assertEquals(10, Collections.frequency(contended, "light"));
+    }
+
+    @Test
+    public void testInFlightCappedPerClass() {
+        FairRequestScheduler scheduler = new FairRequestScheduler(FairRequestScheduler.CLASSIFIER_PRINCIPAL, 1,
+                Collections.emptyMap(), 4, 1, 0, NullStatsLogger.INSTANCE);
+        HeldRequests threadPool = new HeldRequests();
+        List<String> runClasses = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.execute("client-1", request("client-1", runClasses), threadPool, () -> { });
+            scheduler.execute("client-2", request("client-2", runClasses), threadPool, () -> { });
+        }
+        // a single request of each class in flight, though the thread pool could take more
+        for (int round = 0; round < 3; round++) {
+            Assert.assertEquals(2, threadPool.requests.size());
+            threadPool.runAll();
+        }
+        Assert.assertTrue(threadPool.requests.isEmpty());
+        Assert.assertEquals(6, runClasses.size());
+    }
+
+    @Test
+    public void testManyClassesServedInTurn() {
+        FairRequestScheduler scheduler = new FairRequestScheduler(FairRequestScheduler.CLASSIFIER_PRINCIPAL, 1,
+                Collections.emptyMap(), 1, 0, 0, NullStatsLogger.INSTANCE);
+        HeldRequests threadPool = new HeldRequests();
+        List<String> runClasses = new ArrayList<>();
+        int numClasses = 1000;
+
+        for (int i = 0; i < numClasses; i++) {
+            for (int j = 0; j < 2; j++) {
+                scheduler.execute("client-" + i, request("client-" + i, runClasses), threadPool, () -> { });
+            }
+        }
+        runOneByOne(threadPool);
+        Assert.assertEquals(2 * numClasses, runClasses.size());
+
+        // each class gets a request run before any class gets its second one
+        Assert.assertEquals(numClasses, new HashSet<>(runClasses.subList(0, numClasses)).size());
+        Map<String, Integer> counts = new HashMap<>();
+        runClasses.forEach(requestClass -> counts.merge(requestClass, 1, Integer::sum));
+        Assert.assertEquals(Collections.singleton(2), new HashSet<>(counts.values()));
+    }
+
+    @Test
+    public void testDroppedRequestsAnswered() {
+        FairRequestScheduler scheduler = new FairRequestScheduler(FairRequestScheduler.CLASSIFIER_PRINCIPAL, 1,
+                Collections.emptyMap(), 1, 0, 0, NullStatsLogger.INSTANCE);
+        HeldRequests threadPool = new HeldRequests();
+        AtomicInteger rejected = new AtomicInteger();
+
+        scheduler.execute("client-1", noop(), threadPool, rejected::incrementAndGet);
+        scheduler.execute("client-1", noop(), threadPool, rejected::incrementAndGet);
+        scheduler.execute("client-2", noop(), threadPool, rejected::incrementAndGet);
+        Assert.assertEquals(1, threadPool.requests.size());
+
+        // The queued requests are dropped as the thread pool rejects them, and answered
+        threadPool.shutdown = true;
+        threadPool.runAll();
+        Assert.assertEquals(2, rejected.get());
+
+        // The scheduler is left with nothing in flight
+        threadPool.shutdown = false;
+        scheduler.execute("client-3", noop(), threadPool, rejected::incrementAndGet);
+        Assert.assertEquals(1, threadPool.requests.size());
+    }
+
+    @Test
+    public void testRejectedRightAwayNotAnsweredTwice() {
+        FairRequestScheduler scheduler = new FairRequestScheduler(FairRequestScheduler.CLASSIFIER_PRINCIPAL, 1,
+                Collections.emptyMap(), 1, 0, 0, NullStatsLogger.INSTANCE);
+        HeldRequests threadPool = new HeldRequests();
+        threadPool.shutdown = true;
+        AtomicInteger rejected = new AtomicInteger();
+        try {
+            scheduler.execute("client-1", noop(), threadPool, rejected::incrementAndGet);
+            Assert.fail("The request should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected, the caller answers the request
+        }
+        Assert.assertEquals(0, rejected.get());
+    }
+
+    @Test
+    public void testStatsLabelsBounded() {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        StatsLogger labelledLogger = mock(StatsLogger.class);
+        when(statsLogger.scopeLabel(anyString(), anyString())).thenReturn(labelledLogger);
+        when(labelledLogger.getOpStatsLogger(anyString())).thenReturn(mock(OpStatsLogger.class));
+        FairRequestScheduler scheduler = new FairRequestScheduler(FairRequestScheduler.CLASSIFIER_PRINCIPAL, 1,
+                Collections.singletonMap("tenant", 4), 100, 0, 0, statsLogger);
+        HeldRequests threadPool = new HeldRequests();
+
+        scheduler.execute("tenant", noop(), threadPool, () -> { });
+        for (int i = 0; i < 50; i++) {
+            scheduler.execute("client-" + i, noop(), threadPool, () -> { });
+        }
+
+        verify(statsLogger).scopeLabel(FairRequestScheduler.REQUEST_CLASS_LABEL, "tenant");
+        verify(statsLogger, times(1)).scopeLabel(FairRequestScheduler.REQUEST_CLASS_LABEL,
+                FairRequestScheduler.OTHER_REQUEST_CLASS);
+        verify(statsLogger, never()).scopeLabel(eq(FairRequestScheduler.REQUEST_CLASS_LABEL), eq("client-0"));
+    }
+
+    @Test
+    public void testLedgerGroupsLabelled() {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        StatsLogger labelledLogger = mock(StatsLogger.class);
+        when(statsLogger.scopeLabel(anyString(), anyString())).thenReturn(labelledLogger);
+        when(labelledLogger.getOpStatsLogger(anyString())).thenReturn(mock(OpStatsLogger.class));
+        FairRequestScheduler scheduler = new FairRequestScheduler(FairRequestScheduler.CLASSIFIER_LEDGER_GROUP, 2,
+                Collections.emptyMap(), 100, 0, 0, statsLogger);
+        HeldRequests threadPool = new HeldRequests();
+
+        for (long ledgerId = 0; ledgerId < 10; ledgerId++) {
+            scheduler.execute(scheduler.getRequestClass(null, ledgerId), noop(), threadPool, () -> { });
+        }
+        verify(statsLogger).scopeLabel(FairRequestScheduler.REQUEST_CLASS_LABEL, "0");
+        verify(statsLogger).scopeLabel(FairRequestScheduler.REQUEST_CLASS_LABEL, "1");
+        verify(statsLogger, times(2)).scopeLabel(anyString(), anyString());
+    }
+}
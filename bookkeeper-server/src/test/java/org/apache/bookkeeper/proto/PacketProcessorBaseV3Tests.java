@@ -0,0 +1,253 @@
+package org.apache.bookkeeper.proto;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiFunction;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.AddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the frames the V3 requests are decoded from, which are only kept by the processors of the adds.
+ */
+public class PacketProcessorBaseV3Tests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long ENTRY_ID = 10;
+
+    private EmbeddedChannel channel;
+    private Bookie bookie;
+    private BookieRequestProcessor requestProcessor;
+    private BiFunction<Request, Channel, PacketProcessorBaseV3> newProcessor;
+    private PacketProcessorBaseV3 processor;
+
+    @Before
+    public void setUp() {
+        bookie = mock(Bookie.class);
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+        // the processors are created while the decoded request is read, like the request processor does
+        channel = new EmbeddedChannel(new BookieProtoEncoding.RequestDecoder(ExtensionRegistry.newInstance()),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        processor = newProcessor.apply((Request) msg, ctx.channel());
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private static ByteBuf newEntry() {
+        ByteBuf entry = Unpooled.buffer();
+        entry.writeLong(LEDGER_ID);
+        entry.writeLong(ENTRY_ID);
+        entry.writeBytes(new byte[32]);
+        return entry;
+    }
+
+    private static BKPacketHeader.Builder newHeader(OperationType operation) {
+        return BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(operation)
+                .setTxnId(1);
+    }
+
+    private static Request newAddRequest() {
+        return Request.newBuilder()
+                .setHeader(newHeader(OperationType.ADD_ENTRY))
+                .setAddRequest(AddRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setEntryId(ENTRY_ID)
+                        .setMasterKey(ByteString.copyFromUtf8("master"))
+                        .setBody(ByteString.copyFrom(newEntry().nioBuffer())))
+                .build();
+    }
+
+    /**
+     * Read a request from a direct frame, which is retained once more to check its references.
+     */
+    private ByteBuf readRequest(Request request) {
+        ByteBuf frame = Unpooled.directBuffer(request.getSerializedSize());
+        frame.writeBytes(request.toByteArray());
+        if (!BookieProtoEncoding.canAlias(frame)) {
+            frame.release();
+            Assume.assumeTrue("The frames can't be aliased", false);
+        }
+        frame.retain();
+        channel.writeInbound(frame);
+        Assert.assertNotNull(processor);
+        return frame;
+    }
+
+    private Response readResponse() {
+        Response response = channel.readOutbound();
+        Assert.assertNotNull(response);
+        return response;
+    }
+
+    @Test
+    public void testFrameReleasedOnSuccess() throws Exception {
+        newProcessor = (request, c) -> new WriteEntryProcessorV3(request, c, requestProcessor);
+        ByteBuf frame = readRequest(newAddRequest());
+        Assert.assertEquals(2, frame.refCnt());
+
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            // the entry keeps the frame alive, instead of the processor
+            Assert.assertNull(processor.getRequestFrame());
+            Assert.assertEquals(2, frame.refCnt());
+            Assert.assertEquals(newEntry(), entry);
+            WriteCallback cb = invocation.getArgument(2);
+            cb.writeComplete(BookieProtocol.EOK, LEDGER_ID, ENTRY_ID, null, invocation.getArgument(3));
+            entry.release();
+            return null;
+        }).when(bookie).addEntry(any(), anyBoolean(), any(), any(), any());
+
+        processor.safeRun();
+        Assert.assertEquals(StatusCode.EOK, readResponse().getStatus());
+        Assert.assertEquals(1, frame.refCnt());
+        frame.release();
+    }
+
+    @Test
+    public void testFrameReleasedOnError() throws Exception {
+        newProcessor = (request, c) -> new WriteEntryProcessorV3(request, c, requestProcessor);
+        ByteBuf frame = readRequest(newAddRequest());
+
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            entry.release();
+            throw new IOException("failed to add the entry");
+        }).when(bookie).addEntry(any(), anyBoolean(), any(), any(), any());
+
+        processor.safeRun();
+        Assert.assertEquals(StatusCode.EIO, readResponse().getStatus());
+        Assert.assertEquals(1, frame.refCnt());
+        frame.release();
+    }
+
+    @Test
+    public void testFrameReleasedOnUnexpectedError() throws Exception {
+        newProcessor = (request, c) -> new WriteEntryProcessorV3(request, c, requestProcessor);
+        ByteBuf frame = readRequest(newAddRequest());
+        when(bookie.isReadOnly()).thenThrow(new IllegalStateException("unexpected"));
+
+        try {
+            processor.safeRun();
+            Assert.fail("The error should be thrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(1, frame.refCnt());
+        frame.release();
+    }
+
+    @Test
+    public void testFrameReleasedOnRejected() throws Exception {
+        newProcessor = (request, c) -> new WriteEntryProcessorV3(request, c, requestProcessor);
+        ByteBuf frame = readRequest(newAddRequest());
+        Assert.assertEquals(2, frame.refCnt());
+
+        // the add is rejected by the write threads, like the request processor does
+        AddResponse.Builder addResponse = AddResponse.newBuilder()
+                .setLedgerId(LEDGER_ID)
+                .setEntryId(ENTRY_ID)
+                .setStatus(StatusCode.ETOOMANYREQUESTS);
+        Response response = Response.newBuilder()
+                .setHeader(processor.getHeader())
+                .setStatus(addResponse.getStatus())
+                .setAddResponse(addResponse)
+                .build();
+        processor.sendResponse(addResponse.getStatus(), response,
+                requestProcessor.getRequestStats().getAddRequestStats());
+        Assert.assertEquals(StatusCode.ETOOMANYREQUESTS, readResponse().getStatus());
+        Assert.assertEquals(1, frame.refCnt());
+        frame.release();
+    }
+
+    @Test
+    public void testFrameReleasedOnRangeAdd() throws Exception {
+        newProcessor = (request, c) -> new RangeAddEntryProcessorV3(request, c, requestProcessor);
+        ByteBuf frame = readRequest(Request.newBuilder()
+                .setHeader(newHeader(OperationType.RANGE_ADD_ENTRY))
+                .setRangeAddRequest(RangeAddRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setStartEntryId(ENTRY_ID)
+                        .setMasterKey(ByteString.copyFromUtf8("master"))
+                        .addBody(ByteString.copyFrom(newEntry().nioBuffer())))
+                .build());
+        Assert.assertEquals(2, frame.refCnt());
+
+        doAnswer(invocation -> {
+            List<ByteBuf> entries = invocation.getArgument(0);
+            Assert.assertNull(processor.getRequestFrame());
+            Assert.assertEquals(2, frame.refCnt());
+            WriteCallback cb = invocation.getArgument(2);
+            cb.writeComplete(BookieProtocol.EOK, LEDGER_ID, ENTRY_ID, null, invocation.getArgument(3));
+            entries.forEach(ByteBuf::release);
+            return null;
+        }).when(bookie).addEntries(anyList(), anyBoolean(), any(), any(), any());
+
+        processor.safeRun();
+        Assert.assertEquals(StatusCode.EOK, readResponse().getStatus());
+        Assert.assertEquals(1, frame.refCnt());
+        frame.release();
+    }
+
+    @Test
+    public void testFrameNotKeptByOtherRequests() throws Exception {
+        newProcessor = (request, c) -> new WriteLacProcessorV3(request, c, requestProcessor);
+        ByteBuf frame = readRequest(Request.newBuilder()
+                .setHeader(newHeader(OperationType.WRITE_LAC))
+                .setWriteLacRequest(WriteLacRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setLac(ENTRY_ID)
+                        .setMasterKey(ByteString.copyFromUtf8("master"))
+                        .setBody(ByteString.copyFrom(newEntry().nioBuffer())))
+                .build());
+
+        // the request doesn't alias the frame, which is released once the request is read
+        Assert.assertNull(processor.getRequestFrame());
+        Assert.assertEquals(1, frame.refCnt());
+        Assert.assertFalse(processor.request.getWriteLacRequest().getBody().asReadOnlyByteBuffer().isDirect());
+        frame.release();
+        Assert.assertEquals(newEntry(),
+                Unpooled.wrappedBuffer(processor.request.getWriteLacRequest().getBody().toByteArray()));
+    }
+}
@@ -0,0 +1,136 @@
+package org.apache.bookkeeper.proto;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the validation and the responses of the range add requests.
+ */
+public class RangeAddEntryProcessorV3Tests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long START_ENTRY_ID = 10;
+
+    private EmbeddedChannel channel;
+    private Bookie bookie;
+    private BookieRequestProcessor requestProcessor;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+        bookie = mock(Bookie.class);
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private static ByteString newEntry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer();
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeBytes(new byte[32]);
+        return ByteString.copyFrom(entry.nioBuffer());
+    }
+
+    private static Request newRequest(ByteString... bodies) {
+        return Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.RANGE_ADD_ENTRY)
+                        .setTxnId(1))
+                .setRangeAddRequest(RangeAddRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setStartEntryId(START_ENTRY_ID)
+                        .setMasterKey(ByteString.copyFromUtf8("master"))
+                        .addAllBody(Arrays.asList(bodies)))
+                .build();
+    }
+
+    private Response process(Request request) {
+        new RangeAddEntryProcessorV3(request, channel, requestProcessor).safeRun();
+        return channel.readOutbound();
+    }
+
+    private void assertRejected(Request request) throws Exception {
+        Response response = process(request);
+        Assert.assertEquals(StatusCode.EBADREQ, response.getStatus());
+        Assert.assertTrue(response.hasRangeAddResponse());
+        Assert.assertEquals(0, response.getRangeAddResponse().getEntryStatusCount());
+        verify(bookie, never()).addEntries(anyList(), anyBoolean(), any(), any(), any());
+        verify(requestProcessor).onAddRequestFinish();
+    }
+
+    @Test
+    public void testRejectEmptyRange() throws Exception {
+        assertRejected(newRequest());
+    }
+
+    @Test
+    public void testRejectEntryOfAnotherLedger() throws Exception {
+        assertRejected(newRequest(newEntry(LEDGER_ID, START_ENTRY_ID), newEntry(LEDGER_ID + 1, START_ENTRY_ID + 1)));
+    }
+
+    @Test
+    public void testRejectNonConsecutiveEntries() throws Exception {
+        assertRejected(newRequest(newEntry(LEDGER_ID, START_ENTRY_ID), newEntry(LEDGER_ID, START_ENTRY_ID + 2)));
+    }
+
+    @Test
+    public void testRejectTruncatedEntry() throws Exception {
+        assertRejected(newRequest(newEntry(LEDGER_ID, START_ENTRY_ID), ByteString.copyFrom(new byte[8])));
+    }
+
+    @Test
+    public void testStatusOfEachEntry() throws Exception {
+        doAnswer(invocation -> {
+            List<ByteBuf> entries = invocation.getArgument(0);
+            WriteCallback cb = invocation.getArgument(2);
+            for (int i = 0; i < entries.size(); i++) {
+                int rc = i < 2 ? BookieProtocol.EOK : BookieProtocol.EIO;
+                cb.writeComplete(rc, LEDGER_ID, START_ENTRY_ID + i, null, invocation.getArgument(3));
+            }
+            entries.forEach(ByteBuf::release);
+            return null;
+        }).when(bookie).addEntries(anyList(), anyBoolean(), any(), any(), any());
+
+        Response response = process(newRequest(newEntry(LEDGER_ID, START_ENTRY_ID),
+                newEntry(LEDGER_ID, START_ENTRY_ID + 1), newEntry(LEDGER_ID, START_ENTRY_ID + 2)));
+        Assert.assertEquals(StatusCode.EOK, response.getStatus());
+        Assert.assertEquals(Arrays.asList(StatusCode.EOK, StatusCode.EOK, StatusCode.EIO),
+                response.getRangeAddResponse().getEntryStatusList());
+        verify(requestProcessor).onAddRequestFinish();
+    }
+}
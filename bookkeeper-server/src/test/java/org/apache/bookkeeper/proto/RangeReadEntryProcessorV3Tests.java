@@ -0,0 +1,224 @@
+package org.apache.bookkeeper.proto;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeReadResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the responses of the range read requests.
+ */
+public class RangeReadEntryProcessorV3Tests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long START_ENTRY_ID = 10;
+    private static final long LAC = 20;
+
+    private EmbeddedChannel channel;
+    private Bookie bookie;
+    private BookieRequestProcessor requestProcessor;
+    // the entries returned by the bookie, to check they are released once the response is written
+    private final List<ByteBuf> readEntries = new ArrayList<>();
+    // the entry whose read fails with an IOException
+    private long failedEntryId = -1;
+    private ServerConfiguration serverConf;
+
+    @Before
+    public void setUp() throws Exception {
+        channel = new EmbeddedChannel();
+        bookie = mock(Bookie.class);
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        serverConf = new ServerConfiguration();
+        when(requestProcessor.getServerCfg()).thenReturn(serverConf);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenReturn(LAC);
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private void storeEntries(long firstEntryId, long lastEntryId) throws Exception {
+        when(bookie.readEntry(eq(LEDGER_ID), anyLong())).thenAnswer(invocation -> {
+            long entryId = invocation.getArgument(1);
+            if (entryId < firstEntryId || entryId > lastEntryId) {
+                throw new Bookie.NoEntryException(LEDGER_ID, entryId);
+            }
+            if (entryId == failedEntryId) {
+                throw new IOException("failed to read entry " + entryId);
+            }
+            // heap buffers, so that the bodies of the response can still be checked once released
+            ByteBuf entry = Unpooled.buffer(32);
+            entry.writeLong(LEDGER_ID);
+            entry.writeLong(entryId);
+            entry.writeZero(16);
+            readEntries.add(entry);
+            return entry;
+        });
+    }
+
+    private Response process(int maxCount) {
+        Request request = Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.RANGE_READ_ENTRY)
+                        .setTxnId(1))
+                .setRangeReadRequest(RangeReadRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setStartEntryId(START_ENTRY_ID)
+                        .setMaxCount(maxCount))
+                .build();
+        new RangeReadEntryProcessorV3(request, channel, requestProcessor).safeRun();
+        Response response = channel.readOutbound();
+        verify(requestProcessor).onReadRequestFinish();
+        return response;
+    }
+
+    private void assertEntries(RangeReadResponse response, int count) {
+        Assert.assertEquals(count, response.getBodyCount());
+        for (int i = 0; i < count; i++) {
+            ByteBuf body = Unpooled.wrappedBuffer(response.getBody(i).asReadOnlyByteBuffer());
+            Assert.assertEquals(LEDGER_ID, body.getLong(0));
+            Assert.assertEquals(START_ENTRY_ID + i, body.getLong(8));
+        }
+    }
+
+    private void assertEntriesReleased() {
+        for (ByteBuf entry : readEntries) {
+            Assert.assertEquals(0, entry.refCnt());
+        }
+    }
+
+    @Test
+    public void testFullRange() throws Exception {
+        storeEntries(START_ENTRY_ID, START_ENTRY_ID + 9);
+
+        Response response = process(3);
+        Assert.assertEquals(StatusCode.EOK, response.getStatus());
+        Assert.assertEquals(StatusCode.EOK, response.getRangeReadResponse().getStatus());
+        Assert.assertEquals(LAC, response.getRangeReadResponse().getMaxLAC());
+        assertEntries(response.getRangeReadResponse(), 3);
+        Assert.assertEquals(3, readEntries.size());
+        assertEntriesReleased();
+    }
+
+    @Test
+    public void testRangeEndsAtMissingEntry() throws Exception {
+        storeEntries(START_ENTRY_ID, START_ENTRY_ID + 1);
+
+        Response response = process(5);
+        Assert.assertEquals(StatusCode.EOK, response.getStatus());
+        assertEntries(response.getRangeReadResponse(), 2);
+        assertEntriesReleased();
+    }
+
+    @Test
+    public void testMissingFirstEntry() throws Exception {
+        storeEntries(START_ENTRY_ID + 1, START_ENTRY_ID + 9);
+
+        Response response = process(5);
+        Assert.assertEquals(StatusCode.ENOENTRY, response.getStatus());
+        Assert.assertEquals(0, response.getRangeReadResponse().getBodyCount());
+        Assert.assertTrue(readEntries.isEmpty());
+    }
+
+    @Test
+    public void testEntriesReleasedOnError() throws Exception {
+        storeEntries(START_ENTRY_ID, START_ENTRY_ID + 9);
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenThrow(new IOException("failed"));
+
+        Response response = process(3);
+        Assert.assertEquals(StatusCode.EIO, response.getStatus());
+        Assert.assertEquals(0, response.getRangeReadResponse().getBodyCount());
+        Assert.assertEquals(3, readEntries.size());
+        assertEntriesReleased();
+    }
+
+    @Test
+    public void testRangeEndsAtFailedEntry() throws Exception {
+        storeEntries(START_ENTRY_ID, START_ENTRY_ID + 9);
+        failedEntryId = START_ENTRY_ID + 2;
+
+        // the entries read before the failure are returned
+        Response response = process(5);
+        Assert.assertEquals(StatusCode.EOK, response.getStatus());
+        Assert.assertEquals(StatusCode.EOK, response.getRangeReadResponse().getStatus());
+        Assert.assertEquals(StatusCode.EIO, response.getRangeReadResponse().getEndStatus());
+        Assert.assertEquals(LAC, response.getRangeReadResponse().getMaxLAC());
+        assertEntries(response.getRangeReadResponse(), 2);
+        assertEntriesReleased();
+    }
+
+    @Test
+    public void testFailedFirstEntry() throws Exception {
+        storeEntries(START_ENTRY_ID, START_ENTRY_ID + 9);
+        failedEntryId = START_ENTRY_ID;
+
+        Response response = process(5);
+        Assert.assertEquals(StatusCode.EIO, response.getStatus());
+        Assert.assertEquals(0, response.getRangeReadResponse().getBodyCount());
+        Assert.assertFalse(response.getRangeReadResponse().hasEndStatus());
+    }
+
+    @Test
+    public void testFramingCountedInFrameSize() throws Exception {
+        storeEntries(START_ENTRY_ID, START_ENTRY_ID + 19);
+        // room for the bodies of 10 entries, but only for 9 once the tag and length of each body are counted
+        serverConf.setNettyMaxFrameSizeBytes(RangeReadEntryProcessorV3.RESPONSE_HEADER_BYTES + 10 * 32);
+        Assert.assertEquals(34, RangeReadEntryProcessorV3.getFramedSize(32));
+
+        Response response = process(20);
+        Assert.assertEquals(StatusCode.EOK, response.getStatus());
+        assertEntries(response.getRangeReadResponse(), 9);
+        Assert.assertTrue(response.getSerializedSize() <= serverConf.getNettyMaxFrameSizeBytes());
+        assertEntriesReleased();
+    }
+
+    @Test
+    public void testCompositeEntryNotCopied() {
+        CompositeByteBuf entry = Unpooled.compositeBuffer();
+        entry.addComponent(true, Unpooled.directBuffer(16).writeLong(LEDGER_ID).writeLong(START_ENTRY_ID));
+        entry.addComponent(true, Unpooled.directBuffer(16).writeZero(16));
+        try {
+            ByteString body = RangeReadEntryProcessorV3.wrapEntry(entry);
+            Assert.assertEquals(ByteString.copyFrom(entry.nioBuffer()), body);
+            // each component is wrapped as it is, rather than merged into a copy
+            List<ByteBuffer> components = body.asReadOnlyByteBufferList();
+            Assert.assertEquals(2, components.size());
+            for (ByteBuffer component : components) {
+                Assert.assertTrue(component.isDirect());
+            }
+        } finally {
+            entry.release();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.apache.bookkeeper.proto;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the reads served from the caches of the bookie on the IO threads.
+ */
+public class ReadEntryProcessorV3Tests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long ENTRY_ID = 10;
+    private static final long LAC = 20;
+
+    private EmbeddedChannel channel;
+    private Bookie bookie;
+    private BookieRequestProcessor requestProcessor;
+
+    @Before
+    public void setUp() throws Exception {
+        channel = new EmbeddedChannel();
+        bookie = mock(Bookie.class);
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getServerCfg()).thenReturn(new ServerConfiguration());
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenReturn(LAC);
+        when(bookie.tryReadEntryFromCache(LEDGER_ID, ENTRY_ID, true)).thenAnswer(invocation -> {
+            ByteBuf entry = Unpooled.buffer(32);
+            entry.writeLong(LEDGER_ID);
+            entry.writeLong(ENTRY_ID);
+            entry.writeZero(16);
+            return entry;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private ReadEntryProcessorV3 newProcessor() {
+        Request request = Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.READ_ENTRY)
+                        .setTxnId(1))
+                .setReadRequest(ReadRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setEntryId(ENTRY_ID))
+                .build();
+        return new ReadEntryProcessorV3(request, channel, requestProcessor, null);
+    }
+
+    private void makeChannelUnwritable() {
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(1, 8));
+        // a pending write above the high water mark
+        channel.write(Unpooled.buffer(16).writeZero(16));
+        Assert.assertFalse(channel.isWritable());
+    }
+
+    private Response readResponse() {
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            if (msg instanceof Response) {
+                return (Response) msg;
+            }
+            ((ByteBuf) msg).release();
+        }
+        Assert.fail("No response written");
+        return null;
+    }
+
+    private void assertReadFromCache() {
+        Response response = readResponse();
+        Assert.assertEquals(StatusCode.EOK, response.getStatus());
+        Assert.assertEquals(ENTRY_ID, response.getReadResponse().getEntryId());
+        Assert.assertEquals(LAC, response.getReadResponse().getMaxLAC());
+        verify(requestProcessor).onReadRequestFinish();
+    }
+
+    @Test
+    public void testReadFromCache() throws Exception {
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(1000L);
+
+        Assert.assertTrue(newProcessor().tryReadFromCache());
+        assertReadFromCache();
+    }
+
+    @Test
+    public void testNotReadFromCacheWhenWaitingOnBackpressure() throws Exception {
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(1000L);
+        makeChannelUnwritable();
+
+        // the response would wait for the channel on the IO thread
+        Assert.assertFalse(newProcessor().tryReadFromCache());
+        verify(bookie, never()).tryReadEntryFromCache(anyLong(), anyLong(), anyBoolean());
+        verify(requestProcessor, never()).onReadRequestFinish();
+    }
+
+    @Test
+    public void testReadFromCacheWithoutWaitOnBackpressure() throws Exception {
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+        makeChannelUnwritable();
+
+        Assert.assertTrue(newProcessor().tryReadFromCache());
+        assertReadFromCache();
+    }
+}
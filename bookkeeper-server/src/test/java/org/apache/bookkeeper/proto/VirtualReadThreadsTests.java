@@ -0,0 +1,142 @@
+package org.apache.bookkeeper.proto;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the threads executing the read requests in place of the read worker threads.
+ *
+ * <p>Platform threads stand in for the virtual threads, which the JDK running the tests may not support.
+ */
+public class VirtualReadThreadsTests {
+
+    private final CopyOnWriteArrayList<Thread> createdThreads = new CopyOnWriteArrayList<>();
+    private final ThreadFactory threadFactory = runnable -> {
+        Thread thread = new Thread(runnable, "read-thread-" + createdThreads.size());
+        createdThreads.add(thread);
+        return thread;
+    };
+    private VirtualReadThreads readThreads;
+
+    @After
+    public void tearDown() {
+        if (null != readThreads) {
+            readThreads.shutdown(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testThreadPerRead() throws Exception {
+        readThreads = new VirtualReadThreads(threadFactory, 2, 0, false);
+        Set<Thread> readingThreads = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            readThreads.execute(() -> {
+                readingThreads.add(Thread.currentThread());
+                done.countDown();
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(10, createdThreads.size());
+        Assert.assertEquals(10, readingThreads.size());
+    }
+
+    @Test
+    public void testReadsInProgressBounded() throws Exception {
+        readThreads = new VirtualReadThreads(threadFactory, 2, 0, false);
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            readThreads.execute(() -> {
+                maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inProgress.decrementAndGet();
+                done.countDown();
+            });
+        }
+        // all the reads have their thread, but only 2 of them are in progress
+        Assert.assertEquals(5, createdThreads.size());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (inProgress.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(2, inProgress.get());
+        unblock.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, maxInProgress.get());
+    }
+
+    @Test
+    public void testPendingReadsBounded() throws Exception {
+        readThreads = new VirtualReadThreads(threadFactory, 1, 2, false);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        Runnable read = () -> {
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+        readThreads.execute(read);
+        readThreads.execute(read);
+        try {
+            readThreads.execute(read);
+            Assert.fail("The read should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        unblock.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailedReadReleasesPermit() throws Exception {
+        readThreads = new VirtualReadThreads(threadFactory, 1, 1, false);
+        readThreads.execute(() -> {
+            throw new IllegalStateException("read failure");
+        });
+        createdThreads.get(0).join(10000);
+        // neither the read in progress nor the pending read are left over
+        CountDownLatch done = new CountDownLatch(1);
+        readThreads.execute(done::countDown);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        readThreads = new VirtualReadThreads(threadFactory, 2, 0, false);
+        CountDownLatch done = new CountDownLatch(1);
+        readThreads.execute(done::countDown);
+        // the pending reads are completed
+        readThreads.shutdown(10, TimeUnit.SECONDS);
+        Assert.assertEquals(0, done.getCount());
+        for (Thread thread : createdThreads) {
+            thread.join(10000);
+            Assert.assertFalse(thread.isAlive());
+        }
+        try {
+            readThreads.execute(() -> { });
+            Assert.fail("The read should be rejected after shutdown");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.apache.bookkeeper.proto.checksum;
+
+import com.scurrilous.circe.checksum.Crc32cIntChecksum;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the digests of the entries made of several buffers, e.g. composite buffers.
+ */
+public class DigestManagerTests {
+
+    private static final long LEDGER_ID = 1;
+    private static final long ENTRY_ID = 2;
+    private static final byte[] PASSWORD = "password".getBytes();
+    private static final DigestType[] DIGEST_TYPES = { DigestType.CRC32, DigestType.CRC32C, DigestType.HMAC };
+
+    private static byte[] newData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    /**
+     * A composite buffer holding the data in a direct component followed by a heap one.
+     */
+    private static CompositeByteBuf newComposite(byte[] data) {
+        return newComposite(data, data.length / 3);
+    }
+
+    private static CompositeByteBuf newComposite(byte[] data, int split) {
+        ByteBuf direct = Unpooled.directBuffer(split);
+        direct.writeBytes(data, 0, split);
+        ByteBuf heap = Unpooled.buffer(data.length - split);
+        heap.writeBytes(data, split, data.length - split);
+        return Unpooled.compositeBuffer().addComponents(true, direct, heap);
+    }
+
+    private static DigestManager newDigestManager(DigestType digestType) throws Exception {
+        return DigestManager.instantiate(LEDGER_ID, PASSWORD, digestType, ByteBufAllocator.DEFAULT, false);
+    }
+
+    private static ByteBuf digestHeader(DigestManager digestManager, ByteBuf data) {
+        ByteBufList packaged = digestManager.computeDigestAndPackageForSending(ENTRY_ID, 0, data.readableBytes(),
+                data);
+        try {
+            return Unpooled.copiedBuffer(packaged.getBuffer(0));
+        } finally {
+            packaged.release();
+        }
+    }
+
+    @Test
+    public void testDigestOfComposite() throws Exception {
+        byte[] data = newData(1000);
+        for (DigestType digestType : DIGEST_TYPES) {
+            DigestManager digestManager = newDigestManager(digestType);
+            CompositeByteBuf composite = newComposite(data);
+            Assert.assertTrue(composite.nioBufferCount() > 1);
+
+            Assert.assertEquals(digestType.name(), digestHeader(digestManager, Unpooled.wrappedBuffer(data)),
+                    digestHeader(digestManager, composite));
+        }
+    }
+
+    @Test
+    public void testDigestOfSliceOfComposite() throws Exception {
+        byte[] data = newData(1000);
+        for (DigestType digestType : DIGEST_TYPES) {
+            DigestManager digestManager = newDigestManager(digestType);
+            CompositeByteBuf composite = newComposite(data);
+            // a slice over both components
+            ByteBuf slice = composite.slice(100, 700);
+            Assert.assertTrue(slice.nioBufferCount() > 1);
+
+            Assert.assertEquals(digestType.name(),
+                    digestHeader(digestManager, Unpooled.wrappedBuffer(data, 100, 700)),
+                    digestHeader(digestManager, slice));
+            Assert.assertEquals(0, composite.refCnt());
+        }
+    }
+
+    @Test
+    public void testVerifyCompositeReceived() throws Exception {
+        byte[] data = newData(1000);
+        for (DigestType digestType : DIGEST_TYPES) {
+            DigestManager digestManager = newDigestManager(digestType);
+            ByteBufList packaged = digestManager.computeDigestAndPackageForSending(ENTRY_ID, 0, data.length,
+                    Unpooled.wrappedBuffer(data));
+            byte[] received = ByteBufList.coalesce(packaged).array();
+            packaged.release();
+
+            // the entry is received in two parts, which split its header
+            ByteBuf composite = newComposite(received, DigestManager.METADATA_LENGTH / 2);
+            try {
+                ByteBuf entry = digestManager.verifyDigestAndReturnData(ENTRY_ID, composite);
+                Assert.assertEquals(digestType.name(), Unpooled.wrappedBuffer(data), entry);
+            } finally {
+                composite.release();
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateAll() throws Exception {
+        byte[] data = newData(1000);
+        for (DigestType digestType : DIGEST_TYPES) {
+            DigestManager digestManager = newDigestManager(digestType);
+            ByteBuf expected = Unpooled.buffer(digestManager.getMacCodeLength());
+            ByteBuf actual = Unpooled.buffer(digestManager.getMacCodeLength());
+            CompositeByteBuf composite = newComposite(data);
+            try {
+                digestManager.update(Unpooled.wrappedBuffer(data));
+                digestManager.populateValueAndReset(expected);
+
+                digestManager.updateAll(composite);
+                digestManager.populateValueAndReset(actual);
+                Assert.assertEquals(digestType.name(), expected, actual);
+                // the buffer isn't read
+                Assert.assertEquals(data.length, composite.readableBytes());
+            } finally {
+                composite.release();
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateConsumesNioBuffer() throws Exception {
+        for (DigestType digestType : DIGEST_TYPES) {
+            DigestManager digestManager = newDigestManager(digestType);
+            ByteBuffer buffer = ByteBuffer.wrap(newData(100));
+            buffer.position(10);
+            digestManager.update(buffer);
+            Assert.assertEquals(digestType.name(), buffer.limit(), buffer.position());
+            digestManager.populateValueAndReset(Unpooled.buffer(digestManager.getMacCodeLength()));
+        }
+    }
+
+    @Test
+    public void testResumeChecksumOfNioBuffers() {
+        byte[] data = newData(1000);
+        int previousChecksum = Crc32cIntChecksum.computeChecksum(Unpooled.wrappedBuffer(newData(10)));
+        int expected = Crc32cIntChecksum.resumeChecksum(previousChecksum, Unpooled.wrappedBuffer(data, 100, 800));
+
+        ByteBuffer heap = ByteBuffer.wrap(data);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        for (ByteBuffer buffer : new ByteBuffer[] { heap, direct }) {
+            buffer.limit(900);
+            buffer.position(100);
+            Assert.assertEquals(expected, Crc32cIntChecksum.resumeChecksum(previousChecksum, buffer));
+            // the remaining bytes are consumed, whether they are read from the address of the buffer or not
+            Assert.assertEquals(900, buffer.position());
+            Assert.assertEquals(0, buffer.remaining());
+        }
+    }
+}
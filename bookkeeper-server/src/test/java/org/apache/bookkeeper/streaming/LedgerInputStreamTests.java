@@ -0,0 +1,139 @@
+package org.apache.bookkeeper.streaming;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test cases for the read-ahead of the LedgerInputStream class.
+ */
+public class LedgerInputStreamTests {
+
+    private static final long LEDGER_ID = 1;
+    // 3 batches of entries, the last one partial
+    private static final long LAST_ADD_CONFIRMED = 119;
+
+    private LedgerHandle lh;
+    private final List<ByteBuf> readBuffers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        lh = mock(LedgerHandle.class);
+        when(lh.getId()).thenReturn(LEDGER_ID);
+        when(lh.getLastAddConfirmed()).thenReturn(LAST_ADD_CONFIRMED);
+        when(lh.readAsync(anyLong(), anyLong())).thenAnswer(this::readEntries);
+    }
+
+    private CompletableFuture<LedgerEntries> readEntries(InvocationOnMock invocation) {
+        long first = invocation.getArgument(0);
+        long last = invocation.getArgument(1);
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (long entryId = first; entryId <= last; entryId++) {
+            ByteBuf buf = Unpooled.buffer(1);
+            buf.writeByte((int) entryId);
+            readBuffers.add(buf);
+            entries.add(LedgerEntryImpl.create(LEDGER_ID, entryId, 1, buf));
+        }
+        return CompletableFuture.completedFuture(LedgerEntriesImpl.create(entries));
+    }
+
+    @Test
+    public void testReadAhead() throws Exception {
+        LedgerInputStream in = new LedgerInputStream(lh, 1024, 2);
+        // the window is filled before the first read
+        verify(lh).readAsync(0, 49);
+        verify(lh).readAsync(50, 99);
+        verify(lh, never()).readAsync(100, 119);
+
+        Assert.assertEquals(0, in.read());
+        // the next batch is read while the reader consumes the first one
+        verify(lh).readAsync(100, 119);
+
+        for (long entryId = 1; entryId <= LAST_ADD_CONFIRMED; entryId++) {
+            Assert.assertEquals(entryId, in.read());
+        }
+        Assert.assertEquals(-1, in.read());
+        // the entries are released once copied out
+        for (ByteBuf buf : readBuffers) {
+            Assert.assertEquals(0, buf.refCnt());
+        }
+    }
+
+    @Test
+    public void testReadAheadFailure() throws Exception {
+        when(lh.readAsync(50, 99)).thenAnswer(invocation -> {
+            CompletableFuture<LedgerEntries> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new BKException.BKReadException());
+            return failed;
+        });
+        LedgerInputStream in = new LedgerInputStream(lh, 1024, 2);
+        byte[] b = new byte[1];
+        for (int entryId = 0; entryId < 50; entryId++) {
+            Assert.assertEquals(1, in.read(b));
+            Assert.assertEquals(entryId, b[0]);
+        }
+        try {
+            in.read(b);
+            Assert.fail("The failed read should be reported");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof BKException.BKReadException);
+        }
+    }
+
+    @Test
+    public void testReadRetriedAfterFailure() throws Exception {
+        CompletableFuture<LedgerEntries> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new BKException.BKReadException());
+        // the first read of the second batch fails, the next one succeeds
+        when(lh.readAsync(50, 99)).thenAnswer(new Answer<CompletableFuture<LedgerEntries>>() {
+            private boolean failedOnce;
+
+            @Override
+            public CompletableFuture<LedgerEntries> answer(InvocationOnMock invocation) throws Throwable {
+                if (!failedOnce) {
+                    failedOnce = true;
+                    return failed;
+                }
+                return readEntries(invocation);
+            }
+        });
+        LedgerInputStream in = new LedgerInputStream(lh, 1024, 2);
+        for (long entryId = 0; entryId < 50; entryId++) {
+            Assert.assertEquals(entryId, in.read());
+        }
+        try {
+            in.read();
+            Assert.fail("The failed read should be reported");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof BKException.BKReadException);
+        }
+
+        // the failed batch is read again, none of its entries are skipped
+        for (long entryId = 50; entryId <= LAST_ADD_CONFIRMED; entryId++) {
+            Assert.assertEquals(entryId, in.read());
+        }
+        Assert.assertEquals(-1, in.read());
+        verify(lh, times(2)).readAsync(50, 99);
+    }
+}
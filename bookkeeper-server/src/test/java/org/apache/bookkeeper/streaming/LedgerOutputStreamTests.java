@@ -0,0 +1,179 @@
+package org.apache.bookkeeper.streaming;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the asynchronous adds of the LedgerOutputStream class.
+ */
+public class LedgerOutputStreamTests {
+
+    private static final int BUFFER_SIZE = 10;
+
+    private LedgerHandle lh;
+    // the entries added, and the futures completing their adds
+    private final List<byte[]> entries = new ArrayList<>();
+    private final List<CompletableFuture<Long>> adds = new ArrayList<>();
+    private volatile boolean completeOnAdd = false;
+
+    @Before
+    public void setUp() {
+        lh = mock(LedgerHandle.class);
+        when(lh.appendAsync(any(byte[].class))).thenAnswer(invocation -> {
+            CompletableFuture<Long> add = new CompletableFuture<>();
+            synchronized (entries) {
+                entries.add(invocation.getArgument(0));
+                adds.add(add);
+                entries.notifyAll();
+            }
+            if (completeOnAdd) {
+                add.complete(0L);
+            }
+            return add;
+        });
+    }
+
+    private static byte[] bytes(int from, int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) (from + i);
+        }
+        return b;
+    }
+
+    private void completeAdds() {
+        List<CompletableFuture<Long>> pending;
+        synchronized (entries) {
+            pending = new ArrayList<>(adds);
+        }
+        // outside of the lock, the writer holds the lock of the stream while adding
+        pending.forEach(add -> add.complete(0L));
+    }
+
+    @Test
+    public void testBufferedWritesAddedAsync() {
+        LedgerOutputStream out = new LedgerOutputStream(lh, BUFFER_SIZE, 100);
+        for (int i = 0; i < 5; i++) {
+            out.write(bytes(i * 5, 5), 0, 5);
+        }
+        // the full buffers were sent without waiting for their adds
+        Assert.assertEquals(2, entries.size());
+        Assert.assertArrayEquals(bytes(0, 10), entries.get(0));
+        Assert.assertArrayEquals(bytes(10, 10), entries.get(1));
+
+        completeAdds();
+        completeOnAdd = true;
+        out.flush();
+        Assert.assertEquals(3, entries.size());
+        Assert.assertArrayEquals(bytes(20, 5), entries.get(2));
+    }
+
+    @Test
+    public void testLargeWriteSentDirectly() {
+        LedgerOutputStream out = new LedgerOutputStream(lh, BUFFER_SIZE, 100);
+        byte[] b = bytes(0, 40);
+        out.write(bytes(100, 3));
+        out.write(b, 5, 30);
+        // the caller can reuse its array
+        Arrays.fill(b, (byte) 0);
+
+        Assert.assertEquals(2, entries.size());
+        Assert.assertArrayEquals(bytes(100, 3), entries.get(0));
+        Assert.assertArrayEquals(bytes(5, 30), entries.get(1));
+        // the buffer didn't grow to hold the write
+        Assert.assertEquals(BUFFER_SIZE, out.bbytes.length);
+        completeAdds();
+        out.close();
+    }
+
+    @Test
+    public void testFlushWaitsForOutstandingAdds() throws Exception {
+        LedgerOutputStream out = new LedgerOutputStream(lh, BUFFER_SIZE, 100);
+        out.write(bytes(0, 5));
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(out::flush);
+        synchronized (entries) {
+            while (entries.isEmpty()) {
+                entries.wait();
+            }
+        }
+        Thread.sleep(100);
+        Assert.assertFalse(flushed.isDone());
+
+        completeAdds();
+        flushed.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testWriterWaitsForOutstandingBytes() throws Exception {
+        LedgerOutputStream out = new LedgerOutputStream(lh, BUFFER_SIZE, 2 * BUFFER_SIZE);
+        CompletableFuture<Void> written = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 4; i++) {
+                out.write(bytes(i * 10, 10), 0, 10);
+            }
+        });
+        synchronized (entries) {
+            while (entries.size() < 2) {
+                entries.wait();
+            }
+        }
+        Thread.sleep(100);
+        // the third entry waits for the first adds to complete
+        Assert.assertEquals(2, entries.size());
+        Assert.assertFalse(written.isDone());
+
+        completeAdds();
+        written.get(10, TimeUnit.SECONDS);
+        completeAdds();
+        completeOnAdd = true;
+        out.flush();
+        Assert.assertEquals(4, entries.size());
+    }
+
+    @Test
+    public void testFailedAddReportedUnchecked() {
+        LedgerOutputStream out = new LedgerOutputStream(lh, BUFFER_SIZE, 100);
+        out.write(bytes(0, 10), 0, 10);
+        out.write(bytes(10, 1));
+        adds.get(0).completeExceptionally(new BKException.BKNotEnoughBookiesException());
+
+        try {
+            out.flush();
+            Assert.fail("The failed add should be reported");
+        } catch (UncheckedIOException e) {
+            Assert.assertTrue(e.getCause().getCause() instanceof BKException.BKNotEnoughBookiesException);
+        }
+        // and by the next writes
+        try {
+            out.write(bytes(0, 20), 0, 20);
+            Assert.fail("The failed add should be reported");
+        } catch (UncheckedIOException e) {
+            Assert.assertEquals(1, entries.size());
+        }
+    }
+
+    @Test
+    public void testSynchronousAdds() throws Exception {
+        LedgerOutputStream out = new LedgerOutputStream(lh, BUFFER_SIZE);
+        out.write(bytes(0, 4));
+        out.write(bytes(4, 10), 0, 10);
+        verify(lh).addEntry(bytes(0, 4));
+        out.close();
+        verify(lh).addEntry(bytes(4, 10));
+        verify(lh, never()).appendAsync(any(byte[].class));
+    }
+}
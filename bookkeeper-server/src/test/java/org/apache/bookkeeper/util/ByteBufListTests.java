@@ -0,0 +1,117 @@
+package org.apache.bookkeeper.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the composite buffers added to a ByteBufList.
+ */
+public class ByteBufListTests {
+
+    private static ByteBuf newBuffer(int size, int value) {
+        ByteBuf buffer = Unpooled.buffer(size);
+        while (buffer.isWritable()) {
+            buffer.writeByte(value);
+        }
+        return buffer;
+    }
+
+    @Test
+    public void testComponentsHoldReadableBytes() {
+        ByteBuf first = newBuffer(8, 1);
+        ByteBuf second = newBuffer(8, 2);
+        ByteBuf third = newBuffer(8, 3);
+        CompositeByteBuf composite = Unpooled.compositeBuffer().addComponents(true, first, second, third);
+        // skip the first component and a part of the second one
+        composite.readerIndex(10);
+        composite.writerIndex(20);
+
+        List<ByteBuf> components = ByteBufList.components(composite);
+        try {
+            Assert.assertEquals(2, components.size());
+            Assert.assertEquals(newBuffer(6, 2), components.get(0));
+            Assert.assertEquals(newBuffer(4, 3), components.get(1));
+            // the components are retained
+            Assert.assertEquals(1, first.refCnt());
+            Assert.assertEquals(2, second.refCnt());
+            Assert.assertEquals(2, third.refCnt());
+        } finally {
+            components.forEach(ByteBuf::release);
+            composite.release();
+        }
+        Assert.assertEquals(0, second.refCnt());
+        Assert.assertEquals(0, third.refCnt());
+    }
+
+    @Test
+    public void testAddComposite() {
+        ByteBuf header = newBuffer(4, 0);
+        ByteBuf first = newBuffer(8, 1);
+        ByteBuf second = newBuffer(8, 2);
+        CompositeByteBuf composite = Unpooled.compositeBuffer().addComponents(true, first, second);
+
+        ByteBufList list = ByteBufList.get(header);
+        list.add(composite);
+        Assert.assertEquals(0, composite.refCnt());
+        Assert.assertEquals(3, list.size());
+        Assert.assertEquals(20, list.readableBytes());
+        Assert.assertSame(header, list.getBuffer(0));
+        Assert.assertEquals(first, list.getBuffer(1));
+        Assert.assertEquals(second, list.getBuffer(2));
+        Assert.assertEquals(1, first.refCnt());
+        Assert.assertEquals(1, second.refCnt());
+
+        list.release();
+        Assert.assertEquals(0, header.refCnt());
+        Assert.assertEquals(0, first.refCnt());
+        Assert.assertEquals(0, second.refCnt());
+    }
+
+    @Test
+    public void testPrependComposite() {
+        ByteBuf data = newBuffer(4, 0);
+        ByteBuf first = newBuffer(8, 1);
+        ByteBuf second = newBuffer(8, 2);
+        CompositeByteBuf composite = Unpooled.compositeBuffer().addComponents(true, first, second);
+
+        ByteBufList list = ByteBufList.get(data);
+        list.prepend(composite);
+        Assert.assertEquals(0, composite.refCnt());
+        Assert.assertEquals(3, list.size());
+        Assert.assertEquals(first, list.getBuffer(0));
+        Assert.assertEquals(second, list.getBuffer(1));
+        Assert.assertSame(data, list.getBuffer(2));
+        Assert.assertEquals(1, first.refCnt());
+        Assert.assertEquals(1, second.refCnt());
+
+        list.release();
+        Assert.assertEquals(0, data.refCnt());
+        Assert.assertEquals(0, first.refCnt());
+        Assert.assertEquals(0, second.refCnt());
+    }
+
+    @Test
+    public void testSliceOfCompositeKept() {
+        ByteBuf header = newBuffer(4, 0);
+        ByteBuf first = newBuffer(8, 1);
+        ByteBuf second = newBuffer(8, 2);
+        CompositeByteBuf composite = Unpooled.compositeBuffer().addComponents(true, first, second);
+        ByteBuf slice = composite.retainedSlice(4, 8);
+
+        ByteBufList list = ByteBufList.get(header);
+        list.add(slice);
+        Assert.assertEquals(2, list.size());
+        Assert.assertSame(slice, list.getBuffer(1));
+        Assert.assertEquals(2, composite.refCnt());
+
+        list.release();
+        Assert.assertEquals(1, composite.refCnt());
+        composite.release();
+        Assert.assertEquals(0, first.refCnt());
+        Assert.assertEquals(0, second.refCnt());
+    }
+}
@@ -0,0 +1,146 @@
+package org.apache.bookkeeper.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the ConcurrentLongPairHashMap class.
+ */
+public class ConcurrentLongPairHashMapTests {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentLongPairHashMap<String> map = ConcurrentLongPairHashMap.<String>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(1, 1));
+
+        Assert.assertNull(map.put(1, 1, "one"));
+        Assert.assertNull(map.put(1, 2, "two"));
+        Assert.assertEquals("one", map.put(1, 1, "uno"));
+        Assert.assertEquals("uno", map.putIfAbsent(1, 1, "one"));
+        Assert.assertNull(map.putIfAbsent(2, 1, "three"));
+        Assert.assertEquals(3, map.size());
+        Assert.assertEquals("uno", map.get(1, 1));
+        Assert.assertTrue(map.containsKey(2, 1));
+        Assert.assertFalse(map.containsKey(2, 2));
+
+        // The pair is the key, not each of its halves
+        Assert.assertNull(map.remove(2, 2));
+        Assert.assertFalse(map.remove(1, 2, "other"));
+        Assert.assertTrue(map.remove(1, 2, "two"));
+        Assert.assertEquals("uno", map.remove(1, 1));
+        Assert.assertEquals(1, map.size());
+        Assert.assertNull(map.get(1, 1));
+        Assert.assertEquals("three", map.get(2, 1));
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testNullValueRejected() {
+        ConcurrentLongPairHashMap<String> map = ConcurrentLongPairHashMap.<String>newBuilder().build();
+        try {
+            map.put(1, 1, null);
+            Assert.fail("A null value should be rejected");
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRehash() {
+        ConcurrentLongPairHashMap<Long> map = ConcurrentLongPairHashMap.<Long>newBuilder()
+                .expectedItems(4)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .build();
+        long initialCapacity = map.capacity();
+
+        int n = 1000;
+        for (long i = 0; i < n; i++) {
+            map.put(i, -i, i);
+        }
+        Assert.assertEquals(n, map.size());
+        Assert.assertTrue(map.capacity() > initialCapacity);
+        long expandedCapacity = map.capacity();
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(Long.valueOf(i), map.get(i, -i));
+        }
+
+        for (long i = 0; i < n - 10; i++) {
+            Assert.assertEquals(Long.valueOf(i), map.remove(i, -i));
+        }
+        Assert.assertEquals(10, map.size());
+        Assert.assertTrue(map.capacity() < expandedCapacity);
+        for (long i = n - 10; i < n; i++) {
+            Assert.assertEquals(Long.valueOf(i), map.get(i, -i));
+        }
+    }
+
+    @Test
+    public void testRemoveIf() {
+        ConcurrentLongPairHashMap<Long> map = ConcurrentLongPairHashMap.<Long>newBuilder().build();
+        for (long i = 0; i < 100; i++) {
+            map.put(i % 4, i, i);
+        }
+
+        Assert.assertEquals(25, map.removeIf((key1, key2, value) -> key1 == 2));
+        Assert.assertEquals(75, map.size());
+        map.forEach((key1, key2, value) -> {
+            Assert.assertNotEquals(2, key1);
+            Assert.assertEquals(Long.valueOf(key2), value);
+        });
+        Assert.assertEquals(75, map.values().size());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        ConcurrentLongPairHashMap<Long> map = ConcurrentLongPairHashMap.<Long>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(4)
+                .build();
+        int threads = 8;
+        int keysPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final long thread = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (long i = 0; i < keysPerThread; i++) {
+                        Assert.assertNull(map.put(thread, i, i));
+                    }
+                    // Remove half of the keys of this thread while the others are expanding the map
+                    for (long i = 0; i < keysPerThread; i += 2) {
+                        Assert.assertEquals(Long.valueOf(i), map.remove(thread, i));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(threads * keysPerThread / 2, map.size());
+        for (long t = 0; t < threads; t++) {
+            for (long i = 0; i < keysPerThread; i++) {
+                Assert.assertEquals(i % 2 == 0 ? null : Long.valueOf(i), map.get(t, i));
+            }
+        }
+    }
+}
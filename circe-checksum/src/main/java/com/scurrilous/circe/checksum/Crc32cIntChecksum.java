@@ -24,7 +24,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.scurrilous.circe.IncrementalIntHash;
 import com.scurrilous.circe.crc.Sse42Crc32C;
 import com.scurrilous.circe.crc.StandardCrcProvider;
+import com.scurrilous.circe.impl.DirectByteBufferAccessLoader;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,9 +80,39 @@ public class Crc32cIntChecksum {
         } else if (payload.hasArray()) {
             return CRC32C_HASH.resume(previousChecksum, payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
+        } else if (payload.nioBufferCount() > 1) {
+            // e.g. a composite buffer: checksum its buffers one after the other, rather than merging them
+            int checksum = previousChecksum;
+            for (ByteBuffer buffer : payload.nioBuffers()) {
+                checksum = resumeChecksum(checksum, buffer);
+            }
+            return checksum;
         } else {
-            return CRC32C_HASH.resume(previousChecksum, payload.nioBuffer());
+            return resumeChecksum(previousChecksum, payload.nioBuffer());
         }
     }
 
+    /**
+     * Computes incremental checksum with input previousChecksum and the remaining bytes of input payload.
+     * Direct buffers are read from their memory address when it is available, without being copied.
+     * Like {@link java.util.zip.Checksum#update(ByteBuffer)}, the position of the payload is moved to its
+     * limit, whichever way it is read.
+     *
+     * @param previousChecksum : previously computed checksum
+     * @param payload
+     * @return
+     */
+    public static int resumeChecksum(int previousChecksum, ByteBuffer payload) {
+        int checksum;
+        long address = payload.isDirect() && (CRC32C_HASH instanceof Sse42Crc32C)
+                ? DirectByteBufferAccessLoader.getAddress(payload) : 0;
+        if (address != 0) {
+            checksum = CRC32C_HASH.resume(previousChecksum, address + payload.position(), payload.remaining());
+        } else {
+            checksum = CRC32C_HASH.resume(previousChecksum, payload);
+        }
+        payload.position(payload.limit());
+        return checksum;
+    }
+
 }
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for the {@link EntryLogger}.
+ *
+ * <p>The entry logs are created in a temporary directory under <code>baseDir</code>, which should
+ * be a tmpfs mount big enough for the entries written in one iteration. The number of threads can
+ * be changed with the <code>-t</code> option, e.g. <code>./run.sh EntryLoggerBenchmark -t 4</code>.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EntryLoggerBenchmark {
+
+    private static final int LEDGERS = 100;
+    private static final long PREFILLED_BYTES = 256 * 1024 * 1024;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"/dev/shm"})
+        private String baseDir;
+
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        private final AtomicLong nextLedgerId = new AtomicLong();
+
+        File dir;
+        EntryLogger entryLogger;
+
+        void createEntryLogger(boolean mmapReadEnabled) throws Exception {
+            dir = StorageBenchmarkUtils.createTempDir(baseDir, "bk-entrylogger");
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { dir.getAbsolutePath() });
+            conf.setEntryLogMmapReadEnabled(mmapReadEnabled);
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, new File[] { dir },
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+            entryLogger = new EntryLogger(conf, ledgerDirsManager);
+        }
+
+        void closeEntryLogger() throws Exception {
+            entryLogger.shutdown();
+            StorageBenchmarkUtils.deleteDir(dir);
+        }
+    }
+
+    /**
+     * The entry logger used to add entries is recreated on each iteration, to bound the space used.
+     */
+    @State(Scope.Benchmark)
+    public static class AddState {
+        private TestState s;
+
+        @Setup(Level.Iteration)
+        public void setup(TestState s) throws Exception {
+            this.s = s;
+            s.createEntryLogger(false);
+        }
+
+        @TearDown(Level.Iteration)
+        public void teardown() throws Exception {
+            s.closeEntryLogger();
+        }
+    }
+
+    /**
+     * Each thread adds the entries of its own ledger.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) {
+            ledgerId = LEDGERS + s.nextLedgerId.getAndIncrement();
+            entry = StorageBenchmarkUtils.createEntry(ledgerId, 0, s.entrySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    /**
+     * The entries to read are written once, in an entry log which is then rotated and flushed.
+     */
+    @State(Scope.Benchmark)
+    public static class ReadState {
+        @Param({"false", "true"})
+        private boolean mmapReadEnabled;
+
+        private TestState s;
+        private int entriesPerLedger;
+        private long[] locations;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) throws Exception {
+            this.s = s;
+            s.createEntryLogger(mmapReadEnabled);
+
+            entriesPerLedger = (int) Math.max(1, PREFILLED_BYTES / s.entrySize / LEDGERS);
+            locations = new long[LEDGERS * entriesPerLedger];
+            for (int entryId = 0; entryId < entriesPerLedger; entryId++) {
+                for (int ledgerId = 0; ledgerId < LEDGERS; ledgerId++) {
+                    ByteBuf entry = StorageBenchmarkUtils.createEntry(ledgerId, entryId, s.entrySize);
+                    try {
+                        locations[ledgerId * entriesPerLedger + entryId] =
+                                s.entryLogger.addEntry(ledgerId, entry, false);
+                    } finally {
+                        entry.release();
+                    }
+                }
+            }
+
+            // Seal the entry log, so that it's read like most of the logs of a bookie
+            ((EntryLogManagerBase) s.entryLogger.getEntryLogManager()).createNewLog(EntryLogger.UNASSIGNED_LEDGERID);
+            s.entryLogger.flush();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            s.closeEntryLogger();
+        }
+    }
+
+    @Benchmark
+    public long addEntry(AddState a, WriterState w) throws Exception {
+        return a.s.entryLogger.addEntry(w.ledgerId, w.entry, true);
+    }
+
+    @Benchmark
+    public void readEntry(ReadState r, Blackhole bh) throws Exception {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int ledgerId = rnd.nextInt(LEDGERS);
+        int entryId = rnd.nextInt(r.entriesPerLedger);
+        long location = r.locations[ledgerId * r.entriesPerLedger + entryId];
+        ByteBuf entry = r.s.entryLogger.readEntry(ledgerId, entryId, location);
+        bh.consume(entry.getLong(8));
+        entry.release();
+    }
+}
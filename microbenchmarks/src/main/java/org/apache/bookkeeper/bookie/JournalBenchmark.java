@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the {@link Journal}, measuring the adds acknowledged after the force write.
+ *
+ * <p>The journal is created in a temporary directory under <code>baseDir</code>, which should be a
+ * tmpfs mount, so that the measurements only include the journal overhead and the group commit. The
+ * number of concurrent writers can be changed with the <code>-t</code> option, e.g.
+ * <code>./run.sh JournalBenchmark -t 16</code>.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class JournalBenchmark {
+
+    /**
+     * State holder of the test. The journal is recreated on each iteration, to bound the space used.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"/dev/shm"})
+        private String baseDir;
+
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"false", "true"})
+        private boolean groupCommitAutoTuning;
+
+        private final AtomicLong nextLedgerId = new AtomicLong();
+
+        private File dir;
+        private Journal journal;
+
+        @Setup(Level.Iteration)
+        public void setup() throws Exception {
+            dir = StorageBenchmarkUtils.createTempDir(baseDir, "bk-journal");
+            File journalDir = new File(dir, "journal");
+            File ledgerDir = new File(dir, "ledgers");
+            if (!journalDir.mkdirs() || !ledgerDir.mkdirs()) {
+                throw new IllegalStateException("Failed to create the directories in " + dir);
+            }
+
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setJournalDirName(journalDir.getAbsolutePath());
+            conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+            conf.setJournalGroupCommitAutoTuning(groupCommitAutoTuning);
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, new File[] { ledgerDir },
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+
+            journal = new Journal(0, journalDir, conf, ledgerDirsManager);
+            journal.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void teardown() throws Exception {
+            journal.shutdown();
+            StorageBenchmarkUtils.deleteDir(dir);
+        }
+    }
+
+    /**
+     * Each thread adds the entries of its own ledger, like the clients of a bookie.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private long entryId;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) {
+            ledgerId = s.nextLedgerId.getAndIncrement();
+            entry = StorageBenchmarkUtils.createEntry(ledgerId, 0, s.entrySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public int logAddEntry(TestState s, WriterState w) throws Exception {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        s.journal.logAddEntry(w.ledgerId, w.entryId++, w.entry, false /* ackBeforeSync */,
+                (rc, ledgerId, entryId, addr, ctx) -> future.complete(rc), null);
+        return future.get();
+    }
+}
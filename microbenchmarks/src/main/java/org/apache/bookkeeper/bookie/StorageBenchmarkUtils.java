@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Helpers shared by the storage benchmarks.
+ */
+public class StorageBenchmarkUtils {
+
+    private StorageBenchmarkUtils() {
+    }
+
+    /**
+     * Create a temporary directory in the given base directory, which should be a tmpfs mount
+     * to keep the device out of the measurements. Falls back to the default temporary directory
+     * if the base directory doesn't exist.
+     */
+    public static File createTempDir(String baseDir, String prefix) throws IOException {
+        Path base = Paths.get(baseDir);
+        if (Files.isDirectory(base)) {
+            return Files.createTempDirectory(base, prefix).toFile();
+        } else {
+            return Files.createTempDirectory(prefix).toFile();
+        }
+    }
+
+    public static void deleteDir(File dir) throws IOException {
+        if (dir == null || !dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Create an entry with the ledger id and entry id header expected by the storage, followed
+     * by random data.
+     */
+    public static ByteBuf createEntry(long ledgerId, long entryId, int entrySize) {
+        ByteBuf entry = Unpooled.directBuffer(entrySize, entrySize);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        byte[] data = new byte[entrySize - entry.readableBytes()];
+        ThreadLocalRandom.current().nextBytes(data);
+        entry.writeBytes(data);
+        return entry;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the {@link ArrayGroupSort}, as used to sort the entries of the write cache
+ * before a flush.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ArrayGroupSortBenchmark {
+
+    private static final ArrayGroupSort SORTER = new ArrayGroupSort(2, 4);
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"1000", "100000"})
+        private int entries;
+
+        @Param({"10", "1000"})
+        private int ledgers;
+
+        private long[] unsorted;
+        private long[] array;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long[] nextEntryId = new long[ledgers];
+            unsorted = new long[entries * 4];
+            array = new long[entries * 4];
+            for (int i = 0; i < entries; i++) {
+                // The entries of a ledger are mostly added in order, interleaved with the other ledgers
+                int ledgerId = rnd.nextInt(ledgers);
+                unsorted[i * 4] = ledgerId;
+                unsorted[i * 4 + 1] = nextEntryId[ledgerId]++;
+                unsorted[i * 4 + 2] = i * 128L;
+                unsorted[i * 4 + 3] = 100;
+            }
+        }
+    }
+
+    /**
+     * Sort a copy of the unsorted array, the copy is included in the measured time.
+     */
+    @Benchmark
+    public long[] sort(TestState s) {
+        System.arraycopy(s.unsorted, 0, s.array, 0, s.unsorted.length);
+        SORTER.sort(s.array);
+        return s.array;
+    }
+}
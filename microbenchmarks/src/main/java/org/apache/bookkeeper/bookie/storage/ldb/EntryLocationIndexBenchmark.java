@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.bookie.StorageBenchmarkUtils;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the {@link EntryLocationIndex}, backed by RocksDB.
+ *
+ * <p>The index is created in a temporary directory under <code>baseDir</code>, which should be a
+ * tmpfs mount. The number of threads can be changed with the <code>-t</code> option.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EntryLocationIndexBenchmark {
+
+    private static final int LEDGERS = 100;
+    private static final int ENTRIES_PER_LEDGER = 10_000;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"/dev/shm"})
+        private String baseDir;
+
+        // Relative to the microbenchmarks directory, where run.sh is executed
+        @Param({"../conf/entry_location_rocksdb.conf"})
+        private String rocksdbConf;
+
+        @Param({"100", "1000"})
+        private int batchSize;
+
+        @Param({"0", "1000000"})
+        private long locationCacheMaxEntries;
+
+        private File dir;
+        private EntryLocationIndex index;
+        private final AtomicLong nextLedgerId = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dir = StorageBenchmarkUtils.createTempDir(baseDir, "bk-location-index");
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setEntryLocationRocksdbConf(rocksdbConf);
+            conf.setProperty(EntryLocationIndex.LOCATION_CACHE_MAX_ENTRIES, locationCacheMaxEntries);
+            index = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory, dir.getAbsolutePath(),
+                    NullStatsLogger.INSTANCE);
+
+            for (int ledgerId = 0; ledgerId < LEDGERS; ledgerId++) {
+                try (Batch batch = index.newBatch()) {
+                    for (int entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+                        index.addLocation(batch, ledgerId, entryId, location(ledgerId, entryId));
+                    }
+                    batch.flush();
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            index.close();
+            StorageBenchmarkUtils.deleteDir(dir);
+        }
+    }
+
+    /**
+     * Each thread adds the locations of its own ledger, like the flushes of different storage directories.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private long entryId;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) {
+            ledgerId = LEDGERS + s.nextLedgerId.getAndIncrement();
+        }
+    }
+
+    private static long location(long ledgerId, long entryId) {
+        return (ledgerId << 32) | (entryId * 128);
+    }
+
+    @Benchmark
+    public long getLocation(TestState s) throws Exception {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return s.index.getLocation(rnd.nextInt(LEDGERS), rnd.nextInt(ENTRIES_PER_LEDGER));
+    }
+
+    @Benchmark
+    public void addLocationBatch(TestState s, WriterState w) throws Exception {
+        try (Batch batch = s.index.newBatch()) {
+            for (int i = 0; i < s.batchSize; i++) {
+                long entryId = w.entryId++;
+                s.index.addLocation(batch, w.ledgerId, entryId, location(w.ledgerId, entryId));
+            }
+            batch.flush();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.bookie.StorageBenchmarkUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for the {@link ReadCache}.
+ *
+ * <p>The number of threads can be changed with the <code>-t</code> option, e.g.
+ * <code>./run.sh ReadCacheBenchmark -t 4</code>.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ReadCacheBenchmark {
+
+    private static final long CACHE_SIZE = 256 * 1024 * 1024;
+    private static final int PREFILLED_ENTRIES = 10_000;
+    private static final int LEDGERS = 100;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"false", "true"})
+        private boolean frequencyAdmission;
+
+        private ReadCache cache;
+        private ByteBuf entry;
+        private int prefilledEntries;
+        private final AtomicLong nextLedgerId = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cache = new ReadCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE, frequencyAdmission);
+            entry = StorageBenchmarkUtils.createEntry(0, 0, entrySize);
+
+            // Only fill a fraction of the cache, so that the entries are not evicted by the puts
+            // of the warmup
+            prefilledEntries = (int) Math.min(PREFILLED_ENTRIES, CACHE_SIZE / 4 / entrySize);
+            for (int i = 0; i < prefilledEntries; i++) {
+                cache.put(i % LEDGERS, i / LEDGERS, entry);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+            entry.release();
+        }
+    }
+
+    /**
+     * Each thread writes to its own ledger, like the read-ahead of different ledgers.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private long entryId;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) {
+            ledgerId = LEDGERS + s.nextLedgerId.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public boolean put(TestState s, WriterState w) {
+        return s.cache.put(w.ledgerId, w.entryId++, s.entry);
+    }
+
+    @Benchmark
+    public void get(TestState s, Blackhole bh) {
+        int i = ThreadLocalRandom.current().nextInt(s.prefilledEntries);
+        ByteBuf entry = s.cache.get(i % LEDGERS, i / LEDGERS);
+        if (entry != null) {
+            bh.consume(entry.getLong(0));
+            entry.release();
+        }
+    }
+}
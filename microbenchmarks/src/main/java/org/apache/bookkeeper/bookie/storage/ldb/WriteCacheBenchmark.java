@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.bookie.StorageBenchmarkUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for the {@link WriteCache}.
+ *
+ * <p>The number of threads can be changed with the <code>-t</code> option, e.g.
+ * <code>./run.sh WriteCacheBenchmark -t 4</code>.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class WriteCacheBenchmark {
+
+    private static final long CACHE_SIZE = 256 * 1024 * 1024;
+    private static final int PREFILLED_ENTRIES = 10_000;
+    private static final int LEDGERS = 100;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        private WriteCache cache;
+        private ByteBuf entry;
+        private int prefilledEntries;
+        private final AtomicLong nextLedgerId = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cache = new WriteCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE);
+            entry = StorageBenchmarkUtils.createEntry(0, 0, entrySize);
+        }
+
+        @Setup(Level.Iteration)
+        public void prefill() {
+            cache.clear();
+            prefilledEntries = (int) Math.min(PREFILLED_ENTRIES, CACHE_SIZE / 2 / WriteCache.align64(entrySize));
+            for (int i = 0; i < prefilledEntries; i++) {
+                cache.put(i % LEDGERS, i / LEDGERS, entry);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+            entry.release();
+        }
+
+        void putOrClear(long ledgerId, long entryId) {
+            if (!cache.put(ledgerId, entryId, entry)) {
+                // Clearing races with the puts of the other threads, which is harmless as
+                // the content of the cache is never read back by this benchmark
+                synchronized (this) {
+                    if (!cache.put(ledgerId, entryId, entry)) {
+                        cache.clear();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Each thread writes to its own ledger, like the clients of a bookie.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private long entryId;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) {
+            ledgerId = LEDGERS + s.nextLedgerId.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void put(TestState s, WriterState w) {
+        s.putOrClear(w.ledgerId, w.entryId++);
+    }
+
+    @Benchmark
+    public void get(TestState s, Blackhole bh) {
+        int i = ThreadLocalRandom.current().nextInt(s.prefilledEntries);
+        ByteBuf entry = s.cache.get(i % LEDGERS, i / LEDGERS);
+        if (entry != null) {
+            bh.consume(entry.getLong(0));
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void forEach(TestState s, Blackhole bh) {
+        s.cache.forEach((ledgerId, entryId, entry) -> bh.consume(entryId));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.util.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.client.BKException.BKNotEnoughBookiesException;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.net.DNSToSwitchMapping;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarking the selection of ensembles by the rack aware placement policy, with clusters of
+ * different sizes.
+ */
+@BenchmarkMode({Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EnsemblePlacementBenchmark {
+
+    private static final int BOOKIES_PER_RACK = 20;
+
+    @Param({"100", "1000", "5000"})
+    int numBookies;
+
+    @Param({"3", "6"})
+    int ensembleSize;
+
+    HashedWheelTimer timer;
+    RackawareEnsemblePlacementPolicy policy;
+    List<BookieId> ensemble;
+
+    /**
+     * Resolves the bookie 10.a.b.c to the rack /rack-a-b.
+     */
+    static class StaticRackMapping implements DNSToSwitchMapping {
+        @Override
+        public List<String> resolve(List<String> names) {
+            List<String> racks = new ArrayList<>(names.size());
+            for (String name : names) {
+                String[] parts = name.split("\\.");
+                racks.add("/rack-" + parts[1] + "-" + parts[2]);
+            }
+            return racks;
+        }
+
+        @Override
+        public void reloadCachedMappings() {
+        }
+
+        @Override
+        public boolean useHostName() {
+            return false;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        timer = new HashedWheelTimer();
+        policy = new RackawareEnsemblePlacementPolicy();
+        policy.initialize(new ClientConfiguration(), Optional.of(new StaticRackMapping()), timer,
+                new SettableFeatureProvider("", 0), NullStatsLogger.INSTANCE,
+                BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+
+        Set<BookieId> bookies = new HashSet<>();
+        for (int i = 0; i < numBookies; i++) {
+            int rack = i % (numBookies / BOOKIES_PER_RACK);
+            int host = i / (numBookies / BOOKIES_PER_RACK) + 1;
+            bookies.add(BookieId.parse("10." + (rack / 250) + "." + (rack % 250) + "." + host + ":3181"));
+        }
+        policy.onClusterChanged(bookies, new HashSet<>());
+        ensemble = newEnsemble();
+    }
+
+    @TearDown
+    public void teardown() {
+        policy.uninitalize();
+        timer.stop();
+    }
+
+    @Benchmark
+    public List<BookieId> newEnsemble() throws BKNotEnoughBookiesException {
+        return policy.newEnsemble(ensembleSize, ensembleSize, ensembleSize / 2 + 1, null, new HashSet<>())
+                .getResult();
+    }
+
+    @Benchmark
+    public BookieId replaceBookie() throws BKNotEnoughBookiesException {
+        return policy.replaceBookie(ensembleSize, ensembleSize, ensembleSize / 2 + 1, null, ensemble,
+                ensemble.get(0), new HashSet<>()).getResult();
+    }
+}
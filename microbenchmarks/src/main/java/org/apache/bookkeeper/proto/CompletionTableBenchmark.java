@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.util.Recycler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarking the tables tracking the pending requests of a channel.
+ *
+ * <p>Compares the completion key objects in a {@link ConcurrentOpenHashMap}, as
+ * {@link PerChannelBookieClient} used to track the requests, with the primitive keys of
+ * {@link ConcurrentLongHashMap} (v3, by txnId) and {@link ConcurrentLongPairHashMap}
+ * (v2, by ledgerId/entryId). Each operation sends a request and completes the oldest pending
+ * one: the completion is added, looked up when the write completes and removed by the response.
+ *
+ * <p>The threads share the same table, use more threads (JMH -t) to measure the contention.
+ */
+@BenchmarkMode({Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CompletionTableBenchmark {
+
+    @Param({"object", "primitive"})
+    String table;
+
+    @Param({"v3", "v2"})
+    String protocol;
+
+    @Param({"1000"})
+    int pendingPerThread;
+
+    private static final Object COMPLETION = new Object();
+
+    private final AtomicLong txnIdGenerator = new AtomicLong(0);
+    private final AtomicLong ledgerIdGenerator = new AtomicLong(0);
+    private CompletionTable completionTable;
+
+    interface CompletionTable {
+        void put(long txnId, long ledgerId, long entryId);
+
+        Object get(long txnId, long ledgerId, long entryId);
+
+        Object remove(long txnId, long ledgerId, long entryId);
+    }
+
+    static final class V3Key {
+        final long txnId;
+        final int operationType;
+
+        V3Key(long txnId, int operationType) {
+            this.txnId = txnId;
+            this.operationType = operationType;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof V3Key)) {
+                return false;
+            }
+            V3Key that = (V3Key) obj;
+            return this.txnId == that.txnId && this.operationType == that.operationType;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) txnId;
+        }
+    }
+
+    static final class V2Key {
+        private static final Recycler<V2Key> RECYCLER = new Recycler<V2Key>() {
+            @Override
+            protected V2Key newObject(Handle<V2Key> handle) {
+                return new V2Key(handle);
+            }
+        };
+
+        private final Recycler.Handle<V2Key> handle;
+        long ledgerId;
+        long entryId;
+
+        private V2Key(Recycler.Handle<V2Key> handle) {
+            this.handle = handle;
+        }
+
+        static V2Key get(long ledgerId, long entryId) {
+            V2Key key = RECYCLER.get();
+            key.ledgerId = ledgerId;
+            key.entryId = entryId;
+            return key;
+        }
+
+        void release() {
+            handle.recycle(this);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof V2Key)) {
+                return false;
+            }
+            V2Key that = (V2Key) obj;
+            return this.ledgerId == that.ledgerId && this.entryId == that.entryId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ledgerId) * 31 + Long.hashCode(entryId);
+        }
+    }
+
+    static final class ObjectV3Table implements CompletionTable {
+        private final ConcurrentOpenHashMap<V3Key, Object> map =
+                ConcurrentOpenHashMap.<V3Key, Object>newBuilder().build();
+
+        @Override
+        public void put(long txnId, long ledgerId, long entryId) {
+            map.putIfAbsent(new V3Key(txnId, 1), COMPLETION);
+        }
+
+        @Override
+        public Object get(long txnId, long ledgerId, long entryId) {
+            return map.get(new V3Key(txnId, 1));
+        }
+
+        @Override
+        public Object remove(long txnId, long ledgerId, long entryId) {
+            V3Key key = new V3Key(txnId, 1);
+            Object value = map.get(key);
+            map.remove(key);
+            return value;
+        }
+    }
+
+    static final class PrimitiveV3Table implements CompletionTable {
+        private final ConcurrentLongHashMap<Object> map =
+                ConcurrentLongHashMap.<Object>newBuilder().build();
+
+        @Override
+        public void put(long txnId, long ledgerId, long entryId) {
+            map.putIfAbsent(txnId, COMPLETION);
+        }
+
+        @Override
+        public Object get(long txnId, long ledgerId, long entryId) {
+            return map.get(txnId);
+        }
+
+        @Override
+        public Object remove(long txnId, long ledgerId, long entryId) {
+            return map.remove(txnId);
+        }
+    }
+
+    static final class ObjectV2Table implements CompletionTable {
+        private final ConcurrentOpenHashMap<V2Key, Object> map =
+                ConcurrentOpenHashMap.<V2Key, Object>newBuilder().build();
+
+        @Override
+        public void put(long txnId, long ledgerId, long entryId) {
+            // the key is held by the map until the request completes
+            map.putIfAbsent(V2Key.get(ledgerId, entryId), COMPLETION);
+        }
+
+        @Override
+        public Object get(long txnId, long ledgerId, long entryId) {
+            V2Key key = V2Key.get(ledgerId, entryId);
+            Object value = map.get(key);
+            key.release();
+            return value;
+        }
+
+        @Override
+        public Object remove(long txnId, long ledgerId, long entryId) {
+            V2Key key = V2Key.get(ledgerId, entryId);
+            Object value = map.remove(key);
+            key.release();
+            return value;
+        }
+    }
+
+    static final class PrimitiveV2Table implements CompletionTable {
+        private final ConcurrentLongPairHashMap<Object> map =
+                ConcurrentLongPairHashMap.<Object>newBuilder().build();
+
+        @Override
+        public void put(long txnId, long ledgerId, long entryId) {
+            map.putIfAbsent(ledgerId, entryId, COMPLETION);
+        }
+
+        @Override
+        public Object get(long txnId, long ledgerId, long entryId) {
+            return map.get(ledgerId, entryId);
+        }
+
+        @Override
+        public Object remove(long txnId, long ledgerId, long entryId) {
+            return map.remove(ledgerId, entryId);
+        }
+    }
+
+    /**
+     * The requests pending on a thread: a window of consecutive entries of its own ledger.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        long ledgerId;
+        long nextEntryId;
+        long[] txnIds;
+
+        @Setup
+        public void setup(CompletionTableBenchmark benchmark) {
+            ledgerId = benchmark.ledgerIdGenerator.incrementAndGet();
+            txnIds = new long[benchmark.pendingPerThread];
+            for (int i = 0; i < txnIds.length; i++) {
+                benchmark.send(this);
+            }
+        }
+    }
+
+    @Setup
+    public void prepare() {
+        boolean v3 = "v3".equals(protocol);
+        if ("object".equals(table)) {
+            completionTable = v3 ? new ObjectV3Table() : new ObjectV2Table();
+        } else {
+            completionTable = v3 ? new PrimitiveV3Table() : new PrimitiveV2Table();
+        }
+    }
+
+    private void send(ThreadState state) {
+        long entryId = state.nextEntryId++;
+        long txnId = txnIdGenerator.incrementAndGet();
+        state.txnIds[(int) (entryId % state.txnIds.length)] = txnId;
+        completionTable.put(txnId, state.ledgerId, entryId);
+        completionTable.get(txnId, state.ledgerId, entryId);
+    }
+
+    @Benchmark
+    public Object sendAndComplete(ThreadState state) {
+        // complete the oldest request, then reuse its slot in the window
+        long entryId = state.nextEntryId - state.txnIds.length;
+        long txnId = state.txnIds[(int) (entryId % state.txnIds.length)];
+        Object completion = completionTable.remove(txnId, state.ledgerId, entryId);
+        send(state);
+        return completion;
+    }
+}
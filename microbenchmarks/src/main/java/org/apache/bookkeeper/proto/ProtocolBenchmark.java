@@ -20,11 +20,13 @@ package org.apache.bookkeeper.proto;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistry;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
 
+import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
@@ -37,14 +39,17 @@ import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
 import org.apache.bookkeeper.util.ByteBufList;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.slf4j.MDC;
 
 /**
@@ -65,10 +70,31 @@ public class ProtocolBenchmark {
     short flags;
     EnDecoder reqEnDeV2;
     EnDecoder reqEnDeV3;
+    EnDecoder reqDecoderV3;
+    ByteBuf addEntryV2Packet;
+    ByteBuf addEntryV3Packet;
+    ByteBuf addEntryV3HeapPacket;
+
+    /**
+     * Counts the bytes of the payloads copied out of the packets while decoding them. The count is
+     * reported as a rate like the throughput, so the bytes copied per op are the count divided by the
+     * throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class CopyCounters {
+        public long bytesCopied;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesCopied = 0;
+        }
+    }
 
     @Setup
-    public void prepare() {
-        this.masterKey = "test-benchmark-key".getBytes(UTF_8);
+    public void prepare() throws Exception {
+        // the master keys are digests of MASTER_KEY_LENGTH bytes, the V2 protocol doesn't encode other lengths
+        this.masterKey = Arrays.copyOf("test-benchmark-key".getBytes(UTF_8), BookieProtocol.MASTER_KEY_LENGTH);
         Random r = new Random(System.currentTimeMillis());
         byte[] data = new byte[this.size];
         r.nextBytes(data);
@@ -80,6 +106,46 @@ public class ProtocolBenchmark {
         // prepare the encoder
         this.reqEnDeV2 = new RequestEnDeCoderPreV3(null);
         this.reqEnDeV3 = new RequestEnDecoderV3(null);
+        this.reqDecoderV3 = new RequestEnDecoderV3(ExtensionRegistry.newInstance());
+
+        // prepare the packets to decode, as received from the network. the entries start with their
+        // ledger and entry ids, which the decoders read.
+        ByteBuf payload = Unpooled.buffer(16 + size);
+        payload.writeLong(ledgerId).writeLong(entryId).writeBytes(data);
+        ByteBufList addEntryV2 = (ByteBufList) reqEnDeV2.encode(BookieProtocol.AddRequest.create(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, ledgerId, entryId, flags, masterKey,
+                ByteBufList.get(payload.retainedSlice())), ByteBufAllocator.DEFAULT);
+        ByteBuf coalesced = ByteBufList.coalesce(addEntryV2);
+        this.addEntryV2Packet = ByteBufAllocator.DEFAULT.directBuffer(coalesced.readableBytes());
+        addEntryV2Packet.writeBytes(coalesced);
+        coalesced.release();
+        addEntryV2.release();
+        this.addEntryV3Packet = (ByteBuf) reqEnDeV3.encode(newAddRequestV3(payload), ByteBufAllocator.DEFAULT);
+        this.addEntryV3HeapPacket = Unpooled.copiedBuffer(addEntryV3Packet);
+        payload.release();
+    }
+
+    private Request newAddRequestV3(ByteBuf payload) {
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.ADD_ENTRY)
+                .setTxnId(0L);
+        AddRequest.Builder addBuilder = AddRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setEntryId(entryId)
+                .setMasterKey(ByteString.copyFrom(masterKey))
+                .setBody(ByteString.copyFrom(payload.nioBuffer()));
+        return Request.newBuilder()
+                .setHeader(headerBuilder)
+                .setAddRequest(addBuilder)
+                .build();
+    }
+
+    @TearDown
+    public void cleanup() {
+        ReferenceCountUtil.release(addEntryV2Packet);
+        ReferenceCountUtil.release(addEntryV3Packet);
+        ReferenceCountUtil.release(addEntryV3HeapPacket);
     }
 
 
@@ -197,4 +263,50 @@ public class ProtocolBenchmark {
         Object res = this.reqEnDeV3.encode(request, ByteBufAllocator.DEFAULT);
         ReferenceCountUtil.release(res);
     }
+
+    @Benchmark
+    public void testDecodeAddEntryV2(CopyCounters counters) throws Exception {
+        ByteBuf frame = addEntryV2Packet.retainedDuplicate();
+        try {
+            BookieProtocol.ParsedAddRequest req = (BookieProtocol.ParsedAddRequest) reqEnDeV2.decode(frame);
+            // the master key is copied out of the packet, the entry is the packet itself
+            counters.bytesCopied += req.getMasterKey().length;
+            req.getData().release();
+            req.release();
+            req.recycle();
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    public void testDecodeAddEntryV3(CopyCounters counters) throws Exception {
+        decodeAddEntryV3(addEntryV3Packet, counters);
+    }
+
+    /**
+     * Decode the packets which can't be aliased, i.e. which are copied like all the packets used to be.
+     */
+    @Benchmark
+    public void testDecodeAddEntryV3FromHeap(CopyCounters counters) throws Exception {
+        decodeAddEntryV3(addEntryV3HeapPacket, counters);
+    }
+
+    private void decodeAddEntryV3(ByteBuf packet, CopyCounters counters) throws Exception {
+        ByteBuf frame = packet.retainedDuplicate();
+        try {
+            AddRequest addRequest = ((Request) reqDecoderV3.decode(frame)).getAddRequest();
+            // get the entry to add like the bookie does
+            ByteBuf entryToAdd = BookieProtoEncoding.retainedSlice(frame, addRequest.getBody());
+            counters.bytesCopied += copiedBytes(frame, addRequest.getMasterKey())
+                    + copiedBytes(frame, addRequest.getBody());
+            entryToAdd.release();
+        } finally {
+            frame.release();
+        }
+    }
+
+    private static int copiedBytes(ByteBuf frame, ByteString bytes) {
+        return BookieProtoEncoding.aliasedIndex(frame, bytes) < 0 ? bytes.size() : 0;
+    }
 }
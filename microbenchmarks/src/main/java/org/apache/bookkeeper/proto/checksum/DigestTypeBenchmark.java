@@ -30,6 +30,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.apache.bookkeeper.util.ByteBufList;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -63,7 +64,8 @@ public class DigestTypeBenchmark {
     public enum BufferType {
         ARRAY_BACKED,
         NOT_ARRAY_BACKED,
-        BYTE_BUF_DEFAULT_ALLOC
+        BYTE_BUF_DEFAULT_ALLOC,
+        COMPOSITE_DIRECT
     }
 
     /**
@@ -75,6 +77,8 @@ public class DigestTypeBenchmark {
         CRC32_C,
     }
 
+    static final int COMPOSITE_COMPONENTS = 4;
+
     static byte[] randomBytes(int sz) {
         byte[] b = new byte[sz];
         ThreadLocalRandom.current().nextBytes(b);
@@ -101,6 +105,7 @@ public class DigestTypeBenchmark {
         private ByteBuf arrayBackedBuffer;
         private CompositeByteBuf notArrayBackedBuffer;
         private ByteBuf byteBufDefaultAlloc;
+        private CompositeByteBuf compositeDirectBuffer;
 
         public ByteBuf digestBuf;
 
@@ -128,6 +133,16 @@ public class DigestTypeBenchmark {
             byteBufDefaultAlloc = ByteBufAllocator.DEFAULT.buffer(entrySize, entrySize);
             byteBufDefaultAlloc.writeBytes(randomBytes(entrySize));
 
+            // an entry assembled from several direct buffers, e.g. a header and the parts of a payload
+            compositeDirectBuffer = PooledByteBufAllocator.DEFAULT.compositeDirectBuffer(COMPOSITE_COMPONENTS);
+            for (int i = 0; i < COMPOSITE_COMPONENTS; i++) {
+                int componentSize = entrySize / COMPOSITE_COMPONENTS
+                        + (i == COMPOSITE_COMPONENTS - 1 ? entrySize % COMPOSITE_COMPONENTS : 0);
+                ByteBuf component = PooledByteBufAllocator.DEFAULT.directBuffer(componentSize, componentSize);
+                component.writeBytes(randomBytes(componentSize));
+                compositeDirectBuffer.addComponent(true, component);
+            }
+
             if (!arrayBackedBuffer.hasArray() || notArrayBackedBuffer.hasArray()) {
                 throw new IllegalStateException("buffers in invalid state");
             }
@@ -135,6 +150,8 @@ public class DigestTypeBenchmark {
 
         @TearDown(Level.Trial)
         public void doTearDown() {
+            byteBufDefaultAlloc.release();
+            compositeDirectBuffer.release();
         }
 
         public ByteBuf getByteBuff(BufferType bType) {
@@ -145,6 +162,8 @@ public class DigestTypeBenchmark {
                     return notArrayBackedBuffer;
                 case BYTE_BUF_DEFAULT_ALLOC:
                     return byteBufDefaultAlloc;
+                case COMPOSITE_DIRECT:
+                    return compositeDirectBuffer;
                 default:
                     throw new IllegalArgumentException("unknown buffer type " + bType);
             }
@@ -179,4 +198,19 @@ public class DigestTypeBenchmark {
         dm.populateValueAndReset(state.digestBuf);
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 12, timeUnit = TimeUnit.SECONDS)
+    @Threads(2)
+    @Fork(value = 1, warmups = 1)
+    public void computeDigestAndPackageForSending(MyState state) {
+        final ByteBuf buff = state.getByteBuff(state.bufferType);
+        final DigestManager dm = state.getDigestManager(state.digest);
+        // the ownership of the payload is passed to the digest manager, keep it for the next invocations
+        ByteBufList toSend = dm.computeDigestAndPackageForSending(0L, -1L, buff.readableBytes(), buff.retain());
+        toSend.release();
+    }
+
 }